@@ -3,6 +3,7 @@ const bodyParser = require('body-parser');
 const cors = require('cors');
 const http = require('http');
 const socket = require('./websocket');
+const liveStream = require('./lib/live-stream');
 
 const chunkRoutes = require('./routes/chunks');
 const playerRoutes = require('./routes/players');
@@ -33,6 +34,7 @@ app.use('/api/status', statusRoutes);
 // websocket server
 const server = http.createServer(app);
 const io = socket.init(server);
+liveStream.attach(io);
 
 io.on('connection', (socket) => {
     console.log('Client connected');
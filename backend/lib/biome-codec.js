@@ -0,0 +1,79 @@
+/**
+ * Decoder for the binary biome metadata (r.<x>.<z>.biomes) uploaded by the Explora plugin with each region tile.
+ *
+ * A file starts with the magic bytes "EXBM" and a version byte (1), then zig-zag varints region x and z and a
+ * 128 byte bitmap of the chunks that have biome data: bit (chunkZ & 31) * 32 + (chunkX & 31), stored in byte i >> 3
+ * at position i & 7. For every chunk in the bitmap, in bit order, follow a varint biome count and that many varint
+ * biome ids. Ids are line numbers (from 0) of the world's biomes.txt dictionary, which only ever grows.
+ */
+
+const MAGIC = 'EXBM';
+const VERSION = 1;
+const DICTIONARY_FILE = 'biomes.txt';
+
+function readVarint(buffer, state) {
+    let value = 0;
+    let shift = 0;
+    let byte;
+    do {
+        if (state.pos >= buffer.length) throw new Error('Truncated biome metadata');
+        byte = buffer[state.pos++];
+        value |= (byte & 0x7f) << shift;
+        shift += 7;
+    } while (byte & 0x80);
+    return value >>> 0;
+}
+
+function readZigzag(buffer, state) {
+    const value = readVarint(buffer, state);
+    return (value >>> 1) ^ -(value & 1);
+}
+
+/**
+ * Parses a biome dictionary.
+ * @param {string} text the contents of biomes.txt
+ * @returns {string[]} biome names, indexed by id
+ */
+function parseDictionary(text) {
+    return text.split(/\r?\n/).filter(line => line.length > 0);
+}
+
+/**
+ * Decodes binary biome metadata into the JSON shape the plugin used to write.
+ * @param {Buffer} buffer the contents of a .biomes file
+ * @param {string[]} dictionary biome names, indexed by id
+ * @returns {{chunks: {x: number, z: number, biomes: string[]}[]}}
+ */
+function decode(buffer, dictionary) {
+    if (buffer.length < 5 || buffer.toString('latin1', 0, 4) !== MAGIC) throw new Error('Not biome metadata');
+    if (buffer[4] !== VERSION) throw new Error(`Unsupported biome metadata version ${buffer[4]}`);
+
+    const state = {pos: 5};
+    const regionX = readZigzag(buffer, state);
+    const regionZ = readZigzag(buffer, state);
+    if (state.pos + 128 > buffer.length) throw new Error('Truncated biome metadata');
+    const bitmapStart = state.pos;
+    state.pos += 128;
+
+    const chunks = [];
+    for (let i = 0; i < 1024; i++) {
+        if (!(buffer[bitmapStart + (i >> 3)] & (1 << (i & 7)))) continue;
+
+        const count = readVarint(buffer, state);
+        if (count > dictionary.length) throw new Error('Corrupt biome metadata');
+        const biomes = new Array(count);
+        for (let b = 0; b < count; b++) {
+            const id = readVarint(buffer, state);
+            if (id >= dictionary.length) throw new Error(`Unknown biome id ${id}`);
+            biomes[b] = dictionary[id];
+        }
+        chunks.push({x: regionX * 32 + (i & 31), z: regionZ * 32 + (i >> 5), biomes});
+    }
+    return {chunks};
+}
+
+module.exports = {
+    DICTIONARY_FILE,
+    parseDictionary,
+    decode
+};
@@ -0,0 +1,168 @@
+/**
+ * Decoders for the binary chunk batch formats sent by the Explora plugin to /api/chunks/update/batch.
+ *
+ * All formats start with the world name (varint length + UTF-8 bytes). Bodies arrive gzip-compressed
+ * (Content-Encoding: gzip) and are inflated by express.raw before they reach these decoders.
+ *
+ *  - delta:  varint count, then per chunk a zig-zag varint x delta, followed by a zig-zag varint
+ *            z delta if x did not change, or the absolute z otherwise. Chunks are sorted by x, then z.
+ *  - bitmap: varint regionCount, then per region zig-zag varints x and z and a 128 byte bitmap.
+ *            Bit (chunkZ & 31) * 32 + (chunkX & 31) is set for every explored chunk; bit i is
+ *            stored in byte i >> 3 at position i & 7. Regions may have an all-zero bitmap, which is how
+ *            region replacements (/api/chunks/merkle/:world/regions) clear a region.
+ *  - areas:  varint areaCount, then per area zig-zag varint x and z deltas from the previous area, and
+ *            varints width - 1 and height - 1. Every chunk of the width x height rectangle starting at
+ *            (x, z) is explored.
+ */
+
+const DELTA_CONTENT_TYPE = 'application/vnd.explora.chunks-delta';
+const BITMAP_CONTENT_TYPE = 'application/vnd.explora.chunks-bitmap';
+const AREAS_CONTENT_TYPE = 'application/vnd.explora.chunks-areas';
+
+// the plugin sends at most chunk-sync-max-batch-size (20000 by default) chunks per batch; a few small rectangles
+// must not be able to expand into millions of chunk objects
+const MAX_AREA_CHUNKS = 1 << 18;
+
+class Reader {
+    constructor(buffer) {
+        this.buffer = buffer;
+        this.pos = 0;
+    }
+
+    varint() {
+        let value = 0;
+        let shift = 0;
+        let byte;
+        do {
+            if (this.pos >= this.buffer.length) throw new Error('Truncated chunk batch');
+            byte = this.buffer[this.pos++];
+            value |= (byte & 0x7f) << shift;
+            shift += 7;
+        } while (byte & 0x80);
+        return value;
+    }
+
+    zigzag() {
+        const value = this.varint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    string() {
+        const length = this.varint();
+        if (this.pos + length > this.buffer.length) throw new Error('Truncated chunk batch');
+        const value = this.buffer.toString('utf8', this.pos, this.pos + length);
+        this.pos += length;
+        return value;
+    }
+
+    bytes(length) {
+        if (this.pos + length > this.buffer.length) throw new Error('Truncated chunk batch');
+        const value = this.buffer.subarray(this.pos, this.pos + length);
+        this.pos += length;
+        return value;
+    }
+}
+
+function decodeDelta(buffer) {
+    const reader = new Reader(buffer);
+    const world = reader.string();
+    const count = reader.varint();
+    const chunks = new Array(count);
+
+    let prevX = 0;
+    let prevZ = 0;
+    for (let i = 0; i < count; i++) {
+        const dx = reader.zigzag();
+        const zValue = reader.zigzag();
+
+        const x = prevX + dx;
+        const z = dx === 0 ? prevZ + zValue : zValue;
+        chunks[i] = {x, z};
+
+        prevX = x;
+        prevZ = z;
+    }
+    return {world, chunks};
+}
+
+function decodeBitmap(buffer) {
+    const reader = new Reader(buffer);
+    const world = reader.string();
+    const regionCount = reader.varint();
+    const chunks = [];
+    const regions = new Array(regionCount);
+
+    for (let r = 0; r < regionCount; r++) {
+        const regionX = reader.zigzag();
+        const regionZ = reader.zigzag();
+        const baseX = regionX * 32;
+        const baseZ = regionZ * 32;
+        const bitmap = reader.bytes(128);
+        regions[r] = {x: regionX, z: regionZ};
+
+        for (let byteIndex = 0; byteIndex < 128; byteIndex++) {
+            const byte = bitmap[byteIndex];
+            if (byte === 0) continue;
+
+            for (let bit = 0; bit < 8; bit++) {
+                if (!(byte & (1 << bit))) continue;
+                const index = byteIndex * 8 + bit;
+                chunks.push({x: baseX + (index & 31), z: baseZ + (index >> 5)});
+            }
+        }
+    }
+    return {world, chunks, regions};
+}
+
+function decodeAreas(buffer) {
+    const reader = new Reader(buffer);
+    const world = reader.string();
+    const areaCount = reader.varint();
+    const chunks = [];
+
+    let prevX = 0;
+    let prevZ = 0;
+    for (let a = 0; a < areaCount; a++) {
+        const x = prevX + reader.zigzag();
+        const z = prevZ + reader.zigzag();
+        const width = reader.varint() + 1;
+        const height = reader.varint() + 1;
+        if (width * height > MAX_AREA_CHUNKS || chunks.length + width * height > MAX_AREA_CHUNKS) {
+            throw new Error(`Areas cover more than ${MAX_AREA_CHUNKS} chunks`);
+        }
+
+        for (let dz = 0; dz < height; dz++) {
+            for (let dx = 0; dx < width; dx++) {
+                chunks.push({x: x + dx, z: z + dz});
+            }
+        }
+        prevX = x;
+        prevZ = z;
+    }
+    return {world, chunks};
+}
+
+/**
+ * Decodes a binary chunk batch.
+ * @param {string} contentType the request's Content-Type
+ * @param {Buffer} buffer the inflated request body
+ * @returns {{world: string, chunks: {x: number, z: number}[]} | null} null if the content type is not a binary chunk format
+ */
+function decode(contentType, buffer) {
+    const mediaType = (contentType || '').split(';')[0].trim().toLowerCase();
+    if (mediaType === DELTA_CONTENT_TYPE) return decodeDelta(buffer);
+    if (mediaType === BITMAP_CONTENT_TYPE) return decodeBitmap(buffer);
+    if (mediaType === AREAS_CONTENT_TYPE) return decodeAreas(buffer);
+    return null;
+}
+
+module.exports = {
+    DELTA_CONTENT_TYPE,
+    BITMAP_CONTENT_TYPE,
+    AREAS_CONTENT_TYPE,
+    ACCEPTED_CONTENT_TYPES: ['application/json', DELTA_CONTENT_TYPE, BITMAP_CONTENT_TYPE, AREAS_CONTENT_TYPE],
+    decode,
+    decodeDelta,
+    decodeBitmap,
+    decodeAreas
+};
@@ -0,0 +1,122 @@
+/**
+ * Hash tree over a world's explored chunks, used by the Explora plugin to reconcile its chunk data with the
+ * backend without resending every chunk. Must match ChunkMerkleTree.java in the plugin:
+ *
+ *  - region: SHA-256 of the region's 128 byte chunk bitmap. Bit (chunkZ & 31) * 32 + (chunkX & 31) is set for
+ *            every explored chunk; bit i is stored in byte i >> 3 at position i & 7.
+ *  - sector: 32x32 regions. SHA-256 over (regionX, regionZ, regionHash) of every non-empty region in the sector.
+ *  - root:   SHA-256 over (sectorX, sectorZ, sectorHash) of every non-empty sector.
+ *
+ * Entries are hashed sorted by x, then z, with coordinates as 4 byte big-endian ints. Empty regions and sectors
+ * are left out. Trees are cached per world and must be invalidated whenever the world's chunks change.
+ */
+
+const crypto = require('crypto');
+const store = require('../stores/chunk-store-sqlite');
+
+const SECTOR_SHIFT = 5;
+const BITMAP_BYTES = 128;
+
+const cache = new Map();
+
+function sha256(buffer) {
+    return crypto.createHash('sha256').update(buffer).digest();
+}
+
+function byCoords(a, b) {
+    return a.x - b.x || a.z - b.z;
+}
+
+function hashEntries(entries) {
+    const buffer = Buffer.alloc(entries.length * 40);
+    entries.forEach((entry, i) => {
+        buffer.writeInt32BE(entry.x, i * 40);
+        buffer.writeInt32BE(entry.z, i * 40 + 4);
+        entry.hash.copy(buffer, i * 40 + 8);
+    });
+    return sha256(buffer);
+}
+
+/**
+ * Builds the hash tree for a world's chunks.
+ * @param {{x: number, z: number}[]} chunks
+ * @returns {{root: string, sectors: Map<string, {x: number, z: number, hash: string, regions: Map<string, string>}>}}
+ */
+function buildTree(chunks) {
+    const bitmaps = new Map();
+    for (const {x, z} of chunks) {
+        const key = `${x >> 5},${z >> 5}`;
+        let region = bitmaps.get(key);
+        if (!region) {
+            region = {x: x >> 5, z: z >> 5, bitmap: Buffer.alloc(BITMAP_BYTES)};
+            bitmaps.set(key, region);
+        }
+        const bit = (z & 31) * 32 + (x & 31);
+        region.bitmap[bit >> 3] |= 1 << (bit & 7);
+    }
+
+    const sectorsByKey = new Map();
+    for (const region of bitmaps.values()) {
+        const sx = region.x >> SECTOR_SHIFT;
+        const sz = region.z >> SECTOR_SHIFT;
+        const key = `${sx},${sz}`;
+        let sector = sectorsByKey.get(key);
+        if (!sector) {
+            sector = {x: sx, z: sz, regions: []};
+            sectorsByKey.set(key, sector);
+        }
+        sector.regions.push({x: region.x, z: region.z, hash: sha256(region.bitmap)});
+    }
+
+    const sectors = [...sectorsByKey.values()].sort(byCoords);
+    for (const sector of sectors) {
+        sector.regions.sort(byCoords);
+        sector.hash = hashEntries(sector.regions);
+    }
+
+    const tree = {root: hashEntries(sectors).toString('hex'), sectors: new Map()};
+    for (const sector of sectors) {
+        tree.sectors.set(`${sector.x},${sector.z}`, {
+            x: sector.x,
+            z: sector.z,
+            hash: sector.hash.toString('hex'),
+            regions: new Map(sector.regions.map(r => [`${r.x},${r.z}`, r.hash.toString('hex')]))
+        });
+    }
+    return tree;
+}
+
+/**
+ * Returns the cached hash tree of a world, building it from the chunk store if needed.
+ * @param {string} world
+ */
+function getTree(world) {
+    let tree = cache.get(world);
+    if (!tree) {
+        tree = store.getChunkCoords(world).then(buildTree);
+        cache.set(world, tree);
+        tree.catch(() => {
+            if (cache.get(world) === tree) cache.delete(world);
+        });
+    }
+    return tree;
+}
+
+/**
+ * Drops the cached tree of a world, or of every world if none is given.
+ * @param {string} [world]
+ */
+function invalidate(world) {
+    if (world === undefined) {
+        cache.clear();
+    } else {
+        cache.delete(world);
+    }
+}
+
+module.exports = {
+    SECTOR_SHIFT,
+    buildTree,
+    getTree,
+    invalidate
+};
@@ -0,0 +1,152 @@
+/**
+ * Decoder for the frames of the plugin's live update stream (LiveFrame.java), emitted as binary "live" events
+ * on the /plugin Socket.IO namespace.
+ *
+ * Frame: version byte (1), flags byte (1 = keyframe), varint sequence, varint section count, then per section a
+ * type byte and a varint-length-prefixed payload. Unknown sections are skipped.
+ *
+ * Players section (type 2): varint record count, then records starting with an opcode byte. Positions are zig-zag
+ * varints in 1/8 block, velocities zig-zag varints in 1/8 block per second:
+ *  - 0 add:    varint id, name, world, x, y, z, vx, vy, vz, yaw byte
+ *  - 1 move:   varint id, dx, dy, dz, vx, vy, vz, yaw byte
+ *  - 2 world:  varint id, world, x, y, z, vx, vy, vz, yaw byte
+ *  - 3 remove: varint id
+ * Decoded positions and velocities are in blocks and blocks per second.
+ *
+ * Status section (type 3): varint field mask, then the fields whose bit is set, in this order:
+ *  - 1 player count: varint
+ *  - 2 world time: varint
+ *  - 4 time rate (ticks per second the world time advances): varint
+ *  - 8 MOTD: string
+ *
+ * Varints use 7 bits per byte, least significant group first; strings are a varint length and UTF-8 bytes. The
+ * yaw byte maps 0-360 degrees onto 0-255.
+ */
+
+const SECTION_PLAYERS = 2;
+const SECTION_STATUS = 3;
+const POSITION_SCALE = 8;
+const FLAG_KEYFRAME = 1;
+
+class Reader {
+    constructor(buffer) {
+        this.buffer = buffer;
+        this.pos = 0;
+    }
+
+    byte() {
+        if (this.pos >= this.buffer.length) throw new Error('Truncated live frame');
+        return this.buffer[this.pos++];
+    }
+
+    varint() {
+        let value = 0;
+        let shift = 0;
+        let byte;
+        do {
+            byte = this.byte();
+            value |= (byte & 0x7f) << shift;
+            shift += 7;
+        } while (byte & 0x80);
+        return value >>> 0;
+    }
+
+    zigzag() {
+        const value = this.varint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    fixed() {
+        return this.zigzag() / POSITION_SCALE;
+    }
+
+    string() {
+        const length = this.varint();
+        if (this.pos + length > this.buffer.length) throw new Error('Truncated live frame');
+        const value = this.buffer.toString('utf8', this.pos, this.pos + length);
+        this.pos += length;
+        return value;
+    }
+
+    sub(length) {
+        if (this.pos + length > this.buffer.length) throw new Error('Truncated live frame');
+        const reader = new Reader(this.buffer.subarray(this.pos, this.pos + length));
+        this.pos += length;
+        return reader;
+    }
+}
+
+function yawFromByte(value) {
+    const degrees = value * 360 / 256;
+    return degrees > 180 ? degrees - 360 : degrees;
+}
+
+function readMotion(reader, record) {
+    record.vx = reader.fixed();
+    record.vy = reader.fixed();
+    record.vz = reader.fixed();
+    record.yaw = yawFromByte(reader.byte());
+    return record;
+}
+
+function decodePlayers(reader) {
+    const records = [];
+    const count = reader.varint();
+    for (let i = 0; i < count; i++) {
+        const op = reader.byte();
+        switch (op) {
+            case 0:
+                records.push(readMotion(reader, { op: 'add', id: reader.varint(), name: reader.string(), world: reader.string(),
+                    x: reader.fixed(), y: reader.fixed(), z: reader.fixed() }));
+                break;
+            case 1:
+                records.push(readMotion(reader, { op: 'move', id: reader.varint(),
+                    dx: reader.fixed(), dy: reader.fixed(), dz: reader.fixed() }));
+                break;
+            case 2:
+                records.push(readMotion(reader, { op: 'world', id: reader.varint(), world: reader.string(),
+                    x: reader.fixed(), y: reader.fixed(), z: reader.fixed() }));
+                break;
+            case 3:
+                records.push({ op: 'remove', id: reader.varint() });
+                break;
+            default:
+                throw new Error(`Unknown player record ${op}`);
+        }
+    }
+    return records;
+}
+
+function decodeStatus(reader) {
+    const status = {};
+    const fields = reader.varint();
+    if (fields & 1) status.playerCount = reader.varint();
+    if (fields & 2) status.worldTime = reader.varint();
+    if (fields & 4) status.timeRate = reader.varint();
+    if (fields & 8) status.motd = reader.string();
+    return status;
+}
+
+/**
+ * @param {Buffer} buffer
+ * @returns {{ sequence: number, keyframe: boolean, players?: object[], status?: object }}
+ */
+function decodeLiveFrame(buffer) {
+    const reader = new Reader(buffer);
+    const version = reader.byte();
+    if (version !== 1) throw new Error(`Unsupported live frame version ${version}`);
+
+    const flags = reader.byte();
+    const frame = { sequence: reader.varint(), keyframe: (flags & FLAG_KEYFRAME) !== 0 };
+
+    const sections = reader.varint();
+    for (let i = 0; i < sections; i++) {
+        const type = reader.byte();
+        const section = reader.sub(reader.varint());
+        if (type === SECTION_PLAYERS) frame.players = decodePlayers(section);
+        else if (type === SECTION_STATUS) frame.status = decodeStatus(section);
+    }
+    return frame;
+}
+
+module.exports = { decodeLiveFrame };
@@ -0,0 +1,136 @@
+/**
+ * Receives the plugin's live update stream: one persistent Socket.IO connection on the /plugin namespace,
+ * authenticated with the API key, carrying binary "live" frames (see live-frame-codec.js).
+ *
+ * Player records refer to players by an id assigned by the plugin, which is only valid for the connection.
+ * If a record refers to an unknown id (e.g. after a backend restart), the plugin is asked for a keyframe.
+ * Every applied frame is forwarded to the frontend as the usual "onlinePlayersUpdate" event.
+ *
+ * Status sections update the server status, which is forwarded as "serverStatusUpdate". While the stream is
+ * connected the server counts as online, so the plugin only sends the status when it changes.
+ *
+ * Map viewers report the world they are looking at ("watchWorld"). The number of viewers per world is sent to the
+ * plugin as "interest" whenever it changes, so players in worlds nobody is viewing are sent less often.
+ */
+
+const config = require('../config.json');
+const playerStore = require('../stores/player-store');
+const serverStatusStore = require('../stores/server-status-store');
+const { decodeLiveFrame } = require('./live-frame-codec');
+
+// key = viewer socket id, value = world being viewed
+const viewers = new Map();
+
+function getInterest() {
+    const worlds = {};
+    for (const world of viewers.values()) {
+        worlds[world] = (worlds[world] || 0) + 1;
+    }
+    return { worlds };
+}
+
+function motion(record) {
+    return { vx: record.vx, vy: record.vy, vz: record.vz, yaw: record.yaw };
+}
+
+function applyPlayers(session, records, keyframe) {
+    let complete = true;
+
+    if (keyframe) {
+        playerStore.clearStreamed();
+        session.names.clear();
+    }
+
+    for (const record of records) {
+        if (record.op === 'add') {
+            session.names.set(record.id, record.name);
+            playerStore.set({ name: record.name, world: record.world, x: record.x, y: record.y, z: record.z, ...motion(record) }, true);
+            continue;
+        }
+
+        const name = session.names.get(record.id);
+        const player = name && playerStore.get(name);
+        if (!player) {
+            complete = false;
+            continue;
+        }
+
+        if (record.op === 'move') {
+            playerStore.set({ ...player, x: player.x + record.dx, y: player.y + record.dy, z: player.z + record.dz, ...motion(record) }, true);
+        } else if (record.op === 'world') {
+            playerStore.set({ ...player, world: record.world, x: record.x, y: record.y, z: record.z, ...motion(record) }, true);
+        } else if (record.op === 'remove') {
+            session.names.delete(record.id);
+            playerStore.remove(name);
+        }
+    }
+    return complete;
+}
+
+function attach(io) {
+    const plugin = io.of('/plugin');
+
+    const sendInterest = () => plugin.emit('interest', getInterest());
+
+    io.on('connection', (socket) => {
+        // updates are only sent when something changes, so bring new viewers up to date right away
+        socket.emit('serverStatusUpdate', serverStatusStore.getStatus());
+        socket.emit('onlinePlayersUpdate', { 'online-players': playerStore.getActive() });
+
+        socket.on('watchWorld', (world) => {
+            if (typeof world !== 'string' || viewers.get(socket.id) === world) return;
+            viewers.set(socket.id, world);
+            sendInterest();
+        });
+
+        socket.on('disconnect', () => {
+            if (viewers.delete(socket.id)) sendInterest();
+        });
+    });
+
+    plugin.use((socket, next) => {
+        if (socket.handshake.auth?.key !== config.apiKey) {
+            return next(new Error('Unauthorized: Invalid API key'));
+        }
+        next();
+    });
+
+    plugin.on('connection', (socket) => {
+        console.log('Plugin connected to live update stream');
+        const session = { names: new Map(), frames: 0 };
+        socket.emit('interest', getInterest());
+        serverStatusStore.setStreamed(true);
+
+        socket.on('live', (buffer) => {
+            let frame;
+            try {
+                frame = decodeLiveFrame(buffer);
+            } catch (err) {
+                console.warn('Invalid live frame:', err.message);
+                socket.emit('requestKeyframe');
+                return;
+            }
+
+            session.frames++;
+            if (frame.status) {
+                serverStatusStore.updateStatus({ ...frame.status, isOnline: true, lastUpdateSent: new Date() });
+                io.emit('serverStatusUpdate', serverStatusStore.getStatus());
+            }
+            if (frame.players) {
+                if (!applyPlayers(session, frame.players, frame.keyframe)) {
+                    socket.emit('requestKeyframe');
+                }
+                io.emit('onlinePlayersUpdate', { 'online-players': playerStore.getActive() });
+            }
+        });
+
+        socket.on('disconnect', (reason) => {
+            console.log(`Plugin live update stream disconnected (${reason}) after ${session.frames} frames`);
+            playerStore.clearStreamed();
+            serverStatusStore.setStreamed(false);
+            io.emit('onlinePlayersUpdate', { 'online-players': playerStore.getActive() });
+        });
+    });
+}
+
+module.exports = { attach };
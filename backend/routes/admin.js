@@ -1,6 +1,7 @@
 const express = require("express");
 const router = express.Router();
 const store = require("../stores/chunk-store-sqlite");
+const merkle = require("../lib/chunk-merkle");
 
 /**
  * @typedef {Object} ClearChunksRequestBody
@@ -9,6 +10,7 @@ const store = require("../stores/chunk-store-sqlite");
 router.delete("/clear-chunks", async (req, res) => {
     try {
         const deleted = await store.clearChunks();
+        merkle.invalidate();
         res.status(200).json({ deleted });
     } catch (err) {
         console.error("Error clearing chunk database:", err);
@@ -1,9 +1,37 @@
 const express = require("express");
 const router = express.Router();
 const store = require("../stores/chunk-store-sqlite");
+const codec = require("../lib/chunk-batch-codec");
+const merkle = require("../lib/chunk-merkle");
 
-router.post('/update/batch', async (req, res) => {
-    const {world, chunks} = req.body;
+const binaryChunkBatch = express.raw({
+    type: [codec.DELTA_CONTENT_TYPE, codec.BITMAP_CONTENT_TYPE, codec.AREAS_CONTENT_TYPE],
+    limit: '64mb'
+});
+
+const regionBitmaps = express.raw({
+    type: codec.BITMAP_CONTENT_TYPE,
+    limit: '64mb'
+});
+
+router.post('/update/batch', binaryChunkBatch, async (req, res) => {
+    // lets the plugin switch to a binary format after its first batch
+    res.set('Accept-Post', codec.ACCEPTED_CONTENT_TYPES.join(', '));
+
+    let world;
+    let chunks;
+
+    if (Buffer.isBuffer(req.body)) {
+        try {
+            ({world, chunks} = codec.decode(req.get('Content-Type'), req.body));
+        } catch (err) {
+            return res.status(400).json("Malformed chunk batch: " + err.message);
+        }
+    } else if (req.is('application/json')) {
+        ({world, chunks} = req.body || {});
+    } else {
+        return res.sendStatus(415);
+    }
 
     if (!world || !Array.isArray(chunks)) {
         return res.status(400).json("Missing world or chunks array.");
@@ -11,6 +39,7 @@ router.post('/update/batch', async (req, res) => {
 
     try {
         await store.addChunksBatch(world, chunks);
+        merkle.invalidate(world);
         res.sendStatus(200);
     } catch (err) {
         console.error("Error in batch update: ", err);
@@ -24,6 +53,7 @@ router.post('/update', async (req, res) => {
 
     try {
         await store.addChunk(world, x, z);
+        merkle.invalidate(world);
         res.sendStatus(200);
     } catch (err) {
         console.error("Error adding chunk: ", err);
@@ -31,6 +61,66 @@ router.post('/update', async (req, res) => {
     }
 });
 
+/**
+ * Reconciliation with the plugin: the plugin compares its hash tree with these levels top-down and
+ * replaces only the regions that differ. See lib/chunk-merkle.js for how the hashes are computed.
+ */
+router.get('/merkle/:world', async (req, res) => {
+    try {
+        const tree = await merkle.getTree(req.params.world);
+        const sectors = {};
+        for (const [key, sector] of tree.sectors) {
+            sectors[key] = sector.hash;
+        }
+        res.json({root: tree.root, sectors});
+    } catch (err) {
+        console.error("Error building chunk hash tree: ", err);
+        res.sendStatus(500);
+    }
+});
+
+router.get('/merkle/:world/sectors/:x/:z', async (req, res) => {
+    const x = Number(req.params.x);
+    const z = Number(req.params.z);
+    if (!Number.isInteger(x) || !Number.isInteger(z)) return res.sendStatus(400);
+
+    try {
+        const tree = await merkle.getTree(req.params.world);
+        const sector = tree.sectors.get(`${x},${z}`);
+        res.json({regions: sector ? Object.fromEntries(sector.regions) : {}});
+    } catch (err) {
+        console.error("Error building chunk hash tree: ", err);
+        res.sendStatus(500);
+    }
+});
+
+router.post('/merkle/:world/regions', regionBitmaps, async (req, res) => {
+    if (!Buffer.isBuffer(req.body)) return res.sendStatus(415);
+
+    let decoded;
+    try {
+        decoded = codec.decodeBitmap(req.body);
+    } catch (err) {
+        return res.status(400).json("Malformed region bitmaps: " + err.message);
+    }
+
+    const world = req.params.world;
+    if (decoded.world !== world) {
+        return res.status(400).json("World in body does not match the URL.");
+    }
+
+    try {
+        await store.replaceRegions(world, decoded.regions, decoded.chunks);
+        merkle.invalidate(world);
+
+        const tree = await merkle.getTree(world);
+        res.json({root: tree.root});
+    } catch (err) {
+        console.error("Error replacing regions: ", err);
+        res.sendStatus(500);
+    }
+});
+
 router.get('/has-chunk', async(req, res) => {
     const world = req.query.world;
     const x = req.query.x;
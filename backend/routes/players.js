@@ -1,9 +1,7 @@
 const express = require("express");
 const router = express.Router();
 const websocket = require("../websocket");
-
-// key = playerName, value = { world, x, z, lastSeen }
-const onlinePlayers = new Map();
+const playerStore = require("../stores/player-store");
 
 router.post('/update', (req, res) => {
     const {"online-players": players} = req.body;
@@ -12,22 +10,12 @@ router.post('/update', (req, res) => {
         res.status(400).json({ message: "Missing or invalid online-players array" });
     }
 
-    const now = Date.now();
-
     for (const player of players) {
         const { name, world, x, y, z, yaw } = player;
         if (!name || !world || x === undefined || y === undefined || z === undefined || yaw === undefined) {
             continue;
         }
-        onlinePlayers.set(name, {
-            name,
-            world,
-            x,
-            y,
-            z,
-            yaw,
-            lastSeen: now,
-        });
+        playerStore.set({ name, world, x, y, z, yaw });
     }
 
     websocket.getIO().emit("onlinePlayersUpdate", {"online-players": players});
@@ -35,31 +23,7 @@ router.post('/update', (req, res) => {
 });
 
 router.get('/', (req, res) => {
-    const now = Date.now();
-    const ACTIVE_TIMEOUT_MS = 10_000; // remove inactive players after 10 seconds
-
-    const worldFilter = req.query.world;
-
-    const activePlayers = Array.from(onlinePlayers.values()).filter(
-        (p) => {
-            const isActive = (now - p.lastSeen) <= ACTIVE_TIMEOUT_MS;
-            if (worldFilter != null) {
-                return isActive && p.world === worldFilter;
-            }
-            return isActive;
-        }
-    );
-
-    const playersForClient = activePlayers.map(p => ({
-        name: p.name,
-        world: p.world,
-        x: p.x,
-        y: p.y,
-        z: p.z,
-        yaw: p.yaw,
-    }));
-
-    res.json({"online-players": playersForClient});
+    res.json({"online-players": playerStore.getActive(req.query.world)});
 });
 
 module.exports = router;
\ No newline at end of file
@@ -7,12 +7,13 @@ const OFFLINE_TIMEOUT_MS = 3000;
 
 router.post('/server/update', (req, res) => {
     const { isOnline, playerCount, worldTime, motd } = req.body;
+    const timeRate = req.body.timeRate ?? 0;
     if (typeof isOnline !== "boolean" || typeof playerCount !== "number"
-        || typeof worldTime !== "number" || typeof motd !== "string") {
+        || typeof worldTime !== "number" || typeof motd !== "string" || typeof timeRate !== "number") {
         return res.status(400).json({ message: "Invalid parameters" });
     }
 
-    serverStatusStore.updateStatus({isOnline, playerCount, worldTime, motd, lastUpdateSent: new Date()});
+    serverStatusStore.updateStatus({isOnline, playerCount, worldTime, timeRate, motd, lastUpdateSent: new Date()});
     websocket.getIO().emit('serverStatusUpdate', serverStatusStore.getStatus());
 
     res.json({message: "Server status updated"});
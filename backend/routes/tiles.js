@@ -2,6 +2,28 @@ const express = require("express");
 const router = express.Router();
 const path = require("path");
 const fs = require("fs");
+const tileManifests = require("../stores/tile-manifest-store");
+const biomeCodec = require("../lib/biome-codec");
+
+const TILE_EXTENSIONS = ["png", "json", "biomes"];
+
+/**
+ * Finds the newest biome metadata of a region: r.<x>.<z>.json, or r.<x>.<z>.biomes (binary, see lib/biome-codec).
+ * The plugin writes one or the other depending on its biome-metadata-format, so after a switch both may exist.
+ * @returns {{path: string, stats: fs.Stats, binary: boolean} | null}
+ */
+function findBiomeMetadata(folder, x, z) {
+    let newest = null;
+    for (const binary of [false, true]) {
+        const filePath = path.join(folder, `r.${x}.${z}.${binary ? "biomes" : "json"}`);
+        if (!fs.existsSync(filePath)) continue;
+        const stats = fs.statSync(filePath);
+        if (!newest || stats.mtimeMs > newest.stats.mtimeMs) {
+            newest = { path: filePath, stats, binary };
+        }
+    }
+    return newest;
+}
 
 router.get("/available-worlds", (req, res) => {
 
@@ -11,6 +33,20 @@ router.get("/available-worlds", (req, res) => {
     res.json({ worlds });
 });
 
+/**
+ * The content hash, size and version of every tile of a world, used by the plugin to upload only changed tiles.
+ */
+router.get("/manifest/:world", (req, res) => {
+    const { world } = req.params;
+    const tileRoot = path.join(__dirname, "..", "tiles");
+    if (!path.join(tileRoot, world).startsWith(tileRoot + path.sep)) {
+        return res.status(400).send("Invalid world");
+    }
+
+    res.setHeader("Cache-Control", "no-store");
+    res.json({ world, tiles: tileManifests.getTiles(world) });
+});
+
 router.get("/exists/:world/:zoom/:x/:z.:extension", async (req, res) => {
     const { world, zoom, x, z, extension } = req.params;
     const zoomNum = parseInt(zoom);
@@ -21,7 +57,7 @@ router.get("/exists/:world/:zoom/:x/:z.:extension", async (req, res) => {
         return res.status(400).send("Invalid zoom or coordinates");
     }
 
-    if (extension !== "png" && extension !== "json") {
+    if (!TILE_EXTENSIONS.includes(extension)) {
         return res.status(400).send("Unsupported file type");
     }
 
@@ -31,37 +67,113 @@ router.get("/exists/:world/:zoom/:x/:z.:extension", async (req, res) => {
 
     res.setHeader("Cache-Control", "no-store");
 
-    if (fs.existsSync(imagePath)) {
+    if (fs.existsSync(imagePath) || (extension === "json" && findBiomeMetadata(path.dirname(imagePath), x, z))) {
         return res.status(200).json({ exists: true });
     } else {
         return res.status(404).json({ exists: false });
     }
 });
 
-router.get("/:world/:zoom/:x/:z.:extension", async (req, res) => {
-    const { world, zoom, x, z, extension } = req.params;
+/**
+ * A fog-of-war mask tile: a 32x32 one-bit PNG whose transparent pixels are explored chunks. Level 0 has one pixel
+ * per chunk, each level above halves the resolution. A missing tile has no explored chunks at all.
+ */
+router.get("/fog/:world/:level/:x/:z.png", (req, res) => {
+    const { world, level, x, z } = req.params;
+    if (!/^\d+$/.test(level) || !/^-?\d+$/.test(x) || !/^-?\d+$/.test(z)) {
+        return res.status(400).send("Invalid level or coordinates");
+    }
 
-    console.log(`received request for tile: world=${world}, x=${x}, z=${z}, zoom=${zoom}, ext=${extension}`);
+    const tileRoot = path.join(__dirname, "..", "tiles");
+    const worldFolder = path.join(tileRoot, world);
+    if (!worldFolder.startsWith(tileRoot + path.sep)) {
+        return res.status(400).send("Invalid world");
+    }
 
-    if (extension !== "png" && extension !== "json") {
-        return res.status(400).send("Unsupported file type");
+    const maskPath = path.join(worldFolder, `fog.${level}.${x}.${z}.png`);
+    if (!fs.existsSync(maskPath)) {
+        return res.status(404).send("No explored chunks");
     }
 
-    const zoomFolder = parseInt(zoom) > 0 ? `zoom${zoom}` : "";
-    const filename = `r.${x}.${z}.${extension}`;
-    const imagePath = path.join(__dirname, "..", "tiles", world, zoomFolder, filename);
+    const stats = fs.statSync(maskPath);
+    const eTag = `"${stats.mtimeMs}"`;
+    res.setHeader("ETag", eTag);
+    res.setHeader("Cache-Control", "public, max-age=300, must-revalidate");
+    if (req.headers["if-none-match"] === eTag) {
+        return res.status(304).end();
+    }
+    res.sendFile(maskPath);
+});
 
-    let filePathToSend = imagePath;
+/**
+ * The biome dictionary of a world: one biome name per line, the line number (from 0) being the id used in the
+ * world's binary biome metadata.
+ */
+router.get("/biomes/:world", (req, res) => {
+    const tileRoot = path.join(__dirname, "..", "tiles");
+    const dictionaryPath = path.join(tileRoot, req.params.world, biomeCodec.DICTIONARY_FILE);
+    if (!dictionaryPath.startsWith(tileRoot + path.sep)) {
+        return res.status(400).send("Invalid world");
+    }
+    if (!fs.existsSync(dictionaryPath)) {
+        return res.status(404).send("No biome dictionary");
+    }
 
-    if (!fs.existsSync(imagePath)) {
-        const fallbackPath = path.join(__dirname, "..", "fallback", `empty.${extension}`);
-        if (!fs.existsSync(fallbackPath)) {
-            return res.status(404).send("Requested file not found");
+    res.setHeader("Cache-Control", "no-cache");
+    res.type("text/plain").sendFile(dictionaryPath);
+});
+
+/**
+ * The biome index of a world, exported by the plugin with /explora biomes export: every biome's chunks as
+ * {x, z, w, h} rectangles, as {"biomes": {"minecraft:plains": [...], ...}}.
+ */
+router.get("/biome-index/:world", (req, res) => {
+    const tileRoot = path.join(__dirname, "..", "tiles");
+    const indexPath = path.join(tileRoot, req.params.world, "biome-index.json");
+    if (!indexPath.startsWith(tileRoot + path.sep)) {
+        return res.status(400).send("Invalid world");
+    }
+    if (!fs.existsSync(indexPath)) {
+        return res.status(404).send("No biome index exported");
+    }
+
+    res.setHeader("Cache-Control", "no-cache");
+    res.sendFile(indexPath);
+});
+
+/**
+ * Serves a region's biome metadata as JSON, decoding binary metadata with the world's dictionary if that is what
+ * the plugin uploaded last.
+ * @returns {boolean} false if the region has no biome metadata
+ */
+function sendBiomeMetadata(req, res, folder, x, z) {
+    const metadata = findBiomeMetadata(folder, x, z);
+    if (!metadata) return false;
+    if (!metadata.binary) {
+        sendTile(req, res, metadata.path);
+        return true;
+    }
+
+    const dictionaryPath = path.join(folder, biomeCodec.DICTIONARY_FILE);
+    try {
+        const dictionaryStats = fs.statSync(dictionaryPath);
+        const eTag = `"${metadata.stats.mtimeMs}-${dictionaryStats.mtimeMs}"`;
+        res.setHeader("ETag", eTag);
+        res.setHeader("Cache-Control", "public, max-age=300, must-revalidate");
+        if (req.headers["if-none-match"] === eTag) {
+            res.status(304).end();
+        } else {
+            const dictionary = biomeCodec.parseDictionary(fs.readFileSync(dictionaryPath, "utf8"));
+            res.json(biomeCodec.decode(fs.readFileSync(metadata.path), dictionary));
         }
-        filePathToSend = fallbackPath;
-        console.log(`tile not found, sending fallback for: x=${x}, z=${z}`);
+    } catch (err) {
+        console.error(`Failed to decode biome metadata ${metadata.path}:`, err);
+        res.status(500).send("Internal server error");
     }
+    return true;
+}
 
+function sendTile(req, res, filePathToSend) {
     try {
         const stats = fs.statSync(filePathToSend);
         const eTag = `"${stats.mtimeMs}"`;
@@ -82,6 +194,37 @@ router.get("/:world/:zoom/:x/:z.:extension", async (req, res) => {
         console.error("Failed to read file:", err);
         return res.status(500).send("Internal server error");
     }
+}
+
+router.get("/:world/:zoom/:x/:z.:extension", async (req, res) => {
+    const { world, zoom, x, z, extension } = req.params;
+
+    console.log(`received request for tile: world=${world}, x=${x}, z=${z}, zoom=${zoom}, ext=${extension}`);
+
+    if (!TILE_EXTENSIONS.includes(extension)) {
+        return res.status(400).send("Unsupported file type");
+    }
+
+    const zoomFolder = parseInt(zoom) > 0 ? `zoom${zoom}` : "";
+    const filename = `r.${x}.${z}.${extension}`;
+    const imagePath = path.join(__dirname, "..", "tiles", world, zoomFolder, filename);
+
+    if (extension === "json" && sendBiomeMetadata(req, res, path.dirname(imagePath), x, z)) {
+        return;
+    }
+
+    let filePathToSend = imagePath;
+
+    if (!fs.existsSync(imagePath)) {
+        const fallbackPath = path.join(__dirname, "..", "fallback", `empty.${extension}`);
+        if (!fs.existsSync(fallbackPath)) {
+            return res.status(404).send("Requested file not found");
+        }
+        filePathToSend = fallbackPath;
+        console.log(`tile not found, sending fallback for: x=${x}, z=${z}`);
+    }
+
+    sendTile(req, res, filePathToSend);
 });
 
 
@@ -2,14 +2,28 @@ const express = require("express");
 const router = express.Router();
 
 const multer = require("multer");
-const upload = multer({ storage: multer.memoryStorage() });
 const unzipper = require("unzipper");
 
+const crypto = require("crypto");
+const os = require("os");
 const path = require("path");
 const fs = require("fs");
 const websocket = require("../websocket");
+const tileManifests = require("../stores/tile-manifest-store");
 
 const TILES_DIR = path.join(__dirname, "../tiles");
+const UPLOAD_TMP_DIR = path.join(os.tmpdir(), "explora-uploads");
+// staged shards are moved into TILES_DIR on commit, so they must live on the same filesystem
+const STAGING_DIR = path.join(__dirname, "../data/tile-staging");
+const SESSION_TIMEOUT_MS = 60 * 60 * 1000;
+const SESSION_ID_PATTERN = /^[A-Za-z0-9-]{1,64}$/;
+
+// uploads can hold every tile of the map, so they are spooled to disk instead of being buffered in memory
+fs.mkdirSync(UPLOAD_TMP_DIR, { recursive: true });
+const upload = multer({ dest: UPLOAD_TMP_DIR });
+
+// sharded upload sessions: id -> { files: Map(relativePath -> { hash, size }), shards: Set, lastActivity }
+const sessions = new Map();
 
 function deleteFolderRecursive(folderPath) {
     if (fs.existsSync(folderPath)) {
@@ -17,6 +31,146 @@ function deleteFolderRecursive(folderPath) {
     }
 }
 
+/**
+ * Extracts a zip into a folder, hashing every file while it is written.
+ *
+ * @returns {Promise<{relativePath: string, hash: string, size: number}[]>} the extracted files
+ */
+async function extractZip(zipPath, targetDir) {
+    fs.mkdirSync(targetDir, { recursive: true });
+
+    const directory = await unzipper.Open.file(zipPath);
+    const extracted = [];
+
+    for (const file of directory.files) {
+        const relativePath = file.path;
+        const fullPath = path.join(targetDir, relativePath);
+
+        // Prevent zip slip
+        if (!fullPath.startsWith(targetDir)) {
+            console.warn(`Blocked unsafe path: ${fullPath}`);
+            continue;
+        }
+
+        const dir = path.dirname(fullPath);
+        fs.mkdirSync(dir, { recursive: true });
+
+        if (file.type === "File") {
+            const contentStream = file.stream();
+            const writeStream = fs.createWriteStream(fullPath);
+            const hash = crypto.createHash("sha256");
+            let size = 0;
+            contentStream.on("data", (data) => {
+                hash.update(data);
+                size += data.length;
+            });
+            await new Promise((resolve, reject) => {
+                contentStream.pipe(writeStream)
+                    .on("finish", resolve)
+                    .on("error", reject);
+            });
+
+            extracted.push({ relativePath, hash: hash.digest("hex"), size });
+        }
+    }
+    return extracted;
+}
+
+/**
+ * Records files written to TILES_DIR in their worlds' tile manifests.
+ */
+function recordTiles(files) {
+    const worlds = new Set();
+    for (const { relativePath, hash, size } of files) {
+        const separator = relativePath.indexOf('/');
+        if (separator <= 0) continue;
+
+        const world = relativePath.substring(0, separator);
+        tileManifests.recordTile(world, relativePath.substring(separator + 1), hash, size);
+        worlds.add(world);
+    }
+
+    for (const world of worlds) {
+        tileManifests.save(world);
+    }
+}
+
+/**
+ * Notifies the frontend of updated region tiles ("tileUpdate") and fog-of-war mask tiles ("fogUpdate").
+ *
+ * @returns {Map<string, Set<string>>} the "x,z" keys of the updated regions, per world
+ */
+function emitTileUpdates(relativePaths) {
+    const updatedTiles = new Map();
+    const updatedFogTiles = new Map();
+
+    for (const relativePath of relativePaths) {
+        const parts = relativePath.split('/');
+        if (parts.length >= 2) {
+            const world = parts[0];
+            const filename = parts[1];
+            const match = filename.match(/^r\.(-?\d+)\.(-?\d+)\.png$/);
+
+            if (match) {
+                const x = parseInt(match[1]);
+                const z = parseInt(match[2]);
+                const key = `${x},${z}`;
+                if (!updatedTiles.has(world)) {
+                    updatedTiles.set(world, new Set());
+                }
+                updatedTiles.get(world).add(key);
+            }
+
+            const fogMatch = filename.match(/^fog\.(\d+)\.(-?\d+)\.(-?\d+)\.png$/);
+            if (fogMatch) {
+                if (!updatedFogTiles.has(world)) {
+                    updatedFogTiles.set(world, []);
+                }
+                updatedFogTiles.get(world).push({
+                    level: parseInt(fogMatch[1]),
+                    x: parseInt(fogMatch[2]),
+                    z: parseInt(fogMatch[3]),
+                });
+            }
+        }
+    }
+
+    for (const [world, coordsSet] of updatedTiles.entries()) {
+        const coords = [...coordsSet].map(key => {
+            const [x, z] = key.split(",").map(Number);
+            return { x, z };
+        });
+
+        websocket.getIO().emit("tileUpdate", {
+            world,
+            tiles: coords,
+        });
+    }
+
+    for (const [world, tiles] of updatedFogTiles.entries()) {
+        websocket.getIO().emit("fogUpdate", { world, tiles });
+    }
+    return updatedTiles;
+}
+
+function discardSession(sessionId) {
+    sessions.delete(sessionId);
+    deleteFolderRecursive(path.join(STAGING_DIR, sessionId));
+}
+
+function discardExpiredSessions() {
+    const now = Date.now();
+    for (const [sessionId, session] of sessions) {
+        if (now - session.lastActivity > SESSION_TIMEOUT_MS) {
+            console.warn(`Discarding abandoned tile upload session ${sessionId}`);
+            discardSession(sessionId);
+        }
+    }
+}
+
+// staged shards do not survive a restart, since their session is gone
+deleteFolderRecursive(STAGING_DIR);
+
 /**
  * @typedef {Object} UploadZipRequestBody
  * @property {file} file - The uploaded zip file
@@ -28,82 +182,173 @@ router.post("/tile-zip", upload.single("file"), async (req, res) => {
     }
 
     const shouldDeleteAll = req.query.deleteExisting === "true";
-    const zipBuffer = req.file.buffer;
+    const zipPath = req.file.path;
 
     try {
         if (shouldDeleteAll) {
             deleteFolderRecursive(TILES_DIR);
+            tileManifests.clearAll();
         }
 
-        fs.mkdirSync(TILES_DIR, { recursive: true });
+        const extracted = await extractZip(zipPath, TILES_DIR);
+        recordTiles(extracted);
+
+        const updatedTiles = shouldDeleteAll ? new Map() : emitTileUpdates(extracted.map(file => file.relativePath));
+
+        return res.status(200).json({
+            status: "success",
+            updated: Object.fromEntries([...updatedTiles].map(([world, set]) => [world, [...set]])),
+            message: "Tiles extracted and updates sent to frontend",
+        });
+    } catch (err) {
+        console.error("Unexpected error during zip processing:", err);
+        return res.status(500).json({ error: "Internal server error" });
+    } finally {
+        fs.rm(zipPath, { force: true }, () => {});
+    }
+});
 
-        const directory = await unzipper.Open.buffer(zipBuffer);
-        const updatedTiles = new Map();
+/**
+ * Stages one shard of a sharded tile upload. Nothing becomes visible until the session is committed, and
+ * uploading the same shard again (e.g. on retry) replaces it.
+ *
+ * @typedef {Object} UploadShardRequest
+ * @property {file} file - The shard's zip file
+ * @property {string} session - Query parameter: the upload session id, chosen by the plugin
+ * @property {number} shard - Query parameter: the shard's index
+ */
+router.post("/tile-shard", upload.single("file"), async (req, res) => {
+    if (!req.file) {
+        return res.status(400).json({ error: "No file uploaded" });
+    }
 
-        for (const file of directory.files) {
-            const relativePath = file.path;
-            const fullPath = path.join(TILES_DIR, relativePath);
+    const zipPath = req.file.path;
+    const sessionId = String(req.query.session || "");
+    const shard = parseInt(req.query.shard);
 
-            // Prevent zip slip
-            if (!fullPath.startsWith(TILES_DIR)) {
-                console.warn(`Blocked unsafe path: ${fullPath}`);
-                continue;
-            }
+    try {
+        if (!SESSION_ID_PATTERN.test(sessionId) || Number.isNaN(shard) || shard < 0) {
+            return res.status(400).json({ error: "Invalid session or shard" });
+        }
 
-            const dir = path.dirname(fullPath);
-            fs.mkdirSync(dir, { recursive: true });
+        discardExpiredSessions();
 
-            if (file.type === "File") {
-                const contentStream = file.stream();
-                const writeStream = fs.createWriteStream(fullPath);
-                await new Promise((resolve, reject) => {
-                    contentStream.pipe(writeStream)
-                        .on("finish", resolve)
-                        .on("error", reject);
-                });
+        if (!sessions.has(sessionId)) {
+            sessions.set(sessionId, { files: new Map(), shards: new Set(), lastActivity: Date.now() });
+        }
+        const session = sessions.get(sessionId);
+        session.lastActivity = Date.now();
 
-                if (!shouldDeleteAll) {
-                    const parts = relativePath.split('/');
-                    if (parts.length >= 2) {
-                        const world = parts[0];
-                        const filename = parts[1];
-                        const match = filename.match(/^r\.(-?\d+)\.(-?\d+)\.png$/);
-
-                        if (match) {
-                            const x = parseInt(match[1]);
-                            const z = parseInt(match[2]);
-                            const key = `${x},${z}`;
-                            if (!updatedTiles.has(world)) {
-                                updatedTiles.set(world, new Set());
-                            }
-                            updatedTiles.get(world).add(key);
-                        }
-                    }
-                }
-            }
+        const extracted = await extractZip(zipPath, path.join(STAGING_DIR, sessionId));
+        for (const file of extracted) {
+            session.files.set(file.relativePath, { hash: file.hash, size: file.size });
         }
+        session.shards.add(shard);
 
-        for (const [world, coordsSet] of updatedTiles.entries()) {
-            const coords = [...coordsSet].map(key => {
-                const [x, z] = key.split(",").map(Number);
-                return { x, z };
-            });
+        return res.status(200).json({ status: "success", shard, files: extracted.length });
+    } catch (err) {
+        console.error("Unexpected error during shard processing:", err);
+        return res.status(500).json({ error: "Internal server error" });
+    } finally {
+        fs.rm(zipPath, { force: true }, () => {});
+    }
+});
 
-            websocket.getIO().emit("tileUpdate", {
-                world,
-                tiles: coords,
-            });
+/**
+ * Makes all staged shards of a session visible at once. The files are moved into place synchronously, so no
+ * other request can observe a partially committed tile set.
+ *
+ * @typedef {Object} CommitRequestBody
+ * @property {string} session - The upload session id
+ * @property {number} shards - The number of shards the plugin uploaded
+ */
+router.post("/tile-commit", (req, res) => {
+    const sessionId = String(req.body.session || "");
+    const session = sessions.get(sessionId);
+    if (!session) {
+        return res.status(404).json({ error: "Unknown upload session" });
+    }
+
+    const expectedShards = parseInt(req.body.shards);
+    if (session.shards.size !== expectedShards) {
+        return res.status(409).json({ error: `Expected ${expectedShards} shards, received ${session.shards.size}` });
+    }
+
+    try {
+        const stagingDir = path.join(STAGING_DIR, sessionId);
+        const files = [...session.files].map(([relativePath, file]) => ({ relativePath, ...file }));
+
+        for (const { relativePath } of files) {
+            fs.mkdirSync(path.dirname(path.join(TILES_DIR, relativePath)), { recursive: true });
+        }
+        for (const { relativePath } of files) {
+            fs.renameSync(path.join(stagingDir, relativePath), path.join(TILES_DIR, relativePath));
         }
 
+        recordTiles(files);
+        const updatedTiles = emitTileUpdates(files.map(file => file.relativePath));
+
         return res.status(200).json({
             status: "success",
+            files: files.length,
             updated: Object.fromEntries([...updatedTiles].map(([world, set]) => [world, [...set]])),
-            message: "Tiles extracted and updates sent to frontend",
         });
     } catch (err) {
-        console.error("Unexpected error during zip processing:", err);
+        console.error("Unexpected error while committing tile upload:", err);
         return res.status(500).json({ error: "Internal server error" });
+    } finally {
+        discardSession(sessionId);
+    }
+});
+
+/**
+ * Discards a sharded upload session that the plugin gave up on.
+ */
+router.post("/tile-abort", (req, res) => {
+    const sessionId = String(req.body.session || "");
+    if (!SESSION_ID_PATTERN.test(sessionId)) {
+        return res.status(400).json({ error: "Invalid session" });
     }
+
+    discardSession(sessionId);
+    return res.status(200).json({ status: "success" });
+});
+
+/**
+ * Deletes tiles the plugin no longer has, found by comparing tile manifests.
+ *
+ * @typedef {Object} TileDeleteRequestBody
+ * @property {string} world - The world the tiles belong to
+ * @property {string[]} files - Tile paths inside the world folder, e.g. "r.0.0.png"
+ */
+router.post("/tile-delete", (req, res) => {
+    const { world, files } = req.body;
+    if (typeof world !== "string" || !Array.isArray(files)) {
+        return res.status(400).json({ error: "Expected world and files" });
+    }
+
+    const worldDir = path.join(TILES_DIR, world);
+    if (!worldDir.startsWith(TILES_DIR + path.sep)) {
+        return res.status(400).json({ error: "Invalid world" });
+    }
+
+    let deleted = 0;
+    for (const name of files) {
+        const fullPath = path.join(worldDir, String(name));
+        if (!fullPath.startsWith(worldDir + path.sep)) {
+            console.warn(`Blocked unsafe path: ${fullPath}`);
+            continue;
+        }
+
+        if (fs.existsSync(fullPath)) {
+            fs.rmSync(fullPath, { force: true });
+            deleted++;
+        }
+        tileManifests.removeTile(world, String(name));
+    }
+    tileManifests.save(world);
+
+    return res.status(200).json({ status: "success", deleted });
 });
 
-module.exports = router;
\ No newline at end of file
+module.exports = router;
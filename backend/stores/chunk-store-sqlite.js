@@ -55,6 +55,59 @@ module.exports = {
         });
     },
 
+    getChunkCoords(world) {
+        return new Promise((resolve, reject) => {
+            db.all(`SELECT x, z FROM chunks WHERE world = ?`, [world], (err, rows) => {
+                if (err) return reject(err);
+                resolve(rows);
+            });
+        });
+    },
+
+    replaceRegions(world, regions, chunks) {
+        return new Promise((resolve, reject) => {
+            // statements are already queued when one fails, so the first error is kept and the whole
+            // transaction is rolled back once they have all run; a region is never left half replaced
+            let failure = null;
+            const check = err => {
+                if (err && !failure) failure = err;
+            };
+
+            db.serialize(() => {
+                db.run('BEGIN TRANSACTION', check);
+
+                const deleteStmt = db.prepare(
+                    `DELETE FROM chunks WHERE world = ? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?`
+                );
+                for (const region of regions) {
+                    const {x, z} = region;
+                    deleteStmt.run(world, x * 32, x * 32 + 31, z * 32, z * 32 + 31, check);
+                }
+                deleteStmt.finalize(check);
+
+                const insertStmt = db.prepare(
+                    `INSERT OR IGNORE INTO chunks (world, x, z) VALUES (?, ?, ?)`
+                );
+                for (const chunk of chunks) {
+                    const {x, z} = chunk;
+                    insertStmt.run(world, x, z, check);
+                }
+
+                insertStmt.finalize(err => {
+                    check(err);
+                    if (failure) {
+                        return db.run('ROLLBACK', () => reject(failure));
+                    }
+
+                    db.run('COMMIT', commitErr => {
+                        if (!commitErr) return resolve();
+                        db.run('ROLLBACK', () => reject(commitErr));
+                    });
+                });
+            });
+        });
+    },
+
     hasChunk(world, x, z) {
         return new Promise((resolve, reject) => {
             db.get(`SELECT 1 FROM chunks WHERE world = ? and x = ? and z =  ?`, [world, x, z], (err, row) => {
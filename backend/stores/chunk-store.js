@@ -34,6 +34,27 @@ module.exports = {
         throw new Error("Method not implemented.");
     },
 
+    /**
+     * Get all chunk coordinates for a world
+     * @param {string} world
+     * @returns {Promise<{x: number, z: number}[]>}
+     */
+    getChunkCoords(world) {
+        throw new Error("Method not implemented.");
+    },
+
+    /**
+     * Replace the chunks of whole regions: every chunk inside the given regions is removed,
+     * then the given chunks are added
+     * @param {string} world
+     * @param {{x: number, z: number}[]} regions region coordinates
+     * @param {{x: number, z: number}[]} chunks
+     * @returns {Promise<void>}
+     */
+    replaceRegions(world, regions, chunks) {
+        throw new Error("Method not implemented.");
+    },
+
     /**
      * Deletes all chunks in the database
      */
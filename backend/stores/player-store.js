@@ -0,0 +1,73 @@
+/**
+ * Online players, fed by the plugin's HTTP updates (/api/players/update) and by its live update stream.
+ *
+ * Players sent over the live stream stay online until the stream removes them or disconnects; players sent
+ * over HTTP are online while they keep being sent.
+ *
+ * Streamed players also carry a velocity (blocks per second). Between updates they are assumed to keep moving at
+ * that velocity for up to EXTRAPOLATION_LIMIT_MS, the same prediction the plugin uses to decide when to send the
+ * next update, so positions handed out are extrapolated to the current time.
+ */
+
+const ACTIVE_TIMEOUT_MS = 10_000; // remove inactive players after 10 seconds
+const EXTRAPOLATION_LIMIT_MS = 2_000;
+
+// key = playerName, value = { name, world, x, y, z, yaw, vx, vy, vz, lastSeen, streamed }
+const onlinePlayers = new Map();
+
+function toClient(p, now) {
+    const age = Math.min(now - p.lastSeen, EXTRAPOLATION_LIMIT_MS);
+    const moving = age < EXTRAPOLATION_LIMIT_MS;
+    return {
+        name: p.name,
+        world: p.world,
+        x: p.x + p.vx * age / 1000,
+        y: p.y + p.vy * age / 1000,
+        z: p.z + p.vz * age / 1000,
+        yaw: p.yaw,
+        vx: moving ? p.vx : 0,
+        vy: moving ? p.vy : 0,
+        vz: moving ? p.vz : 0,
+    };
+}
+
+module.exports = {
+    EXTRAPOLATION_LIMIT_MS,
+
+    /**
+     * @param player the player's last reported position; x, y and z are where it was when reported
+     * @param {boolean} [streamed] whether the player was sent over the live stream
+     */
+    set: (player, streamed = false) => {
+        onlinePlayers.set(player.name, { vx: 0, vy: 0, vz: 0, ...player, lastSeen: Date.now(), streamed });
+    },
+
+    /**
+     * @returns the player's last reported state, without extrapolation
+     */
+    get: (name) => onlinePlayers.get(name),
+
+    remove: (name) => {
+        onlinePlayers.delete(name);
+    },
+
+    /**
+     * Removes every player that was sent over the live stream.
+     */
+    clearStreamed: () => {
+        for (const [name, player] of onlinePlayers) {
+            if (player.streamed) onlinePlayers.delete(name);
+        }
+    },
+
+    /**
+     * @param {string} [world] only return players in this world
+     * @returns the active players, as sent to the frontend
+     */
+    getActive: (world) => {
+        const now = Date.now();
+        return Array.from(onlinePlayers.values())
+            .filter(p => (p.streamed || (now - p.lastSeen) <= ACTIVE_TIMEOUT_MS) && (world == null || p.world === world))
+            .map(p => toClient(p, now));
+    },
+};
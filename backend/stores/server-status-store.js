@@ -1,25 +1,63 @@
+const STALE_AFTER_MS = 5000;
+const DAY_TICKS = 24000;
+
 let lastUpdateTime = Date.now();
 
+// while the plugin's live update stream is connected, the server is online even if the status does not change
+let streamed = false;
+
+// world time as last reported, advanced by timeRate ticks per second when read
+let worldTimeBase = null;
+let worldTimeBaseAt = Date.now();
+
 let serverStatus = {
     isOnline: false,
     playerCount: 0,
     worldTime: null,
+    timeRate: 0,
     motd: '',
     lastUpdateSent: null,
 }
 
+function currentWorldTime() {
+    if (worldTimeBase == null) return null;
+    const elapsed = (Date.now() - worldTimeBaseAt) / 1000;
+    return Math.floor(worldTimeBase + elapsed * serverStatus.timeRate) % DAY_TICKS;
+}
+
 module.exports = {
-    getStatus: () => serverStatus,
+    getStatus: () => ({ ...serverStatus, worldTime: currentWorldTime() }),
+
+    /**
+     * Replaces the status (HTTP updates), or merges the fields that changed (live update stream).
+     */
     updateStatus: (newData) => {
         lastUpdateTime = Date.now();
-        serverStatus = newData;
+        if (newData.worldTime != null) {
+            worldTimeBase = newData.worldTime;
+            worldTimeBaseAt = lastUpdateTime;
+        } else if (newData.timeRate != null && worldTimeBase != null) {
+            worldTimeBase = currentWorldTime();
+            worldTimeBaseAt = lastUpdateTime;
+        }
+        serverStatus = { ...serverStatus, ...newData };
     },
+
+    /**
+     * Marks the live update stream as connected or disconnected. Once it disconnects, the server is considered
+     * offline unless another update arrives in time.
+     */
+    setStreamed: (connected) => {
+        streamed = connected;
+        lastUpdateTime = Date.now();
+    },
+
     checkStaleness: () => {
         const age = Date.now() - lastUpdateTime;
-        if (age > 5000 && serverStatus.isOnline) {
+        if (!streamed && age > STALE_AFTER_MS && serverStatus.isOnline) {
             serverStatus.isOnline = false;
             return true;
         }
         return false;
     },
-};
\ No newline at end of file
+};
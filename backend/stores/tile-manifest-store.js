@@ -0,0 +1,102 @@
+/**
+ * Per-world manifest of the tiles the backend has: the SHA-256, size and version of every file in tiles/<world>,
+ * keyed by its path inside the world folder (e.g. "r.0.0.png"). The Explora plugin compares it with its own
+ * manifest (TileManifest.java) so it only uploads tiles whose content changed.
+ *
+ * Manifests are kept in memory and saved to data/tile-manifests/<world>.json. A world without a saved manifest
+ * (e.g. tiles uploaded before manifests existed) gets one built by hashing its tile files.
+ */
+
+const crypto = require('crypto');
+const fs = require('fs');
+const path = require('path');
+
+const TILES_DIR = path.join(__dirname, '../tiles');
+const MANIFEST_DIR = path.join(__dirname, '../data/tile-manifests');
+
+const manifests = new Map();
+
+function manifestPath(world) {
+    return path.join(MANIFEST_DIR, `${encodeURIComponent(world)}.json`);
+}
+
+function hashFile(filePath) {
+    return crypto.createHash('sha256').update(fs.readFileSync(filePath)).digest('hex');
+}
+
+function buildFromTiles(world) {
+    const tiles = {};
+    const worldDir = path.join(TILES_DIR, world);
+    if (!fs.existsSync(worldDir)) return tiles;
+
+    for (const name of fs.readdirSync(worldDir)) {
+        const filePath = path.join(worldDir, name);
+        const stats = fs.statSync(filePath);
+        if (!stats.isFile()) continue;
+        tiles[name] = { hash: hashFile(filePath), size: stats.size, version: 1 };
+    }
+    return tiles;
+}
+
+function load(world) {
+    if (manifests.has(world)) return manifests.get(world);
+
+    let tiles = null;
+    try {
+        tiles = JSON.parse(fs.readFileSync(manifestPath(world), 'utf8'));
+    } catch (err) {
+        if (err.code !== 'ENOENT') console.warn(`Rebuilding unreadable tile manifest of ${world}:`, err.message);
+    }
+
+    const manifest = { tiles: tiles || buildFromTiles(world) };
+    manifests.set(world, manifest);
+    if (!tiles) save(world);
+    return manifest;
+}
+
+function save(world) {
+    const manifest = manifests.get(world);
+    if (!manifest) return;
+
+    fs.mkdirSync(MANIFEST_DIR, { recursive: true });
+    const target = manifestPath(world);
+    const tmp = `${target}.tmp`;
+    fs.writeFileSync(tmp, JSON.stringify(manifest.tiles));
+    fs.renameSync(tmp, target);
+}
+
+module.exports = {
+    hashFile,
+
+    /**
+     * @returns {Object<string, {hash: string, size: number, version: number}>} every tile of the world, by name
+     */
+    getTiles: (world) => load(world).tiles,
+
+    /**
+     * Records a tile that was just written. The version is increased whenever the hash changes.
+     */
+    recordTile: (world, name, hash, size) => {
+        const tiles = load(world).tiles;
+        const previous = tiles[name];
+        if (previous && previous.hash === hash) {
+            previous.size = size;
+            return;
+        }
+        tiles[name] = { hash, size, version: previous ? previous.version + 1 : 1 };
+    },
+
+    removeTile: (world, name) => {
+        delete load(world).tiles[name];
+    },
+
+    save,
+
+    /**
+     * Forgets every manifest, used when all tiles are replaced.
+     */
+    clearAll: () => {
+        manifests.clear();
+        fs.rmSync(MANIFEST_DIR, { recursive: true, force: true });
+    },
+};
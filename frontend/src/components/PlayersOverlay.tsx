@@ -3,11 +3,15 @@ import {useEffect, useState} from "react";
 import {type PlayerStatus, useServerStatus} from "../hooks/ServerStatus.ts";
 import L from "leaflet";
 import {minecraftCoordsToPixels} from "../utils/MinecraftUtils.ts";
+import {socket} from "../lib/socket.ts";
 
 type PlayersOverlayProps = {
     world: string,
 }
 
+// players keep moving along their last known velocity for at most this long (same limit as the backend)
+const EXTRAPOLATION_LIMIT_MS = 2000;
+
 
 const createPlayerIcon = (name: string, yaw: number, zoom: number) => {
     const maxZoom = 2;
@@ -59,7 +63,20 @@ const PlayersOverlay = ({ world }: PlayersOverlayProps) => {
     const map = useMap();
     const [players, setPlayers] = useState<PlayerStatus[]>([]);
     const [zoom, setZoom] = useState(map.getZoom());
-    const { onlinePlayers } = useServerStatus();
+    const [now, setNow] = useState(Date.now());
+    const { onlinePlayers, playersReceivedAt } = useServerStatus();
+
+    // tell the backend which world is being viewed, so players in it are updated more often
+    useEffect(() => {
+        const watchWorld = () => {
+            socket.emit("watchWorld", world);
+        }
+        watchWorld();
+        socket.on("connect", watchWorld);
+        return () => {
+            socket.off("connect", watchWorld);
+        };
+    }, [world]);
 
     // update map zoom
     useEffect(() => {
@@ -82,11 +99,23 @@ const PlayersOverlay = ({ world }: PlayersOverlayProps) => {
         setPlayers(visiblePlayers);
     }, [world, onlinePlayers]);
 
+    // move markers along the players' velocities between updates
+    useEffect(() => {
+        if (!players.some((player) => player.vx || player.vz)) return;
+        const interval = setInterval(() => setNow(Date.now()), 100);
+        return () => clearInterval(interval);
+    }, [players]);
+
+    const elapsedSeconds = Math.min(Math.max(now - playersReceivedAt, 0), EXTRAPOLATION_LIMIT_MS) / 1000;
+
     return (
         <>
             {players.map((player) => {
                 if (zoom <= -6) return null;
-                const {x, z} = minecraftCoordsToPixels(player.x, player.z);
+                const playerX = player.x + (player.vx ?? 0) * elapsedSeconds;
+                const playerY = player.y + (player.vy ?? 0) * elapsedSeconds;
+                const playerZ = player.z + (player.vz ?? 0) * elapsedSeconds;
+                const {x, z} = minecraftCoordsToPixels(playerX, playerZ);
 
                 return (
                     <Marker
@@ -98,9 +127,9 @@ const PlayersOverlay = ({ world }: PlayersOverlayProps) => {
                         <Popup>
                             <div>
                                 <strong>{player.name}</strong> <br />
-                                x: {Math.floor(player.x)}<br />
-                                y: {Math.floor(player.y)}<br />
-                                z: {Math.floor(player.z)}
+                                x: {Math.floor(playerX)}<br />
+                                y: {Math.floor(playerY)}<br />
+                                z: {Math.floor(playerZ)}
                             </div>
                         </Popup>
                     </Marker>
@@ -1,10 +1,12 @@
-import { useEffect, useState } from 'react';
+import { useEffect, useRef, useState } from 'react';
 import { socket } from '../lib/socket';
 
 export type ServerStatus = {
     isOnline: boolean;
     playerCount: number;
     worldTime: number;
+    // ticks per second the world time advances between updates (0 while the daylight cycle is off)
+    timeRate?: number;
     motd: string;
     lastUpdateSent: string | Date;
 }
@@ -16,13 +18,31 @@ export type PlayerStatus = {
     y: number,
     z: number,
     yaw: number,
+    // velocity in blocks per second, sent for players streamed by the plugin
+    vx?: number,
+    vy?: number,
+    vz?: number,
 }
 
 export function useServerStatus() {
     const [serverStatus, setServerStatus] = useState<ServerStatus | null>(null);
     const [onlinePlayers, setOnlinePlayers] = useState<PlayerStatus[]>([]);
+    const [playersReceivedAt, setPlayersReceivedAt] = useState(Date.now());
     const [connectedToBackend, setConnectedToBackend] = useState(false);
     const [loadingServerStatus, setLoadingServerStatus] = useState(true);
+    const lastServerUpdate = useRef<{ status: ServerStatus, receivedAt: number } | null>(null);
+
+    // the world time is only sent when it drifts, so keep the clock running in between
+    useEffect(() => {
+        const interval = setInterval(() => {
+            const last = lastServerUpdate.current;
+            if (!last || !last.status.timeRate || !last.status.isOnline) return;
+            const elapsedSeconds = (Date.now() - last.receivedAt) / 1000;
+            const worldTime = Math.floor(last.status.worldTime + elapsedSeconds * last.status.timeRate) % 24000;
+            setServerStatus({ ...last.status, worldTime });
+        }, 1000);
+        return () => clearInterval(interval);
+    }, []);
 
     useEffect(() => {
         if (!socket.connected) {
@@ -40,12 +60,14 @@ export function useServerStatus() {
         };
 
         const handleServerUpdate = (data: ServerStatus) => {
+            lastServerUpdate.current = { status: data, receivedAt: Date.now() };
             setServerStatus(data);
             setLoadingServerStatus(false);
         }
 
         const handlePlayersUpdate = (data: {"online-players": PlayerStatus[]}) => {
             setOnlinePlayers(data["online-players"]);
+            setPlayersReceivedAt(Date.now());
         }
 
         socket.on('connect', handleConnect);
@@ -65,5 +87,5 @@ export function useServerStatus() {
         }
     }, []);
 
-    return {serverStatus, onlinePlayers, connectedToBackend, loadingServerStatus};
+    return {serverStatus, onlinePlayers, playersReceivedAt, connectedToBackend, loadingServerStatus};
 }
\ No newline at end of file
@@ -7,17 +7,28 @@ import java.util.Set;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import com.jvallejoromero.explora.command.ExploraCommand;
 import com.jvallejoromero.explora.listener.ChunkTracker;
+import com.jvallejoromero.explora.listener.ExplorationTracker;
 import com.jvallejoromero.explora.manager.ChunkManager;
+import com.jvallejoromero.explora.manager.LiveStreamManager;
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
+import com.jvallejoromero.explora.manager.OutboxManager;
+import com.jvallejoromero.explora.manager.SnapshotManager;
+import com.jvallejoromero.explora.manager.ThrottleManager;
+import com.jvallejoromero.explora.manager.TileSyncManager;
+import com.jvallejoromero.explora.tasks.ExplorationSampleTask;
 import com.jvallejoromero.explora.tasks.PlayerUpdateTask;
 import com.jvallejoromero.explora.tasks.ServerStatusUpdateTask;
+import com.jvallejoromero.explora.tasks.SnapshotCaptureTask;
+import com.jvallejoromero.explora.tasks.TickMonitorTask;
 import com.jvallejoromero.explora.util.ChunkUtils;
 import com.jvallejoromero.explora.util.Constants;
 import com.jvallejoromero.explora.util.FileUtil;
-import com.jvallejoromero.explora.util.HttpUtil;
 import com.jvallejoromero.explora.util.RegionCoord;
 import com.jvallejoromero.explora.util.StringUtils;
 import com.jvallejoromero.explora.util.TileImageGenerator;
+import com.jvallejoromero.explora.util.TilePack;
 import com.jvallejoromero.explora.util.mcaselector.VersionHandler;
 import com.jvallejoromero.explora.yaml.CustomConfigurationFile;
 
@@ -31,8 +42,14 @@ import com.jvallejoromero.explora.yaml.CustomConfigurationFile;
  *   <li>Managing lifecycle hooks ({@link #onEnable()}, {@link #onDisable()})</li>
  *   <li>Scanning world folders for explored chunks and region files</li>
  *   <li>Sending chunk and render metadata to the backend API</li>
+ *   <li>Reconciling chunk data with the backend after a scan, sending only regions that differ</li>
  *   <li>Scheduling async tasks for periodic player and server updates</li>
  *   <li>Conditionally triggering re-renders of missing tiles</li>
+ *   <li>Throttling background work while the server is under load</li>
+ *   <li>Running all main-thread work within a fixed per-tick time budget</li>
+ *   <li>Queueing backend updates on disk while the backend is unreachable</li>
+ *   <li>Uploading only tiles whose content changed, resuming interrupted tile syncs</li>
+ *   <li>Streaming live player and server status updates over one persistent connection</li>
  * </ul>
  *
  * <p>Data is asynchronously scanned and synced to avoid blocking the main server thread.
@@ -42,6 +59,12 @@ public class ExploraPlugin extends JavaPlugin {
 	
 	private static ExploraPlugin instance;
 	private static ChunkManager chunkManager;
+	private static ThrottleManager throttleManager;
+	private static SnapshotManager snapshotManager;
+	private static MainThreadScheduler mainThreadScheduler;
+	private static OutboxManager outboxManager;
+	private static TileSyncManager tileSyncManager;
+	private static LiveStreamManager liveStreamManager;
 	
 	private static boolean chunksLoaded = false;
 	
@@ -60,10 +83,39 @@ public class ExploraPlugin extends JavaPlugin {
 		instance = this;
 		config = new CustomConfigurationFile("config.yml", true);
 		chunkManager = new ChunkManager(this);
+		throttleManager = new ThrottleManager();
+		snapshotManager = new SnapshotManager();
+		mainThreadScheduler = new MainThreadScheduler(this);
 		
 		Constants.init(this);
 		
+		outboxManager = new OutboxManager(this);
+		outboxManager.init();
+		
+		tileSyncManager = new TileSyncManager(this);
+		tileSyncManager.init();
+		
+		liveStreamManager = new LiveStreamManager();
+		liveStreamManager.init();
+		
 		this.registerEvents();
+		this.registerCommands();
+		
+		new TickMonitorTask(throttleManager).runTaskTimer(this, 1L, 1L);
+		
+		mainThreadScheduler.start();
+		mainThreadScheduler.runTaskTimer(new SnapshotCaptureTask(snapshotManager, mainThreadScheduler), MainThreadScheduler.Priority.LOW, 1L);
+		
+		if (Constants.EXPLORATION_SAMPLING) {
+			mainThreadScheduler.runTaskTimer(new ExplorationSampleTask(), MainThreadScheduler.Priority.NORMAL, Constants.EXPLORATION_SAMPLE_TICKS);
+		}
+		
+		if (Constants.TILE_STORAGE_PACK) {
+			Bukkit.getScheduler().runTaskTimerAsynchronously(this, TilePack::compactAll,
+					Constants.TILE_PACK_COMPACTION_TICKS, Constants.TILE_PACK_COMPACTION_TICKS);
+			Bukkit.getScheduler().runTaskTimerAsynchronously(this, TilePack::syncAll,
+					Constants.TILE_PACK_SYNC_TICKS, Constants.TILE_PACK_SYNC_TICKS);
+		}
 		
 		if (Constants.SHOULD_SCAN_FOLDERS) {
 			System.out.println(" ");
@@ -95,32 +147,30 @@ public class ExploraPlugin extends JavaPlugin {
 						System.out.println(" ");
 						long syncStartTime = System.currentTimeMillis();
 						
-						HttpUtil.sendDeleteChunksRequest(() -> {
-							chunkManager.sendChunksToDatabase(() -> {
-								long syncElapsed = (System.currentTimeMillis()-syncStartTime);
-								ExploraPlugin.log("&aFinished sending chunks to database. Completed in " + (syncElapsed/1000.0) + "s");
+						chunkManager.reconcileWithDatabase(() -> {
+							long syncElapsed = (System.currentTimeMillis()-syncStartTime);
+							ExploraPlugin.log("&aFinished syncing chunks with database. Completed in " + (syncElapsed/1000.0) + "s");
+							
+							System.out.println(" ");
+							System.out.println(" ");
+							log("&e Generating render files and metadata..");
+							log("&e This could take a while. Please do not interrupt the server!");
+							System.out.println(" ");
+							System.out.println(" ");
+							
+							File outputDir = Constants.RENDER_DATA_PATH.toFile();
+							
+							TileImageGenerator.generateTilesAsyncOptimized(2, outputDir, () -> {
+								log("&aFinished generating render files and metadata!");
 								
 								System.out.println(" ");
 								System.out.println(" ");
-								log("&e Generating render files and metadata..");
-								log("&e This could take a while. Please do not interrupt the server!");
+								log("&e Sending render files and metadata to database..");
 								System.out.println(" ");
 								System.out.println(" ");
 								
-								File outputDir = Constants.RENDER_DATA_PATH.toFile();
-								
-								TileImageGenerator.generateTilesAsyncOptimized(2, outputDir, () -> {
-									log("&aFinished generating render files and metadata!");
-									
-									System.out.println(" ");
-									System.out.println(" ");
-									log("&e Sending render files and metadata to database..");
-									System.out.println(" ");
-									System.out.println(" ");
-									
-									FileUtil.sendRegionDataToBackendAsync(() -> {
-										log("&aFinished sending render files and metadata to database.");
-									});
+								FileUtil.sendRegionDataToBackendAsync(() -> {
+									log("&aFinished sending render files and metadata to database.");
 								});
 							});
 						});
@@ -159,21 +209,29 @@ public class ExploraPlugin extends JavaPlugin {
 			});
 		}
 		
-		new PlayerUpdateTask().runTaskTimer(this, Constants.PLAYER_UPDATE_TICKS, Constants.PLAYER_UPDATE_TICKS);
-		new ServerStatusUpdateTask().runTaskTimerAsynchronously(this, Constants.SERVER_STATUS_UPDATE_TICKS, Constants.SERVER_STATUS_UPDATE_TICKS);
+		mainThreadScheduler.runTaskTimer(new PlayerUpdateTask(), MainThreadScheduler.Priority.HIGH, PlayerUpdateTask.getPeriodTicks());
+		mainThreadScheduler.runTaskTimer(new ServerStatusUpdateTask(), MainThreadScheduler.Priority.NORMAL, Constants.SERVER_STATUS_UPDATE_TICKS);
 		log("&a" + Constants.PLUGIN_NAME + " v" + this.getDescription().getVersion() + " enabled!");
 	}
 	
 	/**
 	 * Called when the plugin is disabled.
 	 *
-	 * <p>Flushes all newly explored chunk data to disk before shutting down.
+	 * <p>Flushes all newly explored chunk data to disk and closes the tile packs before shutting down.
 	 */
 	@Override
 	public void onDisable() {
 		log("&aSaving chunk data to files before disabling..");
 		
+		getThrottleManager().shutdown();
+		getMainThreadScheduler().shutdown();
+		getChunkManager().shutdown();
+		getOutboxManager().shutdown();
+		getLiveStreamManager().shutdown();
+		getSnapshotManager().clear();
+		
 		getChunkManager().saveNewlyExploredChunksToDisk();
+		TilePack.closeAll();
 		
 		log("&a" + Constants.PLUGIN_NAME + " v" + this.getDescription().getVersion() + " disabled!");
 	}
@@ -229,6 +287,22 @@ public class ExploraPlugin extends JavaPlugin {
 	 */
 	public void registerEvents() {
 		this.getServer().getPluginManager().registerEvents(new ChunkTracker(), this);
+		
+		// while sampling, explored chunks are found by ExplorationSampleTask instead
+		if (!Constants.EXPLORATION_SAMPLING) {
+			this.getServer().getPluginManager().registerEvents(new ExplorationTracker(), this);
+		}
+	}
+	
+	/**
+	 * Registers all commands used by the plugin.
+	 * 
+	 * <p>Called once during plugin startup inside {@link #onEnable()}.
+	 */
+	public void registerCommands() {
+		ExploraCommand exploraCommand = new ExploraCommand();
+		this.getCommand("explora").setExecutor(exploraCommand);
+		this.getCommand("explora").setTabCompleter(exploraCommand);
 	}
 	
 	/**
@@ -245,5 +319,47 @@ public class ExploraPlugin extends JavaPlugin {
 		return chunkManager;
 	}
 	
+	/**
+	 * @return the singleton {@link ThrottleManager} instance
+	 */
+	public ThrottleManager getThrottleManager() {
+		return throttleManager;
+	}
+	
+	/**
+	 * @return the singleton {@link SnapshotManager} instance
+	 */
+	public SnapshotManager getSnapshotManager() {
+		return snapshotManager;
+	}
+	
+	/**
+	 * @return the singleton {@link MainThreadScheduler} instance
+	 */
+	public MainThreadScheduler getMainThreadScheduler() {
+		return mainThreadScheduler;
+	}
+	
+	/**
+	 * @return the singleton {@link OutboxManager} instance
+	 */
+	public OutboxManager getOutboxManager() {
+		return outboxManager;
+	}
+	
+	/**
+	 * @return the singleton {@link TileSyncManager} instance
+	 */
+	public TileSyncManager getTileSyncManager() {
+		return tileSyncManager;
+	}
+	
+	/**
+	 * @return the singleton {@link LiveStreamManager} instance
+	 */
+	public LiveStreamManager getLiveStreamManager() {
+		return liveStreamManager;
+	}
+	
 
 }
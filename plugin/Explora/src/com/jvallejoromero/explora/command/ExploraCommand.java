@@ -0,0 +1,499 @@
+package com.jvallejoromero.explora.command;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.listener.ChunkTracker;
+import com.jvallejoromero.explora.listener.ExplorationTracker;
+import com.jvallejoromero.explora.manager.ChunkManager;
+import com.jvallejoromero.explora.manager.LiveStreamManager;
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
+import com.jvallejoromero.explora.manager.OutboxManager;
+import com.jvallejoromero.explora.manager.SnapshotManager;
+import com.jvallejoromero.explora.manager.ThrottleManager;
+import com.jvallejoromero.explora.manager.ThrottleManager.WorkType;
+import com.jvallejoromero.explora.manager.TileSyncManager;
+import com.jvallejoromero.explora.tasks.ExplorationSampleTask;
+import com.jvallejoromero.explora.util.BiomeIndex;
+import com.jvallejoromero.explora.util.BlockEventLog;
+import com.jvallejoromero.explora.util.ChunkArea;
+import com.jvallejoromero.explora.util.ChunkBatchSender;
+import com.jvallejoromero.explora.util.ChunkCoord;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.DiscMask;
+import com.jvallejoromero.explora.util.ExploredAreas;
+import com.jvallejoromero.explora.util.ExploredChunkIndex;
+import com.jvallejoromero.explora.util.FileUtil;
+import com.jvallejoromero.explora.util.HttpUtil;
+import com.jvallejoromero.explora.util.MoveSimulation;
+import com.jvallejoromero.explora.util.RegionCoord;
+import com.jvallejoromero.explora.util.StringUtils;
+import com.jvallejoromero.explora.util.TilePack;
+import com.jvallejoromero.explora.util.reconcile.ChunkReconciler;
+import com.jvallejoromero.explora.util.reconcile.HttpReconciliationBackend;
+import com.jvallejoromero.explora.util.reconcile.LocalReconciliationBackend;
+import com.jvallejoromero.explora.util.reconcile.ReconciliationBackend;
+
+/**
+ * Handles the {@code /explora} command, which exposes the plugin's runtime metrics in game and in the console.
+ *
+ * <p>Subcommands:
+ * <ul>
+ *   <li>{@code /explora status} - shows the background work throttle state, main thread usage, backend requests, chunk sync, the outbox and live snapshot capture</li>
+ *   <li>{@code /explora reconcile [local]} - reconciles chunk data with the backend, or with an in-memory stand-in backend
+ *       that lives until the server stops</li>
+ *   <li>{@code /explora benchmark} - replays recent block events to measure the cost of checking whether they are visible on the map,
+ *       and simulates players moving around to measure the cost of detecting explored chunks</li>
+ *   <li>{@code /explora stats [radius]} - shows how much of the current world is explored: its explored chunks and
+ *       bounding box, region coverage, and the explored share of the area around the player (or spawn)</li>
+ *   <li>{@code /explora compression} - compresses the explored chunks of each world into areas and reports the
+ *       compression ratio and how long it took</li>
+ *   <li>{@code /explora biomes [biome|export]} - shows the most common biomes of the current world, where a biome occurs
+ *       and its nearest chunk, or exports every biome's chunks for the map viewer</li>
+ *   <li>{@code /explora tiles [export|compact]} - shows the size of each world's tile pack, writes the packed tiles out
+ *       as single files, or compacts the packs right away</li>
+ * </ul>
+ */
+public class ExploraCommand implements CommandExecutor, TabCompleter {
+
+	private static final List<String> SUBCOMMANDS = Arrays.asList("status", "stats", "reconcile", "benchmark", "compression", "biomes", "tiles");
+	
+	private static final int DEFAULT_STATS_RADIUS = 16;
+	private static final int LISTED_BIOMES = 10;
+	
+	private static final int SIMULATED_PLAYERS = 500;
+	private static final int SIMULATED_TICKS = 200;
+
+	private final LocalReconciliationBackend localBackend = new LocalReconciliationBackend();
+
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		if (args.length == 0) {
+			send(sender, "&eUsage: /" + label + " <" + String.join("|", SUBCOMMANDS) + ">");
+			return true;
+		}
+
+		switch (args[0].toLowerCase()) {
+			case "status":
+				sendStatus(sender);
+				return true;
+			case "stats":
+				sendStats(sender, args.length > 1 ? args[1] : null);
+				return true;
+			case "reconcile":
+				reconcile(sender, args.length > 1 && args[1].equalsIgnoreCase("local"));
+				return true;
+			case "benchmark":
+				benchmark(sender);
+				return true;
+			case "compression":
+				compression(sender);
+				return true;
+			case "biomes":
+				biomes(sender, args.length > 1 ? args[1] : null);
+				return true;
+			case "tiles":
+				tiles(sender, args.length > 1 ? args[1] : null);
+				return true;
+			default:
+				send(sender, "&cUnknown subcommand: " + args[0]);
+				return true;
+		}
+	}
+
+	@Override
+	public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+		List<String> matches = new ArrayList<>();
+		if (args.length != 1) return matches;
+
+		for (String sub : SUBCOMMANDS) {
+			if (sub.startsWith(args[0].toLowerCase())) matches.add(sub);
+		}
+		return matches;
+	}
+
+	/**
+	 * Reconciles all explored chunks with the backend, or with the in-memory stand-in, and reports the result.
+	 *
+	 * @param sender who to report to
+	 * @param local whether to reconcile with the in-memory stand-in instead of the backend
+	 */
+	private void reconcile(CommandSender sender, boolean local) {
+		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
+		ReconciliationBackend backend = local ? localBackend : new HttpReconciliationBackend();
+		int requestsBefore = localBackend.getRequestCount();
+
+		send(sender, "&eReconciling chunk data with the " + (local ? "local stand-in" : "backend") + "..");
+
+		chunkManager.reconcile(backend).whenCompleteAsync((ignored, ex) -> {
+			if (ex != null) {
+				Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+				send(sender, "&cReconciliation failed: " + cause.getMessage());
+				return;
+			}
+
+			ChunkReconciler reconciler = chunkManager.getLastReconciler();
+			send(sender, "&aReconciled " + reconciler.getWorldCount() + " world(s) in " + String.format("%.2fs", reconciler.getElapsedSeconds())
+					+ ": &f" + reconciler.getRegionsSent() + " regions (" + reconciler.getChunksSent() + " chunks) sent"
+					+ (local ? " &7(" + (localBackend.getRequestCount() - requestsBefore) + " requests)" : ""));
+		}, ExploraPlugin.getInstance().getMainThreadScheduler());
+	}
+
+	/**
+	 * Replays the recorded block events through the surface visibility check, with and without the surface height
+	 * cache, and simulates players moving through exploration detection, with and without the explored chunk index,
+	 * and reports the cost of each.
+	 *
+	 * @param sender who to report to
+	 */
+	private void benchmark(CommandSender sender) {
+		BlockEventLog log = ChunkTracker.getEventLog();
+		if (log.size() == 0) {
+			send(sender, "&eNo block events recorded yet.");
+		} else {
+			BlockEventLog.ReplayResult result = log.replaySurfaceChecks();
+			send(sender, "&aReplayed " + result.getEvents() + " block events:");
+			send(sender, "&7 - World query per event: &f" + String.format("%.0fns/event", result.getDirectNanosPerEvent())
+					+ " &7(" + result.getDirectVisible() + " visible)");
+			send(sender, "&7 - Surface height cache: &f" + String.format("%.0fns/event", result.getCachedNanosPerEvent())
+					+ " &7(" + result.getCachedVisible() + " visible, " + result.getWorldQueries() + " world queries)");
+		}
+
+		World world = Bukkit.getWorlds().get(0);
+		MoveSimulation.SimulationResult moves = new MoveSimulation(world, SIMULATED_PLAYERS, SIMULATED_TICKS, 42).run(Constants.EXPLORATION_SAMPLE_TICKS, world.getViewDistance());
+		send(sender, "&aSimulated " + moves.getMoves() + " moves of " + moves.getPlayers() + " players &7(" + moves.getChunkCrossings() + " into another chunk):");
+		send(sender, "&7 - Chunk coordinate per move: &f" + String.format("%.0fns/move", moves.getCoordNanosPerMove())
+				+ String.format(" &7(%d new chunks, %.1f KB allocated)", moves.getCoordNewChunks(), moves.getCoordBytes() / 1024.0));
+		send(sender, "&7 - Explored chunk index: &f" + String.format("%.0fns/move", moves.getIndexNanosPerMove())
+				+ String.format(" &7(%d new chunks, %.1f KB allocated)", moves.getIndexNewChunks(), moves.getIndexBytes() / 1024.0));
+		send(sender, "&7 - Sampling every " + moves.getSampleTicks() + " ticks: &f" + String.format("%.1fns/move", moves.getSampleNanosPerMove())
+				+ String.format(" &7(%.1fns/move off the main thread, %d new chunks, %.0f%% of move events)", moves.getSampleCheckNanosPerMove(),
+						moves.getSampleNewChunks(), moves.getIndexNewChunks() == 0 ? 100 : 100.0 * moves.getSampleNewChunks() / moves.getIndexNewChunks()));
+		send(sender, "&7 - View distance " + moves.getViewDistance() + ", chunk by chunk: &f" + String.format("%.0fns/move", moves.getDiscChunkNanosPerMove())
+				+ " &7(" + moves.getDiscNewChunks() + " new chunks)");
+		send(sender, "&7 - View distance " + moves.getViewDistance() + ", disc masks: &f" + String.format("%.0fns/move", moves.getDiscMaskNanosPerMove()));
+	}
+
+	/**
+	 * Queries the explored chunks of the sender's world (or the default world, from the console) and reports the
+	 * world's exploration statistics, and how much of the area around the sender (or spawn) is explored.
+	 *
+	 * @param sender who to report to
+	 * @param radiusArg the radius around the sender in chunks, or {@code null} for the default
+	 */
+	private void sendStats(CommandSender sender, String radiusArg) {
+		int radius = DEFAULT_STATS_RADIUS;
+		if (radiusArg != null) {
+			try {
+				radius = Math.max(0, Integer.parseInt(radiusArg));
+			} catch (NumberFormatException e) {
+				send(sender, "&cInvalid radius: " + radiusArg);
+				return;
+			}
+		}
+
+		Location location = sender instanceof Player ? ((Player) sender).getLocation() : Bukkit.getWorlds().get(0).getSpawnLocation();
+		String world = location.getWorld().getName();
+		int centerX = location.getBlockX() >> 4;
+		int centerZ = location.getBlockZ() >> 4;
+		int queryRadius = radius;
+
+		ExploraPlugin.getInstance().getChunkManager().queryExploredChunks(world, index -> {
+			long begin = System.nanoTime();
+			List<String> lines = new ArrayList<>();
+			lines.add("&6Exploration of " + world + ": &f" + index.size() + " chunks in " + index.getRegionCount() + " regions");
+
+			ChunkArea bounds = index.getBounds();
+			if (bounds != null) {
+				lines.add("&7 - Bounds: &fchunks " + bounds.getX() + "," + bounds.getZ() + " to " + (bounds.getX() + bounds.getWidth() - 1) + ","
+						+ (bounds.getZ() + bounds.getHeight() - 1) + " &7(" + bounds.getWidth() + "x" + bounds.getHeight() + " chunks, "
+						+ String.format("%.1f%% explored)", 100.0 * index.size() / ((double) bounds.getWidth() * bounds.getHeight())));
+
+				int fullRegions = 0;
+				for (RegionCoord region : index.getRegions()) {
+					if (index.countInRegion(region.getX(), region.getZ()) == 1024) fullRegions++;
+				}
+				lines.add("&7 - Regions: &f" + String.format("%.1f%% average coverage", 100.0 * index.size() / (index.getRegionCount() * 1024.0))
+						+ ", " + fullRegions + " fully explored");
+			}
+
+			int regionChunks = index.countInRegion(centerX >> 5, centerZ >> 5);
+			lines.add("&7 - Region r." + (centerX >> 5) + "." + (centerZ >> 5) + ": &f" + regionChunks + "/1024 chunks"
+					+ String.format(" &7(%.1f%%)", regionChunks / 10.24));
+
+			int nearby = index.countInRadius(centerX, centerZ, queryRadius);
+			int area = DiscMask.areaOf(queryRadius);
+			lines.add("&7 - Within " + queryRadius + " chunks of " + (sender instanceof Player ? "you" : "spawn") + ": &f" + nearby + "/" + area + " chunks"
+					+ String.format(" &7(%.1f%%)", 100.0 * nearby / area));
+
+			lines.add(String.format("&7Answered in %.0fus.", (System.nanoTime() - begin) / 1e3));
+			return lines;
+		}).thenAcceptAsync(lines -> {
+			for (String line : lines) send(sender, line);
+		}, ExploraPlugin.getInstance().getMainThreadScheduler());
+	}
+
+	/**
+	 * Compresses the explored chunks of every world into areas (see {@link ExploredAreas}) off the main thread, and
+	 * reports how many areas they take, how much smaller the saved chunks get and how long it took.
+	 *
+	 * @param sender who to report to
+	 */
+	private void compression(CommandSender sender) {
+		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
+		send(sender, "&eCompressing explored chunks into areas..");
+
+		chunkManager.getExplorationExecutor().execute(() -> {
+			List<ExploredChunkIndex> indexes = chunkManager.copyExploredChunkIndexes();
+			indexes.sort(Comparator.comparing(ExploredChunkIndex::getWorldName));
+
+			Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
+				List<String> lines = new ArrayList<>();
+				for (ExploredChunkIndex index : indexes) {
+					if (index.size() == 0) continue;
+
+					long begin = System.nanoTime();
+					ExploredAreas areas = ExploredAreas.of(index);
+					double millis = (System.nanoTime() - begin) / 1e6;
+
+					lines.add("&7 - " + index.getWorldName() + ": &f" + index.size() + " chunks as " + areas.getAreaCount() + " areas"
+							+ String.format(" &7(%.1fx fewer entries, %.1f KB instead of %.1f KB saved, %d regions in %.1fms)",
+									index.size() / (double) Math.max(1, areas.getAreaCount()), areas.getJsonBytes() / 1024.0,
+									areas.getChunkJsonBytes() / 1024.0, areas.getRegionCount(), millis));
+				}
+
+				ExploraPlugin.getInstance().getMainThreadScheduler().runTask(() -> {
+					if (lines.isEmpty()) {
+						send(sender, "&eNo explored chunks yet.");
+						return;
+					}
+					send(sender, "&aExplored chunks as areas:");
+					for (String line : lines) send(sender, line);
+				});
+			});
+		});
+	}
+
+	/**
+	 * Queries the {@link BiomeIndex} of the sender's world (or the default world, from the console) off the main thread,
+	 * building it first if needed. Without a biome, reports the index's size and the most common biomes; with a biome,
+	 * where it occurs and its chunk nearest to the sender (or spawn). {@code export} writes the index for the map
+	 * viewer and uploads it with the tiles.
+	 *
+	 * @param sender who to report to
+	 * @param arg a biome (the {@code minecraft:} namespace may be left out), {@code export}, or {@code null}
+	 */
+	private void biomes(CommandSender sender, String arg) {
+		Location location = sender instanceof Player ? ((Player) sender).getLocation() : Bukkit.getWorlds().get(0).getSpawnLocation();
+		String world = location.getWorld().getName();
+		File worldFolder = Constants.RENDER_DATA_PATH.resolve(world).toFile();
+		int centerX = location.getBlockX() >> 4;
+		int centerZ = location.getBlockZ() >> 4;
+
+		if (BiomeIndex.ifLoaded(worldFolder) == null) {
+			send(sender, "&eIndexing the biomes of " + world + "..");
+		}
+
+		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
+			BiomeIndex index = BiomeIndex.of(worldFolder);
+			List<String> lines = new ArrayList<>();
+			long begin = System.nanoTime();
+
+			if (arg == null) {
+				lines.add("&6Biomes of " + world + ": &f" + index.getBiomeCount() + " biomes in " + index.getRegionCount() + " regions"
+						+ String.format(" &7(%d region bitmaps, ~%.1f KB, built in %dms)", index.getBitmapCount(),
+								index.estimateBytes() / 1024.0, index.getBuildMillis()));
+
+				int listed = 0;
+				for (Map.Entry<String, Long> entry : index.getChunkCounts().entrySet()) {
+					if (listed++ == LISTED_BIOMES) break;
+					lines.add("&7 - " + entry.getKey() + ": &f" + entry.getValue() + " chunks");
+				}
+			} else if (arg.equalsIgnoreCase("export")) {
+				File exportFile = new File(worldFolder, BiomeIndex.EXPORT_FILE_NAME);
+				try (Writer writer = Files.newBufferedWriter(exportFile.toPath(), StandardCharsets.UTF_8)) {
+					index.writeExport(writer);
+				} catch (IOException e) {
+					ExploraPlugin.warn("Failed to export biome index " + exportFile.getPath() + ": " + e.getMessage());
+					lines.add("&cFailed to export the biome index: " + e.getMessage());
+				}
+
+				if (lines.isEmpty()) {
+					FileUtil.sendTilesToBackendAsync(List.of(exportFile), null);
+					lines.add("&aExported " + index.getBiomeCount() + " biomes of " + world + String.format(" &7(%.1f KB)", exportFile.length() / 1024.0));
+				}
+			} else {
+				String biome = (arg.contains(":") ? arg : "minecraft:" + arg).toLowerCase();
+				long chunks = index.countChunks(biome);
+				if (chunks == 0) {
+					lines.add("&eNo " + biome + " chunks in the rendered regions of " + world + ".");
+				} else {
+					lines.add("&6" + biome + " in " + world + ": &f" + chunks + " chunks in " + index.countRegions(biome) + " regions, "
+							+ index.getAreas(biome).getAreaCount() + " areas");
+
+					ChunkCoord nearest = index.findNearest(biome, centerX, centerZ);
+					lines.add("&7 - Nearest to " + (sender instanceof Player ? "you" : "spawn") + ": &fchunk " + nearest.getX() + "," + nearest.getZ()
+							+ " &7(block " + (nearest.getX() * 16 + 8) + "," + (nearest.getZ() * 16 + 8) + ", "
+							+ String.format("%.0f chunks away)", Math.hypot(nearest.getX() - centerX, nearest.getZ() - centerZ)));
+				}
+			}
+
+			lines.add(String.format("&7Answered in %.0fus.", (System.nanoTime() - begin) / 1e3));
+			ExploraPlugin.getInstance().getMainThreadScheduler().runTask(() -> {
+				for (String line : lines) send(sender, line);
+			});
+		});
+	}
+
+	/**
+	 * Reports the {@link TilePack} of every world off the main thread: how many tiles it holds and how much of its file
+	 * is taken up by replaced tiles. {@code export} writes each pack's tiles out as single files to
+	 * {@code tile-export/<world>} in the plugin folder; {@code compact} compacts every pack regardless of how much it
+	 * would free.
+	 *
+	 * @param sender who to report to
+	 * @param arg {@code export}, {@code compact}, or {@code null}
+	 */
+	private void tiles(CommandSender sender, String arg) {
+		if (!Constants.TILE_STORAGE_PACK) {
+			send(sender, "&eTiles are stored as single files (tile-storage: files).");
+			return;
+		}
+
+		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
+			List<String> lines = new ArrayList<>();
+			File[] worldFolders = Constants.RENDER_DATA_PATH.toFile().listFiles(File::isDirectory);
+			if (worldFolders == null) worldFolders = new File[0];
+
+			for (File worldFolder : worldFolders) {
+				if (!TilePack.exists(worldFolder)) continue;
+
+				long begin = System.currentTimeMillis();
+				try {
+					TilePack pack = TilePack.of(worldFolder);
+					if (arg != null && arg.equalsIgnoreCase("export")) {
+						File target = new File(ExploraPlugin.getInstance().getDataFolder(), "tile-export/" + worldFolder.getName());
+						int exported = pack.exportTo(target);
+						lines.add("&aExported " + exported + " tiles of " + worldFolder.getName() + " to " + target.getPath()
+								+ " &7(" + (System.currentTimeMillis() - begin) + "ms)");
+					} else if (arg != null && arg.equalsIgnoreCase("compact")) {
+						long freed = pack.compact();
+						lines.add("&aCompacted the tile pack of " + worldFolder.getName() + String.format(": freed %.1f MB", freed / 1048576.0)
+								+ " &7(" + (System.currentTimeMillis() - begin) + "ms)");
+					} else {
+						lines.add("&6" + worldFolder.getName() + ": &f" + pack.size() + " tiles"
+								+ String.format(" &7(%.1f MB, %.1f MB replaced)", pack.getFileBytes() / 1048576.0, pack.getDeadBytes() / 1048576.0));
+					}
+				} catch (IOException e) {
+					ExploraPlugin.warn("Failed to access the tile pack of " + worldFolder.getName() + ": " + e.getMessage());
+					lines.add("&cFailed to access the tile pack of " + worldFolder.getName() + ": " + e.getMessage());
+				}
+			}
+
+			if (lines.isEmpty()) lines.add("&eNo tile packs yet.");
+			ExploraPlugin.getInstance().getMainThreadScheduler().runTask(() -> {
+				for (String line : lines) send(sender, line);
+			});
+		});
+	}
+
+	/**
+	 * Sends the current throttle, main thread, backend, outbox and snapshot metrics to the given sender.
+	 *
+	 * @param sender who to send the metrics to
+	 */
+	private void sendStatus(CommandSender sender) {
+		ThrottleManager throttle = ExploraPlugin.getInstance().getThrottleManager();
+
+		send(sender, "&6Throttle: &f" + throttle.getState()
+				+ String.format(" &7(factor %.2f, mspt %.1f/%.1f, heap %.0f%%)",
+						throttle.getThrottleFactor(), throttle.getSmoothedMspt(), Constants.THROTTLE_MSPT_BUDGET, throttle.getHeapUsage() * 100));
+
+		for (WorkType type : WorkType.values()) {
+			send(sender, "&7 - " + StringUtils.capitalize(type.name()) + ": &f" + throttle.getActiveWorkers(type)
+					+ " active, limit " + throttle.getWorkerLimit(type) + "/" + throttle.getMaxWorkers(type));
+		}
+		
+		MainThreadScheduler scheduler = ExploraPlugin.getInstance().getMainThreadScheduler();
+		send(sender, "&6Main thread: &f" + String.format("%.0fus/tick avg (%.1f%% of tick)", scheduler.getAverageTickMicros(), scheduler.getTickShare())
+				+ String.format(" &7(last %dus, budget %dus, %d queued, %d run, %d ticks deferred)",
+						scheduler.getLastTickMicros(), Constants.MAIN_THREAD_BUDGET_MICROS, scheduler.getQueuedCount(),
+						scheduler.getExecutedTotal(), scheduler.getDeferredTicks()));
+		
+		send(sender, "&6Backend requests: &f" + HttpUtil.getInFlightCount() + "/" + Constants.HTTP_MAX_IN_FLIGHT + " in flight, "
+				+ HttpUtil.getQueuedCount() + " queued");
+		
+		ChunkBatchSender chunkSync = ExploraPlugin.getInstance().getChunkManager().getLastBatchSender();
+		if (chunkSync != null) {
+			send(sender, "&6Chunk sync: &f" + chunkSync.getSentChunks() + "/" + chunkSync.getTotalChunks() + (chunkSync.isFinished() ? " sent" : " sending")
+					+ String.format(" &7(%.0f chunks/s, batch %d, window %d, %d in flight, avg latency %.0fms)",
+							chunkSync.getChunksPerSecond(), chunkSync.getBatchSize(), chunkSync.getWindow(), chunkSync.getInFlight(), chunkSync.getAverageLatencyMillis()));
+		}
+		
+		ChunkReconciler reconciler = ExploraPlugin.getInstance().getChunkManager().getLastReconciler();
+		if (reconciler != null) {
+			send(sender, "&6Reconcile: &f" + reconciler.getRegionsSent() + " regions (" + reconciler.getChunksSent() + " chunks) sent" + (reconciler.isFinished() ? "" : ", running")
+					+ String.format(" &7(%d/%d worlds in sync, %d regions compared in %d sectors, %.1fs)",
+							reconciler.getWorldsInSync(), reconciler.getWorldCount(), reconciler.getRegionsCompared(), reconciler.getSectorsFetched(), reconciler.getElapsedSeconds()));
+		}
+		
+		OutboxManager outbox = ExploraPlugin.getInstance().getOutboxManager();
+		send(sender, "&6Outbox: &f" + outbox.getCircuitState() + ", " + outbox.getDepth() + " queued"
+				+ String.format(" &7(oldest %ds, %.1f MB, retry in %ds, %d failures, %d delivered, %d dropped)",
+						outbox.getOldestAgeMillis() / 1000, outbox.getStoredBytes() / (1024.0 * 1024.0), outbox.getRetryDelayMillis() / 1000,
+						outbox.getConsecutiveFailures(), outbox.getDeliveredTotal(), outbox.getDroppedTotal()));
+		
+		if (Constants.TILE_SYNC_ENABLED) {
+			TileSyncManager tileSync = ExploraPlugin.getInstance().getTileSyncManager();
+			send(sender, "&6Tile sync: &f" + (tileSync.isSyncing() ? "running" : "idle") + ", " + tileSync.getPendingWorldCount() + " world(s) unfinished"
+					+ String.format(" &7(%d uploaded, %d unchanged, %d deleted, %.1f MB)",
+							tileSync.getTilesUploaded(), tileSync.getTilesSkipped(), tileSync.getTilesDeleted(), tileSync.getBytesUploaded() / (1024.0 * 1024.0)));
+		}
+		
+		LiveStreamManager live = ExploraPlugin.getInstance().getLiveStreamManager();
+		send(sender, "&6Live stream: &f" + (live.isConnected() ? "connected" : Constants.LIVE_STREAM_ENABLED ? "disconnected (using HTTP)" : "disabled")
+				+ String.format(" &7(%d frames, %d keyframes, %d idle samples, %d updates deferred, %.1f KB sent, %d pending)",
+						live.getFramesSent(), live.getKeyframesSent(), live.getUpdatesSkipped(), live.getUpdatesDeferred(),
+						live.getBytesSent() / 1024.0, live.getPendingSends()));
+		
+		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
+		if (Constants.EXPLORATION_SAMPLING) {
+			send(sender, "&6Exploration: &fsampled every " + Constants.EXPLORATION_SAMPLE_TICKS + " ticks, " + chunkManager.getRecordedChunkCount() + " new chunks"
+					+ String.format(" &7(%d samples, %.1fms on the main thread, %.1fms in the background)", ExplorationSampleTask.getSamples(),
+							ExplorationSampleTask.getMainThreadNanos() / 1e6, ExplorationSampleTask.getBackgroundNanos() / 1e6));
+		} else {
+			send(sender, "&6Exploration: &ffrom move events, " + chunkManager.getRecordedChunkCount() + " new chunks"
+					+ String.format(" &7(%d events, %.1fms on the main thread)", ExplorationTracker.getMoveEvents(), ExplorationTracker.getMainThreadNanos() / 1e6));
+		}
+		
+		send(sender, "&6Block changes: &f" + ChunkTracker.getTrackedChunkCount() + " chunks tracked &7(" + ChunkTracker.getEvictedChunkCount() + " evicted, surface cache "
+				+ ChunkTracker.getSurfaceCacheHits() + " hits / " + ChunkTracker.getSurfaceCacheMisses() + " misses)");
+		
+		SnapshotManager snapshots = ExploraPlugin.getInstance().getSnapshotManager();
+		send(sender, "&6Snapshots: &f" + snapshots.getCachedCount() + "/" + Constants.SNAPSHOT_CACHE_MAX_CHUNKS + " cached, "
+				+ snapshots.getDirtyCount() + " queued &7(" + snapshots.getCapturedTotal() + " captured, "
+				+ snapshots.getSkippedTotal() + " skipped, " + snapshots.getEvictedTotal() + " evicted, " + snapshots.getRenderedFromSnapshotTotal() + " rendered)");
+	}
+
+	private void send(CommandSender sender, String message) {
+		sender.sendMessage(StringUtils.colorize("[" + Constants.PLUGIN_NAME + "] " + message));
+	}
+}
@@ -2,116 +2,170 @@ package com.jvallejoromero.explora.listener;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-import org.bukkit.Chunk;
-import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import com.jvallejoromero.explora.ExploraPlugin;
-import com.jvallejoromero.explora.manager.ChunkManager;
-import com.jvallejoromero.explora.util.BlockCoord;
+import com.jvallejoromero.explora.util.BlockChangeTracker;
+import com.jvallejoromero.explora.util.BlockEventLog;
 import com.jvallejoromero.explora.util.ChunkCoord;
 import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.SurfaceHeightCache;
 
 public class ChunkTracker implements Listener {
 
-	private static Map<ChunkCoord, Set<BlockCoord>> changedBlocks = new HashMap<>();
+	// block changes per world, counted per chunk
+	private static Map<String, BlockChangeTracker> changedBlocks = new HashMap<>();
+	
+	// surface heights of loaded chunks per world, to tell whether a block change is visible on the map
+	private static Map<String, SurfaceHeightCache> surfaceHeights = new HashMap<>();
+	
+	// recent block events, replayed by /explora benchmark
+	private static BlockEventLog eventLog = new BlockEventLog(10000);
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockPlace(BlockPlaceEvent event) {
+		recordBlockChange(event.getBlock(), true);
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockBreak(BlockBreakEvent event) {
+		recordBlockChange(event.getBlock(), false);
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onEntityExplode(EntityExplodeEvent event) {
+		invalidateSurface(event.blockList());
+	}
+	
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockExplode(BlockExplodeEvent event) {
+		invalidateSurface(event.blockList());
+	}
 	
 	@EventHandler
-	public void onChunkExplore(PlayerMoveEvent event) {
-		Player player = event.getPlayer();
-		
-		int fromChunkX = event.getFrom().getBlockX() >> 4;
-		int fromChunkZ = event.getFrom().getBlockZ() >> 4;
-
-		int toChunkX = event.getTo().getBlockX() >> 4;
-		int toChunkZ = event.getTo().getBlockZ() >> 4;
-
-		if (fromChunkX == toChunkX && fromChunkZ == toChunkZ) return;
-		
-		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
-		Chunk chunk = event.getTo().getChunk();
-		
-		int chunkX = chunk.getX();
-		int chunkZ = chunk.getZ();
-		
-		boolean explored = chunkManager.isChunkExplored(player.getWorld().getName(), chunkX, chunkZ);
-		
-		if (!explored) {
-		    chunkManager.recordChunkIfNew(player.getWorld().getName(), chunkX, chunkZ);
-		}
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		SurfaceHeightCache surface = surfaceHeights.get(event.getWorld().getName());
+		if (surface != null) surface.unloadChunk(event.getChunk().getX(), event.getChunk().getZ());
 	}
 	
 	@EventHandler
-	public void onBlockPlace(BlockPlaceEvent event) {
-		Block placed = event.getBlock();
-		
-		if (!isNearTop(placed)) return;
-		
-		int blockX = placed.getLocation().getBlockX();
-		int blockY = placed.getLocation().getBlockY();
-		int blockZ = placed.getLocation().getBlockZ();
-		
-		BlockCoord blockCoord = new BlockCoord(blockX, blockY, blockZ);
-		ChunkCoord chunkCoord = blockCoord.toChunkCoord();
-		
-		Set<BlockCoord> blocksChangedInChunk = changedBlocks.computeIfAbsent(chunkCoord, key -> new HashSet<>());
-		if (blocksChangedInChunk.size() >= Constants.BLOCKS_CHANGED_PER_CHUNK_THRESHOLD) {
-			// trigger re-render
-			String world = placed.getLocation().getWorld().getName();
-			ExploraPlugin.getInstance().getChunkManager().getNewlyExploredChunks().computeIfAbsent(world, key -> new HashSet<>()).add(chunkCoord);
-			blocksChangedInChunk.clear();
-			return;
+	public void onWorldUnload(WorldUnloadEvent event) {
+		surfaceHeights.remove(event.getWorld().getName());
+	}
+	
+	/**
+	 * Counts a surface block change, and queues the chunk for re-rendering once enough of its columns changed.
+	 *
+	 * @param block the placed or broken block
+	 * @param placed whether the block was placed rather than broken
+	 */
+	private void recordBlockChange(Block block, boolean placed) {
+		World world = block.getWorld();
+		eventLog.record(world, block.getX(), block.getY(), block.getZ(), placed);
+		
+		if (!isNearTop(block, placed)) return;
+		
+		BlockChangeTracker tracker = changedBlocks.get(world.getName());
+		if (tracker == null) {
+			tracker = new BlockChangeTracker(Constants.BLOCK_CHANGE_MAX_TRACKED_CHUNKS);
+			changedBlocks.put(world.getName(), tracker);
 		}
 		
-		blocksChangedInChunk.add(blockCoord);
+		int blockX = block.getX();
+		int blockZ = block.getZ();
+		if (!tracker.record(blockX, blockZ, System.currentTimeMillis(), Constants.BLOCKS_CHANGED_PER_CHUNK_THRESHOLD, Constants.BLOCK_CHANGE_HALF_LIFE_MILLIS)) return;
+		
+		// trigger re-render
+		ChunkCoord chunkCoord = new ChunkCoord(blockX >> 4, blockZ >> 4);
+		ExploraPlugin.getInstance().getChunkManager().getNewlyExploredChunks().computeIfAbsent(world.getName(), key -> new HashSet<>()).add(chunkCoord);
+		ExploraPlugin.getInstance().getSnapshotManager().markDirty(world.getName(), chunkCoord.getX(), chunkCoord.getZ());
 	}
 	
-	@EventHandler
-	public void onBlockBreak(BlockBreakEvent event) {
-		Block broken = event.getBlock();
-
-		if (!isNearTop(broken)) return;
-		
-		int blockX = broken.getLocation().getBlockX();
-		int blockY = broken.getLocation().getBlockY();
-		int blockZ = broken.getLocation().getBlockZ();
+	/**
+	 * @return the number of chunks with tracked block changes, across all worlds
+	 */
+	public static int getTrackedChunkCount() {
+		int count = 0;
+		for (BlockChangeTracker tracker : changedBlocks.values()) count += tracker.size();
+		return count;
+	}
+	
+	/**
+	 * @return the number of chunks whose block changes were forgotten to stay within the limit, across all worlds
+	 */
+	public static long getEvictedChunkCount() {
+		long count = 0;
+		for (BlockChangeTracker tracker : changedBlocks.values()) count += tracker.getEvictions();
+		return count;
+	}
+	
+	/**
+	 * Checks whether a block change is visible on the map, i.e. happens at (or right below) the surface, and keeps
+	 * the cached surface height up to date. The surface includes the block itself, since place events fire after
+	 * the block is placed and break events before it is removed.
+	 */
+	private boolean isNearTop(Block block, boolean placed) {
+		World world = block.getWorld();
+		SurfaceHeightCache surface = surfaceHeights.get(world.getName());
+		if (surface == null) {
+			surface = new SurfaceHeightCache(world);
+			surfaceHeights.put(world.getName(), surface);
+		}
 		
-		BlockCoord blockCoord = new BlockCoord(blockX, blockY, blockZ);
-		ChunkCoord chunkCoord = blockCoord.toChunkCoord();
+		int blockX = block.getX();
+		int blockY = block.getY();
+		int blockZ = block.getZ();
 		
-		Set<BlockCoord> blocksChangedInChunk = changedBlocks.computeIfAbsent(chunkCoord, key -> new HashSet<>());
-		if (blocksChangedInChunk.size() >= Constants.BLOCKS_CHANGED_PER_CHUNK_THRESHOLD) {
-			// trigger re-render
-			String world = broken.getLocation().getWorld().getName();
-			ExploraPlugin.getInstance().getChunkManager().getNewlyExploredChunks().computeIfAbsent(world, key -> new HashSet<>()).add(chunkCoord);
-			blocksChangedInChunk.clear();
-			return;
-		}
+		if (placed) surface.onPlace(blockX, blockY, blockZ);
+		int highestY = surface.getHeight(blockX, blockZ);
+		if (!placed) surface.onBreak(blockX, blockY, blockZ);
 		
-		if (blocksChangedInChunk.contains(blockCoord)) {
-			blocksChangedInChunk.remove(blockCoord);
-			return;
+		return blockY >= highestY - 1;
+	}
+	
+	private void invalidateSurface(List<Block> blocks) {
+		for (Block block : blocks) {
+			SurfaceHeightCache surface = surfaceHeights.get(block.getWorld().getName());
+			if (surface != null) surface.invalidate(block.getX(), block.getZ());
 		}
-		
-		blocksChangedInChunk.add(blockCoord);
 	}
 	
-	private boolean isNearTop(Block block) {
-		Location loc = block.getLocation();
-		
-		int blockY = loc.getBlockY();
-		int highestY = loc.getWorld().getHighestBlockYAt(loc);
-		
-		return ((blockY >= highestY) || (blockY - highestY >= -1));
+	/**
+	 * @return the recent block events, for replaying
+	 */
+	public static BlockEventLog getEventLog() {
+		return eventLog;
+	}
+	
+	/**
+	 * @return the number of surface height lookups answered from the cache, across all worlds
+	 */
+	public static long getSurfaceCacheHits() {
+		long hits = 0;
+		for (SurfaceHeightCache surface : surfaceHeights.values()) hits += surface.getHits();
+		return hits;
+	}
+	
+	/**
+	 * @return the number of surface height lookups that had to ask the world, across all worlds
+	 */
+	public static long getSurfaceCacheMisses() {
+		long misses = 0;
+		for (SurfaceHeightCache surface : surfaceHeights.values()) misses += surface.getMisses();
+		return misses;
 	}
 	
 }
@@ -0,0 +1,109 @@
+package com.jvallejoromero.explora.listener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.ChunkManager;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.DiscMask;
+import com.jvallejoromero.explora.util.ExploredChunkIndex;
+import com.jvallejoromero.explora.util.PlayerChunkCursor;
+
+/**
+ * Records the chunks players walk into as explored, from move events. Only registered while
+ * {@code exploration-tracking} is {@code move}; see {@link com.jvallejoromero.explora.tasks.ExplorationSampleTask}
+ * for the sampling alternative.
+ */
+public class ExplorationTracker implements Listener {
+
+	// one in this many move events is timed, to estimate the main thread time spent without timing every event
+	private static final int TIMING_INTERVAL = 64;
+
+	// the chunk each online player was last seen in
+	private static Map<UUID, PlayerChunkCursor> cursors = new HashMap<>();
+
+	private static long moveEvents = 0;
+	private static long timedEvents = 0;
+	private static long timedNanos = 0;
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onChunkExplore(PlayerMoveEvent event) {
+		if (moveEvents++ % TIMING_INTERVAL != 0) {
+			explore(event);
+			return;
+		}
+
+		long begin = System.nanoTime();
+		explore(event);
+		timedNanos += System.nanoTime() - begin;
+		timedEvents++;
+	}
+
+	@EventHandler
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		cursors.remove(event.getPlayer().getUniqueId());
+	}
+
+	/**
+	 * Records the chunk a player walks into as explored. Fires for every move, so moves inside the chunk the player
+	 * was last seen in return after a few comparisons, and checking a chunk that was explored before does not
+	 * allocate. The chunk is worked out from the block coordinates rather than {@link Location#getChunk()}, which
+	 * can load the chunk.
+	 * 
+	 * <p>With {@code exploration-area: view-distance}, the whole disc the player can see from the chunk is recorded.
+	 */
+	private void explore(PlayerMoveEvent event) {
+		Player player = event.getPlayer();
+		Location to = event.getTo();
+
+		PlayerChunkCursor cursor = cursors.get(player.getUniqueId());
+		if (cursor == null) {
+			cursor = new PlayerChunkCursor();
+			cursors.put(player.getUniqueId(), cursor);
+		}
+
+		World world = to.getWorld();
+		int chunkX = to.getBlockX() >> 4;
+		int chunkZ = to.getBlockZ() >> 4;
+		if (!cursor.moveTo(world, chunkX, chunkZ)) return;
+
+		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
+		ExploredChunkIndex index = cursor.getIndex();
+		if (index == null) {
+			index = chunkManager.getExploredChunkIndex(world.getName());
+			cursor.setIndex(index);
+		}
+
+		if (Constants.EXPLORATION_VIEW_DISTANCE) {
+			chunkManager.recordDiscIfNew(index, chunkX, chunkZ, DiscMask.of(world.getViewDistance()));
+		} else {
+			chunkManager.recordChunkIfNew(index, chunkX, chunkZ);
+		}
+	}
+
+	/**
+	 * @return the number of move events handled
+	 */
+	public static long getMoveEvents() {
+		return moveEvents;
+	}
+
+	/**
+	 * @return the estimated main thread time spent handling move events, in nanoseconds
+	 */
+	public static long getMainThreadNanos() {
+		return timedEvents == 0 ? 0 : (long) ((double) timedNanos / timedEvents * moveEvents);
+	}
+
+}
@@ -3,14 +3,20 @@ package com.jvallejoromero.explora.manager;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -21,12 +27,25 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.ChunkArea;
+import com.jvallejoromero.explora.util.ChunkBatchSender;
 import com.jvallejoromero.explora.util.ChunkCoord;
 import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.DiscMask;
+import com.jvallejoromero.explora.util.ExploredAreas;
+import com.jvallejoromero.explora.util.ExploredChunkIndex;
 import com.jvallejoromero.explora.util.FileUtil;
+import com.jvallejoromero.explora.util.FogMaskPyramid;
+import com.jvallejoromero.explora.util.FogMaskTile;
 import com.jvallejoromero.explora.util.HttpUtil;
 import com.jvallejoromero.explora.util.RegionCoord;
 import com.jvallejoromero.explora.util.TileImageGenerator;
+import com.jvallejoromero.explora.util.TileStore;
+import com.jvallejoromero.explora.util.reconcile.ChunkReconciler;
+import com.jvallejoromero.explora.util.reconcile.HttpReconciliationBackend;
+import com.jvallejoromero.explora.util.reconcile.LocalReconciliationBackend;
+import com.jvallejoromero.explora.util.reconcile.ReconciliationBackend;
+import com.jvallejoromero.explora.util.reconcile.ReconciliationUnsupportedException;
 
 /**
  * Handles chunk tracking and management across all worlds in the server.
@@ -36,6 +55,7 @@ import com.jvallejoromero.explora.util.TileImageGenerator;
  * - Tracking newly explored chunks.
  * - Sending chunk data to a backend service.
  * - Scheduling rerendering of updated regions.
+ * - Keeping the fog-of-war mask tiles of explored chunks up to date.
  * 
  * Used by: ExploraPlugin
  * Depends on: Constants, TileImageGenerator, HttpUtil
@@ -46,7 +66,31 @@ public class ChunkManager {
 	private final Map<String, Set<ChunkCoord>> worldToChunks = new HashMap<>();
 	private final Map<String, Set<ChunkCoord>> newlyExploredChunks = new HashMap<>();
 	
-	private final AtomicInteger pendingBatchCount = new AtomicInteger(0);
+	// chunks recorded since a reconciliation took its snapshot, main thread only; null while none runs
+	private Map<String, Set<ChunkCoord>> exploredWhileReconciling;
+	private volatile boolean reconciling = false;
+	
+	// explored chunks per world, checked on every chunk a player enters; exploration thread only
+	private final Map<String, ExploredChunkIndex> exploredIndexes = new HashMap<>();
+	
+	// the main thread, or a background thread while exploration-tracking is "sample"
+	private Executor explorationExecutor;
+	private ExecutorService explorationThread;
+	
+	// fog-of-war masks per world, main thread only
+	private final Map<String, FogMaskPyramid> fogMasks = new HashMap<>();
+	
+	// mask tiles are written one flush after another, so an older flush never overwrites a newer tile
+	private CompletableFuture<Void> fogMaskWrites = CompletableFuture.completedFuture(null);
+	
+	private long chunksRecorded = 0;
+	
+	// receives the new chunks of a disc, main thread only
+	private int[] discXs = new int[0];
+	private int[] discZs = new int[0];
+	
+	private volatile ChunkBatchSender lastBatchSender;
+	private volatile ChunkReconciler lastReconciler;
 	
 	private boolean sentChunksToDatabase = false;
 	
@@ -62,18 +106,37 @@ public class ChunkManager {
 		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
 			ExploraPlugin.log("&aReading chunk data..");
 			
-			loadChunksFromAllJSONFiles();
+			Map<String, ExploredChunkIndex> loadedIndexes = new HashMap<>();
+			Map<String, FogMaskPyramid> loadedFogMasks = new HashMap<>();
+			loadChunksFromAllJSONFiles(loadedIndexes, Constants.FOG_MASKS_ENABLED ? loadedFogMasks : null);
 			
 	        if (!Constants.SHOULD_SCAN_FOLDERS) {
 	            setSentChunksToDatabase(true);
 	        }
 			
-			if (onLoaded != null) Bukkit.getScheduler().runTask(plugin, onLoaded);
+			getExplorationExecutor().execute(() -> {
+				// merge into the indexes players may have added chunks to while loading, they are cached by the trackers
+				for (ExploredChunkIndex loaded : loadedIndexes.values()) {
+					getExploredChunkIndex(loaded.getWorldName()).addAll(loaded);
+				}
+			});
+			
+			if (Constants.FOG_MASKS_ENABLED) {
+				plugin.getMainThreadScheduler().runTask(() -> {
+					for (FogMaskPyramid loaded : loadedFogMasks.values()) {
+						getFogMaskPyramid(loaded.getWorldName()).addAll(loaded);
+					}
+					flushFogMasks();
+				});
+			}
+			
+			if (onLoaded != null) plugin.getMainThreadScheduler().runTask(onLoaded);
 		});
 		
 		// schedule the task to periodically update chunk data every x ticks
 		Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-			if (hasSentChunksToDatabase()) {
+			// a reconciliation replaces whole regions from its snapshot, which would drop chunks flushed meanwhile
+			if (hasSentChunksToDatabase() && !reconciling) {
 				saveNewlyExploredChunksToDisk();
 				
 				sendNewChunksToDatabase(() -> {					
@@ -87,6 +150,10 @@ public class ChunkManager {
 					});
 				});	
 			}
+			
+			if (Constants.FOG_MASKS_ENABLED) {
+				plugin.getMainThreadScheduler().runTask(this::flushFogMasks);
+			}
 		}, Constants.CHUNK_UPDATE_TICKS, Constants.CHUNK_UPDATE_TICKS);
 	}
 
@@ -94,8 +161,12 @@ public class ChunkManager {
 	 * Parses and loads all previously explored chunks from JSON files in the configured save directory.
 	 * Populates the internal `worldToChunks` map.
 	 * 
+	 * @param loadedIndexes receives the loaded chunks of each world as an index, to be merged into the exploration
+	 * thread's indexes
+	 * @param loadedFogMasks receives the fog-of-war masks of each world, to be merged into the main thread's; may be
+	 * {@code null} to skip them
 	 */
-	private void loadChunksFromAllJSONFiles() {
+	private void loadChunksFromAllJSONFiles(Map<String, ExploredChunkIndex> loadedIndexes, Map<String, FogMaskPyramid> loadedFogMasks) {
 		File dataFolder = Constants.SAVE_PATH.toFile();
 		File[] files = dataFolder.listFiles((dir, name) -> name.endsWith(".json"));
 		if (files == null) {
@@ -112,19 +183,21 @@ public class ChunkManager {
 				JsonElement worldElem = obj.get("world");
 				String worldName = (worldElem != null && !worldElem.isJsonNull()) ? worldElem.getAsString() : "unknown";
 				
-				JsonArray chunkList = obj.getAsJsonArray("exploredChunks");
-				
 				HashSet<ChunkCoord> chunkSet = new HashSet<>();
-				for (JsonElement el : chunkList) {
-					JsonObject chunk = el.getAsJsonObject();
-					int x = chunk.get("x").getAsInt();
-					int z = chunk.get("z").getAsInt();
+				ExploredChunkIndex index = new ExploredChunkIndex(worldName);
+				FogMaskPyramid fogMask = loadedFogMasks != null ? new FogMaskPyramid(worldName, Constants.FOG_MASK_LEVELS) : null;
+				for (ChunkCoord chunkCoord : readSavedChunks(obj)) {
+					int x = chunkCoord.getX();
+					int z = chunkCoord.getZ();
 					
-					ChunkCoord chunkCoord = new ChunkCoord(x,z);
 					chunkSet.add(chunkCoord);
+					index.add(x, z);
+					if (fogMask != null) fogMask.add(x, z);
 				}
 
 				worldToChunks.put(worldName, chunkSet);
+				loadedIndexes.put(worldName, index);
+				if (fogMask != null) loadedFogMasks.put(worldName, fogMask);
 				ExploraPlugin.log("&aLoaded " + chunkSet.size() + " chunks from " + file.getName());
 
 			} catch (Exception e) {
@@ -139,7 +212,44 @@ public class ChunkManager {
 	}
 	
 	/**
-	 * Saves all new chunks to the json files
+	 * Reads the chunks of a saved world file, listed one by one ({@code exploredChunks}) and/or as areas
+	 * ({@code exploredAreas}, see {@link ExploredAreas}).
+	 */
+	private static List<ChunkCoord> readSavedChunks(JsonObject obj) {
+		List<ChunkCoord> chunks = new ArrayList<>();
+		if (obj.has("exploredChunks")) {
+			chunks.addAll(readChunkEntries(obj.getAsJsonArray("exploredChunks")));
+		}
+		if (obj.has("exploredAreas")) {
+			chunks.addAll(readAreaChunks(obj.getAsJsonArray("exploredAreas")));
+		}
+		return chunks;
+	}
+	
+	private static List<ChunkCoord> readAreaChunks(JsonArray areaArray) {
+		List<ChunkCoord> chunks = new ArrayList<>();
+		for (ChunkArea area : ExploredAreas.fromJson(areaArray).getAreas()) {
+			for (int z = area.getZ(); z < area.getZ() + area.getHeight(); z++) {
+				for (int x = area.getX(); x < area.getX() + area.getWidth(); x++) {
+					chunks.add(new ChunkCoord(x, z));
+				}
+			}
+		}
+		return chunks;
+	}
+	
+	private static List<ChunkCoord> readChunkEntries(JsonArray chunkArray) {
+		List<ChunkCoord> chunks = new ArrayList<>(chunkArray.size());
+		for (JsonElement el : chunkArray) {
+			JsonObject chunk = el.getAsJsonObject();
+			chunks.add(new ChunkCoord(chunk.get("x").getAsInt(), chunk.get("z").getAsInt()));
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Saves all new chunks to the json files, in the configured {@code chunk-export-format}. With {@code areas}, only
+	 * the areas of the regions that gained chunks are recomputed.
 	 */
 	public void saveNewlyExploredChunksToDisk() {
 		int newChunkSets = 0;
@@ -163,7 +273,39 @@ public class ChunkManager {
 				JsonElement dimensionElem = obj.get("dimension");
 				String dimensionName = (dimensionElem != null && !dimensionElem.isJsonNull()) ? dimensionElem.getAsString() : "unknown";
 				
-                JsonArray chunkArray = obj.getAsJsonArray("exploredChunks");
+    			Map<String, Object> data = new LinkedHashMap<>();
+    			data.put("world", worldName);
+    			data.put("dimension", dimensionName);
+    			
+    			if (Constants.CHUNK_EXPORT_AREAS) {
+    				ExploredAreas areas = obj.has("exploredAreas") ? ExploredAreas.fromJson(obj.getAsJsonArray("exploredAreas")) : new ExploredAreas();
+    				if (obj.has("exploredChunks")) areas.addAll(readChunkEntries(obj.getAsJsonArray("exploredChunks")));
+    				
+    				int uniqueChunks = areas.addAll(newChunks);
+    				data.put("exploredAreas", areas.toJson());
+    				
+    				try (FileWriter writer = new FileWriter(file)) {
+    					new GsonBuilder().setPrettyPrinting().create().toJson(data, writer);
+    				}
+    				
+    				if (uniqueChunks > 0) {
+    					ExploraPlugin.log("&aUpdated chunks for " + worldName + " (" + uniqueChunks + " chunks, " + areas.getChunkCount() + " saved as " + areas.getAreaCount() + " areas).");
+    				} else {
+    					ExploraPlugin.log("&aNo new chunks found.");
+    				}
+    				continue;
+    			}
+    			
+                JsonArray chunkArray = obj.has("exploredChunks") ? obj.getAsJsonArray("exploredChunks") : new JsonArray();
+                if (obj.has("exploredAreas")) {
+                	// the file was saved as areas, list their chunks one by one again
+                	for (ChunkCoord chunk : readAreaChunks(obj.getAsJsonArray("exploredAreas"))) {
+                		JsonObject chunkObj = new JsonObject();
+                		chunkObj.addProperty("x", chunk.getX());
+                		chunkObj.addProperty("z", chunk.getZ());
+                		chunkArray.add(chunkObj);
+                	}
+                }
                 
                 // DEDUPLICATION STEP
                 Set<ChunkCoord> existingKeys = new HashSet<>();
@@ -192,9 +334,6 @@ public class ChunkManager {
                     uniqueChunks++;
                 }
                 
-    			Map<String, Object> data = new LinkedHashMap<>();
-    			data.put("world", worldName);
-    			data.put("dimension", dimensionName);
     			data.put("exploredChunks", chunkArray);
 
                 try (FileWriter writer = new FileWriter(file)) {
@@ -217,18 +356,180 @@ public class ChunkManager {
 	}
 
 
+	/**
+	 * Must be called on the exploration thread, see {@link #getExplorationExecutor()}.
+	 */
 	public boolean isChunkExplored(String world, int x, int z) {
-		Set<ChunkCoord> chunks = worldToChunks.get(world);
-		return chunks != null && chunks.contains(new ChunkCoord(x,z));
+		ExploredChunkIndex index = exploredIndexes.get(world);
+		return index != null && index.contains(x, z);
 	}
 
-	public void recordChunkIfNew(String world, int x, int z) {
+	public boolean recordChunkIfNew(String world, int x, int z) {
+		return recordChunkIfNew(getExploredChunkIndex(world), x, z);
+	}
+	
+	/**
+	 * Records a chunk as explored if it was not before. Must be called from the main thread, and only while it is
+	 * the exploration thread (see {@link #getExplorationExecutor()}).
+	 * 
+	 * <p>Checking a chunk that was already explored does not allocate.
+	 * 
+	 * @param index the explored chunks of the chunk's world, see {@link #getExploredChunkIndex(String)}
+	 * @param x the chunk's x coordinate
+	 * @param z the chunk's z coordinate
+	 * @return whether the chunk is new
+	 */
+	public boolean recordChunkIfNew(ExploredChunkIndex index, int x, int z) {
+	    if (!index.add(x, z)) return false;
+	    
+	    addExploredChunk(index.getWorldName(), x, z);
+	    return true;
+	}
+	
+	/**
+	 * Records every chunk within a disc around a chunk as explored, if it was not before. Must be called from the
+	 * main thread, and only while it is the exploration thread (see {@link #getExplorationExecutor()}).
+	 * 
+	 * <p>Checking a disc that was already explored does not allocate.
+	 * 
+	 * @param index the explored chunks of the chunk's world, see {@link #getExploredChunkIndex(String)}
+	 * @param x the center chunk's x coordinate
+	 * @param z the center chunk's z coordinate
+	 * @param disc the disc around the chunk, e.g. the world's view distance
+	 * @return the number of new chunks
+	 */
+	public int recordDiscIfNew(ExploredChunkIndex index, int x, int z, DiscMask disc) {
+		if (discXs.length < disc.getArea()) {
+			discXs = new int[disc.getArea()];
+			discZs = new int[disc.getArea()];
+		}
+		
+		int added = index.addDisc(x, z, disc, discXs, discZs, 0);
+		for (int i = 0; i < added; i++) {
+			addExploredChunk(index.getWorldName(), discXs[i], discZs[i]);
+		}
+		return added;
+	}
+	
+	/**
+	 * Records chunks that were found to be new in the explored chunk index, e.g. on the exploration thread. Must be
+	 * called from the main thread.
+	 * 
+	 * @param worlds the world name of each chunk
+	 * @param xs the x coordinate of each chunk
+	 * @param zs the z coordinate of each chunk
+	 * @param count the number of chunks
+	 */
+	public void addExploredChunks(String[] worlds, int[] xs, int[] zs, int count) {
+		for (int i = 0; i < count; i++) {
+			addExploredChunk(worlds[i], xs[i], zs[i]);
+		}
+	}
+	
+	private void addExploredChunk(String world, int x, int z) {
 	    ChunkCoord key = new ChunkCoord(x,z);
-
-	    if (!isChunkExplored(world, x, z)) {
-	        worldToChunks.computeIfAbsent(world, k -> new HashSet<>()).add(key);
-	        newlyExploredChunks.computeIfAbsent(world, k -> new HashSet<>()).add(key);
-	    }
+	    worldToChunks.computeIfAbsent(world, k -> new HashSet<>()).add(key);
+	    newlyExploredChunks.computeIfAbsent(world, k -> new HashSet<>()).add(key);
+	    if (exploredWhileReconciling != null) exploredWhileReconciling.computeIfAbsent(world, k -> new HashSet<>()).add(key);
+	    plugin.getSnapshotManager().markDirty(world, x, z);
+	    if (Constants.FOG_MASKS_ENABLED) getFogMaskPyramid(world).add(x, z);
+	    chunksRecorded++;
+	}
+	
+	/**
+	 * Gets the explored chunks of a world, creating an empty index if none were explored yet. The index stays the
+	 * same for the lifetime of the plugin, so callers can keep it. Must be called on the exploration thread.
+	 * 
+	 * @param world the world name
+	 * @return the world's explored chunk index
+	 */
+	public ExploredChunkIndex getExploredChunkIndex(String world) {
+		ExploredChunkIndex index = exploredIndexes.get(world);
+		if (index == null) {
+			index = new ExploredChunkIndex(world);
+			exploredIndexes.put(world, index);
+		}
+		return index;
+	}
+	
+	/**
+	 * Runs a query against the explored chunks of a world on the exploration thread, e.g. counting the chunks in an
+	 * area with {@link ExploredChunkIndex#countInRectangle(int, int, int, int)}. Area queries only look at the
+	 * regions the area touches, instead of every explored chunk.
+	 * 
+	 * @param world the world name
+	 * @param query the query, given the world's explored chunk index (empty if the world has none); must not keep it
+	 * @return a future completed on the exploration thread with the query's result
+	 */
+	public <T> CompletableFuture<T> queryExploredChunks(String world, Function<ExploredChunkIndex, T> query) {
+		return CompletableFuture.supplyAsync(() -> {
+			ExploredChunkIndex index = exploredIndexes.get(world);
+			return query.apply(index != null ? index : new ExploredChunkIndex(world));
+		}, getExplorationExecutor());
+	}
+	
+	/**
+	 * Copies the explored chunks of every world, e.g. to read them on another thread. Must be called on the
+	 * exploration thread.
+	 * 
+	 * @return a copy of each world's explored chunk index
+	 */
+	public List<ExploredChunkIndex> copyExploredChunkIndexes() {
+		List<ExploredChunkIndex> copies = new ArrayList<>();
+		for (ExploredChunkIndex index : exploredIndexes.values()) {
+			copies.add(index.copy());
+		}
+		return copies;
+	}
+	
+	/**
+	 * Gets the fog-of-war masks of a world, creating empty ones if none were explored yet. Must be called from the
+	 * main thread.
+	 * 
+	 * @param world the world name
+	 * @return the world's fog-of-war masks
+	 */
+	public FogMaskPyramid getFogMaskPyramid(String world) {
+		return fogMasks.computeIfAbsent(world, k -> new FogMaskPyramid(k, Constants.FOG_MASK_LEVELS));
+	}
+	
+	/**
+	 * Writes the fog-of-war mask tiles that gained explored chunks since the last flush into the render data folder,
+	 * and sends the ones whose content changed to the backend. Must be called from the main thread; the tiles are
+	 * copied there, then encoded and written asynchronously.
+	 */
+	public void flushFogMasks() {
+		List<FogMaskTile> tiles = new ArrayList<>();
+		for (FogMaskPyramid masks : fogMasks.values()) {
+			tiles.addAll(masks.drainDirtyTiles());
+		}
+		if (tiles.isEmpty()) return;
+		
+		fogMaskWrites = fogMaskWrites.thenRunAsync(() -> writeFogMaskTiles(tiles),
+				task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task)).exceptionally(ex -> {
+					ExploraPlugin.warn("Failed to update fog mask tiles: " + ex.getMessage());
+					return null;
+				});
+	}
+	
+	private void writeFogMaskTiles(List<FogMaskTile> tiles) {
+		List<File> changedFiles = new ArrayList<>();
+		for (FogMaskTile tile : tiles) {
+			File file = Constants.RENDER_DATA_PATH.resolve(tile.getWorldName()).resolve(tile.getFileName()).toFile();
+			try {
+				byte[] png = tile.encodePng();
+				if (TileStore.exists(file) && Arrays.equals(png, TileStore.read(file))) continue;
+				
+				TileStore.write(file, png);
+				changedFiles.add(file);
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to write fog mask " + file.getName() + " for world " + tile.getWorldName() + ": " + e.getMessage());
+			}
+		}
+		if (changedFiles.isEmpty()) return;
+		
+		ExploraPlugin.debug("Updated " + changedFiles.size() + " fog mask tiles.");
+		FileUtil.sendTilesToBackendAsync(changedFiles, null);
 	}
 	
 	/**
@@ -238,62 +539,97 @@ public class ChunkManager {
 	public void sendChunksToDatabase(Runnable onComplete) {
 	    sentChunksToDatabase = false;
 	    
-	    // compute total batch count 
-	    int totalBatches = 0;
-	    Map<World, Set<ChunkCoord>> validChunkSets = new HashMap<>();
-
-	    for (Map.Entry<String, Set<ChunkCoord>> entry : getAllWorldChunks().entrySet()) {
-	        String worldName = entry.getKey();
-	        Set<ChunkCoord> chunks = entry.getValue();
-
-	        if (chunks.isEmpty()) continue;
-
-	        World world = Bukkit.getWorld(worldName);
-	        if (world == null) {
-	            ExploraPlugin.warn("⚠ World not found: " + worldName);
-	            continue;
-	        }
-
-	        int batchSize = Constants.BACKEND_CHUNK_BATCH_SIZE;
-	        int batchCount = (int) Math.ceil(chunks.size() / (double) batchSize);
-
-	        if (batchCount == 0) continue;
-
-	        totalBatches += batchCount;
-	        validChunkSets.put(world, chunks);
-	    }
-	    
-	    if (totalBatches == 0) {
+	    Map<String, List<ChunkCoord>> validChunks = collectValidChunks(getAllWorldChunks());
+	    if (validChunks.isEmpty()) {
 	        sentChunksToDatabase = true;
 	        if (onComplete != null) {
-	            Bukkit.getScheduler().runTask(plugin, onComplete);
+	            plugin.getMainThreadScheduler().runTask(onComplete);
 	        }
 	        return;
 	    }
 
-	    // set total batch count before sending
-	    pendingBatchCount.set(totalBatches);
-	    
-	    if (Constants.DEBUG_MODE) {
-	    	ExploraPlugin.log("&a[HTTP] Sending a total of " + totalBatches + " batches to the backend..");
+	    streamChunks(validChunks, onComplete);
+	}
+	
+	/**
+	 * Reconciles the backend's chunk data with all local chunks, sending only the regions whose hashes differ
+	 * (see {@link ChunkReconciler}). Falls back to clearing the backend and sending every chunk if reconciliation
+	 * is disabled, not supported by the backend, or fails.
+	 * @param onComplete if specified, runs on the main thread once the backend is in sync
+	 */
+	public void reconcileWithDatabase(Runnable onComplete) {
+	    if (!Constants.CHUNK_RECONCILIATION_ENABLED) {
+	        resendAllChunksToDatabase(onComplete);
+	        return;
 	    }
-
-	    // stream all batches
-	    for (Map.Entry<World, Set<ChunkCoord>> entry : validChunkSets.entrySet()) {
-	        World world = entry.getKey();
-	    	Set<ChunkCoord> chunks = entry.getValue();
-	    	List<ChunkCoord> chunkList = new ArrayList<>(chunks);
-	    	
-	        HttpUtil.streamChunkBatches(world, chunkList, Constants.BACKEND_CHUNK_BATCH_SIZE, Constants.BACKEND_CHUNK_BATCH_POST_DELAY_TICKS, () -> {
-	            int remaining = pendingBatchCount.decrementAndGet();
-	            if (remaining <= 0) {
-	                sentChunksToDatabase = true;
-	                if (onComplete != null) {
-	                    Bukkit.getScheduler().runTask(plugin, onComplete);
-	                }
+	    
+	    sentChunksToDatabase = false;
+	    
+	    reconcile(new HttpReconciliationBackend()).whenComplete((ignored, ex) -> {
+	        if (ex == null) {
+	            sentChunksToDatabase = true;
+	            if (onComplete != null) {
+	                plugin.getMainThreadScheduler().runTask(onComplete);
 	            }
-	        });
+	            return;
+	        }
+	        
+	        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+	        if (cause instanceof ReconciliationUnsupportedException) {
+	            ExploraPlugin.log("&eThe backend does not support chunk reconciliation, clearing its chunk data and sending every chunk instead.");
+	        } else {
+	            ExploraPlugin.warn("Chunk reconciliation failed (" + cause.getMessage() + "), clearing backend chunk data and sending every chunk instead.");
+	        }
+	        plugin.getMainThreadScheduler().runTask(() -> resendAllChunksToDatabase(onComplete));
+	    });
+	}
+	
+	/**
+	 * Reconciles a backend with all local chunks of the worlds that are currently loaded. Must be called from the
+	 * main thread.
+	 *
+	 * <p>Regions are replaced from a snapshot of the chunks taken now, so the periodic flush is paused until the
+	 * reconciliation is done, and chunks recorded in the meantime are sent to the backend again once it is.
+	 * @param backend the backend to reconcile with
+	 * @return a future completed once every world has been reconciled
+	 */
+	public CompletableFuture<Void> reconcile(ReconciliationBackend backend) {
+	    boolean remote = !(backend instanceof LocalReconciliationBackend);
+	    if (remote) {
+	        reconciling = true;
+	        exploredWhileReconciling = new HashMap<>();
 	    }
+	    
+	    ChunkReconciler reconciler = new ChunkReconciler(backend, collectValidChunks(getAllWorldChunks()));
+	    lastReconciler = reconciler;
+	    CompletableFuture<Void> result = reconciler.start();
+	    if (!remote) return result;
+	    
+	    return result.whenCompleteAsync((ignored, ex) -> {
+	        Map<String, Set<ChunkCoord>> missed = exploredWhileReconciling;
+	        exploredWhileReconciling = null;
+	        reconciling = false;
+	        
+	        // after a failure, the caller sends every chunk again anyway
+	        if (ex != null || missed.isEmpty()) return;
+	        
+	        Map<String, List<ChunkCoord>> validChunks = collectValidChunks(missed);
+	        if (validChunks.isEmpty()) return;
+	        new ChunkBatchSender(validChunks).start().whenComplete((done, sendEx) -> {
+	            if (sendEx != null) ExploraPlugin.warn("Failed to resend chunks explored during reconciliation: " + sendEx.getMessage());
+	        });
+	    }, plugin.getMainThreadScheduler());
+	}
+	
+	/**
+	 * Clears the backend's chunk data and sends every chunk again.
+	 * @param onComplete if specified, runs when all data is done being sent
+	 */
+	private void resendAllChunksToDatabase(Runnable onComplete) {
+	    HttpUtil.sendDeleteChunksRequest().thenAcceptAsync(response -> {
+	        if (!HttpUtil.isSuccess(response)) return;
+	        sendChunksToDatabase(onComplete);
+	    }, plugin.getMainThreadScheduler());
 	}
 	
 	/**
@@ -303,11 +639,24 @@ public class ChunkManager {
 	public void sendNewChunksToDatabase(Runnable onComplete) {
 	    sentChunksToDatabase = false;
 	    
-	    // compute total batch count 
-	    int totalBatches = 0;
-	    Map<World, Set<ChunkCoord>> validChunkSets = new HashMap<>();
+	    Map<String, List<ChunkCoord>> validChunks = collectValidChunks(getNewlyExploredChunks());
+	    if (validChunks.isEmpty()) {
+	        sentChunksToDatabase = true;
+	        return;
+	    }
+
+	    streamChunks(validChunks, onComplete);
+	}
+	
+	/**
+	 * Copies the non-empty chunk sets of all worlds that are currently loaded.
+	 * @param chunksByWorld the chunks to copy, per world name
+	 * @return the chunks to send, per world name
+	 */
+	private Map<String, List<ChunkCoord>> collectValidChunks(Map<String, Set<ChunkCoord>> chunksByWorld) {
+	    Map<String, List<ChunkCoord>> validChunks = new LinkedHashMap<>();
 
-	    for (Map.Entry<String, Set<ChunkCoord>> entry : getNewlyExploredChunks().entrySet()) {
+	    for (Map.Entry<String, Set<ChunkCoord>> entry : chunksByWorld.entrySet()) {
 	        String worldName = entry.getKey();
 	        Set<ChunkCoord> chunks = entry.getValue();
 
@@ -319,43 +668,30 @@ public class ChunkManager {
 	            continue;
 	        }
 
-	        int batchSize = Constants.BACKEND_CHUNK_BATCH_SIZE;
-	        int batchCount = (int) Math.ceil(chunks.size() / (double) batchSize);
-
-	        if (batchCount == 0) continue;
-
-	        totalBatches += batchCount;
-	        validChunkSets.put(world, chunks);
-	    }
-	    
-	    if (totalBatches == 0) {
-	        sentChunksToDatabase = true;
-	        return;
+	        validChunks.put(worldName, new ArrayList<>(chunks));
 	    }
-
-	    // set total batch count before sending
-	    pendingBatchCount.set(totalBatches);
+	    return validChunks;
+	}
+	
+	/**
+	 * Streams chunks to the backend through a {@link ChunkBatchSender}.
+	 * @param validChunks the chunks to send, per world name
+	 * @param onComplete if specified, runs on the main thread once every batch is delivered or queued
+	 */
+	private void streamChunks(Map<String, List<ChunkCoord>> validChunks, Runnable onComplete) {
+	    ChunkBatchSender sender = new ChunkBatchSender(validChunks);
+	    lastBatchSender = sender;
 	    
 	    if (Constants.DEBUG_MODE) {
-	    	ExploraPlugin.log("&a[HTTP] Sending a total of " + totalBatches + " batches to the backend..");
+	    	ExploraPlugin.log("&a[HTTP] Sending a total of " + sender.getTotalChunks() + " chunks to the backend..");
 	    }
 
-	    // stream all batches
-	    for (Map.Entry<World, Set<ChunkCoord>> entry : validChunkSets.entrySet()) {
-	        World world = entry.getKey();
-	    	Set<ChunkCoord> chunks = entry.getValue();
-	    	List<ChunkCoord> chunkList = new ArrayList<>(chunks);
-	    	
-	        HttpUtil.streamChunkBatches(world, chunkList, Constants.BACKEND_CHUNK_BATCH_SIZE, Constants.BACKEND_CHUNK_BATCH_POST_DELAY_TICKS, () -> {
-	            int remaining = pendingBatchCount.decrementAndGet();
-	            if (remaining <= 0) {
-	                sentChunksToDatabase = true;
-	                if (onComplete != null) {
-	                    Bukkit.getScheduler().runTask(plugin, onComplete);
-	                }
-	            }
-	        });
-	    }
+	    sender.start().whenComplete((ignored, ex) -> {
+	        sentChunksToDatabase = true;
+	        if (onComplete != null) {
+	            plugin.getMainThreadScheduler().runTask(onComplete);
+	        }
+	    });
 	}
 	
 	/**
@@ -379,6 +715,42 @@ public class ChunkManager {
 	    return regionsToRerender;
 	}
 	
+	/**
+	 * Gets the executor that owns the explored chunk indexes: the main thread while exploration is tracked from
+	 * move events, or a background thread while it is sampled ({@code exploration-tracking: sample}).
+	 * 
+	 * @return the exploration thread's executor
+	 */
+	public synchronized Executor getExplorationExecutor() {
+		if (explorationExecutor != null) return explorationExecutor;
+		
+		if (Constants.EXPLORATION_SAMPLING) {
+			explorationThread = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "Explora Exploration");
+				thread.setDaemon(true);
+				return thread;
+			});
+			explorationExecutor = explorationThread;
+		} else {
+			explorationExecutor = plugin.getMainThreadScheduler();
+		}
+		return explorationExecutor;
+	}
+	
+	/**
+	 * Stops the exploration thread, if there is one.
+	 */
+	public synchronized void shutdown() {
+		if (explorationThread != null) explorationThread.shutdownNow();
+	}
+	
+	/**
+	 * @return the number of newly explored chunks recorded since the server started
+	 */
+	public long getRecordedChunkCount() {
+		return chunksRecorded;
+	}
+	
 	public boolean hasSentChunksToDatabase() {
 		return sentChunksToDatabase;
 	}
@@ -394,5 +766,19 @@ public class ChunkManager {
 	public void setSentChunksToDatabase(boolean sent) {
 		this.sentChunksToDatabase = sent;
 	}
+	
+	/**
+	 * @return the sender of the most recent chunk sync, or {@code null} if no sync has run yet
+	 */
+	public ChunkBatchSender getLastBatchSender() {
+		return lastBatchSender;
+	}
+	
+	/**
+	 * @return the most recent chunk reconciliation, or {@code null} if none has run yet
+	 */
+	public ChunkReconciler getLastReconciler() {
+		return lastReconciler;
+	}
 
 }
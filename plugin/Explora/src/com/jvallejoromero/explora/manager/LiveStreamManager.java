@@ -0,0 +1,208 @@
+package com.jvallejoromero.explora.manager;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.HttpUtil;
+import com.jvallejoromero.explora.util.PlayerStatus;
+import com.jvallejoromero.explora.util.ServerStatus;
+import com.jvallejoromero.explora.util.stream.FrameWriter;
+import com.jvallejoromero.explora.util.stream.LiveFrame;
+import com.jvallejoromero.explora.util.stream.PlayerPositionStream;
+import com.jvallejoromero.explora.util.stream.ServerStatusStream;
+import com.jvallejoromero.explora.util.stream.SocketIoClient;
+
+/**
+ * Streams live updates to the backend over one persistent Socket.IO connection (namespace {@value #NAMESPACE}),
+ * instead of a separate HTTP request per update.
+ *
+ * <p>Each update is a binary {@link LiveFrame} emitted as a {@code live} event. Player positions are sampled every
+ * {@code player-stream-sample-ticks} and sent at a per-player rate that follows their movement (see
+ * {@link PlayerPositionStream}). Keyframes with every online player are sent every
+ * {@code live-stream-keyframe-seconds}, after every (re)connect, and whenever the backend asks for one
+ * ({@code requestKeyframe}), e.g. after it restarted.
+ *
+ * <p>Server status snapshots are queued with {@link #queueStatus(ServerStatus)} and go out in the next frame,
+ * next to the player positions, containing only the fields that changed (see {@link ServerStatusStream}). While
+ * the stream is connected, the backend considers the server online without any status updates.
+ *
+ * <p>The backend reports which worlds are being viewed on the map ({@code interest}, e.g.
+ * {@code {"worlds": {"world": 2}}}). Players in worlds nobody is viewing are only sent as heartbeats; when a world
+ * gains a viewer a keyframe is sent so it starts out up to date. Until the first report, every world counts as
+ * viewed.
+ *
+ * <p>While the stream is not connected (or the backend does not support it), {@link #publish(Collection)} and
+ * {@link #queueStatus(ServerStatus)} return {@code false} and callers fall back to HTTP.
+ */
+public class LiveStreamManager {
+
+	private static final String NAMESPACE = "/plugin";
+
+	private final SocketIoClient socket;
+	private final PlayerPositionStream players = new PlayerPositionStream();
+	private final ServerStatusStream status = new ServerStatusStream();
+	private ServerStatus queuedStatus;
+	private final AtomicBoolean keyframeRequested = new AtomicBoolean(true);
+	private volatile Set<String> watchedWorlds = null;
+
+	private int sequence = 0;
+	private long lastKeyframeMillis = 0;
+
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong keyframesSent = new AtomicLong();
+	private final AtomicLong updatesSkipped = new AtomicLong();
+
+	public LiveStreamManager() {
+		JsonObject auth = new JsonObject();
+		auth.addProperty("key", Constants.BACKEND_API_KEY);
+		this.socket = new SocketIoClient(URI.create(HttpUtil.getSocketUrl()), NAMESPACE, auth);
+	}
+
+	/**
+	 * Starts connecting to the backend in the background.
+	 */
+	public void init() {
+		if (!Constants.LIVE_STREAM_ENABLED) return;
+
+		socket.onConnect(() -> keyframeRequested.set(true));
+		socket.on("requestKeyframe", args -> {
+			ExploraPlugin.debug("[Stream] Backend requested a keyframe");
+			keyframeRequested.set(true);
+		});
+		socket.on("interest", args -> updateInterest(args.size() > 0 ? args.get(0) : null));
+		socket.connect();
+	}
+
+	/**
+	 * Applies the viewer counts reported by the backend.
+	 */
+	private void updateInterest(JsonElement report) {
+		if (report == null || !report.isJsonObject() || !report.getAsJsonObject().has("worlds")) return;
+
+		Set<String> worlds = new HashSet<>();
+		for (Map.Entry<String, JsonElement> entry : report.getAsJsonObject().getAsJsonObject("worlds").entrySet()) {
+			if (entry.getValue().getAsInt() > 0) worlds.add(entry.getKey());
+		}
+
+		Set<String> previous = watchedWorlds;
+		watchedWorlds = worlds;
+		if (previous != null && !previous.containsAll(worlds)) keyframeRequested.set(true);
+		ExploraPlugin.debug("[Stream] Worlds being viewed: " + worlds);
+	}
+
+	/**
+	 * @param world a world name
+	 * @return whether anyone is viewing the world on the map, as far as known
+	 */
+	public boolean isWatched(String world) {
+		Set<String> worlds = watchedWorlds;
+		return worlds == null || worlds.contains(world);
+	}
+
+	public void shutdown() {
+		socket.close();
+	}
+
+	/**
+	 * @return whether updates can currently be streamed
+	 */
+	public boolean isConnected() {
+		return Constants.LIVE_STREAM_ENABLED && socket.isConnected();
+	}
+
+	/**
+	 * Queues a server status snapshot to be sent with the next frame, replacing any snapshot still queued.
+	 * Must be called from the main thread.
+	 *
+	 * @param snapshot the current server status
+	 * @return {@code false} if the stream is not connected and the status should be sent another way
+	 */
+	public boolean queueStatus(ServerStatus snapshot) {
+		if (!isConnected()) return false;
+		queuedStatus = snapshot;
+		return true;
+	}
+
+	/**
+	 * Samples the positions of all online players and streams the ones that need an update, together with the
+	 * queued server status. Must be called from the main thread.
+	 *
+	 * @param statuses every online player
+	 * @return {@code false} if the update could not be streamed and should be sent another way
+	 */
+	public boolean publish(Collection<PlayerStatus> statuses) {
+		if (!isConnected()) return false;
+
+		long now = System.currentTimeMillis();
+		boolean keyframe = keyframeRequested.getAndSet(false) || now - lastKeyframeMillis >= Constants.LIVE_STREAM_KEYFRAME_MILLIS;
+
+		LiveFrame frame = new LiveFrame(sequence, keyframe);
+		FrameWriter playerSection = players.encode(statuses, keyframe, now, this::isWatched);
+		if (playerSection != null) frame.addSection(LiveFrame.SECTION_PLAYERS, playerSection);
+
+		if (keyframe && queuedStatus == null) queuedStatus = ServerStatus.capture();
+		if (queuedStatus != null) {
+			FrameWriter statusSection = status.encode(queuedStatus, keyframe, now);
+			if (statusSection != null) frame.addSection(LiveFrame.SECTION_STATUS, statusSection);
+			queuedStatus = null;
+		}
+
+		if (frame.isEmpty()) {
+			updatesSkipped.incrementAndGet();
+			return true;
+		}
+
+		if (!socket.emitBinary("live", frame.toByteArray())) {
+			// the tracked positions already count this frame as sent, so resync with a keyframe
+			keyframeRequested.set(true);
+			return false;
+		}
+
+		sequence++;
+		framesSent.incrementAndGet();
+		if (keyframe) {
+			lastKeyframeMillis = now;
+			keyframesSent.incrementAndGet();
+		}
+		return true;
+	}
+
+	public long getFramesSent() {
+		return framesSent.get();
+	}
+
+	public long getKeyframesSent() {
+		return keyframesSent.get();
+	}
+
+	/**
+	 * @return the number of samples for which no player needed an update, so no frame was sent
+	 */
+	public long getUpdatesSkipped() {
+		return updatesSkipped.get();
+	}
+
+	/**
+	 * @return the number of player updates postponed because the update budget was used up
+	 */
+	public long getUpdatesDeferred() {
+		return players.getRecordsDeferred();
+	}
+
+	public long getBytesSent() {
+		return socket.getBytesSent();
+	}
+
+	public int getPendingSends() {
+		return socket.getPendingSends();
+	}
+}
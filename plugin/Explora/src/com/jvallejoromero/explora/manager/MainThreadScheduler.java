@@ -0,0 +1,343 @@
+package com.jvallejoromero.explora.manager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.Constants;
+
+/**
+ * Runs all of the plugin's main-thread work from a single per-tick drain loop with a strict time budget.
+ *
+ * <p>Instead of scheduling one Bukkit task per callback, work is queued here by priority and drained once per
+ * tick until {@code main-thread-budget-micros} is used up. Anything that does not fit into the budget is
+ * deferred to the next tick, so bursts (e.g. thousands of batch completions during a full resync) are spread
+ * out instead of landing in a single tick. The first task of a tick always runs, so the queue cannot stall.
+ *
+ * <p>Supported work:
+ * <ul>
+ *   <li>One-off tasks via {@link #runTask(Runnable, Priority)}</li>
+ *   <li>Delayed tasks via {@link #runTaskLater(Runnable, Priority, long)}</li>
+ *   <li>Repeating tasks via {@link #runTaskTimer(Runnable, Priority, long)}; a repeating task that is still
+ *       waiting in the queue is not queued again</li>
+ * </ul>
+ *
+ * <p>The scheduler is also an {@link Executor}, so {@link java.util.concurrent.CompletableFuture} stages can be
+ * moved onto the main thread with e.g. {@code future.thenRunAsync(task, scheduler)}.
+ *
+ * <p>Once {@link #shutdown()} has been called, work that was still queued is run right away and anything
+ * submitted afterwards runs inline on the calling thread, so callbacks and futures routed through the scheduler
+ * still complete while the plugin is disabling.
+ *
+ * <p>All submit methods are thread-safe. The time spent per tick is published through
+ * {@link #getLastTickMicros()}, {@link #getAverageTickMicros()} and {@link #getTickShare()}.
+ */
+public class MainThreadScheduler implements Executor {
+
+	/**
+	 * Order in which queued work is drained within a tick.
+	 */
+	public enum Priority {
+		HIGH,
+		NORMAL,
+		LOW
+	}
+
+	private static final double TICK_MICROS = 50_000.0;
+	private static final double SMOOTHING = 0.05;
+
+	private final ExploraPlugin plugin;
+	private final List<Queue<Runnable>> queues;
+	private final List<ScheduledWork> scheduled = new ArrayList<>();
+	private final AtomicInteger queuedCount = new AtomicInteger();
+	private final AtomicLong executedTotal = new AtomicLong();
+
+	private BukkitTask drainTask;
+	private volatile boolean shutdown = false;
+	// advanced on the main thread, read by threads scheduling delayed work
+	private volatile long currentTick = 0;
+	private long tickDeadline = 0;
+
+	private volatile long lastTickMicros = 0;
+	private volatile double averageTickMicros = 0.0;
+	private volatile long deferredTicks = 0;
+
+	public MainThreadScheduler(ExploraPlugin plugin) {
+		this.plugin = plugin;
+		this.queues = new ArrayList<>(Priority.values().length);
+		for (int i = 0; i < Priority.values().length; i++) {
+			queues.add(new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	/**
+	 * Starts draining the queues once per tick.
+	 */
+	public void start() {
+		if (drainTask != null) return;
+		drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+	}
+
+	/**
+	 * Stops the per-tick drain and runs all queued work synchronously. Delayed one-off tasks are run as well,
+	 * repeating tasks are dropped. Work submitted after this call runs inline on the calling thread.
+	 */
+	public void shutdown() {
+		if (drainTask != null) {
+			drainTask.cancel();
+			drainTask = null;
+		}
+		shutdown = true;
+
+		List<ScheduledWork> delayed = new ArrayList<>();
+		synchronized (scheduled) {
+			for (ScheduledWork work : scheduled) {
+				if (work.periodTicks <= 0 && !work.cancelled) delayed.add(work);
+				work.cancelled = true;
+			}
+			scheduled.clear();
+		}
+
+		runQueued();
+		for (ScheduledWork work : delayed) {
+			runSafely(work.task);
+		}
+	}
+
+	/**
+	 * Queues a task to run on the main thread with {@link Priority#NORMAL} priority.
+	 *
+	 * @param task the task to run
+	 */
+	public void runTask(Runnable task) {
+		runTask(task, Priority.NORMAL);
+	}
+
+	/**
+	 * Queues a task to run on the main thread during the next tick that has budget left.
+	 *
+	 * @param task the task to run
+	 * @param priority the priority to drain the task with
+	 */
+	public void runTask(Runnable task, Priority priority) {
+		if (task == null) return;
+		if (shutdown) {
+			runSafely(task);
+			return;
+		}
+		queues.get(priority.ordinal()).add(task);
+		queuedCount.incrementAndGet();
+
+		// shutdown may have drained the queues between the check above and the add
+		if (shutdown) runQueued();
+	}
+
+	/**
+	 * Queues a task to run on the main thread with {@link Priority#NORMAL} priority.
+	 *
+	 * @param task the task to run
+	 */
+	@Override
+	public void execute(Runnable task) {
+		runTask(task, Priority.NORMAL);
+	}
+
+	/**
+	 * Queues a task to run on the main thread once the given number of ticks has passed.
+	 *
+	 * @param task the task to run
+	 * @param priority the priority to drain the task with
+	 * @param delayTicks how many ticks to wait before queueing the task; ignored after {@link #shutdown()}
+	 */
+	public void runTaskLater(Runnable task, Priority priority, long delayTicks) {
+		if (task == null) return;
+		if (shutdown) {
+			runSafely(task);
+			return;
+		}
+		synchronized (scheduled) {
+			scheduled.add(new ScheduledWork(task, priority, currentTick + Math.max(1, delayTicks), 0));
+		}
+	}
+
+	/**
+	 * Queues a task to run on the main thread every {@code periodTicks} ticks.
+	 *
+	 * @param task the task to run
+	 * @param priority the priority to drain the task with
+	 * @param periodTicks how many ticks to wait between runs
+	 * @return a handle that can be used to cancel the task; already cancelled after {@link #shutdown()}
+	 */
+	public ScheduledWork runTaskTimer(Runnable task, Priority priority, long periodTicks) {
+		ScheduledWork work = new ScheduledWork(task, priority, currentTick + Math.max(1, periodTicks), Math.max(1, periodTicks));
+		if (shutdown) {
+			work.cancel();
+			return work;
+		}
+		synchronized (scheduled) {
+			scheduled.add(work);
+		}
+		return work;
+	}
+
+	/**
+	 * Runs queued work until the tick budget is used up. Called once per tick on the main thread.
+	 */
+	private void drain() {
+		long start = System.nanoTime();
+		tickDeadline = start + Constants.MAIN_THREAD_BUDGET_MICROS * 1000L;
+		currentTick++;
+
+		queueDueWork();
+
+		boolean first = true;
+		while (first || System.nanoTime() < tickDeadline) {
+			Runnable task = poll();
+			if (task == null) break;
+
+			runSafely(task);
+			first = false;
+		}
+
+		if (queuedCount.get() > 0) deferredTicks++;
+
+		long elapsedMicros = (System.nanoTime() - start) / 1000L;
+		lastTickMicros = elapsedMicros;
+		averageTickMicros = averageTickMicros + SMOOTHING * (elapsedMicros - averageTickMicros);
+	}
+
+	/**
+	 * Moves delayed and repeating work that is due this tick into the priority queues.
+	 */
+	private void queueDueWork() {
+		synchronized (scheduled) {
+			Iterator<ScheduledWork> it = scheduled.iterator();
+			while (it.hasNext()) {
+				ScheduledWork work = it.next();
+
+				if (work.cancelled) {
+					it.remove();
+					continue;
+				}
+				if (work.nextTick > currentTick) continue;
+
+				if (work.periodTicks <= 0) {
+					it.remove();
+					runTask(work.task, work.priority);
+					continue;
+				}
+
+				work.nextTick = currentTick + work.periodTicks;
+				if (!work.pending) {
+					work.pending = true;
+					runTask(work::runRepeating, work.priority);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs everything left in the queues, ignoring the tick budget. Used once the scheduler has been shut down.
+	 */
+	private void runQueued() {
+		Runnable task;
+		while ((task = poll()) != null) {
+			runSafely(task);
+		}
+	}
+
+	private Runnable poll() {
+		for (Queue<Runnable> queue : queues) {
+			Runnable task = queue.poll();
+			if (task != null) {
+				queuedCount.decrementAndGet();
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private void runSafely(Runnable task) {
+		try {
+			task.run();
+		} catch (Exception ex) {
+			ExploraPlugin.warn("Main thread task failed: " + ex.getMessage());
+			ex.printStackTrace();
+		}
+		executedTotal.incrementAndGet();
+	}
+
+	/**
+	 * @return how many nanoseconds are left of the current tick's budget; only meaningful while draining
+	 */
+	public long getRemainingBudgetNanos() {
+		return Math.max(0, tickDeadline - System.nanoTime());
+	}
+
+	public long getLastTickMicros() {
+		return lastTickMicros;
+	}
+
+	public double getAverageTickMicros() {
+		return averageTickMicros;
+	}
+
+	/**
+	 * @return the smoothed share of a 50ms tick spent running Explora's main-thread work, in percent
+	 */
+	public double getTickShare() {
+		return averageTickMicros / TICK_MICROS * 100.0;
+	}
+
+	public int getQueuedCount() {
+		return queuedCount.get();
+	}
+
+	public long getExecutedTotal() {
+		return executedTotal.get();
+	}
+
+	public long getDeferredTicks() {
+		return deferredTicks;
+	}
+
+	/**
+	 * Delayed or repeating work registered with the scheduler.
+	 */
+	public static final class ScheduledWork {
+		private final Runnable task;
+		private final Priority priority;
+		private final long periodTicks;
+		private long nextTick;
+		private volatile boolean pending;
+		private volatile boolean cancelled;
+
+		private ScheduledWork(Runnable task, Priority priority, long nextTick, long periodTicks) {
+			this.task = task;
+			this.priority = priority;
+			this.nextTick = nextTick;
+			this.periodTicks = periodTicks;
+		}
+
+		private void runRepeating() {
+			pending = false;
+			if (!cancelled) task.run();
+		}
+
+		/**
+		 * Stops this work from being queued again.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+}
@@ -0,0 +1,848 @@
+package com.jvallejoromero.explora.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.ChunkBatchEncoder;
+import com.jvallejoromero.explora.util.ChunkBatchEncoder.DecodedBatch;
+import com.jvallejoromero.explora.util.ChunkCoord;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.HttpUtil;
+import com.jvallejoromero.explora.util.TileZipStream;
+
+/**
+ * A durable on-disk outbox for backend updates that must not be lost while the backend is unreachable.
+ *
+ * <p>Chunk batches and tile uploads are submitted through {@link #submitChunkBatch(String, List)} and
+ * {@link #submitTileZip(TileZipStream, boolean)}. While the outbox is empty and the backend is healthy they are sent
+ * directly. Chunk batches and JSON posts are independent of each other and go out concurrently. Tile uploads can
+ * overwrite each other's tiles, so they go out one at a time: a tile upload submitted while another is in flight
+ * waits in memory behind it, and the backend receives tile uploads in the order they were submitted. If sending
+ * fails with a retryable error (connection failure, timeout, {@code 408}, {@code 429} or {@code 5xx}), or if older
+ * updates are still queued, the update (and every tile upload waiting behind it) is appended to an append-only log
+ * instead:
+ * <ul>
+ *   <li>{@code outbox.log} - one JSON entry per line; chunk batches are stored delta-encoded
+ *       (see {@link ChunkBatchEncoder}) and tile ZIPs next to the log as {@code tiles-<id>.zip}</li>
+ *   <li>{@code outbox.cursor} - byte offset of the first entry that has not been delivered yet</li>
+ * </ul>
+ *
+ * <p>Queued entries are replayed one at a time, in the order they were queued. Every update carries the order it
+ * was submitted in; a queued upload that replaces all tiles ({@code deleteExisting}) is dropped instead of replayed
+ * if a newer tile upload has already been delivered, so it cannot wipe tiles uploaded after it. Tile ZIPs are
+ * written next to the log without holding the outbox's lock. Failures back off exponentially
+ * (with jitter) from {@code outbox-retry-base-millis} up to {@code outbox-retry-max-millis}. After
+ * {@code outbox-circuit-failure-threshold} consecutive failures the circuit opens: new updates go straight to the
+ * log, and only a single probe is sent once the backoff has passed. A successful probe closes the circuit and
+ * the rest of the log is replayed.
+ *
+ * <p>Only the entry being replayed is held in memory. The log is compacted once everything before the cursor
+ * has been delivered, and stops accepting entries once it holds {@code outbox-max-megabytes}.
+ */
+public class OutboxManager {
+
+	/**
+	 * State of the circuit breaker guarding the backend.
+	 */
+	public enum CircuitState {
+		/** The backend is healthy; updates are sent directly when nothing is queued. */
+		CLOSED,
+		/** The backend is failing; updates are queued and nothing is sent until the backoff has passed. */
+		OPEN,
+		/** The backoff has passed and a single probe is being sent. */
+		HALF_OPEN
+	}
+
+	private enum Outcome {
+		DELIVERED,
+		RETRY,
+		REJECTED
+	}
+
+	private static final String TYPE_JSON = "json";
+	private static final String TYPE_CHUNK_BATCH = "chunk-batch";
+	private static final String TYPE_TILE_ZIP = "tile-zip";
+	private static final long COMPACT_THRESHOLD_BYTES = 8L * 1024 * 1024;
+
+	private final ExploraPlugin plugin;
+	private final Path folder;
+	private final Path logFile;
+	private final Path cursorFile;
+
+	private BukkitTask replayTask;
+
+	private long cursor = 0;
+	private long logSize = 0;
+	private long storedBytes = 0;
+	private long nextId = 1;
+	private int depth = 0;
+	private long oldestCreated = 0;
+
+	private CircuitState circuitState = CircuitState.CLOSED;
+	private int consecutiveFailures = 0;
+	private long nextAttemptMillis = 0;
+	private boolean replaying = false;
+
+	// tile uploads waiting behind the one being sent or queued
+	private final ArrayDeque<Pending> waitingTiles = new ArrayDeque<>();
+	private boolean sendingTile = false;
+	private long lastOrder = 0;
+	private long deliveredTileOrder = 0;
+
+	private long deliveredTotal = 0;
+	private long queuedTotal = 0;
+	private long droppedTotal = 0;
+
+	public OutboxManager(ExploraPlugin plugin) {
+		this.plugin = plugin;
+		this.folder = Constants.OUTBOX_PATH;
+		this.logFile = folder.resolve("outbox.log");
+		this.cursorFile = folder.resolve("outbox.cursor");
+	}
+
+	/**
+	 * Loads the outbox from disk and starts replaying queued entries.
+	 */
+	public synchronized void init() {
+		if (!Constants.OUTBOX_ENABLED) return;
+
+		try {
+			Files.createDirectories(folder);
+			if (Files.exists(cursorFile)) {
+				cursor = Long.parseLong(Files.readString(cursorFile).trim());
+			}
+			repairLog();
+			scanLog();
+			deleteSpoolFiles();
+		} catch (IOException | NumberFormatException ex) {
+			ExploraPlugin.warn("Failed to load backend outbox, starting with an empty one: " + ex.getMessage());
+			resetLog();
+		}
+
+		if (depth > 0) {
+			ExploraPlugin.log("&eBackend outbox has " + depth + " queued updates, replaying..");
+		}
+
+		replayTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::replayNext, 20L, 20L);
+	}
+
+	/**
+	 * Stops replaying and queues the tile uploads still waiting to be sent. Queued entries stay on disk and are
+	 * replayed on the next start.
+	 */
+	public void shutdown() {
+		List<Pending> waiting;
+		synchronized (this) {
+			if (replayTask != null) {
+				replayTask.cancel();
+				replayTask = null;
+			}
+			waiting = new ArrayList<>(waitingTiles);
+			waitingTiles.clear();
+		}
+		for (Pending update : waiting) {
+			queue(update);
+		}
+	}
+
+	/**
+	 * Sends a JSON {@code POST} to the backend, or queues it in the outbox if that is not possible right now.
+	 *
+	 * @param targetUrl the endpoint to send the request to
+	 * @param json the JSON-encoded request body
+	 * @return a future completed with {@code true} if the update was delivered, or {@code false} if it was
+	 *         queued for a later retry (or dropped); never completed exceptionally
+	 */
+	public CompletableFuture<Boolean> submitJson(String targetUrl, String json) {
+		return submit(classified(() -> HttpUtil.postJson(targetUrl, json)), order -> appendJson(targetUrl, json, order), false);
+	}
+
+	/**
+	 * Sends a chunk batch to the backend, or queues it in the outbox if that is not possible right now.
+	 * Queued batches are stored delta-encoded and re-encoded in the negotiated wire format when replayed.
+	 *
+	 * @param world the world the chunks belong to
+	 * @param chunks the chunks to send
+	 * @return a future completed with {@code true} if the batch was delivered, or {@code false} if it was
+	 *         queued for a later retry (or dropped); never completed exceptionally
+	 */
+	public CompletableFuture<Boolean> submitChunkBatch(String world, List<ChunkCoord> chunks) {
+		return submitChunkBatch(world, chunks, null);
+	}
+
+	/**
+	 * Same as {@link #submitChunkBatch(String, List)}, reporting when the batch's request is actually sent.
+	 *
+	 * @param onSend run right before the request is sent (see {@link HttpUtil#postChunkBatch(String, List, Runnable)}),
+	 *        not at all if the batch is queued; may be {@code null}
+	 */
+	public CompletableFuture<Boolean> submitChunkBatch(String world, List<ChunkCoord> chunks, Runnable onSend) {
+		return submit(classified(() -> HttpUtil.postChunkBatch(world, chunks, onSend)), order -> appendChunkBatch(world, chunks, order), false);
+	}
+
+	/**
+	 * Uploads a tile archive to the backend, or queues it in the outbox if that is not possible right now.
+	 * The archive is streamed in both cases: to the backend, or to a ZIP file next to the log.
+	 *
+	 * @param zip the archive to send
+	 * @param deleteExisting if {@code true}, tells the backend to delete previously uploaded data before saving
+	 * @return a future completed with {@code true} if the upload was delivered, or {@code false} if it was
+	 *         queued for a later retry (or dropped); never completed exceptionally
+	 */
+	public CompletableFuture<Boolean> submitTileZip(TileZipStream zip, boolean deleteExisting) {
+		return submit(classified(() -> HttpUtil.uploadTileZip(zip, deleteExisting)), order -> appendTileZip(zip, deleteExisting, order), true);
+	}
+
+	/**
+	 * Runs a tile upload that does not go through the outbox, e.g. a {@link com.jvallejoromero.explora.util.ShardedTileUpload},
+	 * in submission order with the other tile uploads. If it does not deliver the tiles, the same tiles are sent as
+	 * a single archive in its place, and queued if that is not possible right now. While the outbox has queued
+	 * entries the upload is not started and the archive is queued straight away.
+	 *
+	 * @param upload starts the upload; completed with whether the tiles were delivered
+	 * @param fallback the same tiles as a single archive
+	 * @return a future completed with {@code true} if the tiles were delivered, or {@code false} if they were
+	 *         queued for a later retry (or dropped); never completed exceptionally
+	 */
+	public CompletableFuture<Boolean> submitTileUpload(Supplier<CompletableFuture<Boolean>> upload, TileZipStream fallback) {
+		Supplier<CompletableFuture<Outcome>> sendFallback = classified(() -> HttpUtil.uploadTileZip(fallback, false));
+		Supplier<CompletableFuture<Outcome>> sender = () -> upload.get()
+				.exceptionally(ex -> false)
+				.thenCompose(delivered -> delivered ? CompletableFuture.completedFuture(Outcome.DELIVERED) : sendFallback.get());
+		return submit(sender, order -> appendTileZip(fallback, false, order), true);
+	}
+
+	/**
+	 * Wraps an HTTP request so it reports what to do with its response.
+	 */
+	private Supplier<CompletableFuture<Outcome>> classified(Supplier<CompletableFuture<HttpResponse<String>>> request) {
+		return () -> request.get().handle(this::classify);
+	}
+
+	/**
+	 * Sends an update directly if nothing is queued and the circuit is closed, tile uploads after the ones submitted
+	 * before them; otherwise, or if sending fails with a retryable error, queues it.
+	 *
+	 * @param sender sends the update
+	 * @param enqueue appends the update to the log, given its submission order; called without holding this outbox's lock
+	 * @param tile whether the update is a tile upload, which is sent in submission order
+	 * @return a future completed with whether the update was delivered
+	 */
+	private CompletableFuture<Boolean> submit(Supplier<CompletableFuture<Outcome>> sender, LongConsumer enqueue, boolean tile) {
+		if (!Constants.OUTBOX_ENABLED) {
+			return sender.get().thenApply(outcome -> outcome == Outcome.DELIVERED);
+		}
+
+		Pending update;
+		boolean direct;
+		synchronized (this) {
+			lastOrder = Math.max(System.currentTimeMillis() * 1000, lastOrder + 1);
+			update = new Pending(sender, enqueue, lastOrder, tile);
+
+			if (tile) {
+				if (sendingTile) {
+					waitingTiles.add(update);
+					return update.result;
+				}
+				sendingTile = true;
+			}
+			direct = depth == 0 && circuitState == CircuitState.CLOSED;
+		}
+
+		if (direct) {
+			sendDirectly(update);
+		} else {
+			queue(update);
+			if (tile) nextTile();
+		}
+		return update.result;
+	}
+
+	/**
+	 * Sends an update. If it cannot be delivered right now, it is queued; a tile upload then lets the next waiting
+	 * one go.
+	 */
+	private void sendDirectly(Pending update) {
+		update.sender.get().exceptionally(ex -> Outcome.RETRY).thenAccept(outcome -> {
+			synchronized (this) {
+				if (outcome == Outcome.DELIVERED) {
+					recordSuccess();
+					if (update.tile) deliveredTileOrder = Math.max(deliveredTileOrder, update.order);
+				} else if (outcome == Outcome.RETRY) {
+					recordFailure();
+				} else {
+					droppedTotal++;
+				}
+			}
+
+			if (outcome == Outcome.RETRY) {
+				queue(update);
+			} else {
+				update.result.complete(outcome == Outcome.DELIVERED);
+			}
+			if (update.tile) nextTile();
+		});
+	}
+
+	/**
+	 * Sends the next waiting tile upload, or queues the waiting ones in submission order while the outbox has
+	 * queued entries. Only called by the thread that owns the tile lane ({@code sendingTile}).
+	 */
+	private void nextTile() {
+		while (true) {
+			Pending next;
+			boolean direct;
+			synchronized (this) {
+				next = waitingTiles.poll();
+				if (next == null) {
+					sendingTile = false;
+					return;
+				}
+				direct = depth == 0 && circuitState == CircuitState.CLOSED;
+			}
+
+			if (direct) {
+				sendDirectly(next);
+				return;
+			}
+			queue(next);
+		}
+	}
+
+	/**
+	 * Appends an update to the log and completes it as not delivered.
+	 */
+	private void queue(Pending update) {
+		update.enqueue.accept(update.order);
+		update.result.complete(false);
+	}
+
+	/**
+	 * Replays the oldest queued entry if the backoff allows it. Runs periodically on an async thread, and
+	 * again right after each successful replay so a recovered backend drains the log quickly.
+	 */
+	private void replayNext() {
+		Entry head;
+
+		synchronized (this) {
+			if (replaying || depth == 0 || System.currentTimeMillis() < nextAttemptMillis) return;
+
+			head = readEntry(cursor);
+			if (head == null) {
+				ExploraPlugin.warn("Backend outbox is unreadable past offset " + cursor + ", discarding " + depth + " entries.");
+				droppedTotal += depth;
+				resetLog();
+				return;
+			}
+
+			if (isStaleReplacement(head)) {
+				droppedTotal++;
+				ExploraPlugin.warn("Dropping queued tile upload #" + head.id + ": it replaces all tiles, and newer updates were already delivered.");
+				acknowledge(head);
+				if (replayTask != null) Bukkit.getScheduler().runTaskAsynchronously(plugin, this::replayNext);
+				return;
+			}
+
+			if (circuitState == CircuitState.OPEN) circuitState = CircuitState.HALF_OPEN;
+			replaying = true;
+		}
+
+		send(head).handle((response, ex) -> {
+			Outcome outcome = classify(response, ex);
+
+			synchronized (this) {
+				replaying = false;
+
+				if (outcome == Outcome.RETRY) {
+					recordFailure();
+					return null;
+				}
+
+				if (outcome == Outcome.DELIVERED) {
+					deliveredTotal++;
+					recordSuccess();
+					if (isTileUpload(head)) deliveredTileOrder = Math.max(deliveredTileOrder, head.order);
+				} else {
+					droppedTotal++;
+					ExploraPlugin.warn("Backend rejected queued update #" + head.id + (response != null ? " (" + response.statusCode() + ")" : "") + ", dropping it.");
+				}
+				acknowledge(head);
+
+				if (depth == 0) {
+					ExploraPlugin.log("&aBackend outbox drained.");
+				}
+			}
+
+			if (replayTask != null) {
+				Bukkit.getScheduler().runTaskAsynchronously(plugin, this::replayNext);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Sends a queued entry to the backend.
+	 *
+	 * @param entry the entry to send
+	 * @return the pending response; completed with {@code null} if the entry cannot be sent at all
+	 */
+	private CompletableFuture<HttpResponse<String>> send(Entry entry) {
+		JsonObject json = entry.json;
+		String type = json.has("type") ? json.get("type").getAsString() : "";
+
+		if (TYPE_JSON.equals(type)) {
+			return HttpUtil.postJson(json.get("url").getAsString(), json.get("body").getAsString());
+		}
+		if (TYPE_CHUNK_BATCH.equals(type)) {
+			DecodedBatch batch = ChunkBatchEncoder.decodeDelta(Base64.getDecoder().decode(json.get("data").getAsString()));
+			return HttpUtil.postChunkBatch(batch.getWorld(), batch.getChunks());
+		}
+		if (TYPE_TILE_ZIP.equals(type)) {
+			File zipFile = folder.resolve(json.get("file").getAsString()).toFile();
+			if (zipFile.exists()) {
+				return HttpUtil.uploadZipToBackendAsync(zipFile, json.get("deleteExisting").getAsBoolean());
+			}
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * @return whether the entry is an upload that deletes all tiles first, submitted before a tile upload that has
+	 *         already been delivered
+	 */
+	private boolean isStaleReplacement(Entry entry) {
+		return entry.json.has("deleteExisting") && entry.json.get("deleteExisting").getAsBoolean() && entry.order < deliveredTileOrder;
+	}
+
+	private boolean isTileUpload(Entry entry) {
+		return entry.json.has("type") && TYPE_TILE_ZIP.equals(entry.json.get("type").getAsString());
+	}
+
+	/**
+	 * Decides what to do with a response: delivered, worth retrying, or permanently rejected.
+	 */
+	private Outcome classify(HttpResponse<String> response, Throwable ex) {
+		if (ex != null) return Outcome.RETRY;
+		if (response == null) return Outcome.REJECTED;
+		if (HttpUtil.isSuccess(response)) return Outcome.DELIVERED;
+
+		int status = response.statusCode();
+		if (status == 408 || status == 429 || status >= 500) return Outcome.RETRY;
+		return Outcome.REJECTED;
+	}
+
+	private void recordSuccess() {
+		if (circuitState != CircuitState.CLOSED) {
+			ExploraPlugin.log("&aBackend is reachable again, closing outbox circuit.");
+		}
+		circuitState = CircuitState.CLOSED;
+		consecutiveFailures = 0;
+		nextAttemptMillis = 0;
+	}
+
+	private void recordFailure() {
+		consecutiveFailures++;
+
+		long backoff = Constants.OUTBOX_RETRY_BASE_MILLIS << Math.min(consecutiveFailures - 1, 20);
+		backoff = Math.min(backoff, Constants.OUTBOX_RETRY_MAX_MILLIS);
+		backoff = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		nextAttemptMillis = System.currentTimeMillis() + backoff;
+
+		if (circuitState == CircuitState.HALF_OPEN
+				|| (circuitState == CircuitState.CLOSED && consecutiveFailures >= Constants.OUTBOX_CIRCUIT_FAILURE_THRESHOLD)) {
+			if (circuitState == CircuitState.CLOSED) {
+				ExploraPlugin.warn("Backend unreachable after " + consecutiveFailures + " attempts, queueing updates in the outbox.");
+			}
+			circuitState = CircuitState.OPEN;
+		}
+	}
+
+	private synchronized void appendJson(String targetUrl, String json, long order) {
+		JsonObject entry = newEntry(TYPE_JSON, order);
+		entry.addProperty("url", targetUrl);
+		entry.addProperty("body", json);
+		append(entry, 0);
+	}
+
+	private void appendChunkBatch(String world, List<ChunkCoord> chunks, long order) {
+		String data = Base64.getEncoder().encodeToString(ChunkBatchEncoder.encodeDelta(world, chunks));
+		synchronized (this) {
+			JsonObject entry = newEntry(TYPE_CHUNK_BATCH, order);
+			entry.addProperty("data", data);
+			append(entry, 0);
+		}
+	}
+
+	/**
+	 * Writes the archive to a spool file first, without holding the lock, then moves it into place and appends its
+	 * entry under the lock.
+	 */
+	private void appendTileZip(TileZipStream zip, boolean deleteExisting, long order) {
+		Path spoolFile = folder.resolve("tiles-" + order + ".zip.tmp");
+		long size;
+
+		try {
+			Files.createDirectories(folder);
+			size = zip.writeTo(spoolFile);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to queue tile upload in the backend outbox: " + ex.getMessage());
+			synchronized (this) {
+				droppedTotal++;
+			}
+			deleteQuietly(spoolFile);
+			return;
+		}
+
+		synchronized (this) {
+			if (!hasRoomFor(size)) {
+				deleteQuietly(spoolFile);
+				return;
+			}
+
+			JsonObject entry = newEntry(TYPE_TILE_ZIP, order);
+			String fileName = "tiles-" + entry.get("id").getAsLong() + ".zip";
+			try {
+				Files.move(spoolFile, folder.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException ex) {
+				ExploraPlugin.warn("Failed to queue tile upload in the backend outbox: " + ex.getMessage());
+				droppedTotal++;
+				deleteQuietly(spoolFile);
+				return;
+			}
+
+			entry.addProperty("file", fileName);
+			entry.addProperty("deleteExisting", deleteExisting);
+			entry.addProperty("size", size);
+			append(entry, size);
+		}
+	}
+
+	/**
+	 * Deletes tile ZIPs left half-written by a crash while they were being spooled.
+	 */
+	private void deleteSpoolFiles() {
+		File[] spoolFiles = folder.toFile().listFiles((dir, name) -> name.startsWith("tiles-") && name.endsWith(".zip.tmp"));
+		if (spoolFiles == null) return;
+		for (File file : spoolFiles) file.delete();
+	}
+
+	private void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ignored) {}
+	}
+
+	private JsonObject newEntry(String type, long order) {
+		JsonObject entry = new JsonObject();
+		entry.addProperty("id", nextId++);
+		entry.addProperty("order", order);
+		entry.addProperty("created", System.currentTimeMillis());
+		entry.addProperty("type", type);
+		return entry;
+	}
+
+	/**
+	 * Appends an entry to the log and forces it to disk.
+	 *
+	 * @param entry the entry to append
+	 * @param extraBytes bytes stored outside the log for this entry (e.g. a tile ZIP)
+	 */
+	private void append(JsonObject entry, long extraBytes) {
+		byte[] line = (entry.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+		if (extraBytes == 0 && !hasRoomFor(line.length)) return;
+
+		try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			ByteBuffer buffer = ByteBuffer.wrap(line);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to write to the backend outbox: " + ex.getMessage());
+			droppedTotal++;
+			return;
+		}
+
+		if (depth == 0) oldestCreated = entry.get("created").getAsLong();
+		logSize += line.length;
+		storedBytes += line.length + extraBytes;
+		depth++;
+		queuedTotal++;
+	}
+
+	private boolean hasRoomFor(long bytes) {
+		if (storedBytes + bytes <= Constants.OUTBOX_MAX_BYTES) return true;
+
+		ExploraPlugin.warn("Backend outbox is full (" + (storedBytes / (1024 * 1024)) + " MB), dropping update.");
+		droppedTotal++;
+		return false;
+	}
+
+	/**
+	 * Marks the head entry as done, moves the cursor past it and compacts the log when possible.
+	 */
+	private void acknowledge(Entry head) {
+		if (head.json.has("file")) {
+			try {
+				Files.deleteIfExists(folder.resolve(head.json.get("file").getAsString()));
+			} catch (IOException ignored) {}
+		}
+
+		cursor = head.end;
+		depth = Math.max(0, depth - 1);
+		storedBytes = Math.max(0, storedBytes - head.length - (head.json.has("size") ? head.json.get("size").getAsLong() : 0));
+
+		if (depth == 0 || cursor >= logSize) {
+			resetLog();
+			return;
+		}
+
+		Entry next = readEntry(cursor);
+		oldestCreated = next != null && next.json.has("created") ? next.json.get("created").getAsLong() : 0;
+
+		if (cursor >= COMPACT_THRESHOLD_BYTES && cursor * 2 >= logSize) {
+			compact();
+		} else {
+			writeCursor();
+		}
+	}
+
+	/**
+	 * Drops everything before the cursor by rewriting the remaining entries into a fresh log.
+	 */
+	private void compact() {
+		Path tempFile = folder.resolve("outbox.log.tmp");
+		try (FileChannel in = FileChannel.open(logFile, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = cursor;
+			while (position < logSize) {
+				position += in.transferTo(position, logSize - position, out);
+			}
+			out.force(false);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to compact the backend outbox: " + ex.getMessage());
+			writeCursor();
+			return;
+		}
+
+		try {
+			Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logSize -= cursor;
+			cursor = 0;
+			writeCursor();
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to compact the backend outbox: " + ex.getMessage());
+			writeCursor();
+		}
+	}
+
+	/**
+	 * Empties the log, the cursor and any stored tile ZIPs.
+	 */
+	private void resetLog() {
+		try {
+			Files.createDirectories(folder);
+			Files.write(logFile, new byte[0]);
+			File[] zips = folder.toFile().listFiles((dir, name) -> name.startsWith("tiles-") && name.endsWith(".zip"));
+			if (zips != null) {
+				for (File zip : zips) zip.delete();
+			}
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to reset the backend outbox: " + ex.getMessage());
+		}
+
+		cursor = 0;
+		logSize = 0;
+		storedBytes = 0;
+		depth = 0;
+		oldestCreated = 0;
+		writeCursor();
+	}
+
+	private void writeCursor() {
+		Path tempFile = folder.resolve("outbox.cursor.tmp");
+		try {
+			Files.writeString(tempFile, Long.toString(cursor));
+			Files.move(tempFile, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to save the backend outbox cursor: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Cuts off a partially written last line, e.g. after a crash in the middle of an append.
+	 */
+	private void repairLog() throws IOException {
+		if (!Files.exists(logFile)) {
+			Files.write(logFile, new byte[0]);
+			return;
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+			long length = file.length();
+			long end = length;
+			while (end > 0) {
+				file.seek(end - 1);
+				if (file.read() == '\n') break;
+				end--;
+			}
+			if (end != length) file.setLength(end);
+			logSize = end;
+		}
+
+		if (cursor > logSize) cursor = logSize;
+	}
+
+	/**
+	 * Counts the queued entries and their size, and restores the next entry id.
+	 */
+	private void scanLog() {
+		long offset = cursor;
+		Entry entry;
+		while ((entry = readEntry(offset)) != null) {
+			if (depth == 0 && entry.json.has("created")) oldestCreated = entry.json.get("created").getAsLong();
+			if (entry.json.has("id")) nextId = Math.max(nextId, entry.json.get("id").getAsLong() + 1);
+			lastOrder = Math.max(lastOrder, entry.order);
+
+			depth++;
+			storedBytes += entry.length + (entry.json.has("size") ? entry.json.get("size").getAsLong() : 0);
+			offset = entry.end;
+		}
+	}
+
+	/**
+	 * Reads the entry that starts at the given offset of the log.
+	 *
+	 * @param offset the byte offset of the entry
+	 * @return the entry, or {@code null} if there is no complete, readable entry at that offset
+	 */
+	private Entry readEntry(long offset) {
+		if (offset >= logSize) return null;
+
+		try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "r")) {
+			file.seek(offset);
+
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = file.read(buffer)) > 0) {
+				for (int i = 0; i < read; i++) {
+					if (buffer[i] == '\n') {
+						line.write(buffer, 0, i);
+						String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+						int length = line.size() + 1;
+						return new Entry(JsonParser.parseString(text).getAsJsonObject(), offset + length, length);
+					}
+				}
+				line.write(buffer, 0, read);
+			}
+		} catch (Exception ex) {
+			ExploraPlugin.warn("Failed to read the backend outbox: " + ex.getMessage());
+		}
+		return null;
+	}
+
+	public synchronized int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return how long the oldest queued entry has been waiting, in milliseconds, or 0 if nothing is queued
+	 */
+	public synchronized long getOldestAgeMillis() {
+		return depth == 0 || oldestCreated == 0 ? 0 : System.currentTimeMillis() - oldestCreated;
+	}
+
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	public synchronized CircuitState getCircuitState() {
+		return circuitState;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return milliseconds until the next retry is allowed, or 0 if it is allowed now
+	 */
+	public synchronized long getRetryDelayMillis() {
+		return Math.max(0, nextAttemptMillis - System.currentTimeMillis());
+	}
+
+	public synchronized long getDeliveredTotal() {
+		return deliveredTotal;
+	}
+
+	public synchronized long getQueuedTotal() {
+		return queuedTotal;
+	}
+
+	public synchronized long getDroppedTotal() {
+		return droppedTotal;
+	}
+
+	/**
+	 * An update being sent directly, or a tile upload waiting behind the one in flight.
+	 */
+	private static final class Pending {
+		private final Supplier<CompletableFuture<Outcome>> sender;
+		private final LongConsumer enqueue;
+		private final long order;
+		private final boolean tile;
+		private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+		private Pending(Supplier<CompletableFuture<Outcome>> sender, LongConsumer enqueue, long order, boolean tile) {
+			this.sender = sender;
+			this.enqueue = enqueue;
+			this.order = order;
+			this.tile = tile;
+		}
+	}
+
+	/**
+	 * A log entry and where it ends in the log.
+	 */
+	private static final class Entry {
+		private final JsonObject json;
+		private final long id;
+		private final long order;
+		private final long end;
+		private final long length;
+
+		private Entry(JsonObject json, long end, long length) {
+			this.json = json;
+			this.id = json.has("id") ? json.get("id").getAsLong() : -1;
+			// entries queued before submission order was recorded count as the oldest
+			this.order = json.has("order") ? json.get("order").getAsLong() : 0;
+			this.end = end;
+			this.length = length;
+		}
+	}
+}
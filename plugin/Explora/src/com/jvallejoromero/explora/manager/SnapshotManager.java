@@ -0,0 +1,236 @@
+package com.jvallejoromero.explora.manager;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.tasks.SnapshotCaptureTask;
+import com.jvallejoromero.explora.util.ChunkCoord;
+import com.jvallejoromero.explora.util.Constants;
+
+/**
+ * Captures live {@link ChunkSnapshot}s of recently changed chunks so tiles can be rendered from
+ * in-memory world data instead of {@code .mca} files, which lag behind the live world until the next autosave.
+ *
+ * <p>Chunks are marked dirty on the main thread (when first explored, or after enough block changes).
+ * {@link SnapshotCaptureTask} then captures snapshots for dirty chunks that are still loaded, spending at most
+ * {@code snapshot-capture-budget-micros} per tick. Render workers take the snapshots of a region with
+ * {@link #takeRegionSnapshots(String, int, int)}; chunks without a snapshot fall back to the region file.
+ *
+ * <p>The number of cached snapshots is capped by {@code snapshot-cache-max-chunks}. When the cache is full, the
+ * oldest snapshots are evicted to make room, so chunks whose region is never rendered cannot block new captures.
+ * Evicted chunks and dirty chunks that cannot be captured (unloaded) are rendered from disk as before.
+ */
+public class SnapshotManager {
+
+	private final Queue<DirtyChunk> dirtyQueue = new ArrayDeque<>();
+	private final Set<DirtyChunk> dirtySet = new HashSet<>();
+	private final Map<String, Map<ChunkCoord, ChunkSnapshot>> snapshots = new ConcurrentHashMap<>();
+	// capture order, oldest first; only touched on the main thread and may hold entries that were already taken
+	private final ArrayDeque<CapturedChunk> captureOrder = new ArrayDeque<>();
+
+	private final AtomicInteger cachedCount = new AtomicInteger();
+	private final AtomicLong capturedTotal = new AtomicLong();
+	private final AtomicLong skippedTotal = new AtomicLong();
+	private final AtomicLong evictedTotal = new AtomicLong();
+	private final AtomicLong renderedFromSnapshot = new AtomicLong();
+
+	/**
+	 * Marks a chunk as changed so that a snapshot is captured for it on a later tick.
+	 *
+	 * <p>Must be called from the main thread.
+	 *
+	 * @param world the world name
+	 * @param x the chunk X coordinate
+	 * @param z the chunk Z coordinate
+	 */
+	public void markDirty(String world, int x, int z) {
+		if (!Constants.SNAPSHOT_RENDERING_ENABLED) return;
+
+		DirtyChunk dirty = new DirtyChunk(world, x, z);
+		if (dirtySet.add(dirty)) {
+			dirtyQueue.add(dirty);
+		}
+	}
+
+	/**
+	 * Captures snapshots of queued dirty chunks until the queue is empty or the time budget runs out.
+	 *
+	 * <p>Must be called from the main thread.
+	 *
+	 * @param budgetNanos the maximum time to spend capturing during this call
+	 */
+	public void captureDirtyChunks(long budgetNanos) {
+		if (dirtyQueue.isEmpty()) return;
+
+		long deadline = System.nanoTime() + budgetNanos;
+
+		while (!dirtyQueue.isEmpty() && System.nanoTime() < deadline) {
+			DirtyChunk dirty = dirtyQueue.poll();
+			dirtySet.remove(dirty);
+
+			World world = Bukkit.getWorld(dirty.world);
+			if (world == null || !world.isChunkLoaded(dirty.x, dirty.z) || Constants.SNAPSHOT_CACHE_MAX_CHUNKS <= 0) {
+				skippedTotal.incrementAndGet();
+				continue;
+			}
+
+			ChunkCoord coord = new ChunkCoord(dirty.x, dirty.z);
+			Map<ChunkCoord, ChunkSnapshot> worldSnapshots = snapshots.computeIfAbsent(dirty.world, k -> new ConcurrentHashMap<>());
+			if (!worldSnapshots.containsKey(coord)) evictOldest(Constants.SNAPSHOT_CACHE_MAX_CHUNKS - 1);
+
+			ChunkSnapshot snapshot = world.getChunkAt(dirty.x, dirty.z).getChunkSnapshot(true, true, false);
+			ChunkSnapshot previous = worldSnapshots.put(coord, snapshot);
+			captureOrder.add(new CapturedChunk(worldSnapshots, coord, snapshot));
+
+			if (previous == null) cachedCount.incrementAndGet();
+			capturedTotal.incrementAndGet();
+		}
+
+		// entries that were taken by a render or replaced by a newer capture are only dropped lazily
+		if (captureOrder.size() > Constants.SNAPSHOT_CACHE_MAX_CHUNKS * 2) {
+			captureOrder.removeIf(captured -> !captured.isCached());
+		}
+	}
+
+	/**
+	 * Evicts the oldest cached snapshots until at most {@code limit} are left.
+	 */
+	private void evictOldest(int limit) {
+		while (cachedCount.get() > limit) {
+			CapturedChunk oldest = captureOrder.poll();
+			if (oldest == null) return;
+
+			// only evict the exact snapshot that was captured; a render may have taken it in the meantime
+			if (oldest.worldSnapshots.remove(oldest.coord, oldest.snapshot)) {
+				cachedCount.decrementAndGet();
+				evictedTotal.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns all cached snapshots belonging to the given region.
+	 *
+	 * <p>Safe to call from any thread.
+	 *
+	 * @param world the world name
+	 * @param regionX the region X coordinate
+	 * @param regionZ the region Z coordinate
+	 * @return an array of 1024 snapshots indexed by {@code (chunkZ & 31) * 32 + (chunkX & 31)},
+	 *         or {@code null} if no chunk of the region has a snapshot
+	 */
+	public ChunkSnapshot[] takeRegionSnapshots(String world, int regionX, int regionZ) {
+		Map<ChunkCoord, ChunkSnapshot> worldSnapshots = snapshots.get(world);
+		if (worldSnapshots == null || worldSnapshots.isEmpty()) return null;
+
+		ChunkSnapshot[] regionSnapshots = null;
+		int baseX = regionX << 5;
+		int baseZ = regionZ << 5;
+
+		for (int cz = 0; cz < 32; cz++) {
+			for (int cx = 0; cx < 32; cx++) {
+				ChunkSnapshot snapshot = worldSnapshots.remove(new ChunkCoord(baseX + cx, baseZ + cz));
+				if (snapshot == null) continue;
+
+				if (regionSnapshots == null) regionSnapshots = new ChunkSnapshot[1024];
+				regionSnapshots[cz * 32 + cx] = snapshot;
+				cachedCount.decrementAndGet();
+				renderedFromSnapshot.incrementAndGet();
+			}
+		}
+		return regionSnapshots;
+	}
+
+	/**
+	 * Drops all queued and cached snapshots.
+	 */
+	public void clear() {
+		dirtyQueue.clear();
+		dirtySet.clear();
+		snapshots.clear();
+		captureOrder.clear();
+		cachedCount.set(0);
+	}
+
+	public int getDirtyCount() {
+		return dirtyQueue.size();
+	}
+
+	public int getCachedCount() {
+		return cachedCount.get();
+	}
+
+	public long getCapturedTotal() {
+		return capturedTotal.get();
+	}
+
+	public long getSkippedTotal() {
+		return skippedTotal.get();
+	}
+
+	public long getEvictedTotal() {
+		return evictedTotal.get();
+	}
+
+	public long getRenderedFromSnapshotTotal() {
+		return renderedFromSnapshot.get();
+	}
+
+	/**
+	 * A captured snapshot in {@link #captureOrder}.
+	 */
+	private static final class CapturedChunk {
+		private final Map<ChunkCoord, ChunkSnapshot> worldSnapshots;
+		private final ChunkCoord coord;
+		private final ChunkSnapshot snapshot;
+
+		private CapturedChunk(Map<ChunkCoord, ChunkSnapshot> worldSnapshots, ChunkCoord coord, ChunkSnapshot snapshot) {
+			this.worldSnapshots = worldSnapshots;
+			this.coord = coord;
+			this.snapshot = snapshot;
+		}
+
+		private boolean isCached() {
+			return worldSnapshots.get(coord) == snapshot;
+		}
+	}
+
+	/**
+	 * A chunk waiting to be captured.
+	 */
+	private static final class DirtyChunk {
+		private final String world;
+		private final int x;
+		private final int z;
+
+		private DirtyChunk(String world, int x, int z) {
+			this.world = world;
+			this.x = x;
+			this.z = z;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof DirtyChunk)) return false;
+			DirtyChunk other = (DirtyChunk) o;
+			return x == other.x && z == other.z && world.equals(other.world);
+		}
+
+		@Override
+		public int hashCode() {
+			return (world.hashCode() * 31 + x) * 31 + z;
+		}
+	}
+}
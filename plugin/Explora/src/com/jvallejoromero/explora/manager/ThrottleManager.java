@@ -0,0 +1,259 @@
+package com.jvallejoromero.explora.manager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.tasks.TickMonitorTask;
+import com.jvallejoromero.explora.util.Constants;
+
+/**
+ * Adaptive governor for the plugin's background work (tile rendering, region scanning and tile uploads).
+ *
+ * <p>Tick durations are fed in every tick by {@link TickMonitorTask}. Every
+ * {@code throttle-evaluation-ticks} the smoothed tick duration (MSPT) and heap usage are compared
+ * against the budgets configured in {@code config.yml}. Heap usage is what the heap pools held right after their
+ * last collection, so garbage that has not been collected yet does not pause background work:
+ * <ul>
+ *   <li>Above the pause threshold, no new background work is started ({@link ThrottleState#PAUSED})</li>
+ *   <li>Above the budget, allowed concurrency is halved ({@link ThrottleState#THROTTLED})</li>
+ *   <li>Otherwise, concurrency ramps back up one step per evaluation until it is back to {@link ThrottleState#NORMAL}</li>
+ * </ul>
+ *
+ * <p>Worker threads call {@link #acquire(WorkType)} before each unit of work (one region, one region file,
+ * one upload) and {@link #release(WorkType)} once done. Thread pools keep their full size; the governor only
+ * limits how many of their threads may be working at once.
+ */
+public class ThrottleManager {
+
+	/**
+	 * Kinds of background work the governor controls independently.
+	 */
+	public enum WorkType {
+		RENDER,
+		SCAN,
+		UPLOAD
+	}
+
+	/**
+	 * Current throttle state, derived from the throttle factor.
+	 */
+	public enum ThrottleState {
+		NORMAL,
+		THROTTLED,
+		PAUSED
+	}
+
+	private static final double RAMP_STEP = 0.25;
+	private static final double MSPT_SMOOTHING = 0.1;
+	private static final double TICK_MILLIS = 50.0;
+
+	private final Map<WorkType, WorkGate> gates = new EnumMap<>(WorkType.class);
+
+	private volatile double smoothedMspt = TICK_MILLIS;
+	private volatile double heapUsage = 0.0;
+	private volatile double throttleFactor = 1.0;
+	private volatile ThrottleState state = ThrottleState.NORMAL;
+	private volatile boolean shutdown = false;
+
+	private long ticksSinceEvaluation = 0;
+
+	public ThrottleManager() {
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		gates.put(WorkType.RENDER, new WorkGate(Math.max(2, (int) Math.ceil(cores * 0.5))));
+		gates.put(WorkType.SCAN, new WorkGate(1));
+		gates.put(WorkType.UPLOAD, new WorkGate(2));
+	}
+
+	/**
+	 * Records the duration of the last server tick and re-evaluates the throttle state when due.
+	 *
+	 * <p>Must be called from the main thread, once per tick.
+	 *
+	 * @param tickNanos the time between the start of the previous tick and the start of this one
+	 */
+	public void recordTick(long tickNanos) {
+		double tickMillis = tickNanos / 1_000_000.0;
+		smoothedMspt = smoothedMspt + MSPT_SMOOTHING * (tickMillis - smoothedMspt);
+
+		if (++ticksSinceEvaluation < Constants.THROTTLE_EVALUATION_TICKS) return;
+		ticksSinceEvaluation = 0;
+
+		evaluate();
+	}
+
+	/**
+	 * Compares the current MSPT and heap usage against the configured budgets and
+	 * adjusts the allowed concurrency for every {@link WorkType}.
+	 */
+	private void evaluate() {
+		heapUsage = measureHeapUsage();
+
+		if (!Constants.THROTTLE_ENABLED) {
+			applyFactor(1.0);
+			return;
+		}
+
+		boolean overPause = smoothedMspt >= Constants.THROTTLE_MSPT_PAUSE || heapUsage >= Constants.THROTTLE_HEAP_PAUSE_RATIO;
+		boolean overBudget = smoothedMspt > Constants.THROTTLE_MSPT_BUDGET || heapUsage >= Constants.THROTTLE_HEAP_BUDGET_RATIO;
+
+		double factor = throttleFactor;
+
+		if (overPause) {
+			factor = 0.0;
+		} else if (overBudget) {
+			factor = (factor == 0.0) ? RAMP_STEP : Math.max(RAMP_STEP, factor / 2);
+		} else {
+			factor = Math.min(1.0, factor + RAMP_STEP);
+		}
+
+		applyFactor(factor);
+	}
+
+	/**
+	 * @return the live heap after the last garbage collection of each heap pool, as a fraction of the maximum heap
+	 */
+	private static double measureHeapUsage() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) continue;
+
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null) used += usage.getUsed();
+		}
+		return used / (double) Runtime.getRuntime().maxMemory();
+	}
+
+	/**
+	 * Applies a new throttle factor to all work gates and logs state transitions.
+	 *
+	 * @param factor the fraction of maximum concurrency to allow, between {@code 0.0} and {@code 1.0}
+	 */
+	private void applyFactor(double factor) {
+		throttleFactor = factor;
+
+		for (WorkGate gate : gates.values()) {
+			int limit = (factor <= 0.0) ? 0 : Math.max(1, (int) Math.ceil(gate.maxPermits * factor));
+			gate.setLimit(limit);
+		}
+
+		ThrottleState newState = (factor <= 0.0) ? ThrottleState.PAUSED : (factor < 1.0) ? ThrottleState.THROTTLED : ThrottleState.NORMAL;
+		if (newState != state) {
+			ExploraPlugin.debug("&6[Throttle] " + state + " -> " + newState + String.format(" (mspt=%.1f, heap=%.0f%%)", smoothedMspt, heapUsage * 100));
+			state = newState;
+		}
+	}
+
+	/**
+	 * Blocks the calling worker thread until the governor allows another unit of the given work type to run.
+	 *
+	 * <p>Never call this from the main server thread.
+	 *
+	 * @param type the kind of work about to start
+	 * @throws InterruptedException if the worker is interrupted while waiting
+	 */
+	public void acquire(WorkType type) throws InterruptedException {
+		if (shutdown) return;
+		gates.get(type).acquire();
+	}
+
+	/**
+	 * Signals that a unit of work previously started with {@link #acquire(WorkType)} has finished.
+	 *
+	 * @param type the kind of work that finished
+	 */
+	public void release(WorkType type) {
+		gates.get(type).release();
+	}
+
+	/**
+	 * Releases all waiting workers and disables throttling. Called when the plugin is disabled
+	 * so that no worker thread stays parked on a paused gate.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (WorkGate gate : gates.values()) {
+			gate.setLimit(Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @return whether {@link #shutdown()} was called
+	 */
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	public ThrottleState getState() {
+		return state;
+	}
+
+	public double getSmoothedMspt() {
+		return smoothedMspt;
+	}
+
+	public double getHeapUsage() {
+		return heapUsage;
+	}
+
+	public double getThrottleFactor() {
+		return throttleFactor;
+	}
+
+	public int getActiveWorkers(WorkType type) {
+		return gates.get(type).getActive();
+	}
+
+	public int getWorkerLimit(WorkType type) {
+		return gates.get(type).getLimit();
+	}
+
+	public int getMaxWorkers(WorkType type) {
+		return gates.get(type).maxPermits;
+	}
+
+	/**
+	 * A counting gate whose permit limit can be changed while workers are waiting on it.
+	 */
+	private static final class WorkGate {
+
+		private final int maxPermits;
+		private int limit;
+		private int active;
+
+		private WorkGate(int maxPermits) {
+			this.maxPermits = maxPermits;
+			this.limit = maxPermits;
+		}
+
+		private synchronized void acquire() throws InterruptedException {
+			while (active >= limit) {
+				wait();
+			}
+			active++;
+		}
+
+		private synchronized void release() {
+			if (active > 0) active--;
+			notifyAll();
+		}
+
+		private synchronized void setLimit(int newLimit) {
+			limit = newLimit;
+			notifyAll();
+		}
+
+		private synchronized int getActive() {
+			return active;
+		}
+
+		private synchronized int getLimit() {
+			return limit;
+		}
+	}
+}
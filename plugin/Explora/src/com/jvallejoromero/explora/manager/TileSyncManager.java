@@ -0,0 +1,374 @@
+package com.jvallejoromero.explora.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.FileUtil;
+import com.jvallejoromero.explora.util.HttpUtil;
+import com.jvallejoromero.explora.util.TileManifest;
+import com.jvallejoromero.explora.util.TileStore;
+import com.jvallejoromero.explora.util.TileZipStream;
+
+/**
+ * Keeps the backend's tiles in line with the plugin's render data by comparing {@link TileManifest}s, so only
+ * tiles whose content changed are uploaded.
+ *
+ * <p>A world is synced by:
+ * <ol>
+ *   <li>Refreshing the local manifest, which only hashes files whose size or modification time changed.</li>
+ *   <li>Fetching the backend's manifest and recording which tiles it already has.</li>
+ *   <li>Uploading the remaining tiles in archives of at most {@code tile-sync-batch-megabytes}, saving the local
+ *       manifest after every delivered archive.</li>
+ *   <li>Deleting tiles that only the backend still has.</li>
+ * </ol>
+ *
+ * <p>Worlds being synced are recorded in {@code pending-sync.json} next to the manifests until they are done. If
+ * the server stops (or the backend goes away) halfway through, the sync is resumed on the next start, and since
+ * the backend's manifest says which tiles already arrived, only the rest is uploaded.
+ *
+ * <p>Syncing blocks while waiting for the backend, so it must run on an async thread.
+ */
+public class TileSyncManager {
+
+	/**
+	 * The outcome of syncing one or more worlds.
+	 */
+	public enum Result {
+		/** Every tile was delivered. */
+		SYNCED,
+		/** Some tiles were queued in the outbox, or a request failed; the sync is resumed on the next start. */
+		INCOMPLETE,
+		/** The backend does not support tile manifests; the caller should upload everything instead. */
+		UNSUPPORTED
+	}
+
+	private static final Gson GSON = new Gson();
+	private static final Type JOURNAL_TYPE = new TypeToken<List<String>>() {}.getType();
+
+	private final ExploraPlugin plugin;
+	private final Path journalFile;
+	private final Map<String, TileManifest> manifests = new ConcurrentHashMap<>();
+	private final Set<String> pendingWorlds = new LinkedHashSet<>();
+
+	private final AtomicLong tilesUploaded = new AtomicLong();
+	private final AtomicLong tilesSkipped = new AtomicLong();
+	private final AtomicLong tilesDeleted = new AtomicLong();
+	private final AtomicLong bytesUploaded = new AtomicLong();
+
+	private volatile boolean syncing = false;
+
+	public TileSyncManager(ExploraPlugin plugin) {
+		this.plugin = plugin;
+		this.journalFile = Constants.TILE_MANIFEST_PATH.resolve("pending-sync.json");
+	}
+
+	/**
+	 * Loads the list of unfinished syncs and resumes them in the background.
+	 */
+	public void init() {
+		if (!Constants.TILE_SYNC_ENABLED || !Files.exists(journalFile)) return;
+
+		List<String> worlds;
+		try {
+			worlds = GSON.fromJson(Files.readString(journalFile, StandardCharsets.UTF_8), JOURNAL_TYPE);
+		} catch (Exception ex) {
+			ExploraPlugin.warn("Failed to read unfinished tile syncs: " + ex.getMessage());
+			return;
+		}
+		if (worlds == null || worlds.isEmpty()) return;
+
+		synchronized (pendingWorlds) {
+			pendingWorlds.addAll(worlds);
+		}
+
+		ExploraPlugin.log("&eResuming interrupted tile sync of " + String.join(", ", worlds) + "..");
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+			if (syncWorlds(worlds) == Result.UNSUPPORTED) {
+				ExploraPlugin.warn("Backend does not support tile manifests anymore, dropping the interrupted tile sync.");
+			}
+		});
+	}
+
+	/**
+	 * Syncs the tiles of every world in the render data folder. Must be called from an async thread.
+	 *
+	 * @return the outcome
+	 */
+	public Result syncAll() {
+		File[] folders = Constants.RENDER_DATA_PATH.toFile().listFiles(File::isDirectory);
+		List<String> worlds = new ArrayList<>();
+		if (folders != null) {
+			for (File folder : folders) worlds.add(folder.getName());
+		}
+		return syncWorlds(worlds);
+	}
+
+	/**
+	 * Syncs the tiles of the given worlds, one after another. Must be called from an async thread.
+	 *
+	 * @param worlds the world names
+	 * @return the outcome; {@link Result#UNSUPPORTED} as soon as the backend turns out not to support manifests,
+	 *         in which case nothing is resumed on the next start
+	 */
+	public Result syncWorlds(Collection<String> worlds) {
+		synchronized (pendingWorlds) {
+			pendingWorlds.addAll(worlds);
+			saveJournal();
+		}
+
+		syncing = true;
+		Result result = Result.SYNCED;
+		try {
+			for (String world : worlds) {
+				Result worldResult = syncWorld(world);
+				if (worldResult == Result.UNSUPPORTED) {
+					clearJournal();
+					return worldResult;
+				}
+				if (worldResult == Result.INCOMPLETE) result = Result.INCOMPLETE;
+			}
+		} finally {
+			syncing = false;
+		}
+		return result;
+	}
+
+	private Result syncWorld(String world) {
+		long startTime = System.currentTimeMillis();
+		TileManifest manifest = getManifest(world);
+		int hashed = manifest.refresh(Constants.RENDER_DATA_PATH.resolve(world).toFile());
+		ExploraPlugin.debug("[TileSync] " + world + ": " + manifest.size() + " tiles, " + hashed + " hashed");
+
+		Map<String, String> remote;
+		try {
+			HttpResponse<String> response = HttpUtil.getRequest(HttpUtil.getTileManifestUrl(world)).join();
+			if (response.statusCode() == 404) return Result.UNSUPPORTED;
+			if (!HttpUtil.isSuccess(response)) {
+				ExploraPlugin.warn("Failed to fetch the backend's tile manifest for " + world + " (" + response.statusCode() + "), it will be synced on the next start.");
+				return Result.INCOMPLETE;
+			}
+			remote = parseManifest(response.body());
+		} catch (Exception ex) {
+			ExploraPlugin.warn("Failed to fetch the backend's tile manifest for " + world + ", it will be synced on the next start: " + ex.getMessage());
+			return Result.INCOMPLETE;
+		}
+
+		manifest.setSynced(remote);
+		manifest.save();
+
+		List<String> unsynced = manifest.getUnsynced();
+		tilesSkipped.addAndGet(manifest.size() - unsynced.size());
+
+		boolean complete = uploadInBatches(world, manifest, unsynced);
+
+		List<String> removed = new ArrayList<>();
+		for (String name : remote.keySet()) {
+			if (!manifest.contains(name)) removed.add(name);
+		}
+		if (!removed.isEmpty()) {
+			try {
+				HttpResponse<String> response = HttpUtil.postTileDeletes(world, removed).join();
+				if (HttpUtil.isSuccess(response)) {
+					tilesDeleted.addAndGet(removed.size());
+				} else {
+					complete = false;
+				}
+			} catch (Exception ex) {
+				complete = false;
+			}
+		}
+
+		if (!complete) {
+			ExploraPlugin.warn("Tile sync of " + world + " did not finish, the rest will be sent on the next start.");
+			return Result.INCOMPLETE;
+		}
+
+		synchronized (pendingWorlds) {
+			pendingWorlds.remove(world);
+			saveJournal();
+		}
+
+		ExploraPlugin.log("&aSynced tiles of " + world + " in " + ((System.currentTimeMillis() - startTime) / 1000.0) + "s: "
+				+ unsynced.size() + " uploaded, " + (manifest.size() - unsynced.size()) + " unchanged, " + removed.size() + " deleted");
+		return Result.SYNCED;
+	}
+
+	/**
+	 * Uploads tiles in archives of at most {@code tile-sync-batch-megabytes}, marking each delivered archive's tiles
+	 * as synced so a later sync does not send them again. Stops at the first archive that is not delivered right
+	 * away: it is retried from the outbox, and the rest is left for the resumed sync instead of filling the outbox.
+	 *
+	 * @return whether every archive was delivered
+	 */
+	private boolean uploadInBatches(String world, TileManifest manifest, List<String> names) {
+		File folder = Constants.RENDER_DATA_PATH.resolve(world).toFile();
+		int index = 0;
+		while (index < names.size()) {
+			List<String> batch = new ArrayList<>();
+			List<File> files = new ArrayList<>();
+			long batchBytes = 0;
+
+			while (index < names.size() && (batch.isEmpty() || batchBytes + manifest.getSize(names.get(index)) <= Constants.TILE_SYNC_BATCH_BYTES)) {
+				String name = names.get(index++);
+				batch.add(name);
+				files.add(new File(folder, name));
+				batchBytes += manifest.getSize(name);
+			}
+
+			if (!uploadBatch(world, manifest, batch, files, batchBytes)) return false;
+		}
+		return true;
+	}
+
+	private boolean uploadBatch(String world, TileManifest manifest, List<String> names, List<File> files, long bytes) {
+		CompletableFuture<Boolean> delivered = new CompletableFuture<>();
+		FileUtil.runThrottledUpload(() -> ExploraPlugin.getInstance().getOutboxManager()
+				.submitTileZip(TileZipStream.ofFiles(files), false)
+				.whenComplete((result, ex) -> delivered.complete(ex == null && Boolean.TRUE.equals(result))))
+				.exceptionally(ex -> {
+					delivered.complete(false);
+					return null;
+				});
+
+		if (!delivered.join()) return false;
+
+		manifest.markSynced(names);
+		manifest.save();
+		tilesUploaded.addAndGet(names.size());
+		bytesUploaded.addAndGet(bytes);
+		ExploraPlugin.debug("[TileSync] " + world + ": uploaded " + names.size() + " tiles (" + (bytes / 1024) + " KB)");
+		return true;
+	}
+
+	/**
+	 * Removes tiles that the backend already has from a list of tiles about to be uploaded. Must be called from
+	 * an async thread, as it may hash the files.
+	 *
+	 * @param world the world the tiles belong to
+	 * @param files tile files in the world's render data folder
+	 * @return the files whose current content the backend does not have yet
+	 */
+	public List<File> filterUnsynced(String world, Collection<File> files) {
+		TileManifest manifest = getManifest(world);
+		manifest.refresh(files);
+		manifest.save();
+
+		List<File> unsynced = new ArrayList<>();
+		for (File file : files) {
+			if (TileStore.exists(file) && !manifest.isSynced(file.getName())) unsynced.add(file);
+		}
+		tilesSkipped.addAndGet(files.size() - unsynced.size());
+		return unsynced;
+	}
+
+	/**
+	 * Records that tiles were delivered to the backend outside of a full sync.
+	 *
+	 * @param world the world the tiles belong to
+	 * @param files the delivered tile files
+	 */
+	public void markDelivered(String world, Collection<File> files) {
+		TileManifest manifest = getManifest(world);
+		List<String> names = new ArrayList<>();
+		for (File file : files) names.add(file.getName());
+
+		manifest.markSynced(names);
+		manifest.save();
+		tilesUploaded.addAndGet(names.size());
+	}
+
+	private TileManifest getManifest(String world) {
+		return manifests.computeIfAbsent(world, TileManifest::load);
+	}
+
+	private static Map<String, String> parseManifest(String body) {
+		Map<String, String> hashes = new HashMap<>();
+		JsonObject tiles = JsonParser.parseString(body).getAsJsonObject().getAsJsonObject("tiles");
+		if (tiles == null) return hashes;
+
+		for (Map.Entry<String, JsonElement> entry : tiles.entrySet()) {
+			JsonElement hash = entry.getValue().getAsJsonObject().get("hash");
+			if (hash != null && !hash.isJsonNull()) hashes.put(entry.getKey(), hash.getAsString());
+		}
+		return hashes;
+	}
+
+	/**
+	 * Writes the list of unfinished syncs; called while holding {@link #pendingWorlds}.
+	 */
+	private void saveJournal() {
+		try {
+			Files.createDirectories(journalFile.getParent());
+			if (pendingWorlds.isEmpty()) {
+				Files.deleteIfExists(journalFile);
+			} else {
+				Files.writeString(journalFile, GSON.toJson(pendingWorlds), StandardCharsets.UTF_8);
+			}
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to save unfinished tile syncs: " + ex.getMessage());
+		}
+	}
+
+	private void clearJournal() {
+		synchronized (pendingWorlds) {
+			pendingWorlds.clear();
+			saveJournal();
+		}
+	}
+
+	/**
+	 * @return whether a sync is running
+	 */
+	public boolean isSyncing() {
+		return syncing;
+	}
+
+	/**
+	 * @return the number of worlds whose last sync has not finished
+	 */
+	public int getPendingWorldCount() {
+		synchronized (pendingWorlds) {
+			return pendingWorlds.size();
+		}
+	}
+
+	public long getTilesUploaded() {
+		return tilesUploaded.get();
+	}
+
+	public long getTilesSkipped() {
+		return tilesSkipped.get();
+	}
+
+	public long getTilesDeleted() {
+		return tilesDeleted.get();
+	}
+
+	public long getBytesUploaded() {
+		return bytesUploaded.get();
+	}
+}
@@ -0,0 +1,158 @@
+package com.jvallejoromero.explora.tasks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.ChunkManager;
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.DiscMask;
+import com.jvallejoromero.explora.util.ExploredChunkIndex;
+
+/**
+ * A repeating task that records the chunks players are in as explored by sampling their positions, instead of
+ * handling every move event. Used while {@code exploration-tracking} is {@code sample}.
+ *
+ * <p>Each run only copies the world and chunk coordinates of every online player into a few arrays on the main
+ * thread. They are checked against the explored chunk indexes on the exploration thread (see
+ * {@link ChunkManager#getExplorationExecutor()}), and only the chunks that turn out to be new are handed back to
+ * the main thread to be recorded. With {@code exploration-area: view-distance}, the whole disc each player can see is
+ * checked.
+ *
+ * <p>Chunks a player crosses between two samples are not recorded, so the sample interval trades main thread time
+ * for coverage of fast-moving players.
+ *
+ * <p>Note: This task reads player state and must run on the main thread. It is expected to be scheduled
+ * through {@link MainThreadScheduler#runTaskTimer(Runnable, MainThreadScheduler.Priority, long)}.
+ */
+public class ExplorationSampleTask implements Runnable {
+
+	private static long samples = 0;
+	private static long mainThreadNanos = 0;
+	private static final AtomicLong backgroundNanos = new AtomicLong();
+
+	// receives the new chunks of a disc, exploration thread only
+	private static int[] discXs = new int[0];
+	private static int[] discZs = new int[0];
+
+	private final Location location = new Location(null, 0, 0, 0);
+
+	@Override
+	public void run() {
+		long begin = System.nanoTime();
+
+		Collection<? extends Player> players = Bukkit.getOnlinePlayers();
+		int count = players.size();
+		if (count > 0) {
+			String[] worlds = new String[count];
+			int[] chunkXs = new int[count];
+			int[] chunkZs = new int[count];
+			int[] radii = Constants.EXPLORATION_VIEW_DISTANCE ? new int[count] : null;
+
+			int i = 0;
+			for (Player player : players) {
+				player.getLocation(location);
+				worlds[i] = location.getWorld().getName();
+				chunkXs[i] = location.getBlockX() >> 4;
+				chunkZs[i] = location.getBlockZ() >> 4;
+				if (radii != null) radii[i] = location.getWorld().getViewDistance();
+				i++;
+			}
+
+			ExploraPlugin.getInstance().getChunkManager().getExplorationExecutor().execute(() -> check(worlds, chunkXs, chunkZs, radii, count));
+		}
+
+		samples++;
+		mainThreadNanos += System.nanoTime() - begin;
+	}
+
+	/**
+	 * Checks sampled chunks against the explored chunk indexes, on the exploration thread, and hands the new ones
+	 * to the main thread.
+	 *
+	 * @param radii the view distance of each player's world, or {@code null} to only check the players' chunks
+	 */
+	private static void check(String[] worlds, int[] chunkXs, int[] chunkZs, int[] radii, int count) {
+		long begin = System.nanoTime();
+		ChunkManager chunkManager = ExploraPlugin.getInstance().getChunkManager();
+		NewChunks newChunks = new NewChunks();
+
+		ExploredChunkIndex index = null;
+		for (int i = 0; i < count; i++) {
+			if (index == null || !index.getWorldName().equals(worlds[i])) index = chunkManager.getExploredChunkIndex(worlds[i]);
+
+			if (radii == null) {
+				if (index.add(chunkXs[i], chunkZs[i])) newChunks.add(worlds[i], chunkXs[i], chunkZs[i]);
+				continue;
+			}
+
+			DiscMask disc = DiscMask.of(radii[i]);
+			if (discXs.length < disc.getArea()) {
+				discXs = new int[disc.getArea()];
+				discZs = new int[disc.getArea()];
+			}
+			int added = index.addDisc(chunkXs[i], chunkZs[i], disc, discXs, discZs, 0);
+			for (int j = 0; j < added; j++) newChunks.add(worlds[i], discXs[j], discZs[j]);
+		}
+
+		if (newChunks.count > 0) {
+			ExploraPlugin.getInstance().getMainThreadScheduler().runTask(() -> {
+				long recordBegin = System.nanoTime();
+				chunkManager.addExploredChunks(newChunks.worlds, newChunks.xs, newChunks.zs, newChunks.count);
+				mainThreadNanos += System.nanoTime() - recordBegin;
+			});
+		}
+		backgroundNanos.addAndGet(System.nanoTime() - begin);
+	}
+
+	/**
+	 * @return the number of times player positions were sampled
+	 */
+	public static long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the main thread time spent sampling and recording new chunks, in nanoseconds
+	 */
+	public static long getMainThreadNanos() {
+		return mainThreadNanos;
+	}
+
+	/**
+	 * @return the time spent checking samples on the exploration thread, in nanoseconds
+	 */
+	public static long getBackgroundNanos() {
+		return backgroundNanos.get();
+	}
+
+	/**
+	 * The chunks found to be new in one sample, growing as needed so a sample without new chunks allocates nothing.
+	 */
+	private static final class NewChunks {
+		private String[] worlds = new String[0];
+		private int[] xs = new int[0];
+		private int[] zs = new int[0];
+		private int count = 0;
+
+		private void add(String world, int x, int z) {
+			if (count == xs.length) {
+				int capacity = Math.max(16, count * 2);
+				worlds = Arrays.copyOf(worlds, capacity);
+				xs = Arrays.copyOf(xs, capacity);
+				zs = Arrays.copyOf(zs, capacity);
+			}
+			worlds[count] = world;
+			xs[count] = x;
+			zs[count] = z;
+			count++;
+		}
+	}
+
+}
@@ -5,8 +5,11 @@ import java.util.Set;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.LiveStreamManager;
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
+import com.jvallejoromero.explora.util.Constants;
 import com.jvallejoromero.explora.util.HttpUtil;
 import com.jvallejoromero.explora.util.PlayerStatus;
 
@@ -14,7 +17,9 @@ import com.jvallejoromero.explora.util.PlayerStatus;
  * A repeating task responsible for collecting and sending live player data to the backend server.
  *
  * <p>This task is scheduled at a configurable interval (defined in {@code config.yml}) and is used
- * to keep the backend synchronized with the current state of all online players.
+ * to keep the backend synchronized with the current state of all online players. While the live stream is
+ * enabled it runs every {@code player-stream-sample-ticks}, so fast-moving players can be sent often; idle players
+ * are not sent on every run.
  *
  * <p>Currently, each player update includes:
  * <ul>
@@ -25,13 +30,25 @@ import com.jvallejoromero.explora.util.PlayerStatus;
  *   <li>Online status</li>
  * </ul>
  *
- * <p>All updates are serialized into {@link PlayerStatus} objects and streamed to the backend
- * using {@link HttpUtil#sendPlayerPositionUpdates(Set, Runnable)}.
+ * <p>All updates are serialized into {@link PlayerStatus} objects and streamed to the backend through the
+ * {@link LiveStreamManager}, which decides per player whether an update is needed. While the live stream is not
+ * connected, the full set is sent using {@link HttpUtil#sendPlayerPositionUpdates(Set)}, at most once every
+ * {@code player-update-ticks}.
  *
- * <p>Note: This class extends {@link BukkitRunnable} and is expected to be scheduled with
- * {@code runTaskTimer(...)} or {@code runTaskTimerAsynchronously(...)}.
+ * <p>Note: This task reads player state and must run on the main thread. It is expected to be scheduled
+ * through {@link MainThreadScheduler#runTaskTimer(Runnable, MainThreadScheduler.Priority, long)}.
  */
-public class PlayerUpdateTask extends BukkitRunnable {
+public class PlayerUpdateTask implements Runnable {
+	
+	private long lastHttpUpdateMillis = 0;
+	
+	/**
+	 * @return the interval (in ticks) this task should be scheduled at
+	 */
+	public static long getPeriodTicks() {
+		if (!Constants.LIVE_STREAM_ENABLED) return Constants.PLAYER_UPDATE_TICKS;
+		return Math.min(Constants.PLAYER_UPDATE_TICKS, Constants.PLAYER_STREAM_SAMPLE_TICKS);
+	}
 	
 	@Override
 	public void run() {
@@ -41,7 +58,13 @@ public class PlayerUpdateTask extends BukkitRunnable {
 	     playerUpdates.add(new PlayerStatus(player));
 	    }
 	    
-	    HttpUtil.sendPlayerPositionUpdates(playerUpdates, null);
+	    if (ExploraPlugin.getInstance().getLiveStreamManager().publish(playerUpdates)) return;
+	    
+	    long now = System.currentTimeMillis();
+	    if (now - lastHttpUpdateMillis < Constants.PLAYER_UPDATE_TICKS * 50) return;
+	    lastHttpUpdateMillis = now;
+	    
+	    HttpUtil.sendPlayerPositionUpdates(playerUpdates);
 	}
 
 }
@@ -1,8 +1,10 @@
 package com.jvallejoromero.explora.tasks;
 
-import org.bukkit.scheduler.BukkitRunnable;
-
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.LiveStreamManager;
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
 import com.jvallejoromero.explora.util.HttpUtil;
+import com.jvallejoromero.explora.util.ServerStatus;
 
 /**
  * A repeating task responsible for collecting and sending live server data to the backend server.
@@ -12,20 +14,26 @@ import com.jvallejoromero.explora.util.HttpUtil;
  *
  * <p>Currently, each server update includes:
  * <ul>
- *   <li>Online status</li>
  *   <li>Player count</li>
- *   <li>Current world time</li>
+ *   <li>Current world time and whether it is advancing</li>
  *   <li>MOTD</li>
  * </ul>
  *
- * <p>Note: This class extends {@link BukkitRunnable} and is expected to be scheduled with
- * {@code runTaskTimer(...)} or {@code runTaskTimerAsynchronously(...)}.
+ * <p>The snapshot is taken on the main thread and handed to the {@link LiveStreamManager}, which sends it with
+ * the next player update, only if something changed. While the live stream is not connected, the full status is
+ * sent using {@link HttpUtil#sendServerStatusUpdate(ServerStatus)}.
+ *
+ * <p>Note: This task reads server state and must run on the main thread. It is expected to be scheduled
+ * through {@link MainThreadScheduler#runTaskTimer(Runnable, MainThreadScheduler.Priority, long)}.
  */
-public class ServerStatusUpdateTask extends BukkitRunnable {
+public class ServerStatusUpdateTask implements Runnable {
 
 	@Override
 	public void run() {
-		HttpUtil.sendServerStatusUpdate(null);
+		ServerStatus status = ServerStatus.capture();
+		if (ExploraPlugin.getInstance().getLiveStreamManager().queueStatus(status)) return;
+		
+		HttpUtil.sendServerStatusUpdate(status);
 	}
 	
 }
@@ -0,0 +1,34 @@
+package com.jvallejoromero.explora.tasks;
+
+import com.jvallejoromero.explora.manager.MainThreadScheduler;
+import com.jvallejoromero.explora.manager.SnapshotManager;
+import com.jvallejoromero.explora.util.Constants;
+
+/**
+ * A repeating task that captures {@link org.bukkit.ChunkSnapshot}s of dirty, loaded chunks on the main thread.
+ *
+ * <p>Each run spends at most {@code snapshot-capture-budget-micros} capturing, and never more than what is
+ * left of the {@link MainThreadScheduler}'s budget for the current tick; remaining chunks are picked up on the
+ * next tick. The snapshots are rendered off-thread by the tile render workers.
+ *
+ * <p>Note: This task must be scheduled through
+ * {@link MainThreadScheduler#runTaskTimer(Runnable, MainThreadScheduler.Priority, long)}.
+ */
+public class SnapshotCaptureTask implements Runnable {
+
+	private final SnapshotManager snapshotManager;
+	private final MainThreadScheduler scheduler;
+
+	public SnapshotCaptureTask(SnapshotManager snapshotManager, MainThreadScheduler scheduler) {
+		this.snapshotManager = snapshotManager;
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public void run() {
+		long budgetNanos = Math.min(Constants.SNAPSHOT_CAPTURE_BUDGET_MICROS * 1000L, scheduler.getRemainingBudgetNanos());
+		if (budgetNanos <= 0) return;
+		snapshotManager.captureDirtyChunks(budgetNanos);
+	}
+
+}
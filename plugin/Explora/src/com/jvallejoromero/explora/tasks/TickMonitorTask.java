@@ -0,0 +1,35 @@
+package com.jvallejoromero.explora.tasks;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.jvallejoromero.explora.manager.ThrottleManager;
+
+/**
+ * A repeating task that samples the duration of every server tick and feeds it to the {@link ThrottleManager}.
+ *
+ * <p>The measured value is the time between two consecutive runs of this task. On a healthy server this
+ * stays close to 50ms; once the server falls behind it equals the real milliseconds-per-tick (MSPT).
+ *
+ * <p>Note: This class extends {@link BukkitRunnable} and must be scheduled with
+ * {@code runTaskTimer(plugin, 1L, 1L)} so that it runs on the main thread every tick.
+ */
+public class TickMonitorTask extends BukkitRunnable {
+
+	private final ThrottleManager throttleManager;
+	private long lastTickNanos = -1;
+
+	public TickMonitorTask(ThrottleManager throttleManager) {
+		this.throttleManager = throttleManager;
+	}
+
+	@Override
+	public void run() {
+		long now = System.nanoTime();
+
+		if (lastTickNanos > 0) {
+			throttleManager.recordTick(now - lastTickNanos);
+		}
+		lastTickNanos = now;
+	}
+
+}
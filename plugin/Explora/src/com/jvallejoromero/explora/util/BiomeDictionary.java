@@ -0,0 +1,116 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * The biomes of one world's render folder, numbered in the order they were first seen, so that
+ * {@link RegionBiomes} files can refer to biomes by a small id instead of their name.
+ *
+ * <p>The dictionary is saved as {@value #FILE_NAME} in the world's render folder, one biome name per line, the line
+ * number (from 0) being the biome's id. Biomes are only ever appended, so ids stay valid for every file written
+ * before. Thread-safe: render workers share one dictionary per world.
+ */
+public class BiomeDictionary {
+
+	public static final String FILE_NAME = "biomes.txt";
+
+	private static final Map<String, BiomeDictionary> dictionaries = new ConcurrentHashMap<>();
+
+	private final File file;
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private final List<String> names = new ArrayList<>();
+
+	private BiomeDictionary(File file) {
+		this.file = file;
+		if (!file.exists()) return;
+
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				if (line.isEmpty()) continue;
+				ids.putIfAbsent(line, names.size());
+				names.add(line);
+			}
+		} catch (IOException e) {
+			ExploraPlugin.warn("Failed to read biome dictionary " + file.getPath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param worldFolder a world's render data folder
+	 * @return the folder's dictionary, loaded from disk the first time
+	 */
+	public static BiomeDictionary of(File worldFolder) {
+		File file = new File(worldFolder, FILE_NAME);
+		return dictionaries.computeIfAbsent(file.getAbsolutePath(), k -> new BiomeDictionary(file));
+	}
+
+	/**
+	 * Gets a biome's id, adding the biome to the dictionary (and saving it) if it is new.
+	 *
+	 * @param biome the biome's namespaced id, e.g. {@code minecraft:plains}
+	 * @return the biome's id
+	 */
+	public int idOf(String biome) {
+		Integer id = ids.get(biome);
+		return id != null ? id : add(biome);
+	}
+
+	private synchronized int add(String biome) {
+		Integer id = ids.get(biome);
+		if (id != null) return id;
+
+		names.add(biome);
+		try {
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), names, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			ExploraPlugin.warn("Failed to save biome dictionary " + file.getPath() + ": " + e.getMessage());
+		}
+
+		// published after the name is in the list, so a reader that finds the id can look the name up
+		ids.put(biome, names.size() - 1);
+		return names.size() - 1;
+	}
+
+	/**
+	 * @param id a biome id
+	 * @return the biome's name
+	 */
+	public synchronized String nameOf(int id) {
+		return names.get(id);
+	}
+
+	/**
+	 * Gets a biome's id without adding it.
+	 *
+	 * @param biome the biome's namespaced id
+	 * @return the biome's id, or {@code -1} if the biome has not been seen in this world
+	 */
+	public int find(String biome) {
+		Integer id = ids.get(biome);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * @return the number of biomes in the dictionary
+	 */
+	public synchronized int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return the file the dictionary is saved in
+	 */
+	public File getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,338 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.stream.JsonWriter;
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * An inverted index of the biome metadata of one world's render folder: for every biome, a 32x32 bitmap of the
+ * chunks it occurs in, per region. Answers "where is biome X" without reading every region's metadata.
+ *
+ * <p>An index is built from the region metadata files ({@link RegionBiomes}, or the older JSON) the first time it is
+ * used, and from then on kept up to date by the renderer, which hands every re-rendered region to
+ * {@link #update(RegionBiomes)}. Worlds that are never queried are never loaded. Thread-safe.
+ */
+public class BiomeIndex {
+
+	public static final String EXPORT_FILE_NAME = "biome-index.json";
+
+	private static final Pattern METADATA_PATTERN = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.(biomes|json)");
+	private static final Map<String, BiomeIndex> indexes = new ConcurrentHashMap<>();
+
+	private final File worldFolder;
+	private final BiomeDictionary dictionary;
+
+	// biome id -> region key -> bitmap of the region's chunks with that biome, bit x of row z set for chunk (x, z)
+	private final Map<Integer, Map<Long, int[]>> biomes = new HashMap<>();
+	// region key -> ids of the biomes indexed for the region, so they can be cleared when it is re-rendered
+	private final Map<Long, int[]> regions = new HashMap<>();
+
+	private boolean built = false;
+	private long buildMillis = 0;
+
+	private BiomeIndex(File worldFolder) {
+		this.worldFolder = worldFolder;
+		this.dictionary = BiomeDictionary.of(worldFolder);
+	}
+
+	/**
+	 * Gets the index of a world, building it from the world's region metadata files if this is the first use. Building
+	 * reads every region's metadata, so call this off the main thread.
+	 *
+	 * @param worldFolder a world's render data folder
+	 * @return the world's index
+	 */
+	public static BiomeIndex of(File worldFolder) {
+		BiomeIndex index = indexes.computeIfAbsent(worldFolder.getAbsolutePath(), k -> new BiomeIndex(worldFolder));
+		index.build();
+		return index;
+	}
+
+	/**
+	 * @param worldFolder a world's render data folder
+	 * @return the world's index, or {@code null} if it has not been used yet
+	 */
+	public static BiomeIndex ifLoaded(File worldFolder) {
+		return indexes.get(worldFolder.getAbsolutePath());
+	}
+
+	private synchronized void build() {
+		if (built) return;
+		built = true;
+
+		long start = System.currentTimeMillis();
+		if (!worldFolder.isDirectory()) return;
+
+		// a region may briefly have metadata in both formats after biome-metadata-format changed; the newest wins
+		Map<Long, File> newest = new HashMap<>();
+		for (File file : TileStore.list(worldFolder)) {
+			Matcher matcher = METADATA_PATTERN.matcher(file.getName());
+			if (!matcher.matches()) continue;
+
+			long key = ChunkUtils.key(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+			newest.merge(key, file, (a, b) -> TileStore.lastModified(a) >= TileStore.lastModified(b) ? a : b);
+		}
+
+		for (Map.Entry<Long, File> entry : newest.entrySet()) {
+			File file = entry.getValue();
+			int regionX = (int) (entry.getKey() >> 32);
+			int regionZ = (int) (long) entry.getKey();
+			try {
+				if (file.getName().endsWith(RegionBiomes.EXTENSION)) {
+					update(RegionBiomes.decode(TileStore.read(file), dictionary));
+				} else {
+					try (Reader reader = new InputStreamReader(TileStore.openStream(file), StandardCharsets.UTF_8)) {
+						update(RegionBiomes.readJson(reader, dictionary, regionX, regionZ));
+					}
+				}
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to index biome metadata " + file.getPath() + ": " + e.getMessage());
+			}
+		}
+
+		buildMillis = System.currentTimeMillis() - start;
+		ExploraPlugin.debug("&8Indexed the biomes of " + regions.size() + " regions in " + worldFolder.getName() + " in " + buildMillis + "ms");
+	}
+
+	/**
+	 * Replaces everything indexed for a region with its new biomes.
+	 *
+	 * @param region the region's biomes
+	 */
+	public synchronized void update(RegionBiomes region) {
+		long key = ChunkUtils.key(region.getRegionX(), region.getRegionZ());
+
+		int[] old = regions.remove(key);
+		if (old != null) {
+			for (int id : old) {
+				Map<Long, int[]> bitmaps = biomes.get(id);
+				bitmaps.remove(key);
+				if (bitmaps.isEmpty()) biomes.remove(id);
+			}
+		}
+
+		Map<Integer, int[]> bitmaps = new TreeMap<>();
+		for (int i = 0; i < 1024; i++) {
+			int[] ids = region.getChunkBiomes(i);
+			if (ids == null) continue;
+
+			for (int id : ids) {
+				bitmaps.computeIfAbsent(id, k -> new int[32])[i >> 5] |= 1 << (i & 31);
+			}
+		}
+		if (bitmaps.isEmpty()) return;
+
+		int[] ids = new int[bitmaps.size()];
+		int count = 0;
+		for (Map.Entry<Integer, int[]> entry : bitmaps.entrySet()) {
+			ids[count++] = entry.getKey();
+			biomes.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(key, entry.getValue());
+		}
+		regions.put(key, ids);
+	}
+
+	/**
+	 * @param biome a biome's namespaced id, e.g. {@code minecraft:plains}
+	 * @return the number of chunks the biome occurs in
+	 */
+	public synchronized long countChunks(String biome) {
+		Map<Long, int[]> bitmaps = getBitmaps(biome);
+		long count = 0;
+		for (int[] rows : bitmaps.values()) {
+			for (int row : rows) count += Integer.bitCount(row);
+		}
+		return count;
+	}
+
+	/**
+	 * @param biome a biome's namespaced id
+	 * @return the number of regions the biome occurs in
+	 */
+	public synchronized int countRegions(String biome) {
+		return getBitmaps(biome).size();
+	}
+
+	/**
+	 * @return the number of chunks each indexed biome occurs in, most common first
+	 */
+	public synchronized Map<String, Long> getChunkCounts() {
+		List<Map.Entry<String, Long>> counts = new ArrayList<>();
+		for (int id : biomes.keySet()) {
+			String name = dictionary.nameOf(id);
+			counts.add(Map.entry(name, countChunks(name)));
+		}
+		counts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+		Map<String, Long> sorted = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : counts) sorted.put(entry.getKey(), entry.getValue());
+		return sorted;
+	}
+
+	/**
+	 * Finds the chunk of a biome closest to a chunk. Regions are searched nearest first, and the search stops at the
+	 * first region that cannot contain a closer chunk than the closest one found.
+	 *
+	 * @param biome a biome's namespaced id
+	 * @param chunkX the x coordinate of the chunk to search from
+	 * @param chunkZ the z coordinate of the chunk to search from
+	 * @return the closest chunk with the biome (by straight-line distance), or {@code null} if the biome does not occur
+	 */
+	public synchronized ChunkCoord findNearest(String biome, int chunkX, int chunkZ) {
+		Map<Long, int[]> bitmaps = getBitmaps(biome);
+		if (bitmaps.isEmpty()) return null;
+
+		long[][] candidates = new long[bitmaps.size()][];
+		int count = 0;
+		for (long key : bitmaps.keySet()) {
+			candidates[count++] = new long[] { minDistanceSquared(key, chunkX, chunkZ), key };
+		}
+		Arrays.sort(candidates, (a, b) -> Long.compare(a[0], b[0]));
+
+		ChunkCoord nearest = null;
+		long nearestDistance = Long.MAX_VALUE;
+		for (long[] candidate : candidates) {
+			if (candidate[0] >= nearestDistance) break;
+
+			int baseX = (int) (candidate[1] >> 32) * 32;
+			int baseZ = (int) candidate[1] * 32;
+			int[] rows = bitmaps.get(candidate[1]);
+			for (int z = 0; z < 32; z++) {
+				long dz = baseZ + z - chunkZ;
+				for (int row = rows[z]; row != 0; row &= row - 1) {
+					int x = Integer.numberOfTrailingZeros(row);
+					long dx = baseX + x - chunkX;
+					long distance = dx * dx + dz * dz;
+					if (distance < nearestDistance) {
+						nearestDistance = distance;
+						nearest = new ChunkCoord(baseX + x, baseZ + z);
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * @param biome a biome's namespaced id
+	 * @return the chunks the biome occurs in, as areas
+	 */
+	public synchronized ExploredAreas getAreas(String biome) {
+		Map<RegionCoord, int[]> bitmaps = new HashMap<>();
+		for (Map.Entry<Long, int[]> entry : getBitmaps(biome).entrySet()) {
+			bitmaps.put(RegionCoord.fromRegionCoords((int) (entry.getKey() >> 32), (int) (long) entry.getKey()), entry.getValue());
+		}
+		return ExploredAreas.ofRegions(bitmaps);
+	}
+
+	/**
+	 * Writes the index as {@code {"biomes": {"<biome>": [{"x", "z", "w", "h"}, ...]}}}: the chunks of every biome as
+	 * areas (see {@link ExploredAreas#toJson()}), for the map viewer.
+	 *
+	 * @param writer the writer to write to; not closed
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void writeExport(Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.beginObject().name("biomes").beginObject();
+		for (String biome : getChunkCounts().keySet()) {
+			json.name(biome).beginArray();
+			for (ChunkArea area : getAreas(biome).getAreas()) {
+				json.beginObject();
+				json.name("x").value(area.getX());
+				json.name("z").value(area.getZ());
+				json.name("w").value(area.getWidth());
+				json.name("h").value(area.getHeight());
+				json.endObject();
+			}
+			json.endArray();
+		}
+		json.endObject().endObject();
+		json.flush();
+	}
+
+	/**
+	 * @return the number of regions with biome metadata
+	 */
+	public synchronized int getRegionCount() {
+		return regions.size();
+	}
+
+	/**
+	 * @return the number of distinct biomes in the indexed regions
+	 */
+	public synchronized int getBiomeCount() {
+		return biomes.size();
+	}
+
+	/**
+	 * @return the number of region bitmaps, one per biome per region it occurs in
+	 */
+	public synchronized int getBitmapCount() {
+		int count = 0;
+		for (Map<Long, int[]> bitmaps : biomes.values()) count += bitmaps.size();
+		return count;
+	}
+
+	/**
+	 * Estimates the heap used by the index: per region bitmap the 32 ints, the array header and a map entry with its
+	 * boxed key and table slot, and per region its list of biome ids.
+	 *
+	 * @return the estimated size of the index, in bytes
+	 */
+	public synchronized long estimateBytes() {
+		long bytes = getBitmapCount() * (16L + 32 * 4 + 32 + 16 + 8);
+		for (int[] ids : regions.values()) bytes += 16L + ids.length * 4 + 32 + 16;
+		return bytes;
+	}
+
+	/**
+	 * @return how long building the index from disk took, in milliseconds
+	 */
+	public synchronized long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/**
+	 * @return the render data folder the index belongs to
+	 */
+	public File getWorldFolder() {
+		return worldFolder;
+	}
+
+	private Map<Long, int[]> getBitmaps(String biome) {
+		int id = dictionary.find(biome);
+		Map<Long, int[]> bitmaps = id < 0 ? null : biomes.get(id);
+		return bitmaps != null ? bitmaps : Map.of();
+	}
+
+	/**
+	 * @return the squared distance from a chunk to the closest chunk of a region
+	 */
+	private static long minDistanceSquared(long key, int chunkX, int chunkZ) {
+		long dx = distanceToRange(chunkX, (int) (key >> 32) * 32);
+		long dz = distanceToRange(chunkZ, (int) key * 32);
+		return dx * dx + dz * dz;
+	}
+
+	private static long distanceToRange(int value, int from) {
+		if (value < from) return from - (long) value;
+		if (value > from + 31) return (long) value - (from + 31);
+		return 0;
+	}
+}
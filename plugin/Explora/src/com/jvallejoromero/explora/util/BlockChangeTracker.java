@@ -0,0 +1,240 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts surface block changes per chunk of one world, to decide when a chunk has changed enough to be re-rendered.
+ *
+ * <p>Each tracked chunk has:
+ * <ul>
+ *   <li>a 256-bit set of the block columns that changed, so changing the same column again (e.g. placing and
+ *   breaking the same block) does not count twice - the map is rendered top-down, so only columns matter</li>
+ *   <li>a score: the number of changed columns, halving every {@code block-change-half-life-seconds}, so a few
+ *   edits spread over days never add up to a re-render</li>
+ * </ul>
+ * Once the score reaches the threshold, the chunk is reported and its entry cleared. Once it has decayed below one
+ * column, the entry starts over.
+ *
+ * <p>At most {@code capacity} chunks are tracked; when a new chunk is changed while all entries are in use, the
+ * least recently changed chunk is forgotten. All storage is allocated up front in primitive arrays (an
+ * open-addressing table of chunk keys pointing into fixed entry slots, with the LRU order kept as a linked list of
+ * slot indices), so recording a change never allocates.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class BlockChangeTracker {
+
+	private static final int COLUMN_WORDS = 4; // 256 columns per chunk
+	private static final int NONE = -1;
+
+	private final int capacity;
+	private final int tableMask;
+
+	/** Open-addressing table of entry slot + 1, {@code 0} if empty. */
+	private final int[] table;
+
+	private final long[] keys;
+	private final long[] columns;
+	private final float[] scores;
+	private final long[] updatedMillis;
+	private final int[] prev;
+	private final int[] next;
+
+	private int head = NONE;
+	private int tail = NONE;
+	private int size = 0;
+
+	private long evictions = 0;
+
+	/**
+	 * @param capacity the maximum number of chunks tracked at once
+	 */
+	public BlockChangeTracker(int capacity) {
+		this.capacity = Math.max(1, capacity);
+		int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+		this.tableMask = tableSize - 1;
+		this.table = new int[tableSize];
+
+		this.keys = new long[this.capacity];
+		this.columns = new long[this.capacity * COLUMN_WORDS];
+		this.scores = new float[this.capacity];
+		this.updatedMillis = new long[this.capacity];
+		this.prev = new int[this.capacity];
+		this.next = new int[this.capacity];
+	}
+
+	/**
+	 * Records a changed block column.
+	 *
+	 * @param blockX the block's x coordinate
+	 * @param blockZ the block's z coordinate
+	 * @param now the current time in milliseconds
+	 * @param threshold the score at which the chunk should be re-rendered
+	 * @param halfLifeMillis how long it takes a chunk's score to halve
+	 * @return whether the chunk reached the threshold; its entry is then cleared
+	 */
+	public boolean record(int blockX, int blockZ, long now, int threshold, long halfLifeMillis) {
+		long key = ChunkUtils.key(blockX >> 4, blockZ >> 4);
+		int slot = find(key);
+
+		if (slot == NONE) {
+			slot = allocate(key);
+		} else {
+			decay(slot, now, halfLifeMillis);
+			unlink(slot);
+		}
+		linkFirst(slot);
+		updatedMillis[slot] = now;
+
+		int column = ((blockZ & 15) << 4) | (blockX & 15);
+		int word = slot * COLUMN_WORDS + (column >>> 6);
+		long bit = 1L << (column & 63);
+		if ((columns[word] & bit) != 0) return false;
+
+		columns[word] |= bit;
+		scores[slot] += 1;
+		if (scores[slot] < threshold) return false;
+
+		remove(slot);
+		return true;
+	}
+
+	/**
+	 * Forgets a chunk, e.g. because it is being re-rendered for another reason.
+	 *
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 */
+	public void clear(int chunkX, int chunkZ) {
+		int slot = find(ChunkUtils.key(chunkX, chunkZ));
+		if (slot != NONE) remove(slot);
+	}
+
+	/**
+	 * @return the number of chunks currently tracked
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of chunks forgotten to make room for others
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	private void decay(int slot, long now, long halfLifeMillis) {
+		long elapsed = now - updatedMillis[slot];
+		if (elapsed <= 0 || halfLifeMillis <= 0) return;
+
+		scores[slot] *= (float) Math.pow(0.5, (double) elapsed / halfLifeMillis);
+		if (scores[slot] < 1) {
+			scores[slot] = 0;
+			Arrays.fill(columns, slot * COLUMN_WORDS, (slot + 1) * COLUMN_WORDS, 0L);
+		}
+	}
+
+	/**
+	 * @return a free slot for the key, evicting the least recently changed chunk if needed
+	 */
+	private int allocate(long key) {
+		int slot;
+		if (size < capacity) {
+			slot = size;
+		} else {
+			slot = tail;
+			remove(slot);
+			evictions++;
+			slot = size; // remove() moved the last slot into the freed one
+		}
+
+		keys[slot] = key;
+		scores[slot] = 0;
+		Arrays.fill(columns, slot * COLUMN_WORDS, (slot + 1) * COLUMN_WORDS, 0L);
+		size++;
+
+		int index = (int) ChunkUtils.mix(key) & tableMask;
+		while (table[index] != 0) index = (index + 1) & tableMask;
+		table[index] = slot + 1;
+		return slot;
+	}
+
+	/**
+	 * Removes a slot from the table and the LRU list, and moves the last slot into its place so slots stay dense.
+	 */
+	private void remove(int slot) {
+		removeFromTable(slot);
+		unlink(slot);
+		size--;
+
+		int last = size;
+		if (slot == last) return;
+
+		// move the last slot into the freed one
+		int index = tableIndexOf(last);
+		table[index] = slot + 1;
+
+		keys[slot] = keys[last];
+		scores[slot] = scores[last];
+		updatedMillis[slot] = updatedMillis[last];
+		System.arraycopy(columns, last * COLUMN_WORDS, columns, slot * COLUMN_WORDS, COLUMN_WORDS);
+
+		prev[slot] = prev[last];
+		next[slot] = next[last];
+		if (prev[slot] != NONE) next[prev[slot]] = slot; else head = slot;
+		if (next[slot] != NONE) prev[next[slot]] = slot; else tail = slot;
+	}
+
+	private int find(long key) {
+		int index = (int) ChunkUtils.mix(key) & tableMask;
+		while (table[index] != 0) {
+			int slot = table[index] - 1;
+			if (keys[slot] == key) return slot;
+			index = (index + 1) & tableMask;
+		}
+		return NONE;
+	}
+
+	private int tableIndexOf(int slot) {
+		int index = (int) ChunkUtils.mix(keys[slot]) & tableMask;
+		while (table[index] != slot + 1) index = (index + 1) & tableMask;
+		return index;
+	}
+
+	/**
+	 * Removes a slot from the table, shifting back later entries of the same probe run so lookups still find them.
+	 */
+	private void removeFromTable(int slot) {
+		int hole = tableIndexOf(slot);
+		int index = hole;
+		while (true) {
+			index = (index + 1) & tableMask;
+			if (table[index] == 0) break;
+
+			int home = (int) ChunkUtils.mix(keys[table[index] - 1]) & tableMask;
+			// move the entry into the hole unless its home lies cyclically in (hole, index]
+			boolean stays = hole <= index ? (hole < home && home <= index) : (hole < home || home <= index);
+			if (!stays) {
+				table[hole] = table[index];
+				hole = index;
+			}
+		}
+		table[hole] = 0;
+	}
+
+	private void linkFirst(int slot) {
+		prev[slot] = NONE;
+		next[slot] = head;
+		if (head != NONE) prev[head] = slot;
+		head = slot;
+		if (tail == NONE) tail = slot;
+	}
+
+	private void unlink(int slot) {
+		if (prev[slot] != NONE) next[prev[slot]] = next[slot]; else head = next[slot];
+		if (next[slot] != NONE) prev[next[slot]] = prev[slot]; else tail = prev[slot];
+		prev[slot] = NONE;
+		next[slot] = NONE;
+	}
+}
@@ -0,0 +1,158 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.World;
+
+/**
+ * Remembers the most recent block place and break events, so their handling cost can be measured by replaying
+ * them (see {@link #replaySurfaceChecks()}).
+ *
+ * <p>Events are kept in a fixed-size ring of primitive arrays, so recording one does not allocate. Not
+ * thread-safe; used from the main thread only.
+ */
+public class BlockEventLog {
+
+	private static final int REPLAY_ROUNDS = 5;
+
+	private final World[] worlds;
+	private final int[] xs;
+	private final int[] ys;
+	private final int[] zs;
+	private final boolean[] placed;
+
+	private int next = 0;
+	private int size = 0;
+
+	/**
+	 * @param capacity the number of most recent events to keep
+	 */
+	public BlockEventLog(int capacity) {
+		this.worlds = new World[capacity];
+		this.xs = new int[capacity];
+		this.ys = new int[capacity];
+		this.zs = new int[capacity];
+		this.placed = new boolean[capacity];
+	}
+
+	/**
+	 * Records a block event.
+	 *
+	 * @param world the world the block is in
+	 * @param x the block's x coordinate
+	 * @param y the block's y coordinate
+	 * @param z the block's z coordinate
+	 * @param place whether the block was placed rather than broken
+	 */
+	public void record(World world, int x, int y, int z, boolean place) {
+		worlds[next] = world;
+		xs[next] = x;
+		ys[next] = y;
+		zs[next] = z;
+		placed[next] = place;
+		next = (next + 1) % worlds.length;
+		if (size < worlds.length) size++;
+	}
+
+	/**
+	 * @return the number of events recorded
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Replays the recorded events through the surface visibility check, once asking the world for every event and
+	 * once through a fresh {@link SurfaceHeightCache}, and measures both. Must be called from the main thread.
+	 *
+	 * <p>The events are replayed against the world as it is now, so the visibility decisions can differ from when
+	 * the events happened.
+	 *
+	 * @return the measurements, the fastest of several rounds
+	 */
+	public ReplayResult replaySurfaceChecks() {
+		ReplayResult result = new ReplayResult();
+		result.events = size;
+		result.directNanos = Long.MAX_VALUE;
+		result.cachedNanos = Long.MAX_VALUE;
+
+		int start = (next - size + worlds.length) % worlds.length;
+		for (int round = 0; round < REPLAY_ROUNDS; round++) {
+			int visible = 0;
+			long begin = System.nanoTime();
+			for (int i = 0; i < size; i++) {
+				int e = (start + i) % worlds.length;
+				if (ys[e] >= worlds[e].getHighestBlockYAt(xs[e], zs[e]) - 1) visible++;
+			}
+			result.directNanos = Math.min(result.directNanos, System.nanoTime() - begin);
+			result.directVisible = visible;
+
+			Map<World, SurfaceHeightCache> caches = new HashMap<>();
+			visible = 0;
+			begin = System.nanoTime();
+			for (int i = 0; i < size; i++) {
+				int e = (start + i) % worlds.length;
+				SurfaceHeightCache cache = caches.computeIfAbsent(worlds[e], SurfaceHeightCache::new);
+				if (placed[e]) {
+					cache.onPlace(xs[e], ys[e], zs[e]);
+					if (ys[e] >= cache.getHeight(xs[e], zs[e]) - 1) visible++;
+				} else {
+					if (ys[e] >= cache.getHeight(xs[e], zs[e]) - 1) visible++;
+					cache.onBreak(xs[e], ys[e], zs[e]);
+				}
+			}
+			result.cachedNanos = Math.min(result.cachedNanos, System.nanoTime() - begin);
+			result.cachedVisible = visible;
+
+			result.worldQueries = 0;
+			for (SurfaceHeightCache cache : caches.values()) result.worldQueries += cache.getMisses();
+		}
+		return result;
+	}
+
+	/**
+	 * The outcome of {@link BlockEventLog#replaySurfaceChecks()}.
+	 */
+	public static final class ReplayResult {
+		private int events;
+		private long directNanos;
+		private long cachedNanos;
+		private int directVisible;
+		private int cachedVisible;
+		private long worldQueries;
+
+		public int getEvents() {
+			return events;
+		}
+
+		/**
+		 * @return the average cost of a check that asks the world, in nanoseconds
+		 */
+		public double getDirectNanosPerEvent() {
+			return events == 0 ? 0 : (double) directNanos / events;
+		}
+
+		/**
+		 * @return the average cost of a check through the cache, in nanoseconds
+		 */
+		public double getCachedNanosPerEvent() {
+			return events == 0 ? 0 : (double) cachedNanos / events;
+		}
+
+		public int getDirectVisible() {
+			return directVisible;
+		}
+
+		public int getCachedVisible() {
+			return cachedVisible;
+		}
+
+		/**
+		 * @return the number of times the cache had to ask the world
+		 */
+		public long getWorldQueries() {
+			return worldQueries;
+		}
+	}
+}
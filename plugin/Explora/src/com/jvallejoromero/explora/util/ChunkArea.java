@@ -0,0 +1,64 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.Objects;
+
+/**
+ * A rectangle of chunks: {@code width} chunks along x and {@code height} chunks along z, starting at chunk
+ * {@code (x, z)}.
+ *
+ * @see ExploredAreas
+ */
+public class ChunkArea {
+    private final int x;
+    private final int z;
+    private final int width;
+    private final int height;
+
+    public ChunkArea(int x, int z, int width, int height) {
+        this.x = x;
+        this.z = z;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of chunks in the area
+     */
+    public int getChunkCount() {
+        return width * height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChunkArea)) return false;
+        ChunkArea other = (ChunkArea) o;
+        return x == other.x && z == other.z && width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, z, width, height);
+    }
+
+    @Override
+    public String toString() {
+        return x + "," + z + " " + width + "x" + height;
+    }
+}
@@ -0,0 +1,401 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes chunk batches for {@code /api/chunks/update/batch} in compact binary formats.
+ *
+ * <p>All binary formats start with the world name ({@code varint length + UTF-8 bytes}) and are sent
+ * gzip-compressed with {@code Content-Encoding: gzip}:
+ * <ul>
+ *   <li>{@link Format#DELTA} - {@code varint count}, then the chunks sorted by x and z. Each chunk is written as
+ *       a zig-zag varint of its x delta, followed by a zig-zag varint of its z delta if x did not change, or its
+ *       absolute z otherwise. Neighbouring chunks cost about 2 bytes before compression.</li>
+ *   <li>{@link Format#BITMAP} - {@code varint regionCount}, then per region its zig-zag varint x and z followed by
+ *       a 1024-bit (128 byte) bitmap. Bit {@code (chunkZ & 31) * 32 + (chunkX & 31)} is set for every explored
+ *       chunk; bit {@code i} is stored in byte {@code i >> 3} at position {@code i & 7}.</li>
+ *   <li>{@link Format#AREAS} - {@code varint areaCount}, then the chunks as rectangles (see {@link ExploredAreas}) in
+ *       region order. Each area is written as zig-zag varints of its x and z deltas from the previous area,
+ *       followed by varints of its width and height minus one. An area costs about 4 bytes before compression,
+ *       however many chunks it covers.</li>
+ * </ul>
+ *
+ * <p>{@link Format#JSON} is the original {@code {"world": .., "chunks": [{"x": .., "z": ..}]}} body and is used
+ * whenever the backend has not announced support for a binary format.
+ */
+public final class ChunkBatchEncoder {
+
+	/**
+	 * Wire formats for chunk batches, identified by their content type.
+	 */
+	public enum Format {
+		JSON("application/json"),
+		DELTA("application/vnd.explora.chunks-delta"),
+		BITMAP("application/vnd.explora.chunks-bitmap"),
+		AREAS("application/vnd.explora.chunks-areas");
+
+		private final String contentType;
+
+		Format(String contentType) {
+			this.contentType = contentType;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * @param contentType a media type, optionally with parameters
+		 * @return the matching format, or {@code null} if none matches
+		 */
+		public static Format fromContentType(String contentType) {
+			if (contentType == null) return null;
+			String mediaType = contentType.split(";")[0].trim();
+			for (Format format : values()) {
+				if (format.contentType.equalsIgnoreCase(mediaType)) return format;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Rough encoded sizes used to pick the smallest format: about 2 bytes per chunk as delta varints, 128 bytes per
+	 * region bitmap, and 4 bytes per area.
+	 */
+	private static final int DELTA_BYTES_PER_CHUNK = 2;
+	private static final int BITMAP_BYTES_PER_REGION = 128;
+	private static final int AREA_BYTES = 4;
+
+	/**
+	 * Offset that makes region coordinates non-negative so they fit in 21 bits; covers the whole
+	 * 30 million block world border (about 58,600 regions in each direction).
+	 */
+	private static final int REGION_OFFSET = 1 << 20;
+
+	private ChunkBatchEncoder() {}
+
+	/**
+	 * Chooses the wire format for a batch.
+	 *
+	 * @param configured the configured format ({@code auto}, {@code json}, {@code delta} or {@code bitmap})
+	 * @param chunks the chunks to send
+	 * @param accepted the formats the backend accepts
+	 * @return the format to send the batch in
+	 */
+	public static Format choose(String configured, Collection<ChunkCoord> chunks, Set<Format> accepted) {
+		if (!"auto".equalsIgnoreCase(configured)) {
+			try {
+				Format format = Format.valueOf(configured.toUpperCase());
+				return accepted.contains(format) ? format : Format.JSON;
+			} catch (IllegalArgumentException ex) {
+				return Format.JSON;
+			}
+		}
+
+		if (!accepted.contains(Format.DELTA) && !accepted.contains(Format.BITMAP) && !accepted.contains(Format.AREAS)) {
+			return Format.JSON;
+		}
+
+		Format best = accepted.contains(Format.DELTA) ? Format.DELTA : null;
+		long bestBytes = best != null ? (long) chunks.size() * DELTA_BYTES_PER_CHUNK : Long.MAX_VALUE;
+
+		int regions;
+		if (accepted.contains(Format.AREAS)) {
+			ExploredAreas areas = ExploredAreas.of(chunks);
+			regions = areas.getRegionCount();
+			if ((long) areas.getAreaCount() * AREA_BYTES < bestBytes) {
+				best = Format.AREAS;
+				bestBytes = (long) areas.getAreaCount() * AREA_BYTES;
+			}
+		} else {
+			regions = countRegions(chunks);
+		}
+
+		if (accepted.contains(Format.BITMAP) && (long) regions * BITMAP_BYTES_PER_REGION <= bestBytes) {
+			best = Format.BITMAP;
+		}
+		return best;
+	}
+
+	/**
+	 * Encodes and gzip-compresses a batch in one of the binary formats.
+	 *
+	 * @param world the world the chunks belong to
+	 * @param chunks the chunks to encode
+	 * @param format {@link Format#DELTA}, {@link Format#BITMAP} or {@link Format#AREAS}
+	 * @return the gzip-compressed body
+	 */
+	public static byte[] encode(String world, Collection<ChunkCoord> chunks, Format format) {
+		byte[] raw;
+		switch (format) {
+			case BITMAP:
+				raw = encodeBitmap(world, chunks);
+				break;
+			case AREAS:
+				raw = encodeAreas(world, ExploredAreas.of(chunks).getAreas());
+				break;
+			default:
+				raw = encodeDelta(world, chunks);
+				break;
+		}
+		return gzip(raw);
+	}
+
+	/**
+	 * Encodes a batch as sorted zig-zag delta varints, without compression.
+	 *
+	 * @param world the world the chunks belong to
+	 * @param chunks the chunks to encode
+	 * @return the encoded batch
+	 */
+	public static byte[] encodeDelta(String world, Collection<ChunkCoord> chunks) {
+		long[] keys = new long[chunks.size()];
+		int i = 0;
+		for (ChunkCoord chunk : chunks) {
+			keys[i++] = sortKey(chunk.getX(), chunk.getZ());
+		}
+		Arrays.sort(keys);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 + keys.length * 2);
+		writeString(out, world);
+		writeVarInt(out, keys.length);
+
+		int prevX = 0;
+		int prevZ = 0;
+		for (long key : keys) {
+			int x = (int) (key >> 32);
+			int z = (int) key ^ Integer.MIN_VALUE;
+
+			int dx = x - prevX;
+			writeVarInt(out, zigZag(dx));
+			writeVarInt(out, zigZag(dx == 0 ? z - prevZ : z));
+
+			prevX = x;
+			prevZ = z;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes a batch as per-region 1024-bit bitmaps, without compression.
+	 *
+	 * @param world the world the chunks belong to
+	 * @param chunks the chunks to encode
+	 * @return the encoded batch
+	 */
+	public static byte[] encodeBitmap(String world, Collection<ChunkCoord> chunks) {
+		// region x (21 bits) | region z (21 bits) | bit index (10 bits), so sorting groups chunks by region
+		long[] keys = new long[chunks.size()];
+		int i = 0;
+		for (ChunkCoord chunk : chunks) {
+			long regionX = (chunk.getX() >> 5) + REGION_OFFSET;
+			long regionZ = (chunk.getZ() >> 5) + REGION_OFFSET;
+			int bit = (chunk.getZ() & 31) * 32 + (chunk.getX() & 31);
+			keys[i++] = (regionX << 31) | (regionZ << 10) | bit;
+		}
+		Arrays.sort(keys);
+
+		int regionCount = 0;
+		for (int k = 0; k < keys.length; k++) {
+			if (k == 0 || (keys[k] >>> 10) != (keys[k - 1] >>> 10)) regionCount++;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 + regionCount * 134);
+		writeString(out, world);
+		writeVarInt(out, regionCount);
+
+		byte[] bitmap = new byte[128];
+		int k = 0;
+		while (k < keys.length) {
+			long region = keys[k] >>> 10;
+			Arrays.fill(bitmap, (byte) 0);
+
+			for (; k < keys.length && (keys[k] >>> 10) == region; k++) {
+				int bit = (int) (keys[k] & 1023);
+				bitmap[bit >> 3] |= 1 << (bit & 7);
+			}
+
+			writeVarInt(out, zigZag((int) (region >>> 21) - REGION_OFFSET));
+			writeVarInt(out, zigZag((int) (region & 0x1FFFFF) - REGION_OFFSET));
+			out.write(bitmap, 0, bitmap.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes areas of chunks as delta varints, without compression.
+	 *
+	 * @param world the world the areas belong to
+	 * @param areas the areas to encode, e.g. from {@link ExploredAreas#getAreas()}
+	 * @return the encoded areas
+	 */
+	public static byte[] encodeAreas(String world, List<ChunkArea> areas) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 + areas.size() * 4);
+		writeString(out, world);
+		writeVarInt(out, areas.size());
+
+		int prevX = 0;
+		int prevZ = 0;
+		for (ChunkArea area : areas) {
+			writeVarInt(out, zigZag(area.getX() - prevX));
+			writeVarInt(out, zigZag(area.getZ() - prevZ));
+			writeVarInt(out, area.getWidth() - 1);
+			writeVarInt(out, area.getHeight() - 1);
+
+			prevX = area.getX();
+			prevZ = area.getZ();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes whole region bitmaps in the {@link Format#BITMAP} layout, without compression. Unlike
+	 * {@link #encodeBitmap(String, Collection)}, regions with an all-zero bitmap are kept, which tells the
+	 * backend to clear them when regions are replaced.
+	 *
+	 * @param world the world the regions belong to
+	 * @param bitmaps 128 byte bitmaps keyed by region, packed as {@code (regionX << 32) | (regionZ ^ Integer.MIN_VALUE)}
+	 * @return the encoded regions
+	 */
+	public static byte[] encodeRegionBitmaps(String world, Map<Long, byte[]> bitmaps) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 + bitmaps.size() * 134);
+		writeString(out, world);
+		writeVarInt(out, bitmaps.size());
+
+		for (Map.Entry<Long, byte[]> entry : bitmaps.entrySet()) {
+			long region = entry.getKey();
+			writeVarInt(out, zigZag((int) (region >> 32)));
+			writeVarInt(out, zigZag((int) region ^ Integer.MIN_VALUE));
+			out.write(entry.getValue(), 0, entry.getValue().length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decodes a batch produced by {@link #encodeDelta(String, Collection)}.
+	 *
+	 * @param data the encoded batch
+	 * @return the decoded batch
+	 */
+	public static DecodedBatch decodeDelta(byte[] data) {
+		int[] pos = {0};
+		int nameLength = readVarInt(data, pos);
+		String world = new String(data, pos[0], nameLength, StandardCharsets.UTF_8);
+		pos[0] += nameLength;
+
+		int count = readVarInt(data, pos);
+		List<ChunkCoord> chunks = new ArrayList<>(count);
+
+		int prevX = 0;
+		int prevZ = 0;
+		for (int i = 0; i < count; i++) {
+			int dx = unZigZag(readVarInt(data, pos));
+			int zValue = unZigZag(readVarInt(data, pos));
+
+			int x = prevX + dx;
+			int z = dx == 0 ? prevZ + zValue : zValue;
+			chunks.add(new ChunkCoord(x, z));
+
+			prevX = x;
+			prevZ = z;
+		}
+		return new DecodedBatch(world, chunks);
+	}
+
+	/**
+	 * Compresses a body with gzip.
+	 *
+	 * @param raw the uncompressed body
+	 * @return the gzip-compressed body
+	 */
+	public static byte[] gzip(byte[] raw) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+			gzip.write(raw);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return out.toByteArray();
+	}
+
+	private static int countRegions(Collection<ChunkCoord> chunks) {
+		Set<Long> regions = new HashSet<>();
+		for (ChunkCoord chunk : chunks) {
+			regions.add(sortKey(chunk.getX() >> 5, chunk.getZ() >> 5));
+		}
+		return regions.size();
+	}
+
+	/**
+	 * Packs two signed ints into a long that sorts by x, then z.
+	 */
+	private static long sortKey(int x, int z) {
+		return ((long) x << 32) | ((z ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] pos) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * A decoded chunk batch.
+	 */
+	public static final class DecodedBatch {
+		private final String world;
+		private final List<ChunkCoord> chunks;
+
+		private DecodedBatch(String world, List<ChunkCoord> chunks) {
+			this.world = world;
+			this.chunks = chunks;
+		}
+
+		public String getWorld() {
+			return world;
+		}
+
+		public List<ChunkCoord> getChunks() {
+			return chunks;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.OutboxManager;
+
+/**
+ * Sends explored chunks to the backend as a pipeline of batches with an adaptive window and batch size.
+ *
+ * <p>Up to {@code window} batches are in flight at once; whenever one completes the next one is sent right away,
+ * so throughput follows the backend instead of a fixed timer. Both the window and the batch size are tuned
+ * AIMD-style from what the backend does:
+ * <ul>
+ *   <li>After a full window of batches answered within {@code chunk-sync-target-latency-millis}, the window grows
+ *       by one and the batch size by {@code backend-chunk-batch-size} (additive increase).</li>
+ *   <li>A batch that fails, or is answered slower than twice the target latency, halves both
+ *       (multiplicative decrease).</li>
+ * </ul>
+ *
+ * <p>Each world's chunks are sent region by region, so a batch covers few regions and encodes compactly as region
+ * bitmaps or areas (see {@link ChunkBatchEncoder}).
+ *
+ * <p>Batches go through the {@link OutboxManager}, so failed batches are queued on disk instead of being lost. The
+ * outbox sends chunk batches concurrently, so the window is the number of requests really in flight, and latency is
+ * measured from when a batch's request is sent. Everything runs on HTTP client threads; no main thread work is done
+ * per batch. When all batches are done,
+ * the achieved chunks per second is logged and available from {@link #getChunksPerSecond()}.
+ */
+public class ChunkBatchSender {
+
+	private static final int MIN_BATCH_SIZE = 100;
+
+	// keeps the chunks of a region together, so batches cover few regions and compress well as bitmaps or areas
+	private static final Comparator<ChunkCoord> REGION_ORDER = Comparator
+			.comparingInt((ChunkCoord chunk) -> chunk.getX() >> 5)
+			.thenComparingInt(chunk -> chunk.getZ() >> 5)
+			.thenComparingInt(ChunkCoord::getZ)
+			.thenComparingInt(ChunkCoord::getX);
+
+	private final Map<String, List<ChunkCoord>> worldChunks;
+	private final Iterator<Map.Entry<String, List<ChunkCoord>>> worlds;
+	private final CompletableFuture<Void> finished = new CompletableFuture<>();
+	private final int totalChunks;
+
+	private String currentWorld;
+	private List<ChunkCoord> currentChunks;
+	private int currentIndex;
+
+	private double window = 2;
+	private int batchSize;
+	private int inFlight = 0;
+	private int successesSinceIncrease = 0;
+	private boolean pumping = false;
+
+	private long startNanos;
+	private long endNanos;
+	private int sentChunks = 0;
+	private int deliveredChunks = 0;
+	private int queuedChunks = 0;
+	private int batchesSent = 0;
+	private double averageLatencyMillis = 0;
+
+	/**
+	 * @param worldChunks the chunks to send, per world name
+	 */
+	public ChunkBatchSender(Map<String, ? extends List<ChunkCoord>> worldChunks) {
+		this.worldChunks = new LinkedHashMap<>();
+		int total = 0;
+		for (Map.Entry<String, ? extends List<ChunkCoord>> entry : worldChunks.entrySet()) {
+			if (entry.getValue().isEmpty()) continue;
+			this.worldChunks.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+			total += entry.getValue().size();
+		}
+		this.worlds = this.worldChunks.entrySet().iterator();
+		this.totalChunks = total;
+		this.batchSize = Math.max(MIN_BATCH_SIZE, Constants.BACKEND_CHUNK_BATCH_SIZE);
+	}
+
+	/**
+	 * Starts sending. May be called from any thread.
+	 *
+	 * @return a future completed once every batch has been delivered or queued in the outbox
+	 */
+	public synchronized CompletableFuture<Void> start() {
+		startNanos = System.nanoTime();
+		pump();
+		return finished;
+	}
+
+	/**
+	 * Sends batches until the window is full or nothing is left, and finishes once everything is answered.
+	 */
+	private synchronized void pump() {
+		if (pumping) return;
+		pumping = true;
+
+		try {
+			while (inFlight < (int) window) {
+				List<ChunkCoord> batch = nextBatch();
+				if (batch == null) break;
+
+				String world = currentWorld;
+				AtomicLong sentAt = new AtomicLong(System.nanoTime());
+				inFlight++;
+				sentChunks += batch.size();
+				batchesSent++;
+
+				ExploraPlugin.getInstance().getOutboxManager().submitChunkBatch(world, batch, () -> sentAt.set(System.nanoTime()))
+						.whenComplete((delivered, ex) -> {
+							onBatchComplete(batch.size(), delivered != null && delivered, (System.nanoTime() - sentAt.get()) / 1_000_000.0);
+						});
+			}
+		} finally {
+			pumping = false;
+		}
+
+		if (inFlight == 0 && !hasMoreBatches() && !finished.isDone()) {
+			finish();
+		}
+	}
+
+	private synchronized void onBatchComplete(int size, boolean delivered, double latencyMillis) {
+		inFlight--;
+
+		if (delivered) {
+			deliveredChunks += size;
+			averageLatencyMillis = averageLatencyMillis == 0 ? latencyMillis : averageLatencyMillis * 0.8 + latencyMillis * 0.2;
+
+			if (latencyMillis > Constants.CHUNK_SYNC_TARGET_LATENCY_MILLIS * 2) {
+				decrease();
+			} else if (latencyMillis <= Constants.CHUNK_SYNC_TARGET_LATENCY_MILLIS && ++successesSinceIncrease >= (int) window) {
+				window = Math.min(Constants.CHUNK_SYNC_MAX_WINDOW, window + 1);
+				batchSize = Math.min(Constants.CHUNK_SYNC_MAX_BATCH_SIZE, batchSize + Constants.BACKEND_CHUNK_BATCH_SIZE);
+				successesSinceIncrease = 0;
+			}
+		} else {
+			queuedChunks += size;
+			decrease();
+		}
+
+		pump();
+	}
+
+	private void decrease() {
+		window = Math.max(1, window / 2);
+		batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+		successesSinceIncrease = 0;
+	}
+
+	private List<ChunkCoord> nextBatch() {
+		while (currentChunks == null || currentIndex >= currentChunks.size()) {
+			if (!worlds.hasNext()) return null;
+
+			Map.Entry<String, List<ChunkCoord>> next = worlds.next();
+			currentWorld = next.getKey();
+			currentChunks = next.getValue();
+			currentChunks.sort(REGION_ORDER);
+			currentIndex = 0;
+		}
+
+		int end = Math.min(currentIndex + batchSize, currentChunks.size());
+		List<ChunkCoord> batch = currentChunks.subList(currentIndex, end);
+		currentIndex = end;
+		return batch;
+	}
+
+	private boolean hasMoreBatches() {
+		return (currentChunks != null && currentIndex < currentChunks.size()) || worlds.hasNext();
+	}
+
+	private void finish() {
+		endNanos = System.nanoTime();
+
+		ExploraPlugin.log("&aFinished streaming " + sentChunks + " chunks to backend for " + worldChunks.size() + " world(s) in "
+				+ String.format("%.1fs (%.0f chunks/s, %d batches, final batch size %d, window %d, avg latency %.0fms)",
+						getElapsedSeconds(), getChunksPerSecond(), batchesSent, batchSize, (int) window, averageLatencyMillis));
+
+		if (queuedChunks > 0) {
+			ExploraPlugin.warn(queuedChunks + " chunks could not be delivered right now and were queued in the backend outbox.");
+		}
+		finished.complete(null);
+	}
+
+	private double getElapsedSeconds() {
+		long end = endNanos != 0 ? endNanos : System.nanoTime();
+		return startNanos == 0 ? 0 : (end - startNanos) / 1e9;
+	}
+
+	/**
+	 * @return the chunks sent per second so far, or over the whole run once finished
+	 */
+	public synchronized double getChunksPerSecond() {
+		double seconds = getElapsedSeconds();
+		return seconds <= 0 ? 0 : sentChunks / seconds;
+	}
+
+	public synchronized int getTotalChunks() {
+		return totalChunks;
+	}
+
+	public synchronized int getSentChunks() {
+		return sentChunks;
+	}
+
+	public synchronized int getDeliveredChunks() {
+		return deliveredChunks;
+	}
+
+	public synchronized int getQueuedChunks() {
+		return queuedChunks;
+	}
+
+	public synchronized int getBatchSize() {
+		return batchSize;
+	}
+
+	public synchronized int getWindow() {
+		return (int) window;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized double getAverageLatencyMillis() {
+		return averageLatencyMillis;
+	}
+
+	public boolean isFinished() {
+		return finished.isDone();
+	}
+}
@@ -24,6 +24,8 @@ import org.bukkit.Bukkit;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.ThrottleManager;
+import com.jvallejoromero.explora.manager.ThrottleManager.WorkType;
 
 import net.querz.mcaselector.io.mca.RegionChunk;
 import net.querz.mcaselector.io.mca.RegionMCAFile;
@@ -45,7 +47,6 @@ import net.querz.mcaselector.util.point.Point2i;
 public class ChunkUtils {
 
 	private static final Gson gson = new GsonBuilder().create();	
-	private static ExploraPlugin plugin = ExploraPlugin.getInstance();
 	
 	
 	/**
@@ -59,6 +60,7 @@ public class ChunkUtils {
 	 * @param onComplete a Runnable to run on the main thread after scanning is complete; may be null
 	 */
 	public static void scanWorldsAsync(Runnable onComplete) {
+		ExploraPlugin plugin = ExploraPlugin.getInstance();
 		Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
 			File serverRoot = new File(".");
 			File[] candidates = serverRoot.listFiles(File::isDirectory);
@@ -80,7 +82,7 @@ public class ChunkUtils {
 			}
 			
 			if (onComplete != null) {
-				Bukkit.getScheduler().runTask(plugin, onComplete); 
+				plugin.getMainThreadScheduler().runTask(onComplete); 
 			}
 		});
 	}
@@ -150,6 +152,7 @@ public class ChunkUtils {
 	 * Extracts explored chunk coordinates from all valid `.mca` region files in the given directory.
 	 *
 	 * <p>A chunk is considered explored if it is present and not marked as empty in the region file.
+	 * Each region file waits for a {@link WorkType#SCAN} permit, so scanning pauses while the server is under load.
 	 *
 	 * @param regionDir the directory containing `.mca` files
 	 * @return a set of explored {@link ChunkCoord} entries
@@ -160,7 +163,16 @@ public class ChunkUtils {
 	    File[] regionFiles = regionDir.listFiles((dir, name) -> name.endsWith(".mca"));
 	    if (regionFiles == null) return exploredChunks;
 
+	    ThrottleManager throttle = ExploraPlugin.getInstance().getThrottleManager();
+	    
 	    for (File regionFile : regionFiles) {
+	        try {
+	            throttle.acquire(WorkType.SCAN);
+	        } catch (InterruptedException e) {
+	            Thread.currentThread().interrupt();
+	            break;
+	        }
+	        
 	        try {
 	            RegionMCAFile region = new RegionMCAFile(regionFile);
 	            region.load(false); // load raw = false
@@ -177,6 +189,8 @@ public class ChunkUtils {
 
 	        } catch (Exception e) {
 	            ExploraPlugin.warn("Failed to load region: " + regionFile.getName() + " - " + e.getMessage());
+	        } finally {
+	            throttle.release(WorkType.SCAN);
 	        }
 	    }
 
@@ -187,6 +201,9 @@ public class ChunkUtils {
 	/**
 	 * Saves the explored chunks to a JSON file inside the plugin's data folder.
 	 *
+	 * <p>With {@code chunk-export-format: areas}, the chunks are saved as rectangles (see {@link ExploredAreas})
+	 * instead of one entry per chunk.
+	 *
 	 * @param worldName The name of the world or dimension (e.g., "world", "world_nether").
 	 * @param chunks    A set of strings representing explored chunks in "x,z" format.
 	 */
@@ -195,6 +212,25 @@ public class ChunkUtils {
 			Files.createDirectories(Constants.SAVE_PATH);
 			File output = new File(Constants.SAVE_PATH.toFile(), "explored_chunks_" + worldName + ".json");
 
+			if (Constants.CHUNK_EXPORT_AREAS) {
+				long begin = System.nanoTime();
+				ExploredAreas areas = ExploredAreas.of(chunks);
+				long elapsed = System.nanoTime() - begin;
+
+				Map<String, Object> data = new LinkedHashMap<>();
+				data.put("world", worldName);
+				data.put("dimension", dimension);
+				data.put("exploredAreas", areas.toJson());
+
+				try (FileWriter writer = new FileWriter(output)) {
+					gson.toJson(data, writer);
+				}
+
+				ExploraPlugin.log("&aSaved explored chunks for " + worldName + " (" + chunks.size() + " chunks as " + areas.getAreaCount() + " areas"
+						+ String.format(", %.1fx fewer entries, computed in %.1fms)", chunks.size() / (double) Math.max(1, areas.getAreaCount()), elapsed / 1e6));
+				return;
+			}
+
 			List<Map<String, Integer>> chunkList = new ArrayList<>();
 
 			for (ChunkCoord chunk : chunks) {
@@ -241,4 +277,42 @@ public class ChunkUtils {
 
 		return scaled;
 	}
+
+	/**
+	 * Packs a chunk, region or tile coordinate pair into a long, e.g. as a hash table key.
+	 *
+	 * @param x the x coordinate
+	 * @param z the z coordinate
+	 * @return the key; {@code (int) (key >> 32)} is x and {@code (int) key} is z
+	 */
+	public static long key(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Packs a coordinate pair into a long that sorts by x, then z.
+	 *
+	 * @param x the x coordinate
+	 * @param z the z coordinate
+	 * @return the key; {@code (int) (key >> 32)} is x and {@code (int) key ^ Integer.MIN_VALUE} is z
+	 */
+	public static long sortedKey(int x, int z) {
+		return ((long) x << 32) | ((z ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Spreads the bits of a {@link #key(int, int)} (the finalizer of MurmurHash3), so neighbouring coordinates do
+	 * not probe the same run of an open-addressing table.
+	 *
+	 * @param key the key
+	 * @return the mixed key
+	 */
+	public static long mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
 }
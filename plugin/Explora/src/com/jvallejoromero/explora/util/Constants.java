@@ -20,6 +20,9 @@ public class Constants {
     
     public static Path SAVE_PATH;
     public static Path RENDER_DATA_PATH;
+    public static boolean TILE_STORAGE_PACK;
+    public static long TILE_PACK_COMPACTION_TICKS;
+    public static long TILE_PACK_SYNC_TICKS;
     public static boolean SHOULD_SCAN_FOLDERS;
     public static boolean DEBUG_MODE;
     
@@ -31,8 +34,11 @@ public class Constants {
     
     public static String BACKEND_API_KEY;
     
-    public static int BACKEND_CHUNK_BATCH_POST_DELAY_TICKS;
     public static int BACKEND_CHUNK_BATCH_SIZE;
+    public static String BACKEND_CHUNK_WIRE_FORMAT;
+    public static int CHUNK_SYNC_MAX_WINDOW;
+    public static int CHUNK_SYNC_MAX_BATCH_SIZE;
+    public static long CHUNK_SYNC_TARGET_LATENCY_MILLIS;
     
     public static String BACKEND_CHUNK_POST_URL;
     public static String BACKEND_CHUNK_BATCH_POST_URL;
@@ -40,9 +46,74 @@ public class Constants {
     public static String BACKEND_SERVER_STATUS_POST_URL;
     public static String BACKEND_DELETE_CHUNKS_URL;
     public static String BACKEND_UPLOAD_TILE_ZIP_URL;
+    public static String BACKEND_CHUNK_MERKLE_URL;
+    
+    public static String BACKEND_TILE_MANIFEST_URL;
+    public static String BACKEND_TILE_DELETE_URL;
+    public static String BACKEND_TILE_SHARD_URL;
+    public static String BACKEND_TILE_COMMIT_URL;
+    public static String BACKEND_TILE_ABORT_URL;
+    public static String BACKEND_SOCKET_URL;
+    
+    public static boolean CHUNK_RECONCILIATION_ENABLED;
+    
+    public static boolean TILE_SYNC_ENABLED;
+    public static Path TILE_MANIFEST_PATH;
+    public static long TILE_SYNC_BATCH_BYTES;
+    
+    public static boolean TILE_UPLOAD_SHARDING_ENABLED;
+    public static long TILE_UPLOAD_SHARD_BYTES;
+    public static int TILE_UPLOAD_PARALLELISM;
+    public static int TILE_UPLOAD_SHARD_RETRIES;
+    
+    public static boolean LIVE_STREAM_ENABLED;
+    public static long LIVE_STREAM_KEYFRAME_MILLIS;
+    public static int PLAYER_STREAM_YAW_BUCKETS;
+    public static long PLAYER_STREAM_SAMPLE_TICKS;
+    public static double PLAYER_STREAM_MAX_ERROR;
+    public static long PLAYER_STREAM_HEARTBEAT_MILLIS;
+    public static int PLAYER_STREAM_UPDATES_PER_SECOND;
+    public static long SERVER_STATUS_HEARTBEAT_MILLIS;
+    public static long SERVER_STATUS_TIME_TOLERANCE_TICKS;
+    public static long BLOCK_CHANGE_HALF_LIFE_MILLIS;
+    public static int BLOCK_CHANGE_MAX_TRACKED_CHUNKS;
+    public static boolean EXPLORATION_SAMPLING;
+    public static long EXPLORATION_SAMPLE_TICKS;
+    public static boolean EXPLORATION_VIEW_DISTANCE;
+    public static boolean FOG_MASKS_ENABLED;
+    public static int FOG_MASK_LEVELS;
+    public static boolean CHUNK_EXPORT_AREAS;
+    public static boolean BIOME_METADATA_BINARY;
+    
+    public static long HTTP_CONNECT_TIMEOUT_MILLIS;
+    public static long HTTP_REQUEST_TIMEOUT_MILLIS;
+    public static long HTTP_LIVE_UPDATE_TIMEOUT_MILLIS;
+    public static long HTTP_UPLOAD_TIMEOUT_MILLIS;
+    public static int HTTP_MAX_IN_FLIGHT;
+    public static int HTTP_MAX_QUEUED_REQUESTS;
+    
+    public static boolean OUTBOX_ENABLED;
+    public static Path OUTBOX_PATH;
+    public static long OUTBOX_MAX_BYTES;
+    public static long OUTBOX_RETRY_BASE_MILLIS;
+    public static long OUTBOX_RETRY_MAX_MILLIS;
+    public static int OUTBOX_CIRCUIT_FAILURE_THRESHOLD;
     
     public static int BLOCKS_CHANGED_PER_CHUNK_THRESHOLD;
     
+    public static boolean THROTTLE_ENABLED;
+    public static double THROTTLE_MSPT_BUDGET;
+    public static double THROTTLE_MSPT_PAUSE;
+    public static double THROTTLE_HEAP_BUDGET_RATIO;
+    public static double THROTTLE_HEAP_PAUSE_RATIO;
+    public static long THROTTLE_EVALUATION_TICKS;
+    
+    public static boolean SNAPSHOT_RENDERING_ENABLED;
+    public static long SNAPSHOT_CAPTURE_BUDGET_MICROS;
+    public static int SNAPSHOT_CACHE_MAX_CHUNKS;
+    
+    public static long MAIN_THREAD_BUDGET_MICROS;
+    
     private static boolean initialized = false;
 
     /**
@@ -57,6 +128,9 @@ public class Constants {
         CustomConfigurationFile config = plugin.getConfiguration();
         SAVE_PATH = plugin.getDataFolder().toPath().resolve(config.yml().getString("chunk-data-folder"));
         RENDER_DATA_PATH = plugin.getDataFolder().toPath().resolve(config.yml().getString("render-data-folder"));
+        TILE_STORAGE_PACK = "pack".equalsIgnoreCase(config.yml().getString("tile-storage", "pack"));
+        TILE_PACK_COMPACTION_TICKS = Math.max(1, config.yml().getLong("tile-pack-compaction-minutes", 30)) * 60 * 20;
+        TILE_PACK_SYNC_TICKS = Math.max(1, config.yml().getLong("tile-pack-sync-seconds", 10)) * 20;
         SHOULD_SCAN_FOLDERS = config.yml().getBoolean("scan-region-files");
         DEBUG_MODE = config.yml().getBoolean("debug-mode");
         CHUNK_UPDATE_TICKS = config.yml().getLong("chunk-update-ticks");
@@ -64,15 +138,74 @@ public class Constants {
         SERVER_STATUS_UPDATE_TICKS = config.yml().getLong("server-status-update-ticks");
         BACKEND_PORT = config.yml().getInt("backend-port");
         BACKEND_API_KEY = config.yml().getString("backend-api-key");
-        BACKEND_CHUNK_BATCH_POST_DELAY_TICKS = config.yml().getInt("backend-chunk-batch-post-delay-ticks");
         BACKEND_CHUNK_BATCH_SIZE = config.yml().getInt("backend-chunk-batch-size");
+        BACKEND_CHUNK_WIRE_FORMAT = config.yml().getString("backend-chunk-wire-format", "auto");
+        CHUNK_SYNC_MAX_WINDOW = config.yml().getInt("chunk-sync-max-window", 8);
+        CHUNK_SYNC_MAX_BATCH_SIZE = config.yml().getInt("chunk-sync-max-batch-size", 20000);
+        CHUNK_SYNC_TARGET_LATENCY_MILLIS = config.yml().getLong("chunk-sync-target-latency-millis", 500);
         BACKEND_CHUNK_POST_URL = config.yml().getString("backend-chunk-post-url");
         BACKEND_CHUNK_BATCH_POST_URL = config.yml().getString("backend-chunk-batch-post-url");
         BACKEND_PLAYER_POST_URL = config.yml().getString("backend-player-post-url");
         BACKEND_SERVER_STATUS_POST_URL = config.yml().getString("backend-server-status-update-url");
         BACKEND_DELETE_CHUNKS_URL = config.yml().getString("backend-delete-chunks-url");
         BACKEND_UPLOAD_TILE_ZIP_URL = config.yml().getString("backend-upload-tile-zip-url");
+        BACKEND_CHUNK_MERKLE_URL = config.yml().getString("backend-chunk-merkle-url", "http://localhost:%port%/api/chunks/merkle");
+        BACKEND_TILE_MANIFEST_URL = config.yml().getString("backend-tile-manifest-url", "http://localhost:%port%/api/tiles/manifest");
+        BACKEND_TILE_DELETE_URL = config.yml().getString("backend-tile-delete-url", "http://localhost:%port%/api/upload/tile-delete");
+        BACKEND_TILE_SHARD_URL = config.yml().getString("backend-tile-shard-url", "http://localhost:%port%/api/upload/tile-shard");
+        BACKEND_TILE_COMMIT_URL = config.yml().getString("backend-tile-commit-url", "http://localhost:%port%/api/upload/tile-commit");
+        BACKEND_TILE_ABORT_URL = config.yml().getString("backend-tile-abort-url", "http://localhost:%port%/api/upload/tile-abort");
+        BACKEND_SOCKET_URL = config.yml().getString("backend-socket-url", "ws://localhost:%port%/socket.io/?EIO=4&transport=websocket");
+        CHUNK_RECONCILIATION_ENABLED = config.yml().getBoolean("chunk-reconciliation-enabled", true);
+        TILE_SYNC_ENABLED = config.yml().getBoolean("tile-sync-enabled", true);
+        TILE_MANIFEST_PATH = plugin.getDataFolder().toPath().resolve(config.yml().getString("tile-manifest-folder", "tile-manifests"));
+        TILE_SYNC_BATCH_BYTES = Math.max(1, config.yml().getLong("tile-sync-batch-megabytes", 32)) * 1024L * 1024L;
+        TILE_UPLOAD_SHARDING_ENABLED = config.yml().getBoolean("tile-upload-sharding-enabled", true);
+        TILE_UPLOAD_SHARD_BYTES = Math.max(1, config.yml().getLong("tile-upload-shard-megabytes", 8)) * 1024L * 1024L;
+        TILE_UPLOAD_PARALLELISM = Math.max(1, config.yml().getInt("tile-upload-parallelism", 4));
+        TILE_UPLOAD_SHARD_RETRIES = Math.max(0, config.yml().getInt("tile-upload-shard-retries", 3));
+        LIVE_STREAM_ENABLED = config.yml().getBoolean("live-stream-enabled", true);
+        LIVE_STREAM_KEYFRAME_MILLIS = Math.max(1, config.yml().getLong("live-stream-keyframe-seconds", 60)) * 1000L;
+        PLAYER_STREAM_YAW_BUCKETS = config.yml().getInt("player-stream-yaw-buckets", 16);
+        PLAYER_STREAM_SAMPLE_TICKS = Math.max(1, config.yml().getLong("player-stream-sample-ticks", 2));
+        PLAYER_STREAM_MAX_ERROR = config.yml().getDouble("player-stream-max-error-blocks", 1.0);
+        PLAYER_STREAM_HEARTBEAT_MILLIS = Math.max(1, config.yml().getLong("player-stream-heartbeat-seconds", 10)) * 1000L;
+        PLAYER_STREAM_UPDATES_PER_SECOND = config.yml().getInt("player-stream-updates-per-second", 40);
+        SERVER_STATUS_HEARTBEAT_MILLIS = Math.max(1, config.yml().getLong("server-status-heartbeat-seconds", 30)) * 1000L;
+        SERVER_STATUS_TIME_TOLERANCE_TICKS = Math.max(1, config.yml().getLong("server-status-time-tolerance-ticks", 20));
+        HTTP_CONNECT_TIMEOUT_MILLIS = config.yml().getLong("http-connect-timeout-millis", 5000);
+        HTTP_REQUEST_TIMEOUT_MILLIS = config.yml().getLong("http-request-timeout-millis", 15000);
+        HTTP_LIVE_UPDATE_TIMEOUT_MILLIS = config.yml().getLong("http-live-update-timeout-millis", 3000);
+        HTTP_UPLOAD_TIMEOUT_MILLIS = config.yml().getLong("http-upload-timeout-millis", 300000);
+        HTTP_MAX_IN_FLIGHT = config.yml().getInt("http-max-in-flight", 8);
+        HTTP_MAX_QUEUED_REQUESTS = config.yml().getInt("http-max-queued-requests", 1000);
+        OUTBOX_ENABLED = config.yml().getBoolean("outbox-enabled", true);
+        OUTBOX_PATH = plugin.getDataFolder().toPath().resolve(config.yml().getString("outbox-folder", "outbox"));
+        OUTBOX_MAX_BYTES = config.yml().getLong("outbox-max-megabytes", 256) * 1024L * 1024L;
+        OUTBOX_RETRY_BASE_MILLIS = config.yml().getLong("outbox-retry-base-millis", 1000);
+        OUTBOX_RETRY_MAX_MILLIS = config.yml().getLong("outbox-retry-max-millis", 300000);
+        OUTBOX_CIRCUIT_FAILURE_THRESHOLD = config.yml().getInt("outbox-circuit-failure-threshold", 5);
         BLOCKS_CHANGED_PER_CHUNK_THRESHOLD = config.yml().getInt("blocks-changed-per-chunk-threshold");
+        BLOCK_CHANGE_HALF_LIFE_MILLIS = config.yml().getLong("block-change-half-life-seconds", 1800) * 1000L;
+        BLOCK_CHANGE_MAX_TRACKED_CHUNKS = Math.max(1, config.yml().getInt("block-change-max-tracked-chunks", 4096));
+        EXPLORATION_SAMPLING = "sample".equalsIgnoreCase(config.yml().getString("exploration-tracking", "move"));
+        EXPLORATION_SAMPLE_TICKS = Math.max(1, config.yml().getLong("exploration-sample-ticks", 10));
+        EXPLORATION_VIEW_DISTANCE = "view-distance".equalsIgnoreCase(config.yml().getString("exploration-area", "chunk"));
+        FOG_MASKS_ENABLED = config.yml().getBoolean("fog-masks-enabled", true);
+        FOG_MASK_LEVELS = Math.max(0, Math.min(8, config.yml().getInt("fog-mask-levels", 5)));
+        CHUNK_EXPORT_AREAS = "areas".equalsIgnoreCase(config.yml().getString("chunk-export-format", "chunks"));
+        BIOME_METADATA_BINARY = !"json".equalsIgnoreCase(config.yml().getString("biome-metadata-format", "binary"));
+        THROTTLE_ENABLED = config.yml().getBoolean("throttle-enabled", true);
+        THROTTLE_MSPT_BUDGET = config.yml().getDouble("throttle-mspt-budget", 55.0);
+        THROTTLE_MSPT_PAUSE = config.yml().getDouble("throttle-mspt-pause", 75.0);
+        THROTTLE_HEAP_BUDGET_RATIO = config.yml().getDouble("throttle-heap-budget-ratio", 0.80);
+        THROTTLE_HEAP_PAUSE_RATIO = config.yml().getDouble("throttle-heap-pause-ratio", 0.90);
+        THROTTLE_EVALUATION_TICKS = Math.max(1, config.yml().getLong("throttle-evaluation-ticks", 20));
+        SNAPSHOT_RENDERING_ENABLED = config.yml().getBoolean("snapshot-rendering-enabled", true);
+        SNAPSHOT_CAPTURE_BUDGET_MICROS = config.yml().getLong("snapshot-capture-budget-micros", 1000);
+        SNAPSHOT_CACHE_MAX_CHUNKS = config.yml().getInt("snapshot-cache-max-chunks", 512);
+        
+        MAIN_THREAD_BUDGET_MICROS = config.yml().getLong("main-thread-budget-micros", 2000);
         
         initialized = true;
     }
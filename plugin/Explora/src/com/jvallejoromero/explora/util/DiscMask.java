@@ -0,0 +1,86 @@
+package com.jvallejoromero.explora.util;
+
+/**
+ * The chunks within a radius of a center chunk, as the half-width of each row of the disc, so the disc can be
+ * marked a row at a time (see {@link ExploredChunkIndex#addDisc(int, int, DiscMask, int[], int[], int)}).
+ *
+ * <p>A chunk belongs to the disc if its center lies within {@code radius + 0.5} chunks of the center chunk's center,
+ * which matches the round area clients load around them. Masks are immutable and shared per radius.
+ */
+public final class DiscMask {
+
+	/** The largest view distance a server can be configured with. */
+	public static final int MAX_RADIUS = 32;
+
+	private static final DiscMask[] MASKS = new DiscMask[MAX_RADIUS + 1];
+
+	static {
+		for (int radius = 0; radius <= MAX_RADIUS; radius++) MASKS[radius] = new DiscMask(radius);
+	}
+
+	private final int radius;
+	private final int[] halfWidths;
+	private final int area;
+
+	private DiscMask(int radius) {
+		this.radius = radius;
+		this.halfWidths = new int[radius * 2 + 1];
+
+		int area = 0;
+		for (int dz = -radius; dz <= radius; dz++) {
+			halfWidths[dz + radius] = halfWidth(radius, dz);
+			area += halfWidths[dz + radius] * 2 + 1;
+		}
+		this.area = area;
+	}
+
+	/**
+	 * @param radius the disc's radius in chunks, clamped to {@code 0}-{@value #MAX_RADIUS}
+	 * @return the disc mask of that radius
+	 */
+	public static DiscMask of(int radius) {
+		return MASKS[Math.max(0, Math.min(MAX_RADIUS, radius))];
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * @param dz the row's offset from the center chunk, from {@code -radius} to {@code radius}
+	 * @return how many chunks the row reaches to each side of the center chunk
+	 */
+	public int getHalfWidth(int dz) {
+		return halfWidths[dz + radius];
+	}
+
+	/**
+	 * @return the number of chunks in the disc
+	 */
+	public int getArea() {
+		return area;
+	}
+
+	/**
+	 * @param radius a radius in chunks, not limited to {@value #MAX_RADIUS}
+	 * @return the number of chunks in a disc of that radius
+	 */
+	public static int areaOf(int radius) {
+		if (radius <= MAX_RADIUS) return of(radius).area;
+
+		int area = 0;
+		for (int dz = -radius; dz <= radius; dz++) {
+			area += halfWidth(radius, dz) * 2 + 1;
+		}
+		return area;
+	}
+
+	/**
+	 * @param dz a row's offset from the center chunk, from {@code -radius} to {@code radius}
+	 * @return how many chunks a row of a disc of any radius reaches to each side of the center chunk
+	 */
+	static int halfWidth(int radius, long dz) {
+		double reach = radius + 0.5;
+		return (int) Math.min(radius, Math.floor(Math.sqrt(reach * reach - dz * dz)));
+	}
+}
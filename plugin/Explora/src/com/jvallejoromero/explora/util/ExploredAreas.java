@@ -0,0 +1,266 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * The explored chunks of one world as rectangles ({@link ChunkArea}s) instead of single coordinates, for exports and
+ * backend syncs. Explored chunks form large contiguous blobs, so a world usually needs far fewer areas than chunks.
+ *
+ * <p>Areas never cross a region border, so each region's areas are computed from its 32x32 bitmap on their own:
+ * adding chunks only recomputes the regions they are in. Within a region, every run of explored chunks in a row is
+ * extended down over the rows below that contain the whole run, greedily from the top row. This is not the fewest
+ * possible rectangles, but it is close for blob-shaped areas and takes a few bit operations per row.
+ *
+ * <p>Areas are kept in region order (by x, then z), and within a region from the top row down. Not thread-safe.
+ */
+public class ExploredAreas {
+
+	private static final int REGION_ROWS = 32;
+
+	// areas of each region, keyed so that iterating goes by region x, then z
+	private final TreeMap<Long, List<ChunkArea>> regions = new TreeMap<>();
+	private long chunkCount = 0;
+	private int areaCount = 0;
+
+	/**
+	 * @param chunks the explored chunks
+	 * @return the chunks as areas
+	 */
+	public static ExploredAreas of(Collection<ChunkCoord> chunks) {
+		ExploredAreas areas = new ExploredAreas();
+		areas.addAll(chunks);
+		return areas;
+	}
+
+	/**
+	 * @param index the explored chunks
+	 * @return the chunks as areas
+	 */
+	public static ExploredAreas of(ExploredChunkIndex index) {
+		ExploredAreas areas = new ExploredAreas();
+		int[] rows = new int[REGION_ROWS];
+		for (RegionCoord region : index.getRegions()) {
+			index.copyRegion(region.getX(), region.getZ(), rows);
+			areas.setRegion(ChunkUtils.sortedKey(region.getX(), region.getZ()), rows);
+		}
+		return areas;
+	}
+
+	/**
+	 * @param bitmaps region bitmaps, bit {@code x} of row {@code z} being set for every chunk to cover; not modified
+	 * @return the chunks as areas
+	 */
+	public static ExploredAreas ofRegions(Map<RegionCoord, int[]> bitmaps) {
+		ExploredAreas areas = new ExploredAreas();
+		for (Map.Entry<RegionCoord, int[]> entry : bitmaps.entrySet()) {
+			areas.setRegion(ChunkUtils.sortedKey(entry.getKey().getX(), entry.getKey().getZ()), entry.getValue());
+		}
+		return areas;
+	}
+
+	/**
+	 * Reads areas written by {@link #toJson()}. Areas that overlap or cross region borders are accepted too, and are
+	 * split up again.
+	 *
+	 * @param json an array of {@code {"x", "z", "w", "h"}} objects
+	 * @return the areas
+	 */
+	public static ExploredAreas fromJson(JsonArray json) {
+		Map<Long, int[]> bitmaps = new HashMap<>();
+		for (JsonElement el : json) {
+			JsonObject obj = el.getAsJsonObject();
+			int x = obj.get("x").getAsInt();
+			int z = obj.get("z").getAsInt();
+			int width = obj.get("w").getAsInt();
+			int height = obj.get("h").getAsInt();
+
+			for (int chunkZ = z; chunkZ < z + height; chunkZ++) {
+				for (int chunkX = x; chunkX < x + width; chunkX++) {
+					bitmaps.computeIfAbsent(ChunkUtils.sortedKey(chunkX >> 5, chunkZ >> 5), k -> new int[REGION_ROWS])[chunkZ & 31] |= 1 << (chunkX & 31);
+				}
+			}
+		}
+
+		ExploredAreas areas = new ExploredAreas();
+		for (Map.Entry<Long, int[]> entry : bitmaps.entrySet()) {
+			areas.setRegion(entry.getKey(), entry.getValue());
+		}
+		return areas;
+	}
+
+	/**
+	 * Adds chunks, recomputing the areas of the regions they are in.
+	 *
+	 * @param chunks the chunks to add
+	 * @return the number of chunks that were not covered by an area yet
+	 */
+	public int addAll(Collection<ChunkCoord> chunks) {
+		Map<Long, int[]> touched = new HashMap<>();
+		for (ChunkCoord chunk : chunks) {
+			int[] rows = touched.computeIfAbsent(ChunkUtils.sortedKey(chunk.getX() >> 5, chunk.getZ() >> 5), this::rasterize);
+			rows[chunk.getZ() & 31] |= 1 << (chunk.getX() & 31);
+		}
+
+		long before = chunkCount;
+		for (Map.Entry<Long, int[]> entry : touched.entrySet()) {
+			setRegion(entry.getKey(), entry.getValue());
+		}
+		return (int) (chunkCount - before);
+	}
+
+	/**
+	 * @return every area, in region order
+	 */
+	public List<ChunkArea> getAreas() {
+		List<ChunkArea> list = new ArrayList<>(areaCount);
+		for (List<ChunkArea> regionAreas : regions.values()) {
+			list.addAll(regionAreas);
+		}
+		return list;
+	}
+
+	/**
+	 * @return the areas as an array of {@code {"x", "z", "w", "h"}} objects
+	 */
+	public JsonArray toJson() {
+		JsonArray json = new JsonArray(areaCount);
+		for (List<ChunkArea> regionAreas : regions.values()) {
+			for (ChunkArea area : regionAreas) {
+				JsonObject obj = new JsonObject();
+				obj.addProperty("x", area.getX());
+				obj.addProperty("z", area.getZ());
+				obj.addProperty("w", area.getWidth());
+				obj.addProperty("h", area.getHeight());
+				json.add(obj);
+			}
+		}
+		return json;
+	}
+
+	/**
+	 * @return the size of {@link #toJson()} without whitespace, in bytes
+	 */
+	public long getJsonBytes() {
+		long bytes = 2 + Math.max(0, areaCount - 1);
+		for (List<ChunkArea> regionAreas : regions.values()) {
+			for (ChunkArea area : regionAreas) {
+				// {"x":,"z":,"w":,"h":}
+				bytes += 21 + digits(area.getX()) + digits(area.getZ()) + digits(area.getWidth()) + digits(area.getHeight());
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the size of the same chunks as an array of {@code {"x", "z"}} objects without whitespace, in bytes
+	 */
+	public long getChunkJsonBytes() {
+		long bytes = 2 + Math.max(0, chunkCount - 1);
+		for (List<ChunkArea> regionAreas : regions.values()) {
+			for (ChunkArea area : regionAreas) {
+				long xDigits = 0;
+				for (int x = area.getX(); x < area.getX() + area.getWidth(); x++) xDigits += digits(x);
+				for (int z = area.getZ(); z < area.getZ() + area.getHeight(); z++) {
+					// {"x":,"z":}
+					bytes += xDigits + (11L + digits(z)) * area.getWidth();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the number of chunks covered by the areas
+	 */
+	public long getChunkCount() {
+		return chunkCount;
+	}
+
+	public int getAreaCount() {
+		return areaCount;
+	}
+
+	/**
+	 * @return the number of regions with at least one area
+	 */
+	public int getRegionCount() {
+		return regions.size();
+	}
+
+	/**
+	 * Replaces the areas of a region with the areas of its bitmap.
+	 *
+	 * @param rows the region's bitmap, bit {@code x} of row {@code z} being set for an explored chunk; not modified
+	 */
+	private void setRegion(long key, int[] rows) {
+		List<ChunkArea> old = regions.remove(key);
+		if (old != null) {
+			areaCount -= old.size();
+			for (ChunkArea area : old) chunkCount -= area.getChunkCount();
+		}
+
+		int regionX = (int) (key >> 32);
+		int regionZ = (int) key ^ Integer.MIN_VALUE;
+		int[] remaining = rows.clone();
+		List<ChunkArea> areas = new ArrayList<>();
+
+		for (int z = 0; z < REGION_ROWS; z++) {
+			while (remaining[z] != 0) {
+				int from = Integer.numberOfTrailingZeros(remaining[z]);
+				int length = Integer.numberOfTrailingZeros(~(remaining[z] >>> from));
+				int mask = (int) (((1L << length) - 1) << from);
+
+				int height = 1;
+				while (z + height < REGION_ROWS && (remaining[z + height] & mask) == mask) {
+					remaining[z + height] &= ~mask;
+					height++;
+				}
+				remaining[z] &= ~mask;
+
+				areas.add(new ChunkArea(regionX * 32 + from, regionZ * 32 + z, length, height));
+				chunkCount += (long) length * height;
+			}
+		}
+
+		if (areas.isEmpty()) return;
+		regions.put(key, areas);
+		areaCount += areas.size();
+	}
+
+	/**
+	 * @return a new bitmap of a region's areas
+	 */
+	private int[] rasterize(long key) {
+		int[] rows = new int[REGION_ROWS];
+		List<ChunkArea> areas = regions.get(key);
+		if (areas == null) return rows;
+
+		for (ChunkArea area : areas) {
+			int mask = (int) (((1L << area.getWidth()) - 1) << (area.getX() & 31));
+			for (int z = area.getZ() & 31; z < (area.getZ() & 31) + area.getHeight(); z++) {
+				rows[z] |= mask;
+			}
+		}
+		return rows;
+	}
+
+
+	private static int digits(int value) {
+		int digits = value < 0 ? 2 : 1;
+		long abs = Math.abs((long) value);
+		while (abs >= 10) {
+			abs /= 10;
+			digits++;
+		}
+		return digits;
+	}
+}
@@ -0,0 +1,415 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The set of explored chunks of one world, answering "is this chunk new?" for every chunk a player walks into.
+ *
+ * <p>Chunks are kept as one 32x32-bit bitmap per region: 32 {@code int} rows, one bit per chunk. The regions are
+ * found through an open-addressing table of region keys, with each region's rows stored next to each other in one
+ * {@code int[]}, so checking and adding a chunk is a single probe that does not allocate (the table only grows,
+ * doubling when half full). A whole area, such as the disc a player can see, is added a row at a time by OR-ing a
+ * span mask into each region row it covers (see {@link #addDisc(int, int, DiscMask, int[], int[], int)}).
+ * Chunks are never removed.
+ *
+ * <p>Area queries (counting or listing the chunks in a rectangle or radius, a region's chunk count, the bounding
+ * box) work on whole region rows as well, and only look at the regions the area touches; if the area spans more
+ * regions than the index has, the index's regions are scanned instead.
+ *
+ * <p>Not thread-safe; the explored chunk indexes are used from the exploration thread only (see
+ * {@link com.jvallejoromero.explora.manager.ChunkManager#getExplorationExecutor()}), the levels of a
+ * {@link FogMaskPyramid} from the main thread only.
+ */
+public class ExploredChunkIndex {
+
+	private static final int REGION_ROWS = 32;
+
+	// no region packs to this key, region coordinates stay far below Integer.MIN_VALUE
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private final String worldName;
+
+	private long[] keys;
+	private int[] rows;
+	private int regions = 0;
+	private int size = 0;
+
+	// the last region looked up, as consecutive lookups mostly hit the same region
+	private long lastKey = EMPTY;
+	private int lastSlot = -1;
+
+	public ExploredChunkIndex(String worldName) {
+		this.worldName = worldName;
+		this.keys = emptyTable(64);
+		this.rows = new int[64 * REGION_ROWS];
+	}
+	
+	private ExploredChunkIndex(ExploredChunkIndex other) {
+		this.worldName = other.worldName;
+		this.keys = other.keys.clone();
+		this.rows = other.rows.clone();
+		this.regions = other.regions;
+		this.size = other.size;
+	}
+
+	/**
+	 * Adds a chunk if it is not in the index yet.
+	 *
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 * @return whether the chunk was added, i.e. it had not been explored before
+	 */
+	public boolean add(int chunkX, int chunkZ) {
+		int row = slot(chunkX >> 5, chunkZ >> 5, true) * REGION_ROWS + (chunkZ & 31);
+		int bit = 1 << (chunkX & 31);
+		if ((rows[row] & bit) != 0) return false;
+
+		rows[row] |= bit;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds every chunk within a disc around a center chunk, and reports the chunks that were not in the index yet.
+	 *
+	 * @param centerX the center chunk's x coordinate
+	 * @param centerZ the center chunk's z coordinate
+	 * @param disc the disc to add
+	 * @param newXs receives the x coordinates of the added chunks, must have room for {@link DiscMask#getArea()}
+	 * entries from {@code offset}
+	 * @param newZs receives the z coordinates of the added chunks, like {@code newXs}
+	 * @param offset the index in {@code newXs} and {@code newZs} to write the first added chunk at
+	 * @return the number of chunks added
+	 */
+	public int addDisc(int centerX, int centerZ, DiscMask disc, int[] newXs, int[] newZs, int offset) {
+		int added = 0;
+		int radius = disc.getRadius();
+
+		for (int dz = -radius; dz <= radius; dz++) {
+			int chunkZ = centerZ + dz;
+			int halfWidth = disc.getHalfWidth(dz);
+			int fromX = centerX - halfWidth;
+			int toX = centerX + halfWidth;
+
+			// a row spans at most a few regions; OR the part inside each region into its row at once
+			for (int regionX = fromX >> 5; regionX <= toX >> 5; regionX++) {
+				int regionMinX = regionX << 5;
+				int lo = Math.max(fromX, regionMinX) - regionMinX;
+				int hi = Math.min(toX, regionMinX + 31) - regionMinX;
+				int mask = (int) (((1L << (hi - lo + 1)) - 1) << lo);
+
+				int row = slot(regionX, chunkZ >> 5, true) * REGION_ROWS + (chunkZ & 31);
+				int newBits = mask & ~rows[row];
+				if (newBits == 0) continue;
+				rows[row] |= newBits;
+
+				while (newBits != 0) {
+					int bit = Integer.numberOfTrailingZeros(newBits);
+					newXs[offset + added] = regionMinX + bit;
+					newZs[offset + added] = chunkZ;
+					added++;
+					newBits &= newBits - 1;
+				}
+			}
+		}
+		size += added;
+		return added;
+	}
+
+	/**
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 * @return whether the chunk is in the index
+	 */
+	public boolean contains(int chunkX, int chunkZ) {
+		int slot = slot(chunkX >> 5, chunkZ >> 5, false);
+		return slot >= 0 && (rows[slot * REGION_ROWS + (chunkZ & 31)] & (1 << (chunkX & 31))) != 0;
+	}
+
+	/**
+	 * Copies the bitmap of a region: bit {@code x} of row {@code z} is set if chunk {@code (regionX * 32 + x,
+	 * regionZ * 32 + z)} is in the index.
+	 *
+	 * @param rows receives the region's 32 rows
+	 * @return whether the region has any chunks in the index; {@code rows} is left untouched if not
+	 */
+	public boolean copyRegion(int regionX, int regionZ, int[] rows) {
+		int slot = slot(regionX, regionZ, false);
+		if (slot < 0) return false;
+
+		System.arraycopy(this.rows, slot * REGION_ROWS, rows, 0, REGION_ROWS);
+		return true;
+	}
+
+	/**
+	 * Counts the chunks in a rectangle.
+	 *
+	 * @param minX the smallest chunk x coordinate of the rectangle
+	 * @param minZ the smallest chunk z coordinate of the rectangle
+	 * @param maxX the largest chunk x coordinate of the rectangle, inclusive
+	 * @param maxZ the largest chunk z coordinate of the rectangle, inclusive
+	 * @return the number of chunks of the index in the rectangle
+	 */
+	public int countInRectangle(int minX, int minZ, int maxX, int maxZ) {
+		return query(minX, minZ, maxX, maxZ, 0, 0, -1, null);
+	}
+
+	/**
+	 * Calls {@code consumer} for every chunk of the index in a rectangle, region by region.
+	 *
+	 * @see #countInRectangle(int, int, int, int)
+	 */
+	public void forEachInRectangle(int minX, int minZ, int maxX, int maxZ, ChunkConsumer consumer) {
+		query(minX, minZ, maxX, maxZ, 0, 0, -1, consumer);
+	}
+
+	/**
+	 * Counts the chunks within a radius of a center chunk, the same round area as a {@link DiscMask}.
+	 *
+	 * @param centerX the center chunk's x coordinate
+	 * @param centerZ the center chunk's z coordinate
+	 * @param radius the radius in chunks
+	 * @return the number of chunks of the index within the radius
+	 */
+	public int countInRadius(int centerX, int centerZ, int radius) {
+		return query(centerX - radius, centerZ - radius, centerX + radius, centerZ + radius, centerX, centerZ, radius, null);
+	}
+
+	/**
+	 * Calls {@code consumer} for every chunk of the index within a radius of a center chunk, region by region.
+	 *
+	 * @see #countInRadius(int, int, int)
+	 */
+	public void forEachInRadius(int centerX, int centerZ, int radius, ChunkConsumer consumer) {
+		query(centerX - radius, centerZ - radius, centerX + radius, centerZ + radius, centerX, centerZ, radius, consumer);
+	}
+
+	/**
+	 * @return the number of chunks of the index in a region, out of 1024
+	 */
+	public int countInRegion(int regionX, int regionZ) {
+		int slot = slot(regionX, regionZ, false);
+		if (slot < 0) return 0;
+
+		int count = 0;
+		for (int row = 0; row < REGION_ROWS; row++) {
+			count += Integer.bitCount(rows[slot * REGION_ROWS + row]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the smallest rectangle containing every chunk of the index, or {@code null} if it is empty
+	 */
+	public ChunkArea getBounds() {
+		int minX = Integer.MAX_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			long key = keys[slot];
+			if (key == EMPTY) continue;
+			int baseX = (int) (key >> 32) << 5;
+			int baseZ = (int) key << 5;
+
+			int columns = 0;
+			for (int row = 0; row < REGION_ROWS; row++) {
+				int bits = rows[slot * REGION_ROWS + row];
+				if (bits == 0) continue;
+				columns |= bits;
+				minZ = Math.min(minZ, baseZ + row);
+				maxZ = Math.max(maxZ, baseZ + row);
+			}
+			if (columns == 0) continue;
+			minX = Math.min(minX, baseX + Integer.numberOfTrailingZeros(columns));
+			maxX = Math.max(maxX, baseX + 31 - Integer.numberOfLeadingZeros(columns));
+		}
+		return minX > maxX ? null : new ChunkArea(minX, minZ, maxX - minX + 1, maxZ - minZ + 1);
+	}
+
+	/**
+	 * @return the regions with at least one chunk in the index, in no particular order
+	 */
+	public List<RegionCoord> getRegions() {
+		List<RegionCoord> list = new ArrayList<>(regions);
+		for (long key : keys) {
+			if (key != EMPTY) list.add(RegionCoord.fromRegionCoords((int) (key >> 32), (int) key));
+		}
+		return list;
+	}
+	
+	/**
+	 * @return an independent copy of the index, e.g. to read it on another thread
+	 */
+	public ExploredChunkIndex copy() {
+		return new ExploredChunkIndex(this);
+	}
+	
+	/**
+	 * Adds every chunk of another index.
+	 */
+	public void addAll(ExploredChunkIndex other) {
+		for (int otherSlot = 0; otherSlot < other.keys.length; otherSlot++) {
+			long key = other.keys[otherSlot];
+			if (key == EMPTY) continue;
+
+			int slot = slot((int) (key >> 32), (int) key, true);
+			for (int row = 0; row < REGION_ROWS; row++) {
+				int before = rows[slot * REGION_ROWS + row];
+				int after = before | other.rows[otherSlot * REGION_ROWS + row];
+				rows[slot * REGION_ROWS + row] = after;
+				size += Integer.bitCount(after) - Integer.bitCount(before);
+			}
+		}
+	}
+
+	public String getWorldName() {
+		return worldName;
+	}
+
+	/**
+	 * @return the number of chunks in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of regions with at least one chunk in the index
+	 */
+	public int getRegionCount() {
+		return regions;
+	}
+
+	/**
+	 * Counts, and optionally lists, the chunks in a rectangle, or in the part of it within a radius of a center chunk.
+	 *
+	 * @param radius the radius, or {@code -1} for the whole rectangle
+	 * @param consumer receives every chunk found, may be {@code null}
+	 * @return the number of chunks found
+	 */
+	private int query(int minX, int minZ, int maxX, int maxZ, int centerX, int centerZ, int radius, ChunkConsumer consumer) {
+		if (minX > maxX || minZ > maxZ) return 0;
+
+		int minRegionX = minX >> 5;
+		int minRegionZ = minZ >> 5;
+		int maxRegionX = maxX >> 5;
+		int maxRegionZ = maxZ >> 5;
+		int count = 0;
+
+		if ((long) (maxRegionX - minRegionX + 1) * (maxRegionZ - minRegionZ + 1) <= regions) {
+			for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+				for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+					int slot = slot(regionX, regionZ, false);
+					if (slot >= 0) count += queryRegion(slot, regionX, regionZ, minX, minZ, maxX, maxZ, centerX, centerZ, radius, consumer);
+				}
+			}
+			return count;
+		}
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			long key = keys[slot];
+			if (key == EMPTY) continue;
+			int regionX = (int) (key >> 32);
+			int regionZ = (int) key;
+			if (regionX < minRegionX || regionX > maxRegionX || regionZ < minRegionZ || regionZ > maxRegionZ) continue;
+			count += queryRegion(slot, regionX, regionZ, minX, minZ, maxX, maxZ, centerX, centerZ, radius, consumer);
+		}
+		return count;
+	}
+
+	private int queryRegion(int slot, int regionX, int regionZ, int minX, int minZ, int maxX, int maxZ, int centerX, int centerZ,
+			int radius, ChunkConsumer consumer) {
+		int baseX = regionX << 5;
+		int baseZ = regionZ << 5;
+		int fromZ = Math.max(minZ, baseZ);
+		int toZ = Math.min(maxZ, baseZ + 31);
+		int count = 0;
+
+		for (int chunkZ = fromZ; chunkZ <= toZ; chunkZ++) {
+			int fromX = Math.max(minX, baseX);
+			int toX = Math.min(maxX, baseX + 31);
+			if (radius >= 0) {
+				int halfWidth = DiscMask.halfWidth(radius, (long) chunkZ - centerZ);
+				fromX = Math.max(fromX, centerX - halfWidth);
+				toX = Math.min(toX, centerX + halfWidth);
+			}
+			if (fromX > toX) continue;
+
+			int mask = (int) (((1L << (toX - fromX + 1)) - 1) << (fromX - baseX));
+			int bits = rows[slot * REGION_ROWS + (chunkZ & 31)] & mask;
+			count += Integer.bitCount(bits);
+
+			if (consumer == null) continue;
+			while (bits != 0) {
+				consumer.accept(baseX + Integer.numberOfTrailingZeros(bits), chunkZ);
+				bits &= bits - 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param create whether to add the region (with no chunks) if it is not in the table yet
+	 * @return the region's table slot, or {@code -1} if it is not in the table and {@code create} is {@code false}
+	 */
+	private int slot(int regionX, int regionZ, boolean create) {
+		long key = ChunkUtils.key(regionX, regionZ);
+		if (key == lastKey) return lastSlot;
+
+		int mask = keys.length - 1;
+		int index = (int) ChunkUtils.mix(key) & mask;
+		while (keys[index] != EMPTY) {
+			if (keys[index] == key) {
+				lastKey = key;
+				lastSlot = index;
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		if (!create) return -1;
+
+		keys[index] = key;
+		if (++regions * 2 > keys.length) {
+			resize(keys.length * 2);
+			return slot(regionX, regionZ, false);
+		}
+		lastKey = key;
+		lastSlot = index;
+		return index;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldRows = rows;
+		keys = emptyTable(capacity);
+		rows = new int[capacity * REGION_ROWS];
+		lastKey = EMPTY;
+
+		int mask = capacity - 1;
+		for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+			if (oldKeys[oldSlot] == EMPTY) continue;
+			int index = (int) ChunkUtils.mix(oldKeys[oldSlot]) & mask;
+			while (keys[index] != EMPTY) index = (index + 1) & mask;
+			keys[index] = oldKeys[oldSlot];
+			System.arraycopy(oldRows, oldSlot * REGION_ROWS, rows, index * REGION_ROWS, REGION_ROWS);
+		}
+	}
+
+	private static long[] emptyTable(int capacity) {
+		long[] table = new long[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	/**
+	 * Receives the chunks found by an area query.
+	 */
+	@FunctionalInterface
+	public interface ChunkConsumer {
+		void accept(int chunkX, int chunkZ);
+	}
+}
@@ -1,36 +1,32 @@
 package com.jvallejoromero.explora.util;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import org.bukkit.Bukkit;
 
 import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.OutboxManager;
+import com.jvallejoromero.explora.manager.ThrottleManager;
+import com.jvallejoromero.explora.manager.TileSyncManager;
+import com.jvallejoromero.explora.manager.ThrottleManager.WorkType;
 
 /**
- * Utility class for zipping files/folders and sending tile or region data to the backend.
+ * Utility class for sending tile or region data to the backend.
  *
  * <p>This class provides:
  * <ul>
- *   <li>Methods for zipping individual files or entire folder trees into a byte array</li>
- *   <li>Asynchronous methods for uploading zipped tile or render data to a configured backend endpoint</li>
- *   <li>Multi-threaded batching for performance on large rerendered tile uploads</li>
+ *   <li>Asynchronous methods for uploading tile or render data to a configured backend endpoint, zipped on the fly
+ *       by {@link TileZipStream} so archives are never held in memory</li>
+ *   <li>Sharded, parallel uploads of large rerendered tile sets (see {@link ShardedTileUpload})</li>
+ *   <li>Skipping tiles whose content the backend already has, using {@link TileManifest}s</li>
  * </ul>
  *
  * <p>All I/O and network operations are run off the main thread using Bukkit's async scheduler
@@ -42,83 +38,15 @@ import com.jvallejoromero.explora.ExploraPlugin;
 public class FileUtil {
 	
 	/**
-	 * Compresses a list of files into a ZIP archive and returns the result as a byte array.
+	 * Asynchronously syncs the entire contents of the render data folder (typically all world region folders)
+	 * with the backend.
 	 *
-	 * @param files the list of files to zip
-	 * @return a byte array containing the zipped file contents
-	 * @throws IOException if any I/O error occurs during zipping
-	 */
-	public static byte[] zipFilesToBytes(List<File> files) throws IOException {
-	    ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-	    try (ZipOutputStream zipOut = new ZipOutputStream(byteOut)) {
-	        for (File file : files) {
-	            try (FileInputStream fis = new FileInputStream(file)) {
-	                ZipEntry entry = new ZipEntry(file.getParentFile().getName() + "/" + file.getName());
-	                zipOut.putNextEntry(entry);
-
-	                byte[] buffer = new byte[8192];
-	                int len;
-	                while ((len = fis.read(buffer)) > 0) {
-	                    zipOut.write(buffer, 0, len);
-	                }
-
-	                zipOut.closeEntry();
-	            }
-	        }
-	    }
-	    return byteOut.toByteArray();
-	}
-	
-	/**
-	 * Compresses multiple folder trees into a ZIP archive and returns it as a byte array.
+	 * <p>With {@code tile-sync-enabled}, only tiles whose content the backend does not have are uploaded (see
+	 * {@link TileSyncManager}). Otherwise, or if the backend does not support tile manifests, the whole folder is
+	 * streamed to the backend as a ZIP archive, replacing everything it had.
 	 *
-	 * <p>All non-directory files under the given folders (recursively) are added to the archive
-	 * using their relative paths.
-	 *
-	 * @param worldDirs a list of top-level directories 
-	 * @return a byte array of the zipped folder contents, or {@code null} if zipping fails
-	 */
-	public static byte[] zipFoldersToBytes(List<File> worldDirs) {
-		try {
-			ByteArrayOutputStream byteOut = null;
-			OutputStream zipStream;
-
-			byteOut = new ByteArrayOutputStream();
-			zipStream = new BufferedOutputStream(byteOut);
-
-			try (ZipOutputStream zipOut = new ZipOutputStream(zipStream)) {
-				for (File sourceDir : worldDirs) {
-					if (!sourceDir.isDirectory())
-						continue;
-
-					Path basePath = sourceDir.getParentFile().toPath();
-					Files.walk(sourceDir.toPath()).filter(path -> !Files.isDirectory(path)).forEach(path -> {
-						try {
-							String relativePath = basePath.relativize(path).toString().replace(File.separatorChar, '/');
-							ZipEntry zipEntry = new ZipEntry(relativePath);
-							zipOut.putNextEntry(zipEntry);
-							Files.copy(path, zipOut);
-							zipOut.closeEntry();
-						} catch (IOException e) {
-							throw new UncheckedIOException(e);
-						}
-					});
-				}
-			}
-
-			return byteOut.toByteArray();
-		} catch (IOException e) {
-			ExploraPlugin.warn("Failed to zip and upload: " + e.getMessage());
-			e.printStackTrace();
-		}
-		return null;
-	}
-	
-	/**
-	 * Asynchronously compresses the entire contents of the render data folder
-	 * (typically all world region folders) and sends the resulting ZIP to the backend.
-	 *
-	 * <p>After sending, the optional {@code onComplete} callback will be run on the main thread.
+	 * <p>The optional {@code onComplete} callback is run on the main thread once sending is over, whether the tiles were
+	 * delivered, queued in the outbox, left for the resumed tile sync, or there was nothing to send.
 	 *
 	 * @param onComplete a Runnable to run on the main thread after sending is complete; may be {@code null}
 	 */
@@ -129,64 +57,188 @@ public class FileUtil {
 			
 			if (subdirs == null || subdirs.length == 0) {
 			    ExploraPlugin.warn("No world folders found to zip.");
+			    runOnMainThread(onComplete);
 			    return;
 			}
 			
-			byte[] zipBytes = zipFoldersToBytes(Arrays.asList(subdirs));
-			HttpUtil.postZipBytes(zipBytes, onComplete, true);
+			if (Constants.TILE_SYNC_ENABLED) {
+				TileSyncManager.Result result = ExploraPlugin.getInstance().getTileSyncManager().syncAll();
+				if (result == TileSyncManager.Result.INCOMPLETE) {
+					ExploraPlugin.warn("Not every tile could be synced right now, the rest will be synced on the next start.");
+				}
+				if (result != TileSyncManager.Result.UNSUPPORTED) {
+					runOnMainThread(onComplete);
+					return;
+				}
+				
+				ExploraPlugin.log("&eBackend does not support tile manifests, sending all render files instead..");
+			}
+			
+			runThrottledUpload(() -> {
+				TileZipStream zip = TileZipStream.ofFolders(Arrays.asList(subdirs));
+				return ExploraPlugin.getInstance().getOutboxManager().submitTileZip(zip, true).thenAccept(delivered -> {
+					if (!delivered) {
+						ExploraPlugin.warn("Render files could not be sent right now, they will be retried from the outbox.");
+					}
+				});
+			}).whenComplete((ignored, ex) -> runOnMainThread(onComplete));
 		});
 	}
     
+	private static void runOnMainThread(Runnable task) {
+		if (task != null) ExploraPlugin.getInstance().getMainThreadScheduler().runTask(task);
+	}
+    
 	/**
-	 * Asynchronously collects and zips updated PNG and JSON tile files for re-rendered regions,
-	 * then sends them to the backend in a single ZIP archive.
+	 * Asynchronously collects updated PNG tiles and biome metadata files for re-rendered regions,
+	 * then streams them to the backend.
 	 *
-	 * <p>Uses a thread pool to build the file list and stream the ZIP in the background. After the
-	 * operation completes or fails, the provided {@code onComplete} callback will be run on the main thread.
+	 * <p>With {@code tile-upload-sharding-enabled}, the tiles are uploaded as a {@link ShardedTileUpload}: several
+	 * size-bounded shards in parallel, each retried on its own, made visible together once all have arrived. If
+	 * that fails, or the backend does not support it, they are sent as a single ZIP archive through the outbox.
+	 * After the operation completes or fails, the provided {@code onComplete} callback will be run on the main thread.
 	 *
 	 * @param regions a map of world names to sets of {@link RegionCoord} objects that were updated
 	 * @param onComplete an optional Runnable to invoke after the upload completes
 	 */
 	public static void sendRerenderedTilesToBackendAsync(Map<String, Set<RegionCoord>> regions, Runnable onComplete) {
 		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
-	        int cores = Runtime.getRuntime().availableProcessors();
-	        int maxThreads = Math.max(2, (int) Math.ceil(cores * 0.5));
-	        
-		    ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
 		    List<File> filesToSend = new ArrayList<>();
 
 		    for (Map.Entry<String, Set<RegionCoord>> entry : regions.entrySet()) {
 		        String world = entry.getKey();
+		        boolean sendDictionary = false;
 		        for (RegionCoord region : entry.getValue()) {
 		            String baseName = "r." + region.getX() + "." + region.getZ();
 		            File pngFile = Constants.RENDER_DATA_PATH.resolve(world).resolve(baseName + ".png").toFile();
 		            File jsonFile = Constants.RENDER_DATA_PATH.resolve(world).resolve(baseName + ".json").toFile();
+		            File biomesFile = Constants.RENDER_DATA_PATH.resolve(world).resolve(baseName + RegionBiomes.EXTENSION).toFile();
 
-		            if (pngFile.exists()) filesToSend.add(pngFile);
-		            if (jsonFile.exists()) filesToSend.add(jsonFile);
+		            if (TileStore.exists(pngFile)) filesToSend.add(pngFile);
+		            if (TileStore.exists(jsonFile)) filesToSend.add(jsonFile);
+		            if (TileStore.exists(biomesFile)) {
+		            	filesToSend.add(biomesFile);
+		            	sendDictionary = true;
+		            }
 		        }
-		    }
 
-		    if (filesToSend.isEmpty()) {
-		        ExploraPlugin.log("&6No updated PNG or JSON tiles to send to backend.");
-		        if (onComplete != null) Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onComplete);
-		        return;
+		        // binary biome metadata is only readable with the dictionary it was written with
+		        File dictionaryFile = Constants.RENDER_DATA_PATH.resolve(world).resolve(BiomeDictionary.FILE_NAME).toFile();
+		        if (sendDictionary && dictionaryFile.exists()) filesToSend.add(dictionaryFile);
 		    }
 
-		    executor.submit(() -> {
-		        try {
-		            byte[] zipBytes = FileUtil.zipFilesToBytes(filesToSend);
-		            HttpUtil.postZipBytes(zipBytes, null, false);
-		        } catch (IOException e) {
-		            ExploraPlugin.warn("Failed to zip/send rendered tiles: " + e.getMessage());
-		            e.printStackTrace();
-		        } finally {
-		            executor.shutdown();
-				    if (onComplete != null) {
-				    	Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onComplete);
-				    }
-		        }
-		    });
+		    sendTiles(filesToSend, onComplete);
 		});
 	}
+	
+	/**
+	 * Asynchronously streams tile files to the backend, the same way as
+	 * {@link #sendRerenderedTilesToBackendAsync(Map, Runnable)}.
+	 *
+	 * @param files tile files, each inside its world's render data folder
+	 * @param onComplete an optional Runnable to invoke on the main thread after the upload completes
+	 */
+	public static void sendTilesToBackendAsync(List<File> files, Runnable onComplete) {
+		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> sendTiles(files, onComplete));
+	}
+	
+	private static void sendTiles(List<File> files, Runnable onComplete) {
+	    List<File> filesToSend = files;
+	    if (Constants.TILE_SYNC_ENABLED) {
+	        filesToSend = filterUnsyncedTiles(filesToSend);
+	    }
+
+	    if (filesToSend.isEmpty()) {
+	        ExploraPlugin.log("&6No updated PNG or JSON tiles to send to backend.");
+	        if (onComplete != null) ExploraPlugin.getInstance().getMainThreadScheduler().runTask(onComplete);
+	        return;
+	    }
+
+	    List<File> changedFiles = filesToSend;
+	    runThrottledUpload(() -> uploadTiles(changedFiles).thenAccept(delivered -> {
+	        if (delivered && Constants.TILE_SYNC_ENABLED) markTilesDelivered(changedFiles);
+	    })).whenComplete((ignored, ex) -> {
+	        if (onComplete != null) {
+	            ExploraPlugin.getInstance().getMainThreadScheduler().runTask(onComplete);
+	        }
+	    });
+	}
+	
+	/**
+	 * Uploads tiles as a {@link ShardedTileUpload} if enabled, falling back to a single archive. Both go through the
+	 * outbox's tile uploads, so they reach the backend in submission order with the tile archives queued there.
+	 *
+	 * @param files the tile files to upload
+	 * @return a future completed with whether the tiles were delivered (rather than queued or dropped)
+	 */
+	private static CompletableFuture<Boolean> uploadTiles(List<File> files) {
+		OutboxManager outbox = ExploraPlugin.getInstance().getOutboxManager();
+		if (!Constants.TILE_UPLOAD_SHARDING_ENABLED) {
+			return outbox.submitTileZip(TileZipStream.ofFiles(files), false);
+		}
+		
+		return outbox.submitTileUpload(() -> new ShardedTileUpload(files).start().thenApply(result -> {
+			if (result == ShardedTileUpload.Result.FAILED) {
+				ExploraPlugin.warn("Sharded tile upload failed, sending the tiles as a single upload instead.");
+			}
+			return result == ShardedTileUpload.Result.COMMITTED;
+		}), TileZipStream.ofFiles(files));
+	}
+	
+	/**
+	 * Drops tiles whose current content the backend already has, according to the {@link TileManifest}s.
+	 *
+	 * @param files tile files, each inside its world's render data folder
+	 * @return the files that need uploading
+	 */
+	private static List<File> filterUnsyncedTiles(List<File> files) {
+		TileSyncManager tileSync = ExploraPlugin.getInstance().getTileSyncManager();
+		List<File> unsynced = new ArrayList<>();
+		for (Map.Entry<String, List<File>> entry : groupByWorld(files).entrySet()) {
+			unsynced.addAll(tileSync.filterUnsynced(entry.getKey(), entry.getValue()));
+		}
+		
+		int skipped = files.size() - unsynced.size();
+		if (skipped > 0) ExploraPlugin.debug("Skipping " + skipped + " tiles that are unchanged on the backend.");
+		return unsynced;
+	}
+	
+	private static void markTilesDelivered(List<File> files) {
+		TileSyncManager tileSync = ExploraPlugin.getInstance().getTileSyncManager();
+		for (Map.Entry<String, List<File>> entry : groupByWorld(files).entrySet()) {
+			tileSync.markDelivered(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	private static Map<String, List<File>> groupByWorld(List<File> files) {
+		Map<String, List<File>> byWorld = new HashMap<>();
+		for (File file : files) {
+			byWorld.computeIfAbsent(file.getParentFile().getName(), k -> new ArrayList<>()).add(file);
+		}
+		return byWorld;
+	}
+	
+	/**
+	 * Starts an upload on the calling (async) thread once the {@link ThrottleManager} allows another
+	 * {@link WorkType#UPLOAD} to start. The permit is held until the upload's response arrives.
+	 *
+	 * @param upload starts the upload and returns its pending response
+	 * @return a future completed once the upload has finished, or failed if it could not be started
+	 */
+	public static CompletableFuture<?> runThrottledUpload(Supplier<CompletableFuture<?>> upload) {
+		ThrottleManager throttle = ExploraPlugin.getInstance().getThrottleManager();
+		try {
+			throttle.acquire(WorkType.UPLOAD);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		try {
+			return upload.get().whenComplete((ignored, ex) -> throttle.release(WorkType.UPLOAD));
+		} catch (RuntimeException e) {
+			throttle.release(WorkType.UPLOAD);
+			return CompletableFuture.failedFuture(e);
+		}
+	}
 }
@@ -0,0 +1,88 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The fog-of-war masks of one world: which chunks are explored, at the region level and at zoomed-out levels, so
+ * the map can show explored areas at any zoom without the list of every explored chunk.
+ *
+ * <p>Level {@code 0} has one pixel per chunk; every level above halves the resolution, so a pixel of level
+ * {@code n} covers {@code 2^n x 2^n} chunks and is explored if any of them is. Each level is an
+ * {@link ExploredChunkIndex} of its pixels, whose 32x32 regions are the level's mask tiles (see
+ * {@link FogMaskTile}).
+ *
+ * <p>Tiles that gained explored pixels are remembered until they are taken with {@link #drainDirtyTiles()}, so
+ * masks can be written incrementally.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class FogMaskPyramid {
+
+	private final String worldName;
+	private final ExploredChunkIndex[] levels;
+	private final List<Set<Long>> dirtyTiles = new ArrayList<>();
+
+	/**
+	 * @param worldName the world the chunks are in
+	 * @param zoomedOutLevels the number of levels above the region level
+	 */
+	public FogMaskPyramid(String worldName, int zoomedOutLevels) {
+		this.worldName = worldName;
+		this.levels = new ExploredChunkIndex[zoomedOutLevels + 1];
+		for (int level = 0; level < levels.length; level++) {
+			levels[level] = new ExploredChunkIndex(worldName);
+			dirtyTiles.add(new HashSet<>());
+		}
+	}
+
+	/**
+	 * Marks a chunk as explored on every level.
+	 *
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 */
+	public void add(int chunkX, int chunkZ) {
+		for (int level = 0; level < levels.length; level++) {
+			int pixelX = chunkX >> level;
+			int pixelZ = chunkZ >> level;
+
+			// a pixel that was already explored means the pixels covering it on the levels above are too
+			if (!levels[level].add(pixelX, pixelZ)) return;
+			dirtyTiles.get(level).add(ChunkUtils.key(pixelX >> 5, pixelZ >> 5));
+		}
+	}
+
+	/**
+	 * Adds every explored chunk of another pyramid with the same number of levels, along with its unwritten tiles.
+	 */
+	public void addAll(FogMaskPyramid other) {
+		for (int level = 0; level < levels.length; level++) {
+			levels[level].addAll(other.levels[level]);
+			dirtyTiles.get(level).addAll(other.dirtyTiles.get(level));
+		}
+	}
+
+	/**
+	 * @return the tiles that gained explored pixels since the last call
+	 */
+	public List<FogMaskTile> drainDirtyTiles() {
+		List<FogMaskTile> tiles = new ArrayList<>();
+		for (int level = 0; level < levels.length; level++) {
+			for (long key : dirtyTiles.get(level)) {
+				int tileX = (int) (key >> 32);
+				int tileZ = (int) key;
+				int[] rows = new int[32];
+				if (levels[level].copyRegion(tileX, tileZ, rows)) tiles.add(new FogMaskTile(worldName, level, tileX, tileZ, rows));
+			}
+			dirtyTiles.get(level).clear();
+		}
+		return tiles;
+	}
+
+	public String getWorldName() {
+		return worldName;
+	}
+}
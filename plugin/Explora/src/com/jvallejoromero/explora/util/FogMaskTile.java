@@ -0,0 +1,85 @@
+package com.jvallejoromero.explora.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A fog-of-war mask tile of one level of a {@link FogMaskPyramid}: 32x32 pixels, one bit each.
+ *
+ * <p>Tiles are saved as 1-bit palette PNGs (around a hundred bytes) next to the region tiles, named
+ * {@code fog.<level>.<x>.<z>.png}, where a tile of level {@code n} covers the {@code 2^n x 2^n} regions starting at
+ * region {@code (x * 2^n, z * 2^n)}. Explored pixels are transparent and unexplored pixels are black, so a tile can
+ * be laid over the map as is; x grows to the right and z downwards, like the region tiles. A tile that does not
+ * exist has no explored pixels.
+ */
+public class FogMaskTile {
+
+	private static final int SIZE = 32;
+
+	// palette index 0 = unexplored (opaque black), 1 = explored (transparent)
+	private static final IndexColorModel PALETTE = new IndexColorModel(1, 2,
+			new byte[] {0, 0}, new byte[] {0, 0}, new byte[] {0, 0}, new byte[] {(byte) 255, 0});
+
+	private final String worldName;
+	private final int level;
+	private final int x;
+	private final int z;
+	private final int[] rows;
+
+	/**
+	 * @param rows the tile's 32 rows, bit {@code x} of row {@code z} being set for an explored pixel
+	 */
+	public FogMaskTile(String worldName, int level, int x, int z, int[] rows) {
+		this.worldName = worldName;
+		this.level = level;
+		this.x = x;
+		this.z = z;
+		this.rows = rows;
+	}
+
+	/**
+	 * @return the tile encoded as a PNG
+	 * @throws IOException if the image could not be encoded
+	 */
+	public byte[] encodePng() throws IOException {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_BINARY, PALETTE);
+		WritableRaster raster = image.getRaster();
+		for (int pixelZ = 0; pixelZ < SIZE; pixelZ++) {
+			for (int pixelX = 0; pixelX < SIZE; pixelX++) {
+				raster.setSample(pixelX, pixelZ, 0, (rows[pixelZ] >>> pixelX) & 1);
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return the name of the tile's file inside its world's render data folder
+	 */
+	public String getFileName() {
+		return "fog." + level + "." + x + "." + z + ".png";
+	}
+
+	public String getWorldName() {
+		return worldName;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getZ() {
+		return z;
+	}
+}
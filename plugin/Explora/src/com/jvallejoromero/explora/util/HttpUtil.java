@@ -1,29 +1,38 @@
 package com.jvallejoromero.explora.util;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.bukkit.Bukkit;
 import org.bukkit.World;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.OutboxManager;
+import com.jvallejoromero.explora.util.ChunkBatchEncoder.Format;
 
 /**
  * Utility class for sending asynchronous HTTP requests to the backend server used by the {@code Explora} plugin.
@@ -31,51 +40,58 @@ import com.jvallejoromero.explora.ExploraPlugin;
  * <p>Supports:
  * <ul>
  *   <li>Sending JSON-based {@code POST} and {@code DELETE} requests</li>
- *   <li>Uploading ZIP files as multipart form data</li>
- *   <li>Streaming chunk updates in batches</li>
+ *   <li>Uploading ZIP files as multipart form data, streamed from disk or zipped on the fly</li>
+ *   <li>Sending chunk updates in batches, in JSON or a compact binary format</li>
  *   <li>Sending player location and server status updates</li>
  * </ul>
  *
- * <p>All methods use Bukkit's async task scheduler to avoid blocking the main server thread.
- * Endpoints, keys, and configurations are injected from the {@link Constants} class.
+ * <p>All requests go through one shared {@link HttpClient}, which keeps HTTP/1.1 connections to the backend alive
+ * between requests. Requests are sent without blocking any thread and return a {@link CompletableFuture} of the
+ * response; use the plugin's {@link com.jvallejoromero.explora.manager.MainThreadScheduler} as the executor to
+ * continue on the main thread.
+ *
+ * <p>At most {@code http-max-in-flight} requests are on the wire at once; further requests wait in a queue
+ * of at most {@code http-max-queued-requests} entries and are rejected once it is full. Timeouts are chosen
+ * per endpoint (see {@link #timeoutFor(String)}).
+ *
+ * <p>Endpoints, keys, and configurations are injected from the {@link Constants} class.
  */
 public class HttpUtil {
 
 	private static final Gson GSON = new Gson();
+	private static final String LINE_FEED = "\r\n";
+	
+	private static final Queue<PendingRequest> waitingRequests = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger queuedRequests = new AtomicInteger();
+	private static final AtomicInteger inFlightRequests = new AtomicInteger();
+	
+	private static volatile HttpClient client;
+	private static volatile Set<Format> acceptedChunkFormats = EnumSet.of(Format.JSON);
 	
 	/**
 	 * Sends a {@code DELETE} request asynchronously to the given backend URL.
 	 *
 	 * @param targetUrl the endpoint to delete from
-	 * @param onSuccess optional callback to run on the main thread if the response is successful (HTTP 200)
-	 */
-	public static void deleteRequest(String targetUrl, Runnable onSuccess) {
-	    Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
-	        try {
-	            URL url = new URL(targetUrl);
-	            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-	            
-	            conn.setRequestMethod("DELETE");
-	            conn.setRequestProperty("Content-Type", "application/json");
-	            conn.setRequestProperty("x-api-key", Constants.BACKEND_API_KEY);
-	            
-	            int responseCode = conn.getResponseCode();
-
-	            ExploraPlugin.debug("&6[HTTP] DELETE " + targetUrl + " => " + responseCode);
-
-	            if (responseCode != 200) {
-	                ExploraPlugin.warn("[HTTP] DELETE failed with code: " + responseCode);
-	            }
-
-	            conn.disconnect();
-
-	            if (responseCode == 200 && onSuccess != null) {
-	                Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onSuccess);
-	            }
-	        } catch (Exception ex) {
-	            ExploraPlugin.warn("[HTTP] Failed to DELETE: " + ex.getMessage());
-	        }
-	    });
+	 * @return a future completed with the response, or exceptionally if the request could not be sent
+	 */
+	public static CompletableFuture<HttpResponse<String>> deleteRequest(String targetUrl) {
+		HttpRequest request = newRequest(targetUrl)
+				.header("Content-Type", "application/json")
+				.DELETE()
+				.build();
+		
+		return send(request).whenComplete((response, ex) -> {
+			if (ex != null) {
+				ExploraPlugin.warn("[HTTP] Failed to DELETE: " + ex.getMessage());
+				return;
+			}
+			
+			ExploraPlugin.debug("&6[HTTP] DELETE " + targetUrl + " => " + response.statusCode());
+			
+			if (!isSuccess(response)) {
+				ExploraPlugin.warn("[HTTP] DELETE failed with code: " + response.statusCode());
+			}
+		});
 	}
 	
 	/**
@@ -83,184 +99,252 @@ public class HttpUtil {
 	 *
 	 * @param targetUrl the endpoint to send the request to
 	 * @param json the JSON-encoded request body
-	 * @param onComplete an optional callback to run on the main thread after the request completes
+	 * @return a future completed with the response, or exceptionally if the request could not be sent
 	 */
-	public static void postJson(String targetUrl, String json, Runnable onComplete) {
-		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
-			try {
-				
-				if (targetUrl.contains(buildUrl(Constants.BACKEND_CHUNK_BATCH_POST_URL))) {
-					ExploraPlugin.debug("[HTTP] Sending chunks to " + targetUrl);
-				} else if (!targetUrl.contains(buildUrl(Constants.BACKEND_PLAYER_POST_URL)) && !targetUrl.contains(buildUrl(Constants.BACKEND_SERVER_STATUS_POST_URL))){
-					ExploraPlugin.debug("[HTTP] Sending to " + targetUrl + ": " + json);
-				}
-				
-				URL url = new URL(targetUrl);
-				HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-				
-				conn.setRequestMethod("POST");
-				conn.setRequestProperty("Content-Type", "application/json");
-				conn.setRequestProperty("x-api-key", Constants.BACKEND_API_KEY);
-				conn.setDoOutput(true);
-				
-				try (OutputStream os = conn.getOutputStream()) {
-					os.write(json.getBytes(StandardCharsets.UTF_8));
-				}
-
-				int responseCode = conn.getResponseCode();
-				if (responseCode != 200 && Constants.DEBUG_MODE) {
-					ExploraPlugin.warn("[HTTP] POST failed with code: " + responseCode);
-				}
-
-				conn.disconnect();
-				
-				if (onComplete != null) {
-					Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onComplete); 
-				}
-			} catch (Exception ex) {
+	public static CompletableFuture<HttpResponse<String>> postJson(String targetUrl, String json) {
+		return postJson(targetUrl, json, null);
+	}
+	
+	private static CompletableFuture<HttpResponse<String>> postJson(String targetUrl, String json, Runnable onSend) {
+		if (targetUrl.contains(buildUrl(Constants.BACKEND_CHUNK_BATCH_POST_URL))) {
+			ExploraPlugin.debug("[HTTP] Sending chunks to " + targetUrl);
+		} else if (!targetUrl.contains(buildUrl(Constants.BACKEND_PLAYER_POST_URL)) && !targetUrl.contains(buildUrl(Constants.BACKEND_SERVER_STATUS_POST_URL))){
+			ExploraPlugin.debug("[HTTP] Sending to " + targetUrl + ": " + json);
+		}
+		
+		HttpRequest request = newRequest(targetUrl)
+				.header("Content-Type", "application/json")
+				.POST(BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+				.build();
+		
+		return send(request, onSend).whenComplete((response, ex) -> {
+			if (ex != null) {
 				ExploraPlugin.warn("[HTTP] Failed to POST: " + ex.getMessage());
-				
-			    if (onComplete != null) {
-			        Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onComplete);
-			    }
+			} else if (!isSuccess(response) && Constants.DEBUG_MODE) {
+				ExploraPlugin.warn("[HTTP] POST failed with code: " + response.statusCode());
 			}
 		});
 	}
 	
 	/**
-	 * Sends ZIP file data as a multipart/form-data {@code POST} request to the backend.
+	 * Streams a tile archive to the backend as a multipart/form-data {@code POST} request.
 	 *
-	 * @param zipBytes the ZIP archive bytes to send
-	 * @param onSuccess callback to run on the main thread if the upload succeeds
+	 * <p>The archive is zipped while it is being sent (see {@link TileZipStream}) with chunked transfer encoding,
+	 * so it is never held in memory as a whole.
+	 *
+	 * @param zip the archive to send
 	 * @param deleteExisting if {@code true}, tells the backend to delete previously uploaded data before saving
+	 * @return a future completed with the response, or exceptionally if the upload could not be sent
 	 */
-    public static void postZipBytes(byte[] zipBytes, Runnable onSuccess, boolean deleteExisting) {
-    	try {
-            String boundary = "----ExploraBoundary" + System.currentTimeMillis();
-            String LINE_FEED = "\r\n";
-            String backendUrl = buildUrl(Constants.BACKEND_UPLOAD_TILE_ZIP_URL);
-            
-            backendUrl += backendUrl.contains("?") ? "&" : "?";
-            backendUrl += "deleteExisting=" + deleteExisting;
-
-            HttpURLConnection conn = (HttpURLConnection) new URL(backendUrl).openConnection();
-            conn.setDoOutput(true);
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-            conn.setRequestProperty("x-api-key", Constants.BACKEND_API_KEY);
-
-            try (OutputStream output = conn.getOutputStream();
-                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, "UTF-8"), true)) {
-
-                writer.append("--").append(boundary).append(LINE_FEED);
-                writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"tiles.zip\"").append(LINE_FEED);
-                writer.append("Content-Type: application/zip").append(LINE_FEED);
-                writer.append(LINE_FEED).flush();
-
-                output.write(zipBytes);
-                output.flush();
-
-                writer.append(LINE_FEED).flush();
-                writer.append("--").append(boundary).append("--").append(LINE_FEED).flush();
-            }
-
-            int status = conn.getResponseCode();
-            if (status == HttpURLConnection.HTTP_OK) {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                    ExploraPlugin.debug("&8[HTTP] Upload successful: " + reader.lines().reduce("", String::concat));
-                    
-                    if (onSuccess != null) {
-                    	Bukkit.getScheduler().runTask(ExploraPlugin.getInstance(), onSuccess);
-                    }
-                }
-            } else {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                    ExploraPlugin.warn("[HTTP] Upload failed (" + status + "): " + reader.lines().reduce("", String::concat));
-                }
-            }
-            conn.disconnect();
-    	} catch (Exception ex) {
-    		ExploraPlugin.warn("[HTTP] Failed to upload zip bytes: " + ex.getMessage());
-    		ex.printStackTrace();
-    	}
-    }
-	
-    /**
-     * Asynchronously uploads a ZIP file to the backend using multipart/form-data encoding.
-     *
-     * <p>This is an alternative to {@link #postZipBytes(byte[], Runnable, boolean)} and works with pre-zipped files on disk.
-     *
-     * @param zipFile the ZIP file to upload
-     */
-	public static void uploadZipToBackendAsync(File zipFile) {
-		Bukkit.getScheduler().runTaskAsynchronously(ExploraPlugin.getInstance(), () -> {
-			try {
-				String boundary = "----ExploraBoundary" + System.currentTimeMillis();
-				String LINE_FEED = "\r\n";
-
-				String targetUrl = buildUrl(Constants.BACKEND_UPLOAD_TILE_ZIP_URL);
-				URL url = new URL(targetUrl);
-
-				HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-				conn.setUseCaches(false);
-				conn.setDoOutput(true);
-				conn.setDoInput(true);
-				conn.setRequestMethod("POST");
-				conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-				conn.setRequestProperty("x-api-key", Constants.BACKEND_API_KEY);
-
-				try (OutputStream outputStream = conn.getOutputStream();
-						PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, "UTF-8"), true)) {
-
-					// Start multipart file part
-					writer.append("--").append(boundary).append(LINE_FEED);
-					writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"tiles.zip\"")
-							.append(LINE_FEED);
-					writer.append("Content-Type: application/zip").append(LINE_FEED);
-					writer.append(LINE_FEED).flush();
-
-					// Write file bytes
-					Files.copy(zipFile.toPath(), outputStream);
-					outputStream.flush();
-
-					writer.append(LINE_FEED).flush();
-					writer.append("--").append(boundary).append("--").append(LINE_FEED).flush();
-				}
-
-				int status = conn.getResponseCode();
-
-				if (status == HttpURLConnection.HTTP_OK) {
-					try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-						String responseLine;
-						StringBuilder response = new StringBuilder();
-						while ((responseLine = in.readLine()) != null) {
-							response.append(responseLine);
-						}
-						ExploraPlugin.debug("&8[HTTP] Upload successful: " + response);
-					}
-				} else {
-					try (InputStream errorStream = conn.getErrorStream()) {
-						String errorMsg = errorStream != null ? new String(errorStream.readAllBytes()) : "(no error message)";
-						ExploraPlugin.warn("[HTTP] Upload failed with status " + status + ": " + errorMsg);
-					}
-				}
-				conn.disconnect();
-
-			} catch (IOException e) {
-				ExploraPlugin.warn("[HTTP] Upload failed: " + e.getMessage());
-				e.printStackTrace();
+	public static CompletableFuture<HttpResponse<String>> uploadTileZip(TileZipStream zip, boolean deleteExisting) {
+		return postMultipartZip(tileZipUrl(deleteExisting), zip.toBodyPublisher());
+	}
+	
+	/**
+	 * Asynchronously uploads a ZIP file to the backend using multipart/form-data encoding.
+	 *
+	 * <p>This is an alternative to {@link #uploadTileZip(TileZipStream, boolean)} and works with pre-zipped files
+	 * on disk. The file is streamed from disk instead of being loaded into memory.
+	 *
+	 * @param zipFile the ZIP file to upload
+	 * @return a future completed with the response, or exceptionally if the upload could not be sent
+	 */
+	public static CompletableFuture<HttpResponse<String>> uploadZipToBackendAsync(File zipFile) {
+		return uploadZipToBackendAsync(zipFile, false);
+	}
+	
+	/**
+	 * Asynchronously uploads a ZIP file to the backend using multipart/form-data encoding.
+	 *
+	 * @param zipFile the ZIP file to upload
+	 * @param deleteExisting if {@code true}, tells the backend to delete previously uploaded data before saving
+	 * @return a future completed with the response, or exceptionally if the upload could not be sent
+	 */
+	public static CompletableFuture<HttpResponse<String>> uploadZipToBackendAsync(File zipFile, boolean deleteExisting) {
+		try {
+			return postMultipartZip(tileZipUrl(deleteExisting), BodyPublishers.ofFile(zipFile.toPath()));
+		} catch (FileNotFoundException ex) {
+			ExploraPlugin.warn("[HTTP] Upload failed: " + ex.getMessage());
+			return CompletableFuture.failedFuture(ex);
+		}
+	}
+	
+	/**
+	 * Streams one shard of a sharded tile upload to the backend, which stages it until the session is committed.
+	 *
+	 * @param sessionId the upload session
+	 * @param shard the shard's index
+	 * @param zip the shard's archive
+	 * @return a future completed with the response, or exceptionally if the upload could not be sent
+	 */
+	public static CompletableFuture<HttpResponse<String>> uploadTileShard(String sessionId, int shard, TileZipStream zip) {
+		String url = buildUrl(Constants.BACKEND_TILE_SHARD_URL);
+		url += (url.contains("?") ? "&" : "?") + "session=" + sessionId + "&shard=" + shard;
+		return postMultipartZip(url, zip.toBodyPublisher());
+	}
+	
+	/**
+	 * Makes every staged shard of a sharded tile upload visible at once.
+	 *
+	 * @param sessionId the upload session
+	 * @param shards the number of shards that were uploaded
+	 * @return a future completed with the response
+	 */
+	public static CompletableFuture<HttpResponse<String>> commitTileUpload(String sessionId, int shards) {
+		JsonObject body = new JsonObject();
+		body.addProperty("session", sessionId);
+		body.addProperty("shards", shards);
+		return postJson(buildUrl(Constants.BACKEND_TILE_COMMIT_URL), GSON.toJson(body));
+	}
+	
+	/**
+	 * Discards the staged shards of a sharded tile upload that could not be completed.
+	 *
+	 * @param sessionId the upload session
+	 * @return a future completed with the response
+	 */
+	public static CompletableFuture<HttpResponse<String>> abortTileUpload(String sessionId) {
+		JsonObject body = new JsonObject();
+		body.addProperty("session", sessionId);
+		return postJson(buildUrl(Constants.BACKEND_TILE_ABORT_URL), GSON.toJson(body));
+	}
+	
+	private static String tileZipUrl(boolean deleteExisting) {
+		String backendUrl = buildUrl(Constants.BACKEND_UPLOAD_TILE_ZIP_URL);
+		backendUrl += backendUrl.contains("?") ? "&" : "?";
+		return backendUrl + "deleteExisting=" + deleteExisting;
+	}
+	
+	/**
+	 * Wraps a ZIP body into a single-part multipart/form-data request and sends it.
+	 *
+	 * @param targetUrl the upload endpoint
+	 * @param zipBody the ZIP archive body
+	 * @return a future completed with the response
+	 */
+	private static CompletableFuture<HttpResponse<String>> postMultipartZip(String targetUrl, BodyPublisher zipBody) {
+		String boundary = "----ExploraBoundary" + System.currentTimeMillis();
+		
+		String partHeader = "--" + boundary + LINE_FEED
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"tiles.zip\"" + LINE_FEED
+				+ "Content-Type: application/zip" + LINE_FEED
+				+ LINE_FEED;
+		String partFooter = LINE_FEED + "--" + boundary + "--" + LINE_FEED;
+		
+		HttpRequest request = newRequest(targetUrl)
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(BodyPublishers.concat(
+						BodyPublishers.ofString(partHeader, StandardCharsets.UTF_8),
+						zipBody,
+						BodyPublishers.ofString(partFooter, StandardCharsets.UTF_8)))
+				.build();
+		
+		return send(request).whenComplete((response, ex) -> {
+			if (ex != null) {
+				ExploraPlugin.warn("[HTTP] Failed to upload zip: " + ex.getMessage());
+			} else if (isSuccess(response)) {
+				ExploraPlugin.debug("&8[HTTP] Upload successful: " + response.body());
+			} else {
+				ExploraPlugin.warn("[HTTP] Upload failed (" + response.statusCode() + "): " + response.body());
 			}
 		});
 	}
     
+	/**
+	 * Sends a {@code GET} request asynchronously to the given backend URL.
+	 *
+	 * @param targetUrl the endpoint to request
+	 * @return a future completed with the response, or exceptionally if the request could not be sent
+	 */
+	public static CompletableFuture<HttpResponse<String>> getRequest(String targetUrl) {
+		HttpRequest request = newRequest(targetUrl)
+				.header("Accept", "application/json")
+				.GET()
+				.build();
+		
+		return send(request).whenComplete((response, ex) -> {
+			if (ex != null) {
+				ExploraPlugin.warn("[HTTP] Failed to GET: " + ex.getMessage());
+				return;
+			}
+			ExploraPlugin.debug("&6[HTTP] GET " + targetUrl + " => " + response.statusCode());
+		});
+	}
+	
+	/**
+	 * Replaces whole regions of a world's chunk data on the backend, used by chunk reconciliation.
+	 *
+	 * @param world the world the regions belong to
+	 * @param bitmaps 128 byte chunk bitmaps keyed by packed region coordinates; all-zero bitmaps clear the region
+	 * @return a future completed with the response
+	 */
+	public static CompletableFuture<HttpResponse<String>> postRegionBitmaps(String world, Map<Long, byte[]> bitmaps) {
+		String url = getChunkMerkleUrl(world) + "/regions";
+		byte[] body = ChunkBatchEncoder.gzip(ChunkBatchEncoder.encodeRegionBitmaps(world, bitmaps));
+		ExploraPlugin.debug("[HTTP] Replacing " + bitmaps.size() + " regions of " + world + " (" + body.length + " bytes)");
+		
+		HttpRequest request = newRequest(url)
+				.header("Content-Type", Format.BITMAP.getContentType())
+				.header("Content-Encoding", "gzip")
+				.POST(BodyPublishers.ofByteArray(body))
+				.build();
+		
+		return send(request).whenComplete((response, ex) -> {
+			if (ex != null) {
+				ExploraPlugin.warn("[HTTP] Failed to POST: " + ex.getMessage());
+			} else if (!isSuccess(response)) {
+				ExploraPlugin.warn("[HTTP] Region replacement failed with code: " + response.statusCode());
+			}
+		});
+	}
+	
+	/**
+	 * @param world the world name
+	 * @return the URL of the world's chunk hash tree on the backend
+	 */
+	public static String getChunkMerkleUrl(String world) {
+		return buildUrl(Constants.BACKEND_CHUNK_MERKLE_URL) + "/" + URLEncoder.encode(world, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+	
+	/**
+	 * @return the backend's Socket.IO WebSocket URL, used for the live update stream
+	 */
+	public static String getSocketUrl() {
+		return buildUrl(Constants.BACKEND_SOCKET_URL);
+	}
+	
+	/**
+	 * @param world the world name
+	 * @return the URL of the world's tile manifest on the backend
+	 */
+	public static String getTileManifestUrl(String world) {
+		return buildUrl(Constants.BACKEND_TILE_MANIFEST_URL) + "/" + URLEncoder.encode(world, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+	
+	/**
+	 * Deletes tiles from the backend that no longer exist in the plugin's render data.
+	 *
+	 * @param world the world the tiles belong to
+	 * @param names the tile paths relative to the world folder, e.g. {@code r.0.0.png}
+	 * @return a future completed with the response
+	 */
+	public static CompletableFuture<HttpResponse<String>> postTileDeletes(String world, Collection<String> names) {
+		JsonObject body = new JsonObject();
+		body.addProperty("world", world);
+		JsonArray files = new JsonArray();
+		names.forEach(files::add);
+		body.add("files", files);
+		return postJson(buildUrl(Constants.BACKEND_TILE_DELETE_URL), GSON.toJson(body));
+	}
+	
 	/**
 	 * Sends a {@code DELETE} request to the backend to remove all previously stored chunk data.
 	 *
-	 * @param onSuccess optional callback to run after successful deletion
+	 * @return a future completed with the response
 	 */
-	public static void sendDeleteChunksRequest(Runnable onSuccess) {
+	public static CompletableFuture<HttpResponse<String>> sendDeleteChunksRequest() {
 		String targetUrl = buildUrl(Constants.BACKEND_DELETE_CHUNKS_URL);
-		deleteRequest(targetUrl, onSuccess);
+		return deleteRequest(targetUrl);
 	}
 	
 	/**
@@ -271,9 +355,9 @@ public class HttpUtil {
 	 * @param world the world the chunk belongs to
 	 * @param x the chunk's X coordinate
 	 * @param z the chunk's Z coordinate
-	 * @param onComplete callback to run after request completion
+	 * @return a future completed with the response
 	 */
-	public static void sendChunkUpdate(World world, int x, int z, Runnable onComplete) {
+	public static CompletableFuture<HttpResponse<String>> sendChunkUpdate(World world, int x, int z) {
 		String worldName = world.getName();
 		
 		Map<String, Object> jsonMap = new HashMap<>();
@@ -284,7 +368,7 @@ public class HttpUtil {
 		String json = GSON.toJson(jsonMap);
 		String url = buildUrl(Constants.BACKEND_CHUNK_POST_URL);
 		
-		postJson(url, json, onComplete);
+		return postJson(url, json);
 	}
 	
 	/**
@@ -292,66 +376,117 @@ public class HttpUtil {
 	 *
 	 * @param world the world these chunks belong to
 	 * @param chunks the list of {@link ChunkCoord} objects to send
-	 * @param onComplete callback to run after request completion
+	 * @return a future completed with the response
 	 */
-	public static void sendBatchChunkUpdate(World world, List<ChunkCoord> chunks, Runnable onComplete) {
-		String worldName = world.getName();
-		Map<String, Object> jsonMap = new HashMap<>();
+	public static CompletableFuture<HttpResponse<String>> sendBatchChunkUpdate(World world, List<ChunkCoord> chunks) {
+		return postChunkBatch(world.getName(), chunks);
+	}
+	
+	/**
+	 * Sends a batch of chunk coordinates to the backend in the configured {@code backend-chunk-wire-format}.
+	 *
+	 * <p>Binary formats are only used once the backend has announced them in the {@code Accept-Post} header of a
+	 * previous batch response. If the backend answers a binary batch with {@code 415 Unsupported Media Type},
+	 * binary formats are disabled and the batch is resent as JSON.
+	 *
+	 * @param world the name of the world these chunks belong to
+	 * @param chunks the chunks to send
+	 * @return a future completed with the response
+	 */
+	public static CompletableFuture<HttpResponse<String>> postChunkBatch(String world, List<ChunkCoord> chunks) {
+		return postChunkBatch(world, chunks, null);
+	}
+	
+	/**
+	 * Same as {@link #postChunkBatch(String, List)}, reporting when the request leaves the in-flight queue.
+	 *
+	 * @param onSend run on every attempt, right before the request is sent; may be {@code null}
+	 */
+	public static CompletableFuture<HttpResponse<String>> postChunkBatch(String world, List<ChunkCoord> chunks, Runnable onSend) {
+		String url = buildUrl(Constants.BACKEND_CHUNK_BATCH_POST_URL);
+		Format format = ChunkBatchEncoder.choose(Constants.BACKEND_CHUNK_WIRE_FORMAT, chunks, acceptedChunkFormats);
 		
-		jsonMap.put("world", worldName);
-		jsonMap.put("chunks", chunks);
+		if (format == Format.JSON) {
+			return postJson(url, toBatchChunkJson(world, chunks), onSend).thenApply(HttpUtil::updateAcceptedChunkFormats);
+		}
 		
-		String json = GSON.toJson(jsonMap);
-		String url = buildUrl(Constants.BACKEND_CHUNK_BATCH_POST_URL);
+		byte[] body = ChunkBatchEncoder.encode(world, chunks, format);
+		ExploraPlugin.debug("[HTTP] Sending " + chunks.size() + " chunks to " + url + " as " + format + " (" + body.length + " bytes)");
 		
-		postJson(url, json, onComplete);
+		HttpRequest request = newRequest(url)
+				.header("Content-Type", format.getContentType())
+				.header("Content-Encoding", "gzip")
+				.POST(BodyPublishers.ofByteArray(body))
+				.build();
+		
+		return send(request, onSend).thenCompose(response -> {
+			if (response.statusCode() == 415) {
+				ExploraPlugin.warn("[HTTP] Backend does not accept " + format + " chunk batches, falling back to JSON.");
+				acceptedChunkFormats = EnumSet.of(Format.JSON);
+				return postJson(url, toBatchChunkJson(world, chunks), onSend);
+			}
+			
+			if (!isSuccess(response) && Constants.DEBUG_MODE) {
+				ExploraPlugin.warn("[HTTP] POST failed with code: " + response.statusCode());
+			}
+			return CompletableFuture.completedFuture(updateAcceptedChunkFormats(response));
+		}).whenComplete((response, ex) -> {
+			if (ex != null) ExploraPlugin.warn("[HTTP] Failed to POST: " + ex.getMessage());
+		});
 	}
 	
 	/**
-	 * Streams chunk updates to the backend in timed batches to reduce load.
+	 * Reads the chunk batch formats the backend accepts from the {@code Accept-Post} response header.
 	 *
-	 * <p>This method splits a large chunk set into batches of a given size, then schedules each batch
-	 * to be sent at the specified interval.
+	 * @param response a response from the chunk batch endpoint
+	 * @return the same response
+	 */
+	private static HttpResponse<String> updateAcceptedChunkFormats(HttpResponse<String> response) {
+		if (!isSuccess(response)) return response;
+		
+		Set<Format> accepted = EnumSet.of(Format.JSON);
+		for (String value : response.headers().allValues("Accept-Post")) {
+			for (String mediaType : value.split(",")) {
+				Format format = Format.fromContentType(mediaType);
+				if (format != null) accepted.add(format);
+			}
+		}
+		
+		if (!accepted.equals(acceptedChunkFormats)) {
+			ExploraPlugin.debug("[HTTP] Backend accepts chunk batches as " + accepted);
+			acceptedChunkFormats = accepted;
+		}
+		return response;
+	}
+	
+	/**
+	 * Sends a batch of chunk coordinates for a single world through the {@link OutboxManager}, so the batch
+	 * is queued on disk and retried later if the backend cannot be reached.
 	 *
-	 * @param world the world the chunks belong to
-	 * @param chunkSet the list of chunk coordinates to send
-	 * @param batchSize how many chunks per batch
-	 * @param delayTicks how many ticks between batch sends
-	 * @param onBatchSent optional callback after each batch is sent
-	 */
-	public static void streamChunkBatches(World world, List<ChunkCoord> chunkSet, int batchSize, long delayTicks, Runnable onBatchSent) {
-	    List<ChunkCoord> allChunks = new ArrayList<>(chunkSet); 
-	    int total = allChunks.size();
-	    
-	    new BukkitRunnable() {
-	        int index = 0;
-	        int batchCount = 0;
-	        
-	        @Override
-	        public void run() {
-	            if (index >= total) {
-	            	this.cancel();
-	            	ExploraPlugin.log("&aFinished streaming all " + total + " chunks to backend (" + batchCount + " batches) for world: " + world.getName());
-	                return;
-	            }
-
-	            int end = Math.min(index + batchSize, total);
-	            List<ChunkCoord> batch = allChunks.subList(index, end);
-	            
-	            sendBatchChunkUpdate(world, batch, onBatchSent);
-	            index = end;
-	            batchCount++;
-	        }
-	    }.runTaskTimer(ExploraPlugin.getInstance(), 0L, delayTicks);
+	 * @param world the world these chunks belong to
+	 * @param chunks the list of {@link ChunkCoord} objects to send
+	 * @return a future completed with {@code true} if the batch was delivered, or {@code false} if it was queued
+	 */
+	public static CompletableFuture<Boolean> sendBatchChunkUpdateDurably(World world, List<ChunkCoord> chunks) {
+		return ExploraPlugin.getInstance().getOutboxManager().submitChunkBatch(world.getName(), chunks);
+	}
+	
+	private static String toBatchChunkJson(String world, List<ChunkCoord> chunks) {
+		Map<String, Object> jsonMap = new HashMap<>();
+		
+		jsonMap.put("world", world);
+		jsonMap.put("chunks", chunks);
+		
+		return GSON.toJson(jsonMap);
 	}
 	
 	/**
 	 * Sends a batched update of all currently online player locations to the backend.
 	 *
 	 * @param players a set of {@link PlayerStatus} objects representing player states
-	 * @param onComplete callback to run after request completion
+	 * @return a future completed with the response
 	 */
-	public static void sendPlayerPositionUpdates(Set<PlayerStatus> players, Runnable onComplete) {
+	public static CompletableFuture<HttpResponse<String>> sendPlayerPositionUpdates(Set<PlayerStatus> players) {
 
 	    Map<String, Object> jsonMap = new HashMap<>();
 	    jsonMap.put("online-players", players);
@@ -359,31 +494,28 @@ public class HttpUtil {
 	    String json = GSON.toJson(jsonMap);
 		String url = buildUrl(Constants.BACKEND_PLAYER_POST_URL);
 		
-		postJson(url, json, onComplete);
+		return postJson(url, json);
 	}
 	
 	/**
-	 * Sends a snapshot of the current server status (online status, player count, time, MOTD)
+	 * Sends a snapshot of the server status (online status, player count, time, MOTD)
 	 * to the backend server for monitoring or display purposes.
 	 *
-	 * @param onComplete callback to run after request completion
+	 * @param status the snapshot, taken on the main thread
+	 * @return a future completed with the response
 	 */
-	public static void sendServerStatusUpdate(Runnable onComplete) {
-		boolean isOnline = true;
-		int playerCount = Bukkit.getOnlinePlayers().size();
-		long worldTime = Bukkit.getWorlds().get(0).getTime();
-		String motd = Bukkit.getServer().getMotd();
-		
+	public static CompletableFuture<HttpResponse<String>> sendServerStatusUpdate(ServerStatus status) {
 		Map<String, Object> jsonMap = new HashMap<>();
 		
-		jsonMap.put("isOnline", isOnline);
-		jsonMap.put("playerCount", playerCount);
-		jsonMap.put("worldTime", worldTime);
-		jsonMap.put("motd", motd);
+		jsonMap.put("isOnline", true);
+		jsonMap.put("playerCount", status.getPlayerCount());
+		jsonMap.put("worldTime", status.getWorldTime());
+		jsonMap.put("timeRate", status.getTimeRate());
+		jsonMap.put("motd", status.getMotd());
 		
 		String json = GSON.toJson(jsonMap);
 		String url = buildUrl(Constants.BACKEND_SERVER_STATUS_POST_URL);
-		postJson(url, json, onComplete);
+		return postJson(url, json);
 	}
 	
 	/**
@@ -395,5 +527,153 @@ public class HttpUtil {
 	private static String buildUrl(String template) {
 	    return template.replace("%port%", String.valueOf(Constants.BACKEND_PORT));
 	}
+	
+	/**
+	 * @param response the response to check
+	 * @return whether the response has a 2xx status code
+	 */
+	public static boolean isSuccess(HttpResponse<?> response) {
+		return response != null && response.statusCode() >= 200 && response.statusCode() < 300;
+	}
+	
+	/**
+	 * @return the number of requests currently on the wire
+	 */
+	public static int getInFlightCount() {
+		return inFlightRequests.get();
+	}
+	
+	/**
+	 * @return the number of requests waiting for a free in-flight slot
+	 */
+	public static int getQueuedCount() {
+		return queuedRequests.get();
+	}
+	
+	/**
+	 * Chooses the request timeout for an endpoint. Player and server status updates are replaced by
+	 * the next update within seconds, so they give up quickly; uploads may take minutes.
+	 *
+	 * @param targetUrl the resolved endpoint URL
+	 * @return the timeout to use for requests to this endpoint
+	 */
+	private static Duration timeoutFor(String targetUrl) {
+		if (targetUrl.startsWith(buildUrl(Constants.BACKEND_PLAYER_POST_URL))
+				|| targetUrl.startsWith(buildUrl(Constants.BACKEND_SERVER_STATUS_POST_URL))) {
+			return Duration.ofMillis(Constants.HTTP_LIVE_UPDATE_TIMEOUT_MILLIS);
+		}
+		if (targetUrl.startsWith(buildUrl(Constants.BACKEND_UPLOAD_TILE_ZIP_URL))
+				|| targetUrl.startsWith(buildUrl(Constants.BACKEND_TILE_SHARD_URL))) {
+			return Duration.ofMillis(Constants.HTTP_UPLOAD_TIMEOUT_MILLIS);
+		}
+		return Duration.ofMillis(Constants.HTTP_REQUEST_TIMEOUT_MILLIS);
+	}
+	
+	/**
+	 * Creates a request builder for the given URL with the API key and the endpoint's timeout set.
+	 *
+	 * @param targetUrl the resolved endpoint URL
+	 * @return a request builder
+	 */
+	private static HttpRequest.Builder newRequest(String targetUrl) {
+		return HttpRequest.newBuilder(URI.create(targetUrl))
+				.timeout(timeoutFor(targetUrl))
+				.header("x-api-key", Constants.BACKEND_API_KEY);
+	}
+	
+	/**
+	 * @return the shared HTTP client, created on first use once {@link Constants} are loaded
+	 */
+	private static HttpClient client() {
+		HttpClient current = client;
+		if (current == null) {
+			synchronized (HttpUtil.class) {
+				current = client;
+				if (current == null) {
+					current = HttpClient.newBuilder()
+							// HTTP/2 over plain http:// starts with an h2c upgrade request, which the backend's
+							// socket.io server takes over and closes instead of Express answering it
+							.version(HttpClient.Version.HTTP_1_1)
+							.connectTimeout(Duration.ofMillis(Constants.HTTP_CONNECT_TIMEOUT_MILLIS))
+							.followRedirects(HttpClient.Redirect.NORMAL)
+							.build();
+					client = current;
+				}
+			}
+		}
+		return current;
+	}
+	
+	/**
+	 * Queues a request and sends it as soon as an in-flight slot is free.
+	 *
+	 * @param request the request to send
+	 * @return a future completed with the response, or exceptionally if the request failed or the queue is full
+	 */
+	private static CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+		return send(request, null);
+	}
+	
+	/**
+	 * @param onSend run right before the request is handed to the client; may be {@code null}
+	 */
+	private static CompletableFuture<HttpResponse<String>> send(HttpRequest request, Runnable onSend) {
+		CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+		
+		if (queuedRequests.incrementAndGet() > Constants.HTTP_MAX_QUEUED_REQUESTS) {
+			queuedRequests.decrementAndGet();
+			result.completeExceptionally(new RejectedExecutionException("Too many queued backend requests"));
+			return result;
+		}
+		
+		waitingRequests.add(new PendingRequest(request, result, onSend));
+		dispatch();
+		return result;
+	}
+	
+	/**
+	 * Starts waiting requests until the in-flight limit is reached or nothing is waiting.
+	 */
+	private static void dispatch() {
+		while (!waitingRequests.isEmpty()) {
+			int inFlight = inFlightRequests.get();
+			if (inFlight >= Constants.HTTP_MAX_IN_FLIGHT) return;
+			if (!inFlightRequests.compareAndSet(inFlight, inFlight + 1)) continue;
+			
+			PendingRequest pending = waitingRequests.poll();
+			if (pending == null) {
+				inFlightRequests.decrementAndGet();
+				continue;
+			}
+			queuedRequests.decrementAndGet();
+			if (pending.onSend != null) pending.onSend.run();
+			
+			client().sendAsync(pending.request, BodyHandlers.ofString()).whenComplete((response, ex) -> {
+				inFlightRequests.decrementAndGet();
+				
+				if (ex != null) {
+					pending.result.completeExceptionally(ex);
+				} else {
+					pending.result.complete(response);
+				}
+				dispatch();
+			});
+		}
+	}
+	
+	/**
+	 * A request waiting for an in-flight slot, and the future handed out for it.
+	 */
+	private static final class PendingRequest {
+		private final HttpRequest request;
+		private final CompletableFuture<HttpResponse<String>> result;
+		private final Runnable onSend;
+		
+		private PendingRequest(HttpRequest request, CompletableFuture<HttpResponse<String>> result, Runnable onSend) {
+			this.request = request;
+			this.result = result;
+			this.onSend = onSend;
+		}
+	}
 
 }
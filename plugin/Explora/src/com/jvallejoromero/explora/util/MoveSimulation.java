@@ -0,0 +1,352 @@
+package com.jvallejoromero.explora.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.bukkit.World;
+
+/**
+ * Simulates players wandering around a world, so the cost and coverage of exploration detection can be measured
+ * (see {@link #run(long, int)}).
+ *
+ * <p>Every player walks, sprints or flies in a slowly turning direction, moving once per tick. The moves are worked
+ * out up front and replayed against fresh chunk sets, so the simulation does not touch the plugin's explored
+ * chunks.
+ */
+public class MoveSimulation {
+
+	private static final int REPLAY_ROUNDS = 5;
+	private static final String WORLD_NAME = "simulation";
+
+	private final World world;
+	private final int players;
+	private final int ticks;
+	private final int[] blockXs;
+	private final int[] blockZs;
+
+	/**
+	 * @param world the world the simulated players are in, only compared by identity
+	 * @param players the number of simulated players
+	 * @param ticks the number of ticks each player moves for
+	 * @param seed the seed for the players' starting points, speeds and turns
+	 */
+	public MoveSimulation(World world, int players, int ticks, long seed) {
+		this.world = world;
+		this.players = players;
+		this.ticks = ticks;
+		this.blockXs = new int[players * ticks];
+		this.blockZs = new int[players * ticks];
+
+		Random random = new Random(seed);
+		double[] xs = new double[players];
+		double[] zs = new double[players];
+		double[] headings = new double[players];
+		double[] speeds = new double[players];
+		for (int p = 0; p < players; p++) {
+			xs[p] = random.nextGaussian() * 2000;
+			zs[p] = random.nextGaussian() * 2000;
+			headings[p] = random.nextDouble() * Math.PI * 2;
+			speeds[p] = 0.2 + random.nextDouble() * 0.8; // walking (0.2 blocks/tick) up to flying
+		}
+
+		// moves are stored tick by tick, interleaving the players like the server does
+		for (int tick = 0, move = 0; tick < ticks; tick++) {
+			for (int p = 0; p < players; p++, move++) {
+				headings[p] += random.nextGaussian() * 0.1;
+				xs[p] += Math.cos(headings[p]) * speeds[p];
+				zs[p] += Math.sin(headings[p]) * speeds[p];
+				blockXs[move] = (int) Math.floor(xs[p]);
+				blockZs[move] = (int) Math.floor(zs[p]);
+			}
+		}
+	}
+
+	/**
+	 * Replays the moves several ways and measures each:
+	 * <ul>
+	 *   <li>through a per-move chunk check that allocates a {@link ChunkCoord} and looks the world up by name, as the
+	 *   move handler used to</li>
+	 *   <li>through {@link PlayerChunkCursor} and {@link ExploredChunkIndex}, as the move handler does now</li>
+	 *   <li>by sampling every player's chunk every {@code sampleTicks} into arrays, and checking the samples against
+	 *   an {@link ExploredChunkIndex} afterwards, as {@code exploration-tracking: sample} does (reading a player's
+	 *   location is not part of the simulation)</li>
+	 *   <li>marking the disc of {@code viewDistance} around every chunk a player enters, once chunk by chunk and once
+	 *   through {@link ExploredChunkIndex#addDisc(int, int, DiscMask, int[], int[], int)}, as
+	 *   {@code exploration-area: view-distance} does</li>
+	 * </ul>
+	 *
+	 * @param sampleTicks the interval (in ticks) between samples
+	 * @param viewDistance the radius (in chunks) of the disc a player sees
+	 * @return the measurements, the fastest of several rounds
+	 */
+	public SimulationResult run(long sampleTicks, int viewDistance) {
+		DiscMask disc = DiscMask.of(viewDistance);
+		int[] discXs = new int[disc.getArea()];
+		int[] discZs = new int[disc.getArea()];
+
+		SimulationResult result = new SimulationResult();
+		result.sampleTicks = sampleTicks;
+		result.viewDistance = disc.getRadius();
+		result.players = players;
+		result.moves = blockXs.length;
+		result.coordNanos = Long.MAX_VALUE;
+		result.indexNanos = Long.MAX_VALUE;
+		result.coordBytes = Long.MAX_VALUE;
+		result.indexBytes = Long.MAX_VALUE;
+		result.sampleNanos = Long.MAX_VALUE;
+		result.sampleCheckNanos = Long.MAX_VALUE;
+		result.discChunkNanos = Long.MAX_VALUE;
+		result.discMaskNanos = Long.MAX_VALUE;
+
+		for (int round = 0; round < REPLAY_ROUNDS; round++) {
+			Map<String, Set<ChunkCoord>> explored = new HashMap<>();
+			int[] lastChunkXs = new int[players];
+			int[] lastChunkZs = new int[players];
+			int crossings = 0;
+			int newChunks = 0;
+
+			long bytes = allocatedBytes();
+			long begin = System.nanoTime();
+			for (int move = 0; move < blockXs.length; move++) {
+				int p = move % players;
+				int chunkX = blockXs[move] >> 4;
+				int chunkZ = blockZs[move] >> 4;
+				if (move >= players && chunkX == lastChunkXs[p] && chunkZ == lastChunkZs[p]) continue;
+				lastChunkXs[p] = chunkX;
+				lastChunkZs[p] = chunkZ;
+				crossings++;
+
+				Set<ChunkCoord> chunks = explored.get(WORLD_NAME);
+				if (chunks != null && chunks.contains(new ChunkCoord(chunkX, chunkZ))) continue;
+				explored.computeIfAbsent(WORLD_NAME, k -> new HashSet<>()).add(new ChunkCoord(chunkX, chunkZ));
+				newChunks++;
+			}
+			result.coordNanos = Math.min(result.coordNanos, System.nanoTime() - begin);
+			result.coordBytes = Math.min(result.coordBytes, allocatedBytes() - bytes);
+			result.chunkCrossings = crossings;
+			result.coordNewChunks = newChunks;
+
+			ExploredChunkIndex index = new ExploredChunkIndex(WORLD_NAME);
+			PlayerChunkCursor[] cursors = newCursors();
+			newChunks = 0;
+
+			bytes = allocatedBytes();
+			begin = System.nanoTime();
+			for (int move = 0; move < blockXs.length; move++) {
+				PlayerChunkCursor cursor = cursors[move % players];
+				int chunkX = blockXs[move] >> 4;
+				int chunkZ = blockZs[move] >> 4;
+				if (!cursor.moveTo(world, chunkX, chunkZ)) continue;
+
+				if (cursor.getIndex() == null) cursor.setIndex(index);
+				if (cursor.getIndex().add(chunkX, chunkZ)) newChunks++;
+			}
+			result.indexNanos = Math.min(result.indexNanos, System.nanoTime() - begin);
+			result.indexBytes = Math.min(result.indexBytes, allocatedBytes() - bytes);
+			result.indexNewChunks = newChunks;
+
+			index = new ExploredChunkIndex(WORLD_NAME);
+			long sampleNanos = 0;
+			long checkNanos = 0;
+			newChunks = 0;
+
+			for (int tick = 0; tick < ticks; tick++) {
+				if ((tick + 1) % sampleTicks != 0) continue;
+
+				begin = System.nanoTime();
+				int[] chunkXs = new int[players];
+				int[] chunkZs = new int[players];
+				for (int p = 0, move = tick * players; p < players; p++, move++) {
+					chunkXs[p] = blockXs[move] >> 4;
+					chunkZs[p] = blockZs[move] >> 4;
+				}
+				long sampled = System.nanoTime();
+				sampleNanos += sampled - begin;
+
+				for (int p = 0; p < players; p++) {
+					if (index.add(chunkXs[p], chunkZs[p])) newChunks++;
+				}
+				checkNanos += System.nanoTime() - sampled;
+			}
+			result.sampleNanos = Math.min(result.sampleNanos, sampleNanos);
+			result.sampleCheckNanos = Math.min(result.sampleCheckNanos, checkNanos);
+			result.sampleNewChunks = newChunks;
+
+			index = new ExploredChunkIndex(WORLD_NAME);
+			cursors = newCursors();
+			newChunks = 0;
+
+			begin = System.nanoTime();
+			for (int move = 0; move < blockXs.length; move++) {
+				int chunkX = blockXs[move] >> 4;
+				int chunkZ = blockZs[move] >> 4;
+				if (!cursors[move % players].moveTo(world, chunkX, chunkZ)) continue;
+
+				for (int dz = -disc.getRadius(); dz <= disc.getRadius(); dz++) {
+					int halfWidth = disc.getHalfWidth(dz);
+					for (int dx = -halfWidth; dx <= halfWidth; dx++) {
+						if (index.add(chunkX + dx, chunkZ + dz)) newChunks++;
+					}
+				}
+			}
+			result.discChunkNanos = Math.min(result.discChunkNanos, System.nanoTime() - begin);
+			result.discNewChunks = newChunks;
+
+			index = new ExploredChunkIndex(WORLD_NAME);
+			cursors = newCursors();
+			newChunks = 0;
+
+			begin = System.nanoTime();
+			for (int move = 0; move < blockXs.length; move++) {
+				int chunkX = blockXs[move] >> 4;
+				int chunkZ = blockZs[move] >> 4;
+				if (!cursors[move % players].moveTo(world, chunkX, chunkZ)) continue;
+
+				newChunks += index.addDisc(chunkX, chunkZ, disc, discXs, discZs, 0);
+			}
+			result.discMaskNanos = Math.min(result.discMaskNanos, System.nanoTime() - begin);
+		}
+		return result;
+	}
+
+	private PlayerChunkCursor[] newCursors() {
+		PlayerChunkCursor[] cursors = new PlayerChunkCursor[players];
+		for (int p = 0; p < players; p++) cursors[p] = new PlayerChunkCursor();
+		return cursors;
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread so far, or {@code 0} if the JVM does not track it
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The outcome of {@link MoveSimulation#run(long, int)}.
+	 */
+	public static final class SimulationResult {
+		private int players;
+		private int moves;
+		private int chunkCrossings;
+		private long coordNanos;
+		private long indexNanos;
+		private long coordBytes;
+		private long indexBytes;
+		private int coordNewChunks;
+		private int indexNewChunks;
+		private long sampleTicks;
+		private long sampleNanos;
+		private long sampleCheckNanos;
+		private int sampleNewChunks;
+		private int viewDistance;
+		private long discChunkNanos;
+		private long discMaskNanos;
+		private int discNewChunks;
+
+		public int getPlayers() {
+			return players;
+		}
+
+		public int getMoves() {
+			return moves;
+		}
+
+		/**
+		 * @return the number of moves into another chunk
+		 */
+		public int getChunkCrossings() {
+			return chunkCrossings;
+		}
+
+		/**
+		 * @return the average cost of a move through the allocating check, in nanoseconds
+		 */
+		public double getCoordNanosPerMove() {
+			return moves == 0 ? 0 : (double) coordNanos / moves;
+		}
+
+		/**
+		 * @return the average cost of a move through the cursor and index, in nanoseconds
+		 */
+		public double getIndexNanosPerMove() {
+			return moves == 0 ? 0 : (double) indexNanos / moves;
+		}
+
+		/**
+		 * @return the bytes allocated by the allocating check, including its chunk sets
+		 */
+		public long getCoordBytes() {
+			return coordBytes;
+		}
+
+		/**
+		 * @return the bytes allocated by the cursor and index, including the index's region table
+		 */
+		public long getIndexBytes() {
+			return indexBytes;
+		}
+
+		public int getCoordNewChunks() {
+			return coordNewChunks;
+		}
+
+		public int getIndexNewChunks() {
+			return indexNewChunks;
+		}
+
+		public long getSampleTicks() {
+			return sampleTicks;
+		}
+
+		/**
+		 * @return the cost of sampling on the main thread, in nanoseconds per simulated move
+		 */
+		public double getSampleNanosPerMove() {
+			return moves == 0 ? 0 : (double) sampleNanos / moves;
+		}
+
+		/**
+		 * @return the cost of checking the samples off the main thread, in nanoseconds per simulated move
+		 */
+		public double getSampleCheckNanosPerMove() {
+			return moves == 0 ? 0 : (double) sampleCheckNanos / moves;
+		}
+
+		public int getSampleNewChunks() {
+			return sampleNewChunks;
+		}
+
+		public int getViewDistance() {
+			return viewDistance;
+		}
+
+		/**
+		 * @return the average cost of a move when its view-distance disc is added chunk by chunk, in nanoseconds
+		 */
+		public double getDiscChunkNanosPerMove() {
+			return moves == 0 ? 0 : (double) discChunkNanos / moves;
+		}
+
+		/**
+		 * @return the average cost of a move when its view-distance disc is added through disc masks, in nanoseconds
+		 */
+		public double getDiscMaskNanosPerMove() {
+			return moves == 0 ? 0 : (double) discMaskNanos / moves;
+		}
+
+		/**
+		 * @return the number of chunks within view distance of the simulated players
+		 */
+		public int getDiscNewChunks() {
+			return discNewChunks;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.jvallejoromero.explora.util;
+
+import org.bukkit.World;
+
+/**
+ * The chunk a player was last seen in, so move events inside the same chunk can be ignored with a few comparisons.
+ *
+ * <p>The cursor also keeps the {@link ExploredChunkIndex} of the player's world, so a new chunk can be checked
+ * without looking the world up by name. The index is cleared whenever the player changes worlds.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class PlayerChunkCursor {
+
+	private World world;
+	private ExploredChunkIndex index;
+	private int chunkX;
+	private int chunkZ;
+	private boolean positioned = false;
+
+	/**
+	 * Moves the cursor to the chunk a player is in now.
+	 *
+	 * @param world the player's world
+	 * @param chunkX the chunk's x coordinate (block x {@code >> 4})
+	 * @param chunkZ the chunk's z coordinate (block z {@code >> 4})
+	 * @return whether the player entered another chunk
+	 */
+	public boolean moveTo(World world, int chunkX, int chunkZ) {
+		if (positioned && this.world == world && this.chunkX == chunkX && this.chunkZ == chunkZ) return false;
+
+		if (this.world != world || !positioned) index = null;
+		this.world = world;
+		this.chunkX = chunkX;
+		this.chunkZ = chunkZ;
+		positioned = true;
+		return true;
+	}
+
+	/**
+	 * @return the explored chunk index of the player's current world, or {@code null} if not set since the player
+	 * entered it
+	 */
+	public ExploredChunkIndex getIndex() {
+		return index;
+	}
+
+	public void setIndex(ExploredChunkIndex index) {
+		this.index = index;
+	}
+}
@@ -15,6 +15,8 @@ import org.bukkit.entity.Player;
  *   <li>Yaw orientation (facing direction)</li>
  * </ul>
  *
+ * <p>The exact position is kept as well for the live update stream, but is not part of the JSON sent over HTTP.
+ *
  * <p>Intended for serialization and backend reporting — does not include full {@link Player} data.
  *
  * @see com.jvallejoromero.explora.util.HttpUtil#sendPlayerPositionUpdates
@@ -30,6 +32,10 @@ public class PlayerStatus {
 	
 	private float yaw;
 	
+	private transient double exactX;
+	private transient double exactY;
+	private transient double exactZ;
+	
 	/**
 	 * Creates a new {@code PlayerStatus} object from a given {@link Player} instance.
 	 *
@@ -43,6 +49,9 @@ public class PlayerStatus {
 		this.y = loc.getBlockY();
 		this.z = loc.getBlockZ();
 		this.yaw = loc.getYaw();
+		this.exactX = loc.getX();
+		this.exactY = loc.getY();
+		this.exactZ = loc.getZ();
 	}
 	
 	public String getName() {
@@ -68,4 +77,16 @@ public class PlayerStatus {
 	public float getYaw() {
 		return yaw;
 	}
+	
+	public double getExactX() {
+		return exactX;
+	}
+	
+	public double getExactY() {
+		return exactY;
+	}
+	
+	public double getExactZ() {
+		return exactZ;
+	}
 }
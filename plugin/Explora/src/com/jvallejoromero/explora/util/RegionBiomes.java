@@ -0,0 +1,273 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The biomes of every chunk of a region, as ids of the world's {@link BiomeDictionary}, written next to the region's
+ * tile as {@code r.<x>.<z>.biomes}.
+ *
+ * <p>The binary format is:
+ * <ul>
+ *   <li>the magic bytes {@code EXBM} and a version byte ({@value #VERSION})</li>
+ *   <li>zig-zag varints region x and z</li>
+ *   <li>a 128 byte bitmap of the chunks that have biome data: bit {@code (chunkZ & 31) * 32 + (chunkX & 31)},
+ *   stored in byte {@code i >> 3} at position {@code i & 7}</li>
+ *   <li>for every chunk in the bitmap, in bit order, a varint biome count followed by that many varint biome ids,
+ *   in ascending order</li>
+ * </ul>
+ *
+ * <p>A region with every chunk in a few biomes is a few hundred bytes, against tens of kilobytes of JSON. The same data
+ * can still be written in, and read from, the old {@code {"chunks": [{"x", "z", "biomes": [...]}]}} JSON shape with
+ * {@link #writeJson(Writer)} and {@link #readJson(Reader, BiomeDictionary, int, int)}. Not thread-safe.
+ */
+public class RegionBiomes {
+
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".biomes";
+
+	private static final byte[] MAGIC = { 'E', 'X', 'B', 'M' };
+	private static final int[] NO_BIOMES = new int[0];
+
+	private final BiomeDictionary dictionary;
+	private final int regionX;
+	private final int regionZ;
+	private final int[][] chunks = new int[1024][];
+	private int chunkCount = 0;
+
+	public RegionBiomes(BiomeDictionary dictionary, int regionX, int regionZ) {
+		this.dictionary = dictionary;
+		this.regionX = regionX;
+		this.regionZ = regionZ;
+	}
+
+	/**
+	 * Reads a region written by {@link #encode()}.
+	 *
+	 * @param data the encoded region
+	 * @param dictionary the dictionary of the world the region was written for
+	 * @return the region
+	 * @throws IOException if the data is not a supported version of the format, is truncated or uses unknown ids
+	 */
+	public static RegionBiomes decode(byte[] data, BiomeDictionary dictionary) throws IOException {
+		if (data.length < MAGIC.length + 1 || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+			throw new IOException("Not biome metadata");
+		}
+		if (data[MAGIC.length] != VERSION) throw new IOException("Unsupported biome metadata version " + data[MAGIC.length]);
+
+		int[] pos = { MAGIC.length + 1 };
+		RegionBiomes biomes = new RegionBiomes(dictionary, unZigZag(readVarInt(data, pos)), unZigZag(readVarInt(data, pos)));
+		int bitmap = pos[0];
+		pos[0] += 128;
+		if (pos[0] > data.length) throw new IOException("Truncated biome metadata");
+
+		int dictionarySize = dictionary.size();
+		for (int i = 0; i < 1024; i++) {
+			if ((data[bitmap + (i >> 3)] & (1 << (i & 7))) == 0) continue;
+
+			int count = readVarInt(data, pos);
+			if (count > dictionarySize) throw new IOException("Corrupt biome metadata");
+			int[] ids = count == 0 ? NO_BIOMES : new int[count];
+			for (int b = 0; b < count; b++) {
+				ids[b] = readVarInt(data, pos);
+				if (ids[b] >= dictionarySize) throw new IOException("Unknown biome id " + ids[b]);
+			}
+			biomes.chunks[i] = ids;
+			biomes.chunkCount++;
+		}
+		return biomes;
+	}
+
+	/**
+	 * Reads a region written by {@link #writeJson(Writer)}, adding biomes that are not in the dictionary yet.
+	 *
+	 * @param reader the JSON to read; not closed
+	 * @param dictionary the dictionary of the world the region belongs to
+	 * @param regionX the region's x coordinate
+	 * @param regionZ the region's z coordinate
+	 * @return the region
+	 * @throws IOException if the JSON cannot be read
+	 */
+	public static RegionBiomes readJson(Reader reader, BiomeDictionary dictionary, int regionX, int regionZ) throws IOException {
+		RegionBiomes biomes = new RegionBiomes(dictionary, regionX, regionZ);
+		List<String> names = new ArrayList<>();
+
+		try {
+			JsonReader json = new JsonReader(reader);
+			json.beginObject();
+			while (json.hasNext()) {
+				if (!json.nextName().equals("chunks")) {
+					json.skipValue();
+					continue;
+				}
+
+				json.beginArray();
+				while (json.hasNext()) {
+					int x = 0;
+					int z = 0;
+					names.clear();
+
+					json.beginObject();
+					while (json.hasNext()) {
+						switch (json.nextName()) {
+							case "x" -> x = json.nextInt();
+							case "z" -> z = json.nextInt();
+							case "biomes" -> {
+								json.beginArray();
+								while (json.hasNext()) names.add(json.nextString());
+								json.endArray();
+							}
+							default -> json.skipValue();
+						}
+					}
+					json.endObject();
+					biomes.setChunk(x, z, names);
+				}
+				json.endArray();
+			}
+			json.endObject();
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Malformed biome metadata: " + e.getMessage(), e);
+		}
+		return biomes;
+	}
+
+	/**
+	 * Sets the biomes of a chunk of the region.
+	 *
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 * @param biomes the namespaced ids of the biomes in the chunk; may be empty
+	 */
+	public void setChunk(int chunkX, int chunkZ, Collection<String> biomes) {
+		int[] ids = biomes.isEmpty() ? NO_BIOMES : new int[biomes.size()];
+		int count = 0;
+		for (String biome : biomes) {
+			ids[count++] = dictionary.idOf(biome);
+		}
+		Arrays.sort(ids);
+
+		// a JSON file may repeat a biome
+		int distinct = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+		}
+		if (distinct < ids.length) ids = Arrays.copyOf(ids, distinct);
+
+		int index = (chunkZ & 31) * 32 + (chunkX & 31);
+		if (chunks[index] == null) chunkCount++;
+		chunks[index] = ids;
+	}
+
+	public int getRegionX() {
+		return regionX;
+	}
+
+	public int getRegionZ() {
+		return regionZ;
+	}
+
+	/**
+	 * @param index the chunk's index in the region, {@code (chunkZ & 31) * 32 + (chunkX & 31)}
+	 * @return the ids of the chunk's biomes in ascending order (do not modify), or {@code null} if the chunk has no
+	 *         biome data
+	 */
+	public int[] getChunkBiomes(int index) {
+		return chunks[index];
+	}
+
+	/**
+	 * @return the number of chunks with biome data
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * @return the region in the binary format described above
+	 */
+	public byte[] encode() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256 + chunkCount * 3);
+		out.writeBytes(MAGIC);
+		out.write(VERSION);
+		writeVarInt(out, zigZag(regionX));
+		writeVarInt(out, zigZag(regionZ));
+
+		byte[] bitmap = new byte[128];
+		for (int i = 0; i < chunks.length; i++) {
+			if (chunks[i] != null) bitmap[i >> 3] |= 1 << (i & 7);
+		}
+		out.writeBytes(bitmap);
+
+		for (int[] ids : chunks) {
+			if (ids == null) continue;
+			writeVarInt(out, ids.length);
+			for (int id : ids) writeVarInt(out, id);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Streams the region as {@code {"chunks": [{"x", "z", "biomes": [...]}]}}, with biome names instead of ids.
+	 *
+	 * @param writer the writer to write to; not closed
+	 * @throws IOException if writing fails
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.beginObject().name("chunks").beginArray();
+		for (int i = 0; i < chunks.length; i++) {
+			if (chunks[i] == null) continue;
+
+			json.beginObject();
+			json.name("x").value(regionX * 32 + (i & 31));
+			json.name("z").value(regionZ * 32 + (i >> 5));
+			json.name("biomes").beginArray();
+			for (int id : chunks[i]) {
+				json.value(dictionary.nameOf(id));
+			}
+			json.endArray();
+			json.endObject();
+		}
+		json.endArray().endObject();
+		json.flush();
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] pos) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if (pos[0] >= data.length || shift > 28) throw new IOException("Truncated biome metadata");
+			b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,67 @@
+package com.jvallejoromero.explora.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.GameRule;
+import org.bukkit.World;
+
+/**
+ * Represents a snapshot of the server's state as shown on the map.
+ *
+ * <p>It captures:
+ * <ul>
+ *   <li>Player count</li>
+ *   <li>Time of the main world (0-23999)</li>
+ *   <li>Time rate - how many ticks the world time advances per second ({@code 0} while the daylight cycle is
+ *   off), so the map can keep its clock running between updates</li>
+ *   <li>MOTD</li>
+ * </ul>
+ *
+ * <p>Snapshots must be taken on the main thread; they can then be sent from any thread.
+ *
+ * @see com.jvallejoromero.explora.util.stream.ServerStatusStream
+ */
+public class ServerStatus {
+
+	/** Ticks per second at which world time advances while the daylight cycle is on. */
+	public static final int TICKS_PER_SECOND = 20;
+
+	private final int playerCount;
+	private final long worldTime;
+	private final int timeRate;
+	private final String motd;
+
+	public ServerStatus(int playerCount, long worldTime, int timeRate, String motd) {
+		this.playerCount = playerCount;
+		this.worldTime = worldTime;
+		this.timeRate = timeRate;
+		this.motd = motd;
+	}
+
+	/**
+	 * Takes a snapshot of the current server state. Must be called from the main thread.
+	 *
+	 * @return the snapshot
+	 */
+	public static ServerStatus capture() {
+		World world = Bukkit.getWorlds().get(0);
+		boolean daylightCycle = !Boolean.FALSE.equals(world.getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE));
+		return new ServerStatus(Bukkit.getOnlinePlayers().size(), world.getTime(), daylightCycle ? TICKS_PER_SECOND : 0,
+				Bukkit.getServer().getMotd());
+	}
+
+	public int getPlayerCount() {
+		return playerCount;
+	}
+
+	public long getWorldTime() {
+		return worldTime;
+	}
+
+	public int getTimeRate() {
+		return timeRate;
+	}
+
+	public String getMotd() {
+		return motd;
+	}
+}
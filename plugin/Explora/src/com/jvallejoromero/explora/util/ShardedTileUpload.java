@@ -0,0 +1,197 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.File;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * Uploads a set of tiles as several size-bounded shards in parallel, and then makes them visible on the backend
+ * all at once.
+ *
+ * <p>The tiles are split into shards of at most {@code tile-upload-shard-megabytes} (a region's PNG and JSON stay in
+ * the same shard). Up to {@code tile-upload-parallelism} shards are zipped and uploaded at the same time, each in
+ * its own request that is retried on its own, up to {@code tile-upload-shard-retries} times with exponential
+ * backoff, so a failure only costs that shard. The backend stages the shards of an upload session and only moves
+ * them into place once all of them have arrived and the session is committed. If a shard still fails, the session
+ * is aborted and nothing becomes visible.
+ *
+ * <p>All work runs on HTTP client threads; {@link #start()} returns immediately.
+ */
+public class ShardedTileUpload {
+
+	/**
+	 * The outcome of a sharded upload.
+	 */
+	public enum Result {
+		/** Every shard was uploaded and the tiles are visible on the backend. */
+		COMMITTED,
+		/** A shard or the commit failed; nothing was made visible. */
+		FAILED,
+		/** The backend does not support sharded uploads; nothing was sent. */
+		UNSUPPORTED
+	}
+
+	private static final long RETRY_BASE_MILLIS = 1000;
+
+	private final String sessionId = UUID.randomUUID().toString();
+	private final List<List<File>> shards;
+
+	private final AtomicInteger nextShard = new AtomicInteger();
+	private final AtomicInteger shardsUploaded = new AtomicInteger();
+	private final AtomicInteger retries = new AtomicInteger();
+	private volatile boolean failed = false;
+	private volatile boolean unsupported = false;
+
+	/**
+	 * @param files the tile files to upload, each inside its world's render data folder
+	 */
+	public ShardedTileUpload(List<File> files) {
+		this.shards = split(files, Constants.TILE_UPLOAD_SHARD_BYTES);
+	}
+
+	/**
+	 * Splits files into shards of at most {@code maxShardBytes}, in path order so that files of the same region end
+	 * up next to each other. A single file larger than the limit gets a shard of its own.
+	 *
+	 * @param files the files to split
+	 * @param maxShardBytes the maximum total size of a shard
+	 * @return the shards
+	 */
+	public static List<List<File>> split(List<File> files, long maxShardBytes) {
+		List<File> sorted = new ArrayList<>(files);
+		sorted.sort(Comparator.comparing(File::getPath));
+
+		List<List<File>> shards = new ArrayList<>();
+		List<File> current = new ArrayList<>();
+		long currentBytes = 0;
+
+		for (File file : sorted) {
+			long size = TileStore.length(file);
+			if (!current.isEmpty() && currentBytes + size > maxShardBytes) {
+				shards.add(current);
+				current = new ArrayList<>();
+				currentBytes = 0;
+			}
+			current.add(file);
+			currentBytes += size;
+		}
+		if (!current.isEmpty()) shards.add(current);
+		return shards;
+	}
+
+	/**
+	 * Starts uploading. May be called from any thread, but only once.
+	 *
+	 * @return a future completed with the outcome; never completed exceptionally
+	 */
+	public CompletableFuture<Result> start() {
+		if (shards.isEmpty()) return CompletableFuture.completedFuture(Result.COMMITTED);
+
+		long startTime = System.currentTimeMillis();
+		int parallelism = Math.max(1, Math.min(Constants.TILE_UPLOAD_PARALLELISM, shards.size()));
+		ExploraPlugin.debug("[Upload] Session " + sessionId + ": " + shards.size() + " shards, " + parallelism + " at a time");
+
+		List<CompletableFuture<Void>> workers = new ArrayList<>();
+		for (int i = 0; i < parallelism; i++) {
+			workers.add(uploadNext());
+		}
+
+		return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+			if (unsupported) return CompletableFuture.completedFuture(Result.UNSUPPORTED);
+			if (failed) return abort();
+			return commit();
+		}).thenApply(result -> {
+			if (result == Result.COMMITTED) {
+				ExploraPlugin.debug("[Upload] Session " + sessionId + " committed in " + ((System.currentTimeMillis() - startTime) / 1000.0)
+						+ "s (" + shards.size() + " shards, " + retries.get() + " retries)");
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Uploads shards one after another until none are left or one has failed for good.
+	 */
+	private CompletableFuture<Void> uploadNext() {
+		if (failed || unsupported) return CompletableFuture.completedFuture(null);
+
+		int index = nextShard.getAndIncrement();
+		if (index >= shards.size()) return CompletableFuture.completedFuture(null);
+
+		return uploadShard(index, 0).thenCompose(ignored -> uploadNext());
+	}
+
+	private CompletableFuture<Void> uploadShard(int index, int attempt) {
+		TileZipStream zip = TileZipStream.ofFiles(shards.get(index));
+
+		return HttpUtil.uploadTileShard(sessionId, index, zip).handle((response, ex) -> {
+			if (response != null && HttpUtil.isSuccess(response)) {
+				shardsUploaded.incrementAndGet();
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			if (response != null && response.statusCode() == 404) {
+				unsupported = true;
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+			if (failed || !isRetryable(response) || attempt >= Constants.TILE_UPLOAD_SHARD_RETRIES) {
+				ExploraPlugin.warn("[Upload] Shard " + (index + 1) + "/" + shards.size() + " failed"
+						+ (response != null ? " (" + response.statusCode() + ")" : ex != null ? ": " + ex.getMessage() : ""));
+				failed = true;
+				return CompletableFuture.<Void>completedFuture(null);
+			}
+
+			retries.incrementAndGet();
+			long delay = (RETRY_BASE_MILLIS << Math.min(attempt, 10)) + ThreadLocalRandom.current().nextLong(RETRY_BASE_MILLIS / 2);
+			ExploraPlugin.debug("[Upload] Retrying shard " + (index + 1) + "/" + shards.size() + " in " + delay + "ms");
+			return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+					.thenCompose(ignored -> uploadShard(index, attempt + 1));
+		}).thenCompose(next -> next);
+	}
+
+	/**
+	 * @param response the response, or {@code null} if the request could not be sent
+	 * @return whether sending the same shard again may succeed
+	 */
+	private static boolean isRetryable(HttpResponse<String> response) {
+		if (response == null) return true;
+		int status = response.statusCode();
+		return status == 408 || status == 429 || status >= 500;
+	}
+
+	private CompletableFuture<Result> commit() {
+		return HttpUtil.commitTileUpload(sessionId, shards.size()).handle((response, ex) -> {
+			if (response != null && HttpUtil.isSuccess(response)) return CompletableFuture.completedFuture(Result.COMMITTED);
+			ExploraPlugin.warn("[Upload] Failed to commit tile upload" + (response != null ? " (" + response.statusCode() + ")" : ""));
+			return abort();
+		}).thenCompose(result -> result);
+	}
+
+	private CompletableFuture<Result> abort() {
+		return HttpUtil.abortTileUpload(sessionId).handle((response, ex) -> Result.FAILED);
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	public int getShardsUploaded() {
+		return shardsUploaded.get();
+	}
+
+	public int getRetries() {
+		return retries.get();
+	}
+}
@@ -0,0 +1,198 @@
+package com.jvallejoromero.explora.util;
+
+import java.util.Arrays;
+
+import org.bukkit.World;
+
+/**
+ * The surface height of every block column in the loaded chunks of one world, so block events can be checked for
+ * visibility on the map without asking the world each time.
+ *
+ * <p>A column's height is read from {@link World#getHighestBlockYAt(int, int)} the first time it is needed, and
+ * then kept up to date from the block events themselves:
+ * <ul>
+ *   <li>placing a block above the surface raises it</li>
+ *   <li>breaking the surface block makes the column unknown again, since what lies below is not known</li>
+ *   <li>explosions make the affected columns unknown</li>
+ * </ul>
+ * A chunk's heights are dropped when it unloads. Changes the plugin does not see (e.g. pistons, fluids or other
+ * plugins) can make a cached height stale until the chunk unloads; that only affects which block changes count
+ * towards a re-render.
+ *
+ * <p>Heights are kept in one {@code short[256]} per chunk, found through an open-addressing table of chunk keys,
+ * so a lookup does not allocate. Not thread-safe; used from the main thread only.
+ */
+public class SurfaceHeightCache {
+
+	private static final short UNKNOWN = Short.MIN_VALUE;
+
+	private final World world;
+
+	private long[] keys = new long[64];
+	private short[][] heights = new short[64][];
+	private int size = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	public SurfaceHeightCache(World world) {
+		this.world = world;
+	}
+
+	/**
+	 * @param blockX the column's x coordinate
+	 * @param blockZ the column's z coordinate
+	 * @return the y coordinate of the highest non-air block in the column
+	 */
+	public int getHeight(int blockX, int blockZ) {
+		short[] chunk = chunk(blockX >> 4, blockZ >> 4, true);
+		int column = column(blockX, blockZ);
+
+		if (chunk[column] != UNKNOWN) {
+			hits++;
+			return chunk[column];
+		}
+
+		misses++;
+		int height = world.getHighestBlockYAt(blockX, blockZ);
+		chunk[column] = (short) height;
+		return height;
+	}
+
+	/**
+	 * Records a placed block.
+	 */
+	public void onPlace(int blockX, int blockY, int blockZ) {
+		short[] chunk = chunk(blockX >> 4, blockZ >> 4, false);
+		if (chunk == null) return;
+
+		int column = column(blockX, blockZ);
+		if (chunk[column] != UNKNOWN && blockY > chunk[column]) chunk[column] = (short) blockY;
+	}
+
+	/**
+	 * Records a broken block.
+	 */
+	public void onBreak(int blockX, int blockY, int blockZ) {
+		short[] chunk = chunk(blockX >> 4, blockZ >> 4, false);
+		if (chunk == null) return;
+
+		int column = column(blockX, blockZ);
+		if (chunk[column] != UNKNOWN && blockY >= chunk[column]) chunk[column] = UNKNOWN;
+	}
+
+	/**
+	 * Forgets a column's height, e.g. because an explosion changed it.
+	 */
+	public void invalidate(int blockX, int blockZ) {
+		short[] chunk = chunk(blockX >> 4, blockZ >> 4, false);
+		if (chunk != null) chunk[column(blockX, blockZ)] = UNKNOWN;
+	}
+
+	/**
+	 * Forgets a chunk's heights.
+	 *
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 */
+	public void unloadChunk(int chunkX, int chunkZ) {
+		long key = ChunkUtils.key(chunkX, chunkZ);
+		int mask = keys.length - 1;
+		int index = (int) ChunkUtils.mix(key) & mask;
+
+		while (heights[index] != null) {
+			if (keys[index] == key) {
+				removeAt(index);
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return the number of chunks with cached heights
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of height lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of height lookups that had to ask the world
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	private static int column(int blockX, int blockZ) {
+		return ((blockZ & 15) << 4) | (blockX & 15);
+	}
+
+	/**
+	 * @param create whether to add the chunk (with all columns unknown) if it has no heights yet
+	 * @return the chunk's heights, or {@code null} if it has none and {@code create} is {@code false}
+	 */
+	private short[] chunk(int chunkX, int chunkZ, boolean create) {
+		long key = ChunkUtils.key(chunkX, chunkZ);
+		int mask = keys.length - 1;
+		int index = (int) ChunkUtils.mix(key) & mask;
+
+		while (heights[index] != null) {
+			if (keys[index] == key) return heights[index];
+			index = (index + 1) & mask;
+		}
+		if (!create) return null;
+
+		short[] chunk = new short[256];
+		Arrays.fill(chunk, UNKNOWN);
+		keys[index] = key;
+		heights[index] = chunk;
+
+		if (++size * 2 > keys.length) resize(keys.length * 2);
+		return chunk;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		short[][] oldHeights = heights;
+		keys = new long[capacity];
+		heights = new short[capacity][];
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldHeights[i] == null) continue;
+			int index = (int) ChunkUtils.mix(oldKeys[i]) & mask;
+			while (heights[index] != null) index = (index + 1) & mask;
+			keys[index] = oldKeys[i];
+			heights[index] = oldHeights[i];
+		}
+	}
+
+	/**
+	 * Removes a table entry, shifting back later entries of the same probe run so lookups still find them.
+	 */
+	private void removeAt(int hole) {
+		int mask = keys.length - 1;
+		int index = hole;
+		while (true) {
+			index = (index + 1) & mask;
+			if (heights[index] == null) break;
+
+			int home = (int) ChunkUtils.mix(keys[index]) & mask;
+			boolean stays = hole <= index ? (hole < home && home <= index) : (hole < home || home <= index);
+			if (!stays) {
+				keys[hole] = keys[index];
+				heights[hole] = heights[index];
+				hole = index;
+			}
+		}
+		heights[hole] = null;
+		size--;
+	}
+}
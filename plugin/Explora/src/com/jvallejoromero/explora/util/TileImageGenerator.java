@@ -1,9 +1,11 @@
 package com.jvallejoromero.explora.util;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
@@ -21,14 +23,15 @@ import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
 
 import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.manager.SnapshotManager;
+import com.jvallejoromero.explora.manager.ThrottleManager;
+import com.jvallejoromero.explora.manager.ThrottleManager.WorkType;
 import com.jvallejoromero.explora.util.mcaselector.HeadlessTileImage;
+import com.jvallejoromero.explora.util.mcaselector.SnapshotChunkRenderer;
 
 import net.querz.mcaselector.io.mca.RegionChunk;
 import net.querz.mcaselector.io.mca.RegionMCAFile;
@@ -39,14 +42,16 @@ import net.querz.nbt.Tag;
 
 /**
  * Utility class responsible for rendering Minecraft region files into PNG images and
- * extracting biome metadata as JSON for the {@code Explora} plugin.
+ * extracting biome metadata for the {@code Explora} plugin.
  *
  * <p>Supports:
  * <ul>
  *   <li>Rendering region tiles from .mca files using {@link HeadlessTileImage}</li>
- *   <li>Generating biome + chunk metadata in JSON files</li>
+ *   <li>Rendering freshly changed chunks from live snapshots captured by the {@link SnapshotManager}</li>
+ *   <li>Generating biome + chunk metadata, dictionary-encoded ({@link RegionBiomes}) or as JSON</li>
  *   <li>Rerendering only updated or missing regions</li>
  *   <li>Parallel processing with thread pooling and async task scheduling</li>
+ *   <li>Load-aware pacing of render workers through the {@link ThrottleManager}</li>
  * </ul>
  *
  * <p>All rendering is designed to run asynchronously to avoid blocking the server thread.
@@ -54,21 +59,22 @@ import net.querz.nbt.Tag;
 public class TileImageGenerator {
 	
 	public static final Pattern REGION_PATTERN = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
-	private static final Gson gson = new GsonBuilder().create();	
 	
 	private static ExploraPlugin plugin = ExploraPlugin.getInstance();
 	
 	/**
-	 * Renders a region file into a PNG image and writes corresponding biome metadata to a JSON file.
+	 * Renders a region into a PNG image and writes corresponding biome metadata next to it.
 	 *
-	 * <p>Scans the target region for all present chunks, renders the image using
-	 * {@link HeadlessTileImage}, and writes a metadata file listing biome palettes per chunk.
+	 * <p>Chunks with a live snapshot captured by the {@link SnapshotManager} are drawn from that snapshot;
+	 * all other chunks are read from the region's {@code .mca} file. A region that has not been saved to disk yet
+	 * can still be rendered if snapshots exist for it. The image is rendered using {@link HeadlessTileImage}
+	 * and a metadata file listing biome palettes per chunk is written next to it.
 	 *
 	 * @param worldName the name of the world this region belongs to
 	 * @param regionX the region X coordinate
 	 * @param regionZ the region Z coordinate
 	 * @param outputFile the output image file to save the rendered PNG to
-	 * @return {@code true} if rendering and JSON writing succeeded; {@code false} otherwise
+	 * @return {@code true} if rendering succeeded; {@code false} otherwise
 	 */
 	public static boolean generateRegionData(String worldName, int regionX, int regionZ, File outputFile) {
 	    long start = System.currentTimeMillis();
@@ -82,106 +88,152 @@ public class TileImageGenerator {
 	    File worldFolder = world.getWorldFolder();
 	    Map<String, File> regionFolders = ChunkUtils.getAllRegionFolders(worldFolder);
 	    
+	    File regionFile = null;
 		for (Map.Entry<String, File> entry : regionFolders.entrySet()) {
-			File regionDir = entry.getValue();
-			
-		    File regionFile = new File(regionDir, "r." + regionX + "." + regionZ + ".mca");
-		    if (!regionFile.exists()) continue;
-		    
-		    try {
-		        RegionMCAFile mcaFile = new RegionMCAFile(regionFile);
+		    File candidate = new File(entry.getValue(), "r." + regionX + "." + regionZ + ".mca");
+		    if (candidate.exists()) {
+		    	regionFile = candidate;
+		    	break;
+		    }
+		}
+		
+		ChunkSnapshot[] snapshots = plugin.getSnapshotManager().takeRegionSnapshots(worldName, regionX, regionZ);
+		if (regionFile == null && snapshots == null) return false;
+		
+	    try {
+	    	RegionMCAFile mcaFile = null;
+	    	
+	    	if (regionFile != null) {
+		        mcaFile = new RegionMCAFile(regionFile);
 		        mcaFile.load(false);
 
 		        long afterLoad = System.currentTimeMillis();
 		        ExploraPlugin.debug("&8[Render] Loaded " + regionFile.getName() + " in " + (afterLoad - start) + "ms");
 		        
-		        if (mcaFile.isEmpty()) {
+		        if (mcaFile.isEmpty() && snapshots == null) {
 		        	ExploraPlugin.warn("[Render] Region: " + regionFile.getName() + " is empty! Rendering anyways..");
 		        }
-		        
-		        boolean isNether = world.getName().toLowerCase().contains("nether");
-		        BufferedImage image = HeadlessTileImage.generateZoomedBufferedImageOptimized(mcaFile, isNether, 1, 2);
-
-		        if (image == null) {
-		            ExploraPlugin.warn("[Render] Failed to render image for region " + regionX + ", " + regionZ);
-		            return false;
-		        }
-
-		        if (outputFile.getParentFile() != null) {
-		            outputFile.getParentFile().mkdirs(); 
-		        }
-
-		        ImageIO.write(image, "png", outputFile);
-		        
-                // detect biomes and chunks
-                JsonObject regionInfo = new JsonObject();
-                JsonArray chunks = new JsonArray();
-                
-                for (int i = 0; i < 1024; i++) {
-                    RegionChunk regionChunk = mcaFile.getChunk(i);
-                    if (regionChunk == null || regionChunk.getData() == null) continue;
-
-                    CompoundTag level = regionChunk.getData();
-                    if (level == null) continue;
-
-                    ListTag sectionTags = level.getListTag("sections");
-                    if (sectionTags == null) continue;
+	    	}
+	    	
+	    	if (snapshots != null) {
+	    		ExploraPlugin.debug("&8[Render] Using live chunk snapshots for " + worldName + " r." + regionX + "." + regionZ);
+	    	}
+	        
+	        int minY = world.getMinHeight();
+	        int maxY = world.getMaxHeight();
+	        boolean isNether = world.getName().toLowerCase().contains("nether");
+	        BufferedImage image = HeadlessTileImage.generateZoomedBufferedImageOptimized(mcaFile, snapshots, isNether, 1, 2, minY, maxY);
+
+	        if (image == null) {
+	            ExploraPlugin.warn("[Render] Failed to render image for region " + regionX + ", " + regionZ);
+	            return false;
+	        }
+
+	        TileStore.write(outputFile, toPng(image));
+	        
+            // detect biomes and chunks
+            RegionBiomes biomes = new RegionBiomes(BiomeDictionary.of(outputFile.getParentFile()), regionX, regionZ);
+            
+            for (int i = 0; i < 1024; i++) {
+            	ChunkSnapshot snapshot = snapshots != null ? snapshots[i] : null;
+            	if (snapshot != null) {
+            		biomes.setChunk(snapshot.getX(), snapshot.getZ(), SnapshotChunkRenderer.getBiomes(snapshot, minY, maxY));
+            	} else if (mcaFile != null) {
+            		addChunkBiomes(biomes, mcaFile.getChunk(i));
+            	}
+            }
 
-                    Set<String> chunkBiomes = new HashSet<>();
+            writeBiomeMetadata(biomes, outputFile);
 
-                    for (CompoundTag section : sectionTags.iterateType(CompoundTag.class)) {
-                        CompoundTag biomesTag = section.getCompoundTag("biomes");
-                        if (biomesTag == null) continue;
+	        long totalTime = System.currentTimeMillis() - start;
+	        ExploraPlugin.debug("&8[Render] Wrote data " + outputFile.getName() + " in " + totalTime + "ms");
 
-                        ListTag palette = biomesTag.getListTag("palette");
-                        if (palette == null) continue;
+	        return true;
+	    } catch (Exception e) {
+	        ExploraPlugin.warn("[Render] Error rendering region (" + regionX + ", " + regionZ + "): " + e.getMessage());
+	        e.printStackTrace();
+	        return false;
+	    }
+	}
+	
+	/**
+	 * Adds the biome palette entries of every section of a chunk read from a region file.
+	 *
+	 * @param biomes the region's biomes
+	 * @param regionChunk the chunk, or {@code null} if the region file does not contain it; chunks without sections
+	 *        are skipped
+	 */
+	private static void addChunkBiomes(RegionBiomes biomes, RegionChunk regionChunk) {
+		if (regionChunk == null || regionChunk.getData() == null) return;
+		
+        ListTag sectionTags = regionChunk.getData().getListTag("sections");
+        if (sectionTags == null) return;
 
-                        for (Tag t : palette) {
-                            if (t instanceof StringTag tag) {
-                                chunkBiomes.add(tag.getValue());
-                            }
-                        }
-                    }
+        Set<String> chunkBiomes = new HashSet<>();
 
-                    JsonObject chunkInfo = new JsonObject();
-                    chunkInfo.addProperty("x", regionChunk.getAbsoluteLocation().getX());
-                    chunkInfo.addProperty("z", regionChunk.getAbsoluteLocation().getZ());
+        for (CompoundTag section : sectionTags.iterateType(CompoundTag.class)) {
+            CompoundTag biomesTag = section.getCompoundTag("biomes");
+            if (biomesTag == null) continue;
 
-                    JsonArray biomeArray = new JsonArray();
-                    for (String biome : chunkBiomes) {
-                        biomeArray.add(biome);
-                    }
-                    chunkInfo.add("biomes", biomeArray);
-                    chunks.add(chunkInfo);
-                }
+            ListTag palette = biomesTag.getListTag("palette");
+            if (palette == null) continue;
 
-                regionInfo.add("chunks", chunks);
-                
-                File jsonFile = new File(outputFile.getParent(), outputFile.getName().replace(".png", ".json"));
-                try (FileWriter writer = new FileWriter(jsonFile)) {
-                    gson.toJson(regionInfo, writer);
-                } catch (IOException e) {
-                    ExploraPlugin.warn("[Render] Failed to write JSON for region: " + outputFile.getName() + " - " + e.getMessage());
+            for (Tag t : palette) {
+                if (t instanceof StringTag tag) {
+                    chunkBiomes.add(tag.getValue());
                 }
-
-		        long totalTime = System.currentTimeMillis() - start;
-		        ExploraPlugin.debug("&8[Render] Wrote data " + outputFile.getName() + " in " + totalTime + "ms");
-
-		        return true;
-		    } catch (Exception e) {
-		        ExploraPlugin.warn("[Render] Error rendering region (" + regionX + ", " + regionZ + "): " + e.getMessage());
-		        e.printStackTrace();
-		        return false;
-		    }
+            }
+        }
+        biomes.setChunk(regionChunk.getAbsoluteLocation().getX(), regionChunk.getAbsoluteLocation().getZ(), chunkBiomes);
+	}
+	
+	/**
+	 * Writes a region's biome metadata next to its tile: as {@code r.<x>.<z>.biomes} (see {@link RegionBiomes}), or
+	 * as {@code r.<x>.<z>.json} with {@code biome-metadata-format: json}. The file of the other format is deleted, so
+	 * a region never has both. The world's {@link BiomeIndex} is updated if it is loaded.
+	 *
+	 * @param biomes the region's biomes
+	 * @param outputFile the region's PNG tile
+	 */
+	private static void writeBiomeMetadata(RegionBiomes biomes, File outputFile) {
+		File binaryFile = new File(outputFile.getParent(), outputFile.getName().replace(".png", RegionBiomes.EXTENSION));
+		File jsonFile = new File(outputFile.getParent(), outputFile.getName().replace(".png", ".json"));
+		
+		try {
+			if (Constants.BIOME_METADATA_BINARY) {
+				TileStore.write(binaryFile, biomes.encode());
+				TileStore.delete(jsonFile);
+			} else {
+				StringWriter writer = new StringWriter();
+				biomes.writeJson(writer);
+				TileStore.write(jsonFile, writer.toString().getBytes(StandardCharsets.UTF_8));
+				TileStore.delete(binaryFile);
+			}
+			
+			BiomeIndex index = BiomeIndex.ifLoaded(outputFile.getParentFile());
+			if (index != null) index.update(biomes);
+		} catch (IOException e) {
+			ExploraPlugin.warn("[Render] Failed to write biome metadata for region: " + outputFile.getName() + " - " + e.getMessage());
 		}
-		return false;
+	}
+    
+	/**
+	 * @param image a rendered region
+	 * @return the image as PNG bytes
+	 * @throws IOException if no PNG writer is available
+	 */
+	private static byte[] toPng(BufferedImage image) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+		if (!ImageIO.write(image, "png", out)) throw new IOException("No PNG writer available");
+		return out.toByteArray();
 	}
     
 	/**
 	 * Renders only the specified set of updated regions across worlds, running each job in parallel.
 	 *
 	 * <p>Uses a thread pool sized to available system cores and invokes the given callback once all
-	 * regions have finished rendering.
+	 * regions have finished rendering. Each region waits for a {@link WorkType#RENDER} permit, so
+	 * rendering slows down or pauses while the server is under load.
 	 *
 	 * @param regionsToRender a map of world names to sets of {@link RegionCoord}s to re-render
 	 * @param onComplete a callback that runs on the main thread after rendering completes
@@ -192,6 +244,7 @@ public class TileImageGenerator {
 			int maxThreads = Math.max(2, (int) Math.ceil(cores * 0.5));
 
 			ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+			ThrottleManager throttle = plugin.getThrottleManager();
 			AtomicInteger remaining = new AtomicInteger();
 			
 			ExploraPlugin.debug("Queueing re-render for regions:");
@@ -209,20 +262,27 @@ public class TileImageGenerator {
 
 					executor.submit(() -> {
 						try {
-							File outputFile = Constants.RENDER_DATA_PATH.resolve(worldName)
-									.resolve("r." + region.getX() + "." + region.getZ() + ".png").toFile();
+							throttle.acquire(WorkType.RENDER);
+							try {
+								File outputFile = Constants.RENDER_DATA_PATH.resolve(worldName)
+										.resolve("r." + region.getX() + "." + region.getZ() + ".png").toFile();
 
-							boolean success = generateRegionData(worldName, region.getX(), region.getZ(), outputFile);
+								boolean success = generateRegionData(worldName, region.getX(), region.getZ(), outputFile);
 
-							if (!success) {
-								ExploraPlugin.warn("Failed to render data for " + worldName + " r." + region.getX()
-										+ "." + region.getZ());
+								if (!success) {
+									ExploraPlugin.warn("Failed to render data for " + worldName + " r." + region.getX()
+											+ "." + region.getZ());
+								}
+							} finally {
+								throttle.release(WorkType.RENDER);
 							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
 						} finally {
 							if (remaining.decrementAndGet() == 0) {
 								executor.shutdown();
 								if (onComplete != null) {
-									Bukkit.getScheduler().runTask(plugin, onComplete);
+									plugin.getMainThreadScheduler().runTask(onComplete);
 								}
 							}
 						}
@@ -232,14 +292,14 @@ public class TileImageGenerator {
 
 			// If nothing was submitted, run callback immediately
 			if (remaining.get() == 0 && onComplete != null) {
-				Bukkit.getScheduler().runTask(plugin, onComplete);
+				plugin.getMainThreadScheduler().runTask(onComplete);
 			}
 		});
 	}
     
 	/**
 	 * Scans region directories across all worlds to identify any .mca files that do not yet
-	 * have a corresponding rendered PNG and JSON file in the output directory.
+	 * have a corresponding rendered PNG and biome metadata file (binary or JSON) in the output directory.
 	 *
 	 * @return a map of world names to missing {@link RegionCoord}s that need rendering
 	 */
@@ -274,8 +334,9 @@ public class TileImageGenerator {
                     String fileBaseName = "r." + regionX + "." + regionZ;
                     File outputPng = new File(outputDir, fileBaseName + ".png");
                     File outputJson = new File(outputDir, fileBaseName + ".json");
+                    File outputBiomes = new File(outputDir, fileBaseName + RegionBiomes.EXTENSION);
                     
-                    if (!outputPng.exists() || !outputJson.exists()) {
+                    if (!TileStore.exists(outputPng) || (!TileStore.exists(outputJson) && !TileStore.exists(outputBiomes))) {
                         Set<RegionCoord> regionSet = regions.computeIfAbsent(entry.getKey().toLowerCase(), k -> new HashSet<>());
                     	RegionCoord coord = RegionCoord.fromRegionCoords(regionX, regionZ);
                         regionSet.add(coord);
@@ -287,9 +348,12 @@ public class TileImageGenerator {
     }
     
     /**
-     * Asynchronously renders all .mca region files across worlds into PNG tiles and JSON metadata,
+     * Asynchronously renders all .mca region files across worlds into PNG tiles and biome metadata,
      * skipping files that already exist, and using multithreading for performance.
      *
+     * <p>Each region waits for a {@link WorkType#RENDER} permit from the {@link ThrottleManager}
+     * before rendering, instead of sleeping a fixed amount of time between regions.
+     *
      * @param zoomLevel the scaling factor to apply to the rendered output image
      * @param outputBaseDir the directory to save rendered files in
      * @param onComplete callback invoked on the main thread once rendering is finished
@@ -301,6 +365,7 @@ public class TileImageGenerator {
             int maxThreads = Math.max(2, (int) Math.ceil(cores * 0.5));
             
             ExecutorService pool = Executors.newFixedThreadPool(maxThreads);
+            ThrottleManager throttle = plugin.getThrottleManager();
             
             AtomicInteger renderedCount = new AtomicInteger();
             AtomicInteger skippedCount = new AtomicInteger();
@@ -334,13 +399,20 @@ public class TileImageGenerator {
 
                         String fileName = "r." + regionX + "." + regionZ + ".png";
                         File outputFile = new File(outputDir, fileName);
-                        if (outputFile.exists()) {
+                        if (TileStore.exists(outputFile)) {
                             skippedCount.incrementAndGet();
                             continue;
                         }
 
                         submittedCount.incrementAndGet();
                         pool.submit(() -> {
+                            try {
+                                throttle.acquire(WorkType.RENDER);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            
                             try {
                                 RegionMCAFile mca = new RegionMCAFile(mcaFile);
                                 mca.load(false);
@@ -356,62 +428,14 @@ public class TileImageGenerator {
                                     return;
                                 }
 
-                                File parent = outputFile.getParentFile();
-                                if (parent != null && !parent.exists()) parent.mkdirs();
-
-                                ImageIO.write(image, "png", outputFile);
-                                
+                                TileStore.write(outputFile, toPng(image));
                                 
                                 // detect biomes and chunks
-                                JsonObject regionInfo = new JsonObject();
-                                JsonArray chunks = new JsonArray();
-                                
+                                RegionBiomes biomes = new RegionBiomes(BiomeDictionary.of(outputDir), regionX, regionZ);
                                 for (int i = 0; i < 1024; i++) {
-                                    RegionChunk regionChunk = mca.getChunk(i);
-                                    if (regionChunk == null || regionChunk.getData() == null) continue;
-
-                                    CompoundTag level = regionChunk.getData();
-                                    if (level == null) continue;
-
-                                    ListTag sectionTags = level.getListTag("sections");
-                                    if (sectionTags == null) continue;
-
-                                    Set<String> chunkBiomes = new HashSet<>();
-
-                                    for (CompoundTag section : sectionTags.iterateType(CompoundTag.class)) {
-                                        CompoundTag biomesTag = section.getCompoundTag("biomes");
-                                        if (biomesTag == null) continue;
-
-                                        ListTag palette = biomesTag.getListTag("palette");
-                                        if (palette == null) continue;
-
-                                        for (Tag t : palette) {
-                                            if (t instanceof StringTag tag) {
-                                                chunkBiomes.add(tag.getValue());
-                                            }
-                                        }
-                                    }
-
-                                    JsonObject chunkInfo = new JsonObject();
-                                    chunkInfo.addProperty("x", regionChunk.getAbsoluteLocation().getX());
-                                    chunkInfo.addProperty("z", regionChunk.getAbsoluteLocation().getZ());
-
-                                    JsonArray biomeArray = new JsonArray();
-                                    for (String biome : chunkBiomes) {
-                                        biomeArray.add(biome);
-                                    }
-                                    chunkInfo.add("biomes", biomeArray);
-                                    chunks.add(chunkInfo);
-                                }
-
-                                regionInfo.add("chunks", chunks);
-                                
-                                File jsonFile = new File(outputFile.getParent(), outputFile.getName().replace(".png", ".json"));
-                                try (FileWriter writer = new FileWriter(jsonFile)) {
-                                    gson.toJson(regionInfo, writer);
-                                } catch (IOException e) {
-                                    ExploraPlugin.warn("Failed to write JSON for region: " + outputFile.getName() + " - " + e.getMessage());
+                                    addChunkBiomes(biomes, mca.getChunk(i));
                                 }
+                                writeBiomeMetadata(biomes, outputFile);
 
                                 int count = renderedCount.incrementAndGet();
                                 if (count % 10 == 0) {
@@ -426,9 +450,7 @@ public class TileImageGenerator {
                                 ExploraPlugin.warn("Error rendering region: " + mcaFile.getName());
                                 e.printStackTrace();
                             } finally {
-                                try {
-                                    Thread.sleep(10); 
-                                } catch (InterruptedException ignored) {}
+                                throttle.release(WorkType.RENDER);
                             }
                         });
                     }
@@ -437,7 +459,15 @@ public class TileImageGenerator {
 
             pool.shutdown();
             try {
-                pool.awaitTermination(30, TimeUnit.MINUTES);
+                // wait in short steps so a plugin disable stops the render instead of waiting for it
+                while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    if (!throttle.isShutdown()) continue;
+
+                    pool.shutdownNow();
+                    pool.awaitTermination(5, TimeUnit.SECONDS);
+                    System.out.println("Rendering stopped, the plugin is disabling. Rendered: " + renderedCount.get());
+                    return;
+                }
                 Duration totalTime = Duration.between(start, Instant.now());
                 System.out.println("Finished rendering.");
                 System.out.println("Rendered: " + renderedCount.get());
@@ -449,7 +479,7 @@ public class TileImageGenerator {
             }
 
             if (onComplete != null) {
-                Bukkit.getScheduler().runTask(plugin, onComplete);
+                plugin.getMainThreadScheduler().runTask(onComplete);
             }
         });
     }
@@ -0,0 +1,259 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * The content hashes of one world's rendered tiles, used to upload only the tiles the backend does not have yet.
+ *
+ * <p>Every tile in {@code render-data/<world>}, whether a file of its own or in the world's {@link TilePack}, has an
+ * entry keyed by its file name (e.g. {@code r.0.0.png}) holding:
+ * <ul>
+ *   <li>{@code hash} - SHA-256 of the file, recomputed only when its size or modification time changes</li>
+ *   <li>{@code size} and {@code modified} - used to detect changed files without reading them</li>
+ *   <li>{@code version} - increased every time the hash changes</li>
+ *   <li>{@code synced} - the hash the backend is known to have, or {@code null}</li>
+ * </ul>
+ *
+ * <p>A tile needs uploading when {@code synced} differs from {@code hash}. Manifests are stored as
+ * {@code tile-manifests/<world>.json} in the plugin's data folder, outside of {@code render-data} so they are
+ * never uploaded themselves. All methods are thread-safe.
+ */
+public class TileManifest {
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	private static final Type ENTRIES_TYPE = new TypeToken<TreeMap<String, Entry>>() {}.getType();
+	private static final HexFormat HEX = HexFormat.of();
+
+	private final String world;
+	private final Path file;
+	private final TreeMap<String, Entry> tiles = new TreeMap<>();
+
+	private TileManifest(String world) {
+		this.world = world;
+		this.file = Constants.TILE_MANIFEST_PATH.resolve(world + ".json");
+	}
+
+	/**
+	 * Loads a world's manifest, or creates an empty one if none has been saved yet.
+	 *
+	 * @param world the world name
+	 * @return the manifest
+	 */
+	public static TileManifest load(String world) {
+		TileManifest manifest = new TileManifest(world);
+		if (!Files.exists(manifest.file)) return manifest;
+
+		try (Reader reader = Files.newBufferedReader(manifest.file, StandardCharsets.UTF_8)) {
+			Map<String, Entry> entries = GSON.fromJson(reader, ENTRIES_TYPE);
+			if (entries != null) manifest.tiles.putAll(entries);
+		} catch (Exception ex) {
+			ExploraPlugin.warn("Failed to read tile manifest for " + world + ", rebuilding it: " + ex.getMessage());
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest to disk, replacing the previous file atomically.
+	 */
+	public synchronized void save() {
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				GSON.toJson(tiles, ENTRIES_TYPE, writer);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to save tile manifest for " + world + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Brings the manifest in line with every tile in the world folder: new and changed files are hashed, and
+	 * entries of deleted files are removed.
+	 *
+	 * @param worldFolder the world's folder in {@code render-data}
+	 * @return the number of files that were hashed
+	 */
+	public synchronized int refresh(File worldFolder) {
+		Set<String> seen = new HashSet<>();
+		int hashed = 0;
+
+		for (File tile : TileStore.list(worldFolder)) {
+			seen.add(tile.getName());
+			if (refreshEntry(tile.getName(), tile)) hashed++;
+		}
+
+		tiles.keySet().retainAll(seen);
+		return hashed;
+	}
+
+	/**
+	 * Brings the entries of the given files in line with the tiles on disk.
+	 *
+	 * @param files tile files inside the world folder; files that no longer exist are removed from the manifest
+	 */
+	public synchronized void refresh(Collection<File> files) {
+		for (File tile : files) {
+			String name = tile.getName();
+			if (!TileStore.exists(tile)) {
+				tiles.remove(name);
+				continue;
+			}
+			refreshEntry(name, tile);
+		}
+	}
+
+	/**
+	 * @return whether the file had to be hashed
+	 */
+	private boolean refreshEntry(String name, File tile) {
+		Entry entry = tiles.get(name);
+		long size = TileStore.length(tile);
+		long modified = TileStore.lastModified(tile);
+
+		if (entry != null && entry.size == size && entry.modified == modified && entry.hash != null) return false;
+
+		String hash;
+		try {
+			hash = hash(tile);
+		} catch (IOException ex) {
+			ExploraPlugin.warn("Failed to hash tile " + world + "/" + name + ": " + ex.getMessage());
+			return false;
+		}
+
+		if (entry == null) {
+			entry = new Entry();
+			tiles.put(name, entry);
+		}
+		if (!hash.equals(entry.hash)) entry.version++;
+
+		entry.hash = hash;
+		entry.size = size;
+		entry.modified = modified;
+		return true;
+	}
+
+	/**
+	 * Replaces what the backend is known to have with its own manifest.
+	 *
+	 * @param remoteHashes the hash of every tile the backend has, by tile name
+	 */
+	public synchronized void setSynced(Map<String, String> remoteHashes) {
+		for (Map.Entry<String, Entry> entry : tiles.entrySet()) {
+			entry.getValue().synced = remoteHashes.get(entry.getKey());
+		}
+	}
+
+	/**
+	 * Records that the backend now has the current version of the given tiles.
+	 *
+	 * @param names the tile names
+	 */
+	public synchronized void markSynced(Collection<String> names) {
+		for (String name : names) {
+			Entry entry = tiles.get(name);
+			if (entry != null) entry.synced = entry.hash;
+		}
+	}
+
+	/**
+	 * @return the names of all tiles whose current hash the backend does not have, in name order
+	 */
+	public synchronized List<String> getUnsynced() {
+		List<String> names = new ArrayList<>();
+		for (Map.Entry<String, Entry> entry : tiles.entrySet()) {
+			if (!entry.getValue().isSynced()) names.add(entry.getKey());
+		}
+		return names;
+	}
+
+	/**
+	 * @param name the tile name
+	 * @return whether the backend is known to have the tile's current hash
+	 */
+	public synchronized boolean isSynced(String name) {
+		Entry entry = tiles.get(name);
+		return entry != null && entry.isSynced();
+	}
+
+	/**
+	 * @param name the tile name
+	 * @return whether the manifest has an entry for the tile
+	 */
+	public synchronized boolean contains(String name) {
+		return tiles.containsKey(name);
+	}
+
+	/**
+	 * @param name the tile name
+	 * @return the tile's size in bytes, or {@code 0} if unknown
+	 */
+	public synchronized long getSize(String name) {
+		Entry entry = tiles.get(name);
+		return entry == null ? 0 : entry.size;
+	}
+
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	public String getWorld() {
+		return world;
+	}
+
+	private static String hash(File tile) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+
+		try (InputStream in = new DigestInputStream(TileStore.openStream(tile), digest)) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+		return HEX.formatHex(digest.digest());
+	}
+
+	/**
+	 * A tile's entry in the manifest.
+	 */
+	private static final class Entry {
+		private String hash;
+		private long size;
+		private long modified;
+		private int version;
+		private String synced;
+
+		private boolean isSynced() {
+			return hash != null && hash.equals(synced);
+		}
+	}
+}
@@ -0,0 +1,789 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * The tiles of one world's render folder in a single append-only file ({@value #FILE_NAME}), instead of one file
+ * per tile.
+ *
+ * <p>The file starts with the magic bytes {@code EXTP}, a version byte ({@value #VERSION}) and a long: how much of the
+ * file was forced to disk at the last sync. Records follow:
+ * <ul>
+ *   <li>the tile name: unsigned short length and UTF-8 bytes, e.g. {@code r.0.0.png}</li>
+ *   <li>a long: when the tile was written, in epoch milliseconds</li>
+ *   <li>an int: the tile's length, or {@code -1} if the record deletes the tile</li>
+ *   <li>an int: the CRC-32 of the tile's bytes</li>
+ *   <li>the tile's bytes</li>
+ * </ul>
+ *
+ * <p>Writing a tile appends a record; the last record of a name wins. An in-memory index of where every tile's
+ * bytes are is built by reading the record headers when the pack is opened, so looking a tile up never touches the
+ * disk. A record only enters the index once it has been written completely. Records are forced to disk by
+ * {@link #sync()}, which runs periodically, after imports and compaction and when the pack is closed, rather than
+ * after every tile. Opening the pack trusts the records that were synced and checks the CRC of the ones written
+ * after the last sync: a record that does not match is skipped, so its tile stays at its previous version, and a
+ * record cut short by a crash is truncated. Readers see either the old or the new tile. Replaced tiles stay in
+ * the file until {@link #compact()} copies the live records into a new file and moves it over the old one.
+ *
+ * <p>Tiles are copied out of the pack with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so
+ * compaction and {@link #exportTo(File)} never copy tile bytes through the Java heap. Thread-safe: reads run in
+ * parallel, writes and compaction one at a time. A pack that was closed opens its file again on its next read or
+ * write, so references held across {@link #closeAll()} stay usable.
+ */
+public class TilePack {
+
+	public static final String FILE_NAME = "tiles.pack";
+	public static final int VERSION = 2;
+
+	private static final byte[] MAGIC = { 'E', 'X', 'T', 'P' };
+	// version 1 packs have no synced offset; they are rewritten as version 2 when opened
+	private static final int V1_FILE_HEADER_BYTES = MAGIC.length + 1;
+	private static final int SYNCED_POSITION = MAGIC.length + 1;
+	private static final int FILE_HEADER_BYTES = SYNCED_POSITION + 8;
+	// name length, written, length and crc
+	private static final int RECORD_HEADER_BYTES = 2 + 8 + 4 + 4;
+
+	// packs are compacted once replaced tiles take up this share of the file, and at least this many bytes
+	private static final double COMPACTION_DEAD_RATIO = 0.5;
+	private static final long COMPACTION_MIN_DEAD_BYTES = 4L * 1024 * 1024;
+
+	// the files that belong in a pack: region tiles, their biome metadata and fog-of-war mask tiles
+	private static final Pattern TILE_PATTERN = Pattern.compile("r\\.-?\\d+\\.-?\\d+\\.(png|json|biomes)|fog\\.\\d+\\.-?\\d+\\.-?\\d+\\.png");
+
+	private static final Map<String, TilePack> packs = new ConcurrentHashMap<>();
+
+	private final File folder;
+	private final Path path;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	// null while the pack is closed
+	private FileChannel channel;
+	private boolean deleted = false;
+	private long end;
+	// records before this offset were forced to disk
+	private long synced;
+	private long deadBytes = 0;
+
+	private TilePack(File folder) throws IOException {
+		this.folder = folder;
+		this.path = new File(folder, FILE_NAME).toPath();
+		open();
+	}
+
+	/**
+	 * Opens the pack of a world's render folder, creating it if it does not exist. Opening reads every record
+	 * header and the tiles written since the last sync, so call this off the main thread.
+	 *
+	 * @param folder a world's render data folder
+	 * @return the folder's pack, opened the first time
+	 * @throws IOException if the pack cannot be created or read
+	 */
+	public static TilePack of(File folder) throws IOException {
+		String key = folder.getAbsolutePath();
+		TilePack pack = packs.get(key);
+		if (pack != null) return pack;
+
+		synchronized (packs) {
+			pack = packs.get(key);
+			if (pack == null) {
+				pack = new TilePack(folder);
+				packs.put(key, pack);
+			}
+			return pack;
+		}
+	}
+
+	/**
+	 * @param folder a world's render data folder
+	 * @return whether the folder has a pack file
+	 */
+	public static boolean exists(File folder) {
+		return new File(folder, FILE_NAME).isFile();
+	}
+
+	/**
+	 * @param name a file name in a world's render data folder
+	 * @return whether the file is a tile, which is kept in the pack
+	 */
+	public static boolean isPackable(String name) {
+		return TILE_PATTERN.matcher(name).matches();
+	}
+
+	/**
+	 * @param name a file name in a world's render data folder
+	 * @return whether the file is a pack file or a pack being compacted
+	 */
+	public static boolean isPackFile(String name) {
+		return name.equals(FILE_NAME) || name.equals(FILE_NAME + ".tmp");
+	}
+
+	/**
+	 * @return every pack opened since the server started
+	 */
+	public static Collection<TilePack> getOpenPacks() {
+		return new ArrayList<>(packs.values());
+	}
+
+	/**
+	 * Compacts every open pack that has enough replaced tiles (see {@link #needsCompaction()}).
+	 */
+	public static void compactAll() {
+		for (TilePack pack : getOpenPacks()) {
+			if (!pack.needsCompaction()) continue;
+			try {
+				pack.compact();
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to compact tile pack of " + pack.folder.getName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Forces the tiles written to every open pack since its last sync to disk.
+	 */
+	public static void syncAll() {
+		for (TilePack pack : getOpenPacks()) {
+			try {
+				pack.sync();
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to sync tile pack of " + pack.folder.getName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Syncs and closes the file of every open pack once the reads and writes in progress are done. The packs keep
+	 * their index and open their file again on their next use.
+	 */
+	public static void closeAll() {
+		for (TilePack pack : getOpenPacks()) pack.close();
+	}
+
+	private void open() throws IOException {
+		Files.createDirectories(path.getParent());
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		long size = channel.size();
+		if (size == 0) {
+			writeFully(channel, newHeader(FILE_HEADER_BYTES), 0);
+			end = FILE_HEADER_BYTES;
+			synced = FILE_HEADER_BYTES;
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate((int) Math.min(FILE_HEADER_BYTES, size));
+		readFully(channel, header, 0);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header.limit() < V1_FILE_HEADER_BYTES || header.get(i) != MAGIC[i]) {
+				channel.close();
+				throw new IOException("Not a tile pack: " + path);
+			}
+		}
+
+		int version = header.get(MAGIC.length);
+		if (version == 1) {
+			synced = V1_FILE_HEADER_BYTES;
+			scan(V1_FILE_HEADER_BYTES);
+			ExploraPlugin.log("&eRewriting tile pack of " + folder.getName() + " in the current format..");
+			compact();
+			return;
+		}
+		if (version != VERSION || header.limit() < FILE_HEADER_BYTES) {
+			channel.close();
+			throw new IOException("Unsupported tile pack version " + version + ": " + path);
+		}
+
+		// a synced offset past the end of the file cannot be right, so everything is checked then
+		synced = header.getLong(SYNCED_POSITION);
+		if (synced < FILE_HEADER_BYTES || synced > size) synced = FILE_HEADER_BYTES;
+		scan(FILE_HEADER_BYTES);
+	}
+
+	private static ByteBuffer newHeader(long synced) {
+		return ByteBuffer.allocate(FILE_HEADER_BYTES).put(MAGIC).put((byte) VERSION).putLong(synced).flip();
+	}
+
+	/**
+	 * Rebuilds the index from the records. Records before the synced offset are trusted; the CRC of every tile
+	 * written after it is checked, and a tile that does not match is skipped so the previous one stays. The file is
+	 * truncated at a record that was cut short.
+	 *
+	 * @param start where the first record is
+	 */
+	private void scan(long start) throws IOException {
+		long size = channel.size();
+		long position = start;
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + 256);
+
+		while (position < size) {
+			// most names fit in the first read; a longer one is read again in full
+			buffer = readHeader(buffer, position, size, RECORD_HEADER_BYTES + 256);
+			if (buffer.remaining() < 2) break;
+
+			int nameLength = buffer.getShort(0) & 0xFFFF;
+			if (buffer.remaining() < RECORD_HEADER_BYTES + nameLength) {
+				if (position + RECORD_HEADER_BYTES + nameLength > size) break;
+				buffer = readHeader(ByteBuffer.allocate(RECORD_HEADER_BYTES + nameLength), position, size, RECORD_HEADER_BYTES + nameLength);
+			}
+
+			String name = new String(buffer.array(), 2, nameLength, StandardCharsets.UTF_8);
+			buffer.position(2 + nameLength);
+			long written = buffer.getLong();
+			int length = buffer.getInt();
+			int crc = buffer.getInt();
+
+			long dataOffset = position + RECORD_HEADER_BYTES + nameLength;
+			if (length < -1 || dataOffset + Math.max(length, 0) > size) break;
+
+			Entry entry = length < 0 ? null : new Entry(position, dataOffset, length, crc, written, nameLength);
+			long recordEnd = dataOffset + Math.max(length, 0);
+			if (entry != null && recordEnd > synced && crc != crcOf(read(entry))) {
+				ExploraPlugin.warn("Tile pack " + path + " has a corrupt copy of " + name + ", keeping the previous one.");
+				deadBytes += entry.getRecordBytes();
+			} else {
+				index(name, entry);
+			}
+			position = recordEnd;
+		}
+
+		if (position < size) {
+			ExploraPlugin.warn("Tile pack " + path + " ends with an incomplete record, dropping its last " + (size - position) + " bytes.");
+			channel.truncate(position);
+		}
+		end = position;
+	}
+
+	/**
+	 * Reads up to {@code max} bytes of a record header into the buffer, fewer at the end of the file.
+	 *
+	 * @return the buffer, flipped
+	 */
+	private ByteBuffer readHeader(ByteBuffer buffer, long position, long size, int max) throws IOException {
+		buffer.clear().limit((int) Math.min(max, size - position));
+		readFully(channel, buffer, position);
+		return buffer.flip();
+	}
+
+	/**
+	 * Points a name at a new record, counting the record it replaces as dead.
+	 *
+	 * @param entry the new record, or {@code null} if the tile was deleted
+	 */
+	private void index(String name, Entry entry) {
+		Entry old = entry != null ? entries.put(name, entry) : entries.remove(name);
+		if (old != null) deadBytes += old.getRecordBytes();
+		if (entry == null) deadBytes += RECORD_HEADER_BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * @param name a tile name
+	 * @return where the tile is in the pack, or {@code null} if the pack does not have it
+	 */
+	public Entry get(String name) {
+		lock.readLock().lock();
+		try {
+			return entries.get(name);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the names of every tile in the pack
+	 */
+	public List<String> getNames() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(entries.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads a tile with a single positional read.
+	 *
+	 * @param name a tile name
+	 * @return the tile's bytes
+	 * @throws NoSuchFileException if the pack does not have the tile
+	 * @throws IOException if the pack cannot be read
+	 */
+	public byte[] read(String name) throws IOException {
+		lockOpenForRead();
+		try {
+			Entry entry = entries.get(name);
+			if (entry == null) throw new NoSuchFileException(folder.getName() + "/" + name);
+			return read(entry);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private byte[] read(Entry entry) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+		readFully(channel, buffer, entry.offset);
+		return buffer.array();
+	}
+
+	/**
+	 * Copies a tile into a channel without going through the Java heap.
+	 *
+	 * @param name a tile name
+	 * @param target the channel to copy to
+	 * @return the number of bytes copied
+	 * @throws NoSuchFileException if the pack does not have the tile
+	 * @throws IOException if the pack cannot be read or the target cannot be written
+	 */
+	public long transferTo(String name, WritableByteChannel target) throws IOException {
+		lockOpenForRead();
+		try {
+			Entry entry = entries.get(name);
+			if (entry == null) throw new NoSuchFileException(folder.getName() + "/" + name);
+			transfer(channel, entry.offset, entry.length, target);
+			return entry.length;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes a tile, replacing the one with the same name.
+	 *
+	 * @param name a tile name
+	 * @param data the tile's bytes
+	 * @throws IOException if the pack cannot be written; the old tile is kept
+	 */
+	public void write(String name, byte[] data) throws IOException {
+		write(name, data, System.currentTimeMillis());
+	}
+
+	private void write(String name, byte[] data, long written) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		append(name, data, (int) crc.getValue(), written);
+	}
+
+	/**
+	 * Deletes a tile.
+	 *
+	 * @param name a tile name
+	 * @return whether the pack had the tile
+	 * @throws IOException if the pack cannot be written
+	 */
+	public boolean delete(String name) throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (!entries.containsKey(name)) return false;
+			append(name, null, 0, System.currentTimeMillis());
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends a record and points the index at it once it has been written completely. The record is forced to disk
+	 * by the next {@link #sync()}.
+	 *
+	 * @param data the tile's bytes, or {@code null} to delete the tile
+	 */
+	private void append(String name, byte[] data, int crc, long written) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length > 0xFFFF) throw new IOException("Tile name too long: " + name);
+
+		int length = data != null ? data.length : -1;
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + nameBytes.length + Math.max(length, 0));
+		record.putShort((short) nameBytes.length).put(nameBytes).putLong(written).putInt(length).putInt(crc);
+		if (data != null) record.put(data);
+		record.flip();
+
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			long position = end;
+			try {
+				writeFully(channel, record, position);
+			} catch (IOException e) {
+				// drop whatever part of the record made it to disk
+				channel.truncate(position);
+				throw e;
+			}
+			end = position + record.limit();
+
+			long dataOffset = position + RECORD_HEADER_BYTES + nameBytes.length;
+			index(name, data != null ? new Entry(position, dataOffset, length, crc, written, nameBytes.length) : null);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Forces the records written since the last sync to disk, then records in the header how far the file is on
+	 * disk, so opening the pack only has to check the records after it.
+	 *
+	 * @throws IOException if the pack cannot be written
+	 */
+	public void sync() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (channel == null || end == synced) return;
+			syncLocked();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void syncLocked() throws IOException {
+		channel.force(false);
+		// forced by the next sync; until then an older, smaller offset on disk only means more records are checked
+		writeFully(channel, ByteBuffer.allocate(8).putLong(0, end), SYNCED_POSITION);
+		synced = end;
+	}
+
+	/**
+	 * @return whether replaced and deleted tiles take up enough of the file to compact it
+	 */
+	public boolean needsCompaction() {
+		lock.readLock().lock();
+		try {
+			return deadBytes >= COMPACTION_MIN_DEAD_BYTES && deadBytes >= end * COMPACTION_DEAD_RATIO;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the live records into a new file, in their current order, and moves it over the pack. Reads and writes
+	 * wait until it is done. If anything fails, the pack is left as it was.
+	 *
+	 * @return the number of bytes freed
+	 * @throws IOException if the new file cannot be written or moved into place
+	 */
+	public long compact() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			long start = System.currentTimeMillis();
+			long before = end;
+			Path tmp = path.resolveSibling(FILE_NAME + ".tmp");
+
+			List<Map.Entry<String, Entry>> live = new ArrayList<>(entries.entrySet());
+			live.sort(Comparator.comparingLong(e -> e.getValue().recordOffset));
+
+			Map<String, Entry> moved = new HashMap<>();
+			long position = FILE_HEADER_BYTES;
+			try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				out.position(position);
+
+				for (Map.Entry<String, Entry> e : live) {
+					Entry entry = e.getValue();
+					transfer(channel, entry.recordOffset, entry.getRecordBytes(), out);
+					moved.put(e.getKey(), entry.movedTo(position));
+					position += entry.getRecordBytes();
+				}
+				// the whole new file is forced, so it is synced up to its end
+				writeFully(out, newHeader(position), 0);
+				out.force(true);
+			} catch (IOException e) {
+				Files.deleteIfExists(tmp);
+				throw e;
+			}
+
+			channel.close();
+			try {
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+
+			entries.clear();
+			entries.putAll(moved);
+			end = position;
+			synced = position;
+			deadBytes = 0;
+
+			ExploraPlugin.debug("&8Compacted tile pack of " + folder.getName() + " from " + (before / 1024) + " KB to " + (end / 1024)
+					+ " KB in " + (System.currentTimeMillis() - start) + "ms");
+			return before - end;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes every tile as a file of its own in a folder, the layout used before tiles were packed. Files are given
+	 * the time their tile was written as their modification time.
+	 *
+	 * @param target the folder to write to; existing files with the same names are replaced
+	 * @return the number of tiles written
+	 * @throws IOException if a tile cannot be written
+	 */
+	public int exportTo(File target) throws IOException {
+		Files.createDirectories(target.toPath());
+		lockOpenForRead();
+		try {
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				Path file = target.toPath().resolve(e.getKey());
+				try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					transfer(channel, e.getValue().offset, e.getValue().length, out);
+				}
+				file.toFile().setLastModified(e.getValue().written);
+			}
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves the tiles that are files of their own in the pack's folder into the pack, keeping their modification
+	 * times. The pack is synced once all of them are in, and only then are the files deleted.
+	 *
+	 * @return the number of tiles moved
+	 */
+	public int importLooseTiles() {
+		File[] files = folder.listFiles((dir, name) -> isPackable(name));
+		if (files == null) return 0;
+
+		List<File> written = new ArrayList<>();
+		for (File file : files) {
+			if (!file.isFile()) continue;
+			try {
+				write(file.getName(), Files.readAllBytes(file.toPath()), file.lastModified());
+				written.add(file);
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to move tile " + file.getPath() + " into the tile pack: " + e.getMessage());
+			}
+		}
+		if (written.isEmpty()) return 0;
+
+		try {
+			sync();
+		} catch (IOException e) {
+			ExploraPlugin.warn("Failed to sync the tile pack of " + folder.getName() + ", keeping the single tile files: " + e.getMessage());
+			return 0;
+		}
+
+		int imported = 0;
+		for (File file : written) {
+			try {
+				Files.delete(file.toPath());
+				imported++;
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to delete tile " + file.getPath() + " after moving it into the tile pack: " + e.getMessage());
+			}
+		}
+		return imported;
+	}
+
+	/**
+	 * Closes the pack and deletes its file. Used after exporting its tiles back to single files.
+	 *
+	 * @throws IOException if the file cannot be deleted
+	 */
+	public void closeAndDelete() throws IOException {
+		synchronized (packs) {
+			packs.remove(folder.getAbsolutePath(), this);
+			lock.writeLock().lock();
+			try {
+				// no point syncing a file about to be deleted
+				deleted = true;
+				close();
+				entries.clear();
+				Files.deleteIfExists(path);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Syncs and closes the file once the reads and writes in progress are done; it is opened again on the next use.
+	 */
+	private void close() {
+		lock.writeLock().lock();
+		try {
+			if (channel == null) return;
+			if (end != synced && !deleted) syncLocked();
+			channel.close();
+		} catch (IOException e) {
+			ExploraPlugin.warn("Failed to close tile pack " + path + ": " + e.getMessage());
+		} finally {
+			channel = null;
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Opens the file again if the pack was closed. Must hold the write lock.
+	 *
+	 * @throws IOException if the pack was deleted or its file cannot be opened
+	 */
+	private void ensureOpen() throws IOException {
+		if (deleted) throw new IOException("Tile pack of " + folder.getName() + " was deleted");
+		if (channel == null) channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Takes the read lock with the file open, opening it again under the write lock first if the pack was closed.
+	 */
+	private void lockOpenForRead() throws IOException {
+		lock.readLock().lock();
+		if (channel != null) return;
+
+		lock.readLock().unlock();
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			// downgrade, so no one can close the file before the read
+			lock.readLock().lock();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of tiles in the pack
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the size of the pack file, in bytes
+	 */
+	public long getFileBytes() {
+		lock.readLock().lock();
+		try {
+			return end;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the bytes taken up by replaced and deleted tiles, freed by the next compaction
+	 */
+	public long getDeadBytes() {
+		lock.readLock().lock();
+		try {
+			return deadBytes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the render data folder the pack belongs to
+	 */
+	public File getFolder() {
+		return folder;
+	}
+
+	private static int crcOf(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) throw new IOException("Unexpected end of tile pack");
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static void transfer(FileChannel source, long position, long count, WritableByteChannel target) throws IOException {
+		while (count > 0) {
+			long transferred = source.transferTo(position, count, target);
+			if (transferred <= 0) throw new IOException("Unexpected end of tile pack");
+			position += transferred;
+			count -= transferred;
+		}
+	}
+
+	/**
+	 * Where a tile is in the pack.
+	 */
+	public static final class Entry {
+		private final long recordOffset;
+		private final long offset;
+		private final int length;
+		private final int crc;
+		private final long written;
+		private final int nameLength;
+
+		private Entry(long recordOffset, long offset, int length, int crc, long written, int nameLength) {
+			this.recordOffset = recordOffset;
+			this.offset = offset;
+			this.length = length;
+			this.crc = crc;
+			this.written = written;
+			this.nameLength = nameLength;
+		}
+
+		private Entry movedTo(long recordOffset) {
+			return new Entry(recordOffset, recordOffset + (offset - this.recordOffset), length, crc, written, nameLength);
+		}
+
+		private long getRecordBytes() {
+			return RECORD_HEADER_BYTES + nameLength + (long) length;
+		}
+
+		/**
+		 * @return the tile's length in bytes
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the CRC-32 of the tile's bytes, as used in ZIP archives
+		 */
+		public long getCrc() {
+			return crc & 0xFFFFFFFFL;
+		}
+
+		/**
+		 * @return when the tile was written, in epoch milliseconds
+		 */
+		public long getWritten() {
+			return written;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * Reads and writes the files of the render data folders, whether they are files of their own or tiles in the world's
+ * {@link TilePack}.
+ *
+ * <p>A tile is always referred to by its path in its world's render folder, e.g. {@code render-data/world/r.0.0.png},
+ * even if it only exists in the pack. With {@code tile-storage: pack}, tiles ({@link TilePack#isPackable(String)})
+ * are kept in the pack and all other files (like the biome dictionary) stay on disk; with {@code tile-storage: files},
+ * everything is a file of its own.
+ *
+ * <p>The first time a world folder is used, its tiles are moved to where the current setting keeps them: loose
+ * tiles into the pack, or the pack's tiles back out into single files (after which the pack is deleted). Calls may
+ * read or write the disk, so make them off the main thread.
+ */
+public final class TileStore {
+
+	private static final Set<String> migratedFolders = ConcurrentHashMap.newKeySet();
+
+	private TileStore() {}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return whether it exists
+	 */
+	public static boolean exists(File tile) {
+		TilePack pack = packOf(tile);
+		return pack != null ? pack.get(tile.getName()) != null : tile.isFile();
+	}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return its length in bytes, or {@code 0} if it does not exist
+	 */
+	public static long length(File tile) {
+		TilePack pack = packOf(tile);
+		if (pack == null) return tile.length();
+
+		TilePack.Entry entry = pack.get(tile.getName());
+		return entry != null ? entry.getLength() : 0;
+	}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return when it was last written in epoch milliseconds, or {@code 0} if it does not exist
+	 */
+	public static long lastModified(File tile) {
+		TilePack pack = packOf(tile);
+		if (pack == null) return tile.lastModified();
+
+		TilePack.Entry entry = pack.get(tile.getName());
+		return entry != null ? entry.getWritten() : 0;
+	}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return its bytes
+	 * @throws NoSuchFileException if it does not exist
+	 * @throws IOException if it cannot be read
+	 */
+	public static byte[] read(File tile) throws IOException {
+		TilePack pack = packOf(tile);
+		return pack != null ? pack.read(tile.getName()) : Files.readAllBytes(tile.toPath());
+	}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return a stream of its bytes; must be closed
+	 * @throws NoSuchFileException if it does not exist
+	 * @throws IOException if it cannot be read
+	 */
+	public static InputStream openStream(File tile) throws IOException {
+		TilePack pack = packOf(tile);
+		return pack != null ? new ByteArrayInputStream(pack.read(tile.getName())) : Files.newInputStream(tile.toPath());
+	}
+
+	/**
+	 * Writes a file, replacing it if it exists.
+	 *
+	 * @param tile a file in a world's render data folder
+	 * @param data its new bytes
+	 * @throws IOException if it cannot be written
+	 */
+	public static void write(File tile, byte[] data) throws IOException {
+		TilePack pack = packOf(tile);
+		if (pack != null) {
+			pack.write(tile.getName(), data);
+			return;
+		}
+
+		Files.createDirectories(tile.toPath().getParent());
+		Files.write(tile.toPath(), data);
+	}
+
+	/**
+	 * @param tile a file in a world's render data folder
+	 * @return whether it existed
+	 * @throws IOException if it cannot be deleted
+	 */
+	public static boolean delete(File tile) throws IOException {
+		TilePack pack = packOf(tile);
+		return pack != null ? pack.delete(tile.getName()) : Files.deleteIfExists(tile.toPath());
+	}
+
+	/**
+	 * @param worldFolder a world's render data folder
+	 * @return every file in the folder, both tiles in the pack and files of their own, but not the pack itself
+	 */
+	public static List<File> list(File worldFolder) {
+		List<File> files = new ArrayList<>(listPacked(worldFolder));
+
+		File[] loose = worldFolder.listFiles(file -> file.isFile() && !TilePack.isPackFile(file.getName()));
+		if (loose != null) {
+			for (File file : loose) files.add(file);
+		}
+		return files;
+	}
+
+	/**
+	 * @param worldFolder a world's render data folder
+	 * @return the tiles in the folder's pack, or nothing with {@code tile-storage: files}
+	 */
+	public static List<File> listPacked(File worldFolder) {
+		List<File> files = new ArrayList<>();
+		TilePack pack = packOfFolder(worldFolder);
+		if (pack == null) return files;
+
+		for (String name : pack.getNames()) {
+			files.add(new File(worldFolder, name));
+		}
+		return files;
+	}
+
+	/**
+	 * @return the pack the tile is kept in, or {@code null} if it is a file of its own
+	 */
+	private static TilePack packOf(File tile) {
+		if (!TilePack.isPackable(tile.getName())) {
+			migrate(tile.getParentFile());
+			return null;
+		}
+		return packOfFolder(tile.getParentFile());
+	}
+
+	/**
+	 * @return the world folder's pack, or {@code null} with {@code tile-storage: files}
+	 */
+	private static TilePack packOfFolder(File worldFolder) {
+		migrate(worldFolder);
+		if (!Constants.TILE_STORAGE_PACK) return null;
+
+		try {
+			return TilePack.of(worldFolder);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to open the tile pack of " + worldFolder.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Moves a world folder's tiles to where {@code tile-storage} keeps them, the first time the folder is used.
+	 */
+	private static void migrate(File folder) {
+		if (migratedFolders.contains(folder.getAbsolutePath())) return;
+
+		synchronized (migratedFolders) {
+			if (migratedFolders.contains(folder.getAbsolutePath())) return;
+
+			long start = System.currentTimeMillis();
+			try {
+				if (Constants.TILE_STORAGE_PACK) {
+					int imported = TilePack.of(folder).importLooseTiles();
+					if (imported > 0) {
+						ExploraPlugin.log("&aMoved " + imported + " tiles of " + folder.getName() + " into its tile pack in "
+								+ (System.currentTimeMillis() - start) + "ms.");
+					}
+				} else if (TilePack.exists(folder)) {
+					TilePack pack = TilePack.of(folder);
+					int exported = pack.exportTo(folder);
+					pack.closeAndDelete();
+					ExploraPlugin.log("&aMoved " + exported + " tiles of " + folder.getName() + " out of its tile pack in "
+							+ (System.currentTimeMillis() - start) + "ms.");
+				}
+			} catch (IOException e) {
+				ExploraPlugin.warn("Failed to move the tiles of " + folder.getName() + " for tile-storage: "
+						+ (Constants.TILE_STORAGE_PACK ? "pack" : "files") + ": " + e.getMessage());
+			}
+			// only marked once done, so other threads wait above until the folder is in its final layout
+			migratedFolders.add(folder.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package com.jvallejoromero.explora.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A ZIP archive of tile files that is produced on demand while it is being read, instead of being built in memory.
+ *
+ * <p>{@link #openStream()} returns an {@link InputStream} that compresses the next piece of the next file only when
+ * the reader asks for more bytes, so memory use stays the same no matter how many tiles are in the archive (apart
+ * from the ZIP central directory, a few dozen bytes per entry). Reading happens on whichever thread consumes the
+ * stream, e.g. the HTTP client when used as a request body through {@link #toBodyPublisher()}; the body has no
+ * known length, so it is sent with chunked transfer encoding.
+ *
+ * <p>Files are read through {@link TileStore}, so tiles kept in a world's {@link TilePack} are archived under the
+ * same names as loose files. PNG tiles are already compressed, so they are added as {@link ZipEntry#STORED} entries:
+ * each is read into memory once and its CRC computed there, instead of reading the file a second time. All other
+ * files are deflated while they are streamed.
+ *
+ * <p>Folders are walked lazily while the archive is read, so files added or removed in the meantime may or may not
+ * be included. Instances are immutable and can be read any number of times.
+ */
+public final class TileZipStream {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final List<File> files;
+	private final List<File> folders;
+
+	private TileZipStream(List<File> files, List<File> folders) {
+		this.files = files;
+		this.folders = folders;
+	}
+
+	/**
+	 * Creates an archive of single files, each stored as {@code <parent folder name>/<file name>}.
+	 *
+	 * @param files the files to archive
+	 * @return the archive
+	 */
+	public static TileZipStream ofFiles(List<File> files) {
+		return new TileZipStream(new ArrayList<>(files), List.of());
+	}
+
+	/**
+	 * Creates an archive of folder trees. The tiles in each folder's pack and all other non-directory files under
+	 * the folders (recursively) are added using their paths relative to the folder's parent, e.g.
+	 * {@code world/r.0.0.png}. Pack files themselves are not added.
+	 *
+	 * @param folders the top-level folders to archive; entries that are not directories are skipped
+	 * @return the archive
+	 */
+	public static TileZipStream ofFolders(List<File> folders) {
+		return new TileZipStream(List.of(), new ArrayList<>(folders));
+	}
+
+	/**
+	 * @return a new stream of the archive's bytes; must be closed
+	 */
+	public InputStream openStream() {
+		return new ZipPullInputStream();
+	}
+
+	/**
+	 * @return a request body that streams the archive each time it is sent
+	 */
+	public BodyPublisher toBodyPublisher() {
+		return BodyPublishers.ofInputStream(this::openStream);
+	}
+
+	/**
+	 * Writes the archive to an output stream.
+	 *
+	 * @param out the stream to write to; not closed
+	 * @return the number of bytes written
+	 * @throws IOException if a file cannot be read or the stream cannot be written
+	 */
+	public long writeTo(OutputStream out) throws IOException {
+		try (InputStream in = openStream()) {
+			return in.transferTo(out);
+		}
+	}
+
+	/**
+	 * Writes the archive to a file, replacing it if it exists.
+	 *
+	 * @param file the file to write
+	 * @return the number of bytes written
+	 * @throws IOException if a file cannot be read or the target cannot be written
+	 */
+	public long writeTo(Path file) throws IOException {
+		try (InputStream in = openStream()) {
+			return Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @param file a file to add
+	 * @return whether the file is added as a {@link ZipEntry#STORED} entry
+	 */
+	private static boolean isStored(File file) {
+		return file.getName().toLowerCase().endsWith(".png");
+	}
+
+	/**
+	 * Turns the push-style {@link ZipOutputStream} into a pull-style stream: every time the buffered output has been
+	 * read, one more step of the archive (the next {@value #CHUNK_SIZE} bytes of a file, the end of an entry, the
+	 * start of the next one, or the central directory) is written into the buffer.
+	 */
+	private final class ZipPullInputStream extends InputStream {
+
+		private final ReusableBuffer buffer = new ReusableBuffer();
+		private final ZipOutputStream zipOut = new ZipOutputStream(buffer);
+		private final byte[] chunk = new byte[CHUNK_SIZE];
+
+		private final Iterator<File> fileIterator = files.iterator();
+		private final Iterator<File> folderIterator = folders.iterator();
+		private Iterator<File> packedIterator;
+		private Stream<Path> currentWalk;
+		private Iterator<Path> walkIterator;
+		private Path walkBase;
+
+		private InputStream currentFile;
+		private boolean finished = false;
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+
+			while (buffer.available() == 0) {
+				if (!advance()) return -1;
+			}
+			return buffer.read(b, off, len);
+		}
+
+		/**
+		 * Writes the next step of the archive into the buffer.
+		 *
+		 * @return {@code false} once the whole archive has been written
+		 */
+		private boolean advance() throws IOException {
+			if (finished) return false;
+
+			if (currentFile != null) {
+				int read = currentFile.read(chunk);
+				if (read > 0) {
+					zipOut.write(chunk, 0, read);
+					return true;
+				}
+				currentFile.close();
+				currentFile = null;
+				zipOut.closeEntry();
+				return true;
+			}
+
+			NextFile next = nextFile();
+			if (next != null) {
+				ZipEntry entry = new ZipEntry(next.entryName);
+				if (isStored(next.file)) {
+					byte[] data = TileStore.read(next.file);
+					storeEntry(entry, data);
+					currentFile = new ByteArrayInputStream(data);
+				} else {
+					currentFile = TileStore.openStream(next.file);
+				}
+				zipOut.putNextEntry(entry);
+				return true;
+			}
+
+			zipOut.finish();
+			finished = true;
+			return true;
+		}
+
+		/**
+		 * Sets up a {@link ZipEntry#STORED} entry, which needs its size and CRC before any data is written.
+		 */
+		private void storeEntry(ZipEntry entry, byte[] data) {
+			CRC32 crc = new CRC32();
+			crc.update(data);
+
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(data.length);
+			entry.setCompressedSize(data.length);
+			entry.setCrc(crc.getValue());
+		}
+
+		private NextFile nextFile() throws IOException {
+			if (fileIterator.hasNext()) {
+				File file = fileIterator.next();
+				return new NextFile(file, file.getParentFile().getName() + "/" + file.getName());
+			}
+
+			while (true) {
+				while (packedIterator != null && packedIterator.hasNext()) {
+					File file = packedIterator.next();
+					if (!TileStore.exists(file)) continue;
+					return new NextFile(file, file.getParentFile().getName() + "/" + file.getName());
+				}
+				packedIterator = null;
+
+				if (walkIterator != null) {
+					try {
+						while (walkIterator.hasNext()) {
+							Path path = walkIterator.next();
+							if (!Files.isRegularFile(path) || TilePack.isPackFile(path.getFileName().toString())) continue;
+							return new NextFile(path.toFile(), walkBase.relativize(path).toString().replace(File.separatorChar, '/'));
+						}
+					} catch (UncheckedIOException ex) {
+						throw ex.getCause();
+					}
+					closeWalk();
+				}
+
+				if (!folderIterator.hasNext()) return null;
+
+				File folder = folderIterator.next();
+				if (!folder.isDirectory()) continue;
+
+				// listing the pack first also moves loose tiles into it before the folder is walked
+				packedIterator = TileStore.listPacked(folder).iterator();
+				walkBase = folder.getParentFile().toPath();
+				currentWalk = Files.walk(folder.toPath());
+				walkIterator = currentWalk.iterator();
+			}
+		}
+
+		private void closeWalk() {
+			if (currentWalk != null) currentWalk.close();
+			currentWalk = null;
+			walkIterator = null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closeWalk();
+			if (currentFile != null) {
+				currentFile.close();
+				currentFile = null;
+			}
+			finished = true;
+		}
+	}
+
+	/**
+	 * A file to add and its name inside the archive.
+	 */
+	private static final class NextFile {
+		private final File file;
+		private final String entryName;
+
+		private NextFile(File file, String entryName) {
+			this.file = file;
+			this.entryName = entryName;
+		}
+	}
+
+	/**
+	 * An output buffer that is read back from the front and reused once it has been read completely, so it only
+	 * grows to the largest amount written between two reads.
+	 */
+	private static final class ReusableBuffer extends OutputStream {
+		private byte[] data = new byte[CHUNK_SIZE + 1024];
+		private int readPos = 0;
+		private int writePos = 0;
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(1);
+			data[writePos++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(len);
+			System.arraycopy(b, off, data, writePos, len);
+			writePos += len;
+		}
+
+		private void ensureCapacity(int extra) {
+			if (readPos == writePos) {
+				readPos = 0;
+				writePos = 0;
+			}
+			if (writePos + extra > data.length) {
+				byte[] grown = new byte[Math.max(data.length * 2, writePos + extra)];
+				System.arraycopy(data, 0, grown, 0, writePos);
+				data = grown;
+			}
+		}
+
+		private int available() {
+			return writePos - readPos;
+		}
+
+		private int read(byte[] b, int off, int len) {
+			int count = Math.min(len, available());
+			System.arraycopy(data, readPos, b, off, count);
+			readPos += count;
+			return count;
+		}
+	}
+}
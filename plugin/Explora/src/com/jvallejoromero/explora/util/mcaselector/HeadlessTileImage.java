@@ -12,6 +12,8 @@ import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
+import org.bukkit.ChunkSnapshot;
+
 import com.jvallejoromero.explora.ExploraPlugin;
 
 import net.querz.mcaselector.config.ConfigProvider;
@@ -34,6 +36,7 @@ import net.querz.mcaselector.util.math.MathUtil;
  *   <li>Converted to a fully headless implementation (no UI or GUI dependencies)</li>
  *   <li>Integrated error handling and logging via {@link ExploraPlugin}</li>
  *   <li>Renamed from {@code TileImage} to {@code HeadlessTileImage} for clarity</li>
+ *   <li>Can draw chunks from live {@link ChunkSnapshot}s via {@link SnapshotChunkRenderer}</li>
  * </ul>
  *
  * <p><strong>Original Author:</strong> Querz (<a href="https://github.com/Querz/mcaselector">github.com/Querz/mcaselector</a>)<br>
@@ -73,6 +76,22 @@ public final class HeadlessTileImage {
 	 * @return a {@link BufferedImage} of the rendered region, or {@code null} if rendering fails
 	 */
 	public static BufferedImage generateBufferedImageOptimized(RegionMCAFile mcaFile, boolean nether, int scale) {
+		return generateBufferedImageOptimized(mcaFile, null, nether, scale, 0, 0);
+	}
+	
+	/**
+	 * Generates a buffered image of a region from live chunk snapshots, falling back to the region file
+	 * for every chunk that has no snapshot.
+	 *
+	 * @param mcaFile the region file to render, or {@code null} if the region has not been saved yet
+	 * @param snapshots 1024 snapshots indexed by {@code chunkZ * 32 + chunkX} (local to the region), or {@code null}
+	 * @param nether true to render using the cave renderer (used for Nether dimensions)
+	 * @param scale the rendering scale (e.g., 1 for 512x512, 2 for 256x256, etc.)
+	 * @param minY the world's minimum build height, used for snapshots
+	 * @param maxY the world's maximum build height, used for snapshots
+	 * @return a {@link BufferedImage} of the rendered region, or {@code null} if rendering fails
+	 */
+	public static BufferedImage generateBufferedImageOptimized(RegionMCAFile mcaFile, ChunkSnapshot[] snapshots, boolean nether, int scale, int minY, int maxY) {
 	    int size = Tile.SIZE / scale;
 	    int chunkSize = Tile.CHUNK_SIZE / scale;
 	    int pixels = Tile.PIXELS / (scale * scale);
@@ -92,7 +111,13 @@ public final class HeadlessTileImage {
 	                final int zPos = cz * chunkSize;
 	                final int index = cz * Tile.SIZE_IN_CHUNKS + cx;
 	                tasks.add(() -> {
-	                    Chunk data = mcaFile.getChunk(index);
+	                    ChunkSnapshot snapshot = snapshots != null ? snapshots[index] : null;
+	                    if (snapshot != null) {
+	                        drawSnapshotImage(snapshot, nether, xPos, zPos, scale, pixelBuffer, waterPixels, terrainHeights, waterHeights, minY, maxY);
+	                        return null;
+	                    }
+	                    
+	                    Chunk data = mcaFile != null ? mcaFile.getChunk(index) : null;
 	                    if (data != null) {
 	                        drawChunkImage(data, nether, xPos, zPos, scale, pixelBuffer, waterPixels, terrainHeights, waterHeights);
 	                    }
@@ -117,7 +142,8 @@ public final class HeadlessTileImage {
 	        img.setRGB(0, 0, size, size, pixelBuffer, 0, size);
 	        return img;
 	    } catch (Exception ex) {
-	        ExploraPlugin.warn("failed to create image for MCAFile: " +  mcaFile.getFile().getName() + ": " + ex.getMessage());
+	        String source = mcaFile != null ? mcaFile.getFile().getName() : "chunk snapshots";
+	        ExploraPlugin.warn("failed to create image for " + source + ": " + ex.getMessage());
 	        return null;
 	    }
 	}
@@ -135,7 +161,24 @@ public final class HeadlessTileImage {
 	 * @return a zoomed {@link BufferedImage}, or {@code null} if rendering fails
 	 */
 	public static BufferedImage generateZoomedBufferedImageOptimized(RegionMCAFile mcaFile, boolean nether, int scale, int zoomFactor) {
-	    BufferedImage base = generateBufferedImageOptimized(mcaFile, nether, scale);
+		return generateZoomedBufferedImageOptimized(mcaFile, null, nether, scale, zoomFactor, 0, 0);
+	}
+	
+	/**
+	 * Generates a zoomed-in region image from live chunk snapshots, falling back to the region file
+	 * for every chunk that has no snapshot.
+	 *
+	 * @param mcaFile the region file to render, or {@code null} if the region has not been saved yet
+	 * @param snapshots 1024 snapshots indexed by {@code chunkZ * 32 + chunkX} (local to the region), or {@code null}
+	 * @param nether true to use the cave renderer
+	 * @param scale the rendering scale for the base image
+	 * @param zoomFactor how many times to upscale the output (e.g., 2 = 2x larger)
+	 * @param minY the world's minimum build height, used for snapshots
+	 * @param maxY the world's maximum build height, used for snapshots
+	 * @return a zoomed {@link BufferedImage}, or {@code null} if rendering fails
+	 */
+	public static BufferedImage generateZoomedBufferedImageOptimized(RegionMCAFile mcaFile, ChunkSnapshot[] snapshots, boolean nether, int scale, int zoomFactor, int minY, int maxY) {
+	    BufferedImage base = generateBufferedImageOptimized(mcaFile, snapshots, nether, scale, minY, maxY);
 	    if (base == null || zoomFactor <= 1) return base;
 
 	    int w = base.getWidth();
@@ -189,19 +232,60 @@ public final class HeadlessTileImage {
 			}
 		} catch (Exception ex) {
 			ExploraPlugin.warn("failed to draw chunk: " + chunkData.getAbsoluteLocation() + " " +  ex.getMessage());
-			for (int cx = 0; cx < Tile.CHUNK_SIZE; cx += scale) {
-				for (int cz = 0; cz < Tile.CHUNK_SIZE; cz += scale) {
-					int srcIndex = cz * Tile.CHUNK_SIZE + cx;
-					int dstIndex = (z + cz / scale) * Tile.SIZE / scale + (x + cx / scale);
-					pixelBuffer[dstIndex] = corruptedChunkOverlay[srcIndex];
-					terrainHeights[dstIndex] = 64;
-					if (waterHeights != null) waterHeights[dstIndex] = 64;
-				}
-			}
+			drawCorruptedOverlay(x, z, scale, pixelBuffer, terrainHeights, waterHeights);
 		}
 	}
 
 	
+	/**
+	 * Renders a single chunk snapshot into the provided pixel buffers, using the same color mapping
+	 * as {@link #drawChunkImage}.
+	 *
+	 * <p>If the snapshot fails to render, a "corrupted" fallback image is drawn instead.
+	 *
+	 * @param snapshot the chunk snapshot to render
+	 * @param nether whether to use the cave renderer
+	 * @param x the x offset in pixels
+	 * @param z the z offset in pixels
+	 * @param scale the rendering scale
+	 * @param pixelBuffer the main ARGB pixel buffer to draw to
+	 * @param waterPixels buffer for storing water surface pixels
+	 * @param terrainHeights buffer to store terrain elevation values
+	 * @param waterHeights buffer to store water elevation values
+	 * @param minY the world's minimum build height
+	 * @param maxY the world's maximum build height
+	 */
+	@SuppressWarnings("unchecked")
+	private static void drawSnapshotImage(ChunkSnapshot snapshot, boolean nether, int x, int z, int scale, int[] pixelBuffer, int[] waterPixels, short[] terrainHeights, short[] waterHeights, int minY, int maxY) {
+		int height = Math.min(ConfigProvider.WORLD.getRenderHeight(), maxY - 1);
+		
+		try {
+			if (nether) {
+				SnapshotChunkRenderer.drawCaves(snapshot, VersionHandler.getColorMapping(4325), x, z, scale, pixelBuffer, terrainHeights, minY, height);
+			} else {
+				SnapshotChunkRenderer.drawChunk(snapshot, VersionHandler.getColorMapping(4325), x, z, scale, pixelBuffer, waterPixels, terrainHeights, waterHeights, ConfigProvider.WORLD.getShade() && ConfigProvider.WORLD.getShadeWater(), minY, height);
+			}
+		} catch (Exception ex) {
+			ExploraPlugin.warn("failed to draw chunk snapshot: " + snapshot.getX() + ", " + snapshot.getZ() + " " + ex.getMessage());
+			drawCorruptedOverlay(x, z, scale, pixelBuffer, terrainHeights, waterHeights);
+		}
+	}
+	
+	/**
+	 * Draws the "corrupted" fallback image for a chunk that failed to render.
+	 */
+	private static void drawCorruptedOverlay(int x, int z, int scale, int[] pixelBuffer, short[] terrainHeights, short[] waterHeights) {
+		for (int cx = 0; cx < Tile.CHUNK_SIZE; cx += scale) {
+			for (int cz = 0; cz < Tile.CHUNK_SIZE; cz += scale) {
+				int srcIndex = cz * Tile.CHUNK_SIZE + cx;
+				int dstIndex = (z + cz / scale) * Tile.SIZE / scale + (x + cx / scale);
+				pixelBuffer[dstIndex] = corruptedChunkOverlay[srcIndex];
+				terrainHeights[dstIndex] = 64;
+				if (waterHeights != null) waterHeights[dstIndex] = 64;
+			}
+		}
+	}
+	
 	/**
 	 * Original method copied from MCA Selector project (MIT License).
 	 * No modifications have been made.
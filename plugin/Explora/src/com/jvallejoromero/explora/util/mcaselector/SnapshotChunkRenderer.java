@@ -0,0 +1,194 @@
+package com.jvallejoromero.explora.util.mcaselector;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+
+import net.querz.mcaselector.util.math.Bits;
+import net.querz.mcaselector.version.ColorMapping;
+import net.querz.nbt.CompoundTag;
+
+/**
+ * Renders live Bukkit {@link ChunkSnapshot}s into the same pixel and height buffers as {@link ChunkRenderer_1_21}.
+ *
+ * <p>Block states and biomes are translated into the NBT shapes MCA Selector's {@link ColorMapping} expects
+ * ({@code {Name, Properties}} compounds and namespaced biome ids), so tiles drawn from snapshots use exactly
+ * the same colors as tiles drawn from {@code .mca} files. Translations are cached, since a world only has a
+ * few thousand distinct block states.
+ *
+ * <p>Snapshots are immutable, so every method in this class is safe to call from render worker threads.
+ */
+public final class SnapshotChunkRenderer {
+
+	private static final Map<BlockData, CompoundTag> blockTags = new ConcurrentHashMap<>();
+	private static final Map<Biome, String> biomeNames = new ConcurrentHashMap<>();
+	private static final CompoundTag waterDummy = new CompoundTag();
+
+	static {
+		waterDummy.putString("Name", "minecraft:water");
+	}
+
+	private SnapshotChunkRenderer() {}
+
+	/**
+	 * Draws the surface of a chunk snapshot. Mirrors {@link ChunkRenderer_1_21#drawChunk}.
+	 *
+	 * @param snapshot the chunk snapshot to draw
+	 * @param colorMapping the color mapping used for region file rendering
+	 * @param x the x offset in pixels
+	 * @param z the z offset in pixels
+	 * @param scale the rendering scale
+	 * @param pixelBuffer the main ARGB pixel buffer to draw to
+	 * @param waterPixels buffer for storing water surface pixels
+	 * @param terrainHeights buffer to store terrain elevation values
+	 * @param waterHeights buffer to store water elevation values
+	 * @param water whether to shade water depth
+	 * @param minY the world's minimum build height
+	 * @param height the maximum height to render from, at most the world's maximum build height minus one
+	 */
+	public static void drawChunk(ChunkSnapshot snapshot, ColorMapping<CompoundTag, String> colorMapping, int x, int z, int scale,
+			int[] pixelBuffer, int[] waterPixels, short[] terrainHeights, short[] waterHeights, boolean water, int minY, int height) {
+		int scaleBits = Bits.msbPosition(scale);
+
+		for (int cx = 0; cx < 16; cx += scale) {
+			zLoop:
+			for (int cz = 0; cz < 16; cz += scale) {
+				int pixelIndex = (z + (cz >> scaleBits)) * (512 >> scaleBits) + (x + (cx >> scaleBits));
+				boolean waterDepth = false;
+
+				int top = Math.min(height, snapshot.getHighestBlockYAt(cx, cz) + 1);
+
+				for (int y = top; y >= minY; y--) {
+					CompoundTag blockData = toBlockTag(snapshot.getBlockData(cx, y, cz));
+					if (colorMapping.isTransparent(blockData)) continue;
+
+					String biome = toBiomeName(snapshot.getBiome(cx, y, cz));
+
+					if (water) {
+						if (!waterDepth) {
+							pixelBuffer[pixelIndex] = colorMapping.getRGB(blockData, biome);
+							waterHeights[pixelIndex] = (short) y;
+						}
+						if (colorMapping.isWater(blockData)) {
+							waterDepth = true;
+							continue;
+						} else if (colorMapping.isWaterlogged(blockData)) {
+							pixelBuffer[pixelIndex] = colorMapping.getRGB(waterDummy, biome);
+							waterPixels[pixelIndex] = colorMapping.getRGB(blockData, biome);
+							waterHeights[pixelIndex] = (short) y;
+							terrainHeights[pixelIndex] = (short) (y - 1);
+							continue zLoop;
+						} else {
+							waterPixels[pixelIndex] = colorMapping.getRGB(blockData, biome);
+						}
+					} else {
+						pixelBuffer[pixelIndex] = colorMapping.getRGB(blockData, biome);
+					}
+					terrainHeights[pixelIndex] = (short) y;
+					continue zLoop;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws the first open floor below the ceiling of a chunk snapshot. Mirrors {@link ChunkRenderer_1_21#drawCaves}.
+	 *
+	 * @param snapshot the chunk snapshot to draw
+	 * @param colorMapping the color mapping used for region file rendering
+	 * @param x the x offset in pixels
+	 * @param z the z offset in pixels
+	 * @param scale the rendering scale
+	 * @param pixelBuffer the main ARGB pixel buffer to draw to
+	 * @param terrainHeights buffer to store terrain elevation values
+	 * @param minY the world's minimum build height
+	 * @param height the maximum height to render from, at most the world's maximum build height minus one
+	 */
+	public static void drawCaves(ChunkSnapshot snapshot, ColorMapping<CompoundTag, String> colorMapping, int x, int z, int scale,
+			int[] pixelBuffer, short[] terrainHeights, int minY, int height) {
+		int scaleBits = Bits.msbPosition(scale);
+
+		for (int cx = 0; cx < 16; cx += scale) {
+			zLoop:
+			for (int cz = 0; cz < 16; cz += scale) {
+				int pixelIndex = (z + (cz >> scaleBits)) * (512 >> scaleBits) + (x + (cx >> scaleBits));
+				int ignored = 0;
+				boolean doneSkipping = false;
+
+				for (int y = height; y >= minY; y--) {
+					CompoundTag blockData = toBlockTag(snapshot.getBlockData(cx, y, cz));
+
+					if (!colorMapping.isTransparent(blockData) && !colorMapping.isFoliage(blockData)) {
+						if (doneSkipping) {
+							pixelBuffer[pixelIndex] = colorMapping.getRGB(blockData, toBiomeName(snapshot.getBiome(cx, y, cz)));
+							terrainHeights[pixelIndex] = (short) y;
+							continue zLoop;
+						}
+						ignored++;
+					} else if (ignored > 0) {
+						doneSkipping = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the distinct biomes of a chunk snapshot by sampling its 4x4x4 biome grid.
+	 *
+	 * @param snapshot the chunk snapshot
+	 * @param minY the world's minimum build height
+	 * @param maxY the world's maximum build height (exclusive)
+	 * @return the namespaced ids of all biomes in the chunk
+	 */
+	public static Set<String> getBiomes(ChunkSnapshot snapshot, int minY, int maxY) {
+		Set<String> biomes = new HashSet<>();
+		for (int y = minY; y < maxY; y += 4) {
+			for (int bx = 0; bx < 16; bx += 4) {
+				for (int bz = 0; bz < 16; bz += 4) {
+					biomes.add(toBiomeName(snapshot.getBiome(bx, y, bz)));
+				}
+			}
+		}
+		return biomes;
+	}
+
+	/**
+	 * Translates a Bukkit block state into the {@code {Name, Properties}} compound used in chunk NBT.
+	 *
+	 * @param blockData the block state, e.g. {@code minecraft:oak_stairs[facing=east,half=bottom]}
+	 * @return the equivalent NBT compound (cached, do not modify)
+	 */
+	private static CompoundTag toBlockTag(BlockData blockData) {
+		return blockTags.computeIfAbsent(blockData, data -> {
+			String state = data.getAsString();
+			CompoundTag tag = new CompoundTag();
+
+			int bracket = state.indexOf('[');
+			if (bracket < 0) {
+				tag.putString("Name", state);
+				return tag;
+			}
+
+			tag.putString("Name", state.substring(0, bracket));
+
+			CompoundTag properties = new CompoundTag();
+			for (String property : state.substring(bracket + 1, state.length() - 1).split(",")) {
+				int eq = property.indexOf('=');
+				if (eq > 0) properties.putString(property.substring(0, eq), property.substring(eq + 1));
+			}
+			tag.put("Properties", properties);
+			return tag;
+		});
+	}
+
+	private static String toBiomeName(Biome biome) {
+		if (biome == null) return "";
+		return biomeNames.computeIfAbsent(biome, b -> b.getKey().toString());
+	}
+}
@@ -0,0 +1,215 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.jvallejoromero.explora.util.ChunkCoord;
+import com.jvallejoromero.explora.util.ChunkUtils;
+
+/**
+ * Hash tree over the explored chunks of one world, used to find the regions that differ from the backend
+ * without sending every chunk.
+ *
+ * <p>The tree has three levels:
+ * <ul>
+ *   <li><b>Region</b> - SHA-256 of the region's 128 byte chunk bitmap. Bit {@code (chunkZ & 31) * 32 + (chunkX & 31)}
+ *       is set for every explored chunk and stored in byte {@code bit >> 3} at position {@code bit & 7}, the same
+ *       layout as the {@code bitmap} chunk batch format.</li>
+ *   <li><b>Sector</b> - a square of {@value #SECTOR_SIZE}x{@value #SECTOR_SIZE} regions. SHA-256 over
+ *       {@code (regionX, regionZ, regionHash)} of every non-empty region in the sector.</li>
+ *   <li><b>Root</b> - SHA-256 over {@code (sectorX, sectorZ, sectorHash)} of every non-empty sector.</li>
+ * </ul>
+ *
+ * <p>Entries are hashed sorted by x, then z, with coordinates as 4 byte big-endian ints. Empty regions and sectors
+ * are left out, so a world without chunks hashes to the SHA-256 of no input. The backend builds the same tree
+ * ({@code backend/lib/chunk-merkle.js}), so equal hashes mean equal chunk sets.
+ *
+ * <p>Regions and sectors are identified by {@link #key(int, int)}. Trees are immutable once built.
+ */
+public final class ChunkMerkleTree {
+
+	/**
+	 * Regions per sector side, as a shift.
+	 */
+	public static final int SECTOR_SHIFT = 5;
+	public static final int SECTOR_SIZE = 1 << SECTOR_SHIFT;
+	public static final int BITMAP_BYTES = 128;
+
+	private static final HexFormat HEX = HexFormat.of();
+
+	private final Map<Long, byte[]> bitmaps;
+	private final TreeMap<Long, TreeMap<Long, byte[]>> regionHashesBySector = new TreeMap<>();
+	private final TreeMap<Long, byte[]> sectorHashes = new TreeMap<>();
+	private final byte[] rootHash;
+	private final int chunkCount;
+
+	private ChunkMerkleTree(Map<Long, byte[]> bitmaps) {
+		this.bitmaps = new HashMap<>();
+		int chunks = 0;
+
+		for (Map.Entry<Long, byte[]> entry : bitmaps.entrySet()) {
+			int bits = countChunks(entry.getValue());
+			if (bits == 0) continue;
+
+			chunks += bits;
+			long region = entry.getKey();
+			this.bitmaps.put(region, entry.getValue().clone());
+			regionHashesBySector.computeIfAbsent(sectorOf(region), k -> new TreeMap<>()).put(region, sha256(entry.getValue()));
+		}
+		this.chunkCount = chunks;
+
+		for (Map.Entry<Long, TreeMap<Long, byte[]>> sector : regionHashesBySector.entrySet()) {
+			sectorHashes.put(sector.getKey(), hashEntries(sector.getValue()));
+		}
+		this.rootHash = hashEntries(sectorHashes);
+	}
+
+	/**
+	 * Builds the tree for a set of explored chunks.
+	 *
+	 * @param chunks the explored chunks of one world
+	 * @return the tree
+	 */
+	public static ChunkMerkleTree build(Collection<ChunkCoord> chunks) {
+		Map<Long, byte[]> bitmaps = new HashMap<>();
+		for (ChunkCoord chunk : chunks) {
+			setBit(bitmaps.computeIfAbsent(key(chunk.getX() >> 5, chunk.getZ() >> 5), k -> new byte[BITMAP_BYTES]), chunk.getX(), chunk.getZ());
+		}
+		return new ChunkMerkleTree(bitmaps);
+	}
+
+	/**
+	 * Builds the tree from region bitmaps.
+	 *
+	 * @param bitmaps 128 byte chunk bitmaps, keyed by {@link #key(int, int)} of the region; empty bitmaps are ignored
+	 * @return the tree
+	 */
+	public static ChunkMerkleTree fromBitmaps(Map<Long, byte[]> bitmaps) {
+		return new ChunkMerkleTree(bitmaps);
+	}
+
+	/**
+	 * @return the root hash as lowercase hex
+	 */
+	public String getRootHash() {
+		return HEX.formatHex(rootHash);
+	}
+
+	/**
+	 * @return the hash of every non-empty sector as lowercase hex, keyed by {@link #key(int, int)} of the sector
+	 */
+	public Map<Long, String> getSectorHashes() {
+		return toHex(sectorHashes);
+	}
+
+	/**
+	 * @param sector the sector key
+	 * @return the hash of every non-empty region in the sector as lowercase hex, keyed by {@link #key(int, int)} of the region
+	 */
+	public Map<Long, String> getRegionHashes(long sector) {
+		TreeMap<Long, byte[]> regions = regionHashesBySector.get(sector);
+		return regions == null ? Collections.emptyMap() : toHex(regions);
+	}
+
+	/**
+	 * @param region the region key
+	 * @return a copy of the region's chunk bitmap; all zeros if the region has no explored chunks
+	 */
+	public byte[] getRegionBitmap(long region) {
+		byte[] bitmap = bitmaps.get(region);
+		return bitmap == null ? new byte[BITMAP_BYTES] : bitmap.clone();
+	}
+
+	public int getRegionCount() {
+		return bitmaps.size();
+	}
+
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Packs a region or sector coordinate into a key that sorts by x, then z.
+	 *
+	 * @param x the x coordinate
+	 * @param z the z coordinate
+	 * @return the key
+	 */
+	public static long key(int x, int z) {
+		return ChunkUtils.sortedKey(x, z);
+	}
+
+	public static int keyX(long key) {
+		return (int) (key >> 32);
+	}
+
+	public static int keyZ(long key) {
+		return (int) key ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @param region the region key
+	 * @return the key of the sector containing the region
+	 */
+	public static long sectorOf(long region) {
+		return key(keyX(region) >> SECTOR_SHIFT, keyZ(region) >> SECTOR_SHIFT);
+	}
+
+	/**
+	 * Marks a chunk as explored in its region's bitmap.
+	 *
+	 * @param bitmap the region's 128 byte bitmap
+	 * @param chunkX the chunk's x coordinate
+	 * @param chunkZ the chunk's z coordinate
+	 */
+	public static void setBit(byte[] bitmap, int chunkX, int chunkZ) {
+		int bit = (chunkZ & 31) * 32 + (chunkX & 31);
+		bitmap[bit >> 3] |= 1 << (bit & 7);
+	}
+
+	/**
+	 * @param bitmap a region's 128 byte bitmap
+	 * @return the number of explored chunks in the bitmap
+	 */
+	public static int countChunks(byte[] bitmap) {
+		int bits = 0;
+		for (byte b : bitmap) {
+			bits += Integer.bitCount(b & 0xFF);
+		}
+		return bits;
+	}
+
+	private static byte[] hashEntries(TreeMap<Long, byte[]> entries) {
+		ByteBuffer buffer = ByteBuffer.allocate(entries.size() * 40);
+		for (Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+			buffer.putInt(keyX(entry.getKey()));
+			buffer.putInt(keyZ(entry.getKey()));
+			buffer.put(entry.getValue());
+		}
+		return sha256(buffer.array());
+	}
+
+	private static byte[] sha256(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+	private static Map<Long, String> toHex(TreeMap<Long, byte[]> hashes) {
+		Map<Long, String> hex = new LinkedHashMap<>();
+		for (Map.Entry<Long, byte[]> entry : hashes.entrySet()) {
+			hex.put(entry.getKey(), HEX.formatHex(entry.getValue()));
+		}
+		return hex;
+	}
+}
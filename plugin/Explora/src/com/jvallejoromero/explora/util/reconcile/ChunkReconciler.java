@@ -0,0 +1,208 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jvallejoromero.explora.ExploraPlugin;
+import com.jvallejoromero.explora.util.ChunkCoord;
+
+/**
+ * Brings a {@link ReconciliationBackend} in line with the plugin's explored chunks by comparing
+ * {@link ChunkMerkleTree}s top-down, instead of clearing the backend and sending every chunk again.
+ *
+ * <p>Per world:
+ * <ol>
+ *   <li>Fetch the backend's root and sector hashes. Equal roots mean the world is already in sync.</li>
+ *   <li>For every sector whose hash differs, fetch the backend's region hashes. Sectors the backend does not have
+ *       at all are not fetched; all of their regions differ.</li>
+ *   <li>Replace every region whose hash differs (or that only one side has) with the plugin's bitmap, up to
+ *       {@value #REGIONS_PER_REQUEST} regions per request. Regions the plugin does not have are sent empty,
+ *       which clears them on the backend.</li>
+ * </ol>
+ *
+ * <p>Worlds are reconciled one after another; the sector fetches of a world run in parallel. All work runs on
+ * HTTP client threads. The chunks are copied when the reconciler is created, so it must be created on the
+ * thread that owns them.
+ */
+public class ChunkReconciler {
+
+	private static final int REGIONS_PER_REQUEST = 256;
+
+	private final ReconciliationBackend backend;
+	private final Map<String, List<ChunkCoord>> worldChunks = new LinkedHashMap<>();
+
+	private final AtomicInteger worldsInSync = new AtomicInteger();
+	private final AtomicInteger sectorsFetched = new AtomicInteger();
+	private final AtomicInteger regionsCompared = new AtomicInteger();
+	private final AtomicInteger regionsSent = new AtomicInteger();
+	private final AtomicLong chunksSent = new AtomicLong();
+
+	private volatile long startNanos;
+	private volatile long endNanos;
+	private volatile boolean finished = false;
+
+	/**
+	 * @param backend the backend to reconcile with
+	 * @param worldChunks the explored chunks, per world name
+	 */
+	public ChunkReconciler(ReconciliationBackend backend, Map<String, ? extends Collection<ChunkCoord>> worldChunks) {
+		this.backend = backend;
+		for (Map.Entry<String, ? extends Collection<ChunkCoord>> entry : worldChunks.entrySet()) {
+			this.worldChunks.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Starts reconciling. May be called from any thread.
+	 *
+	 * @return a future completed once every world has been reconciled, or exceptionally if a request failed
+	 */
+	public CompletableFuture<Void> start() {
+		startNanos = System.nanoTime();
+
+		CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+		for (Map.Entry<String, List<ChunkCoord>> entry : worldChunks.entrySet()) {
+			chain = chain.thenCompose(ignored -> reconcileWorld(entry.getKey(), entry.getValue()));
+		}
+
+		return chain.whenComplete((ignored, ex) -> {
+			endNanos = System.nanoTime();
+			finished = true;
+			if (ex != null) return;
+
+			ExploraPlugin.log("&aReconciled " + worldChunks.size() + " world(s) with the backend in "
+					+ String.format("%.1fs: %d already in sync, %d regions (%d chunks) sent, %d regions compared in %d sectors",
+							getElapsedSeconds(), worldsInSync.get(), regionsSent.get(), chunksSent.get(), regionsCompared.get(), sectorsFetched.get()));
+		});
+	}
+
+	private CompletableFuture<Void> reconcileWorld(String world, Collection<ChunkCoord> chunks) {
+		ChunkMerkleTree local = ChunkMerkleTree.build(chunks);
+
+		return backend.fetchWorld(world).thenCompose(remote -> {
+			if (remote.getRootHash().equals(local.getRootHash())) {
+				worldsInSync.incrementAndGet();
+				ExploraPlugin.debug("[Reconcile] " + world + " is in sync (" + local.getChunkCount() + " chunks)");
+				return CompletableFuture.completedFuture(null);
+			}
+
+			Map<Long, String> localSectors = local.getSectorHashes();
+			Map<Long, String> remoteSectors = remote.getSectorHashes();
+
+			Set<Long> differingSectors = new TreeSet<>();
+			for (Map.Entry<Long, String> entry : localSectors.entrySet()) {
+				if (!entry.getValue().equals(remoteSectors.get(entry.getKey()))) differingSectors.add(entry.getKey());
+			}
+			for (Long sector : remoteSectors.keySet()) {
+				if (!localSectors.containsKey(sector)) differingSectors.add(sector);
+			}
+
+			List<CompletableFuture<Collection<Long>>> regionLookups = new ArrayList<>();
+			for (long sector : differingSectors) {
+				Map<Long, String> localRegions = local.getRegionHashes(sector);
+
+				if (!remoteSectors.containsKey(sector)) {
+					regionLookups.add(CompletableFuture.completedFuture(localRegions.keySet()));
+					continue;
+				}
+
+				sectorsFetched.incrementAndGet();
+				regionLookups.add(backend.fetchSector(world, sector).thenApply(remoteRegions -> diffRegions(localRegions, remoteRegions)));
+			}
+
+			return CompletableFuture.allOf(regionLookups.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+				List<Long> regions = new ArrayList<>(new TreeSet<>(regionLookups.stream().flatMap(lookup -> lookup.join().stream()).toList()));
+				ExploraPlugin.debug("[Reconcile] " + world + ": " + differingSectors.size() + " sectors and " + regions.size() + " regions differ");
+
+				if (regions.isEmpty()) return CompletableFuture.completedFuture(remote.getRootHash());
+				return sendRegions(world, local, regions, 0);
+			}).thenAccept(remoteRoot -> {
+				if (!Objects.equals(remoteRoot, local.getRootHash())) {
+					ExploraPlugin.warn("[Reconcile] " + world + " still differs from the backend after reconciliation.");
+				}
+			});
+		});
+	}
+
+	private Collection<Long> diffRegions(Map<Long, String> localRegions, Map<Long, String> remoteRegions) {
+		regionsCompared.addAndGet(localRegions.size());
+
+		List<Long> differing = new ArrayList<>();
+		for (Map.Entry<Long, String> entry : localRegions.entrySet()) {
+			if (!entry.getValue().equals(remoteRegions.get(entry.getKey()))) differing.add(entry.getKey());
+		}
+		for (Long region : remoteRegions.keySet()) {
+			if (!localRegions.containsKey(region)) differing.add(region);
+		}
+		return differing;
+	}
+
+	/**
+	 * Replaces regions on the backend, one request of up to {@value #REGIONS_PER_REQUEST} regions at a time.
+	 *
+	 * @return a future completed with the backend's root hash after the last request
+	 */
+	private CompletableFuture<String> sendRegions(String world, ChunkMerkleTree local, List<Long> regions, int from) {
+		int to = Math.min(from + REGIONS_PER_REQUEST, regions.size());
+
+		Map<Long, byte[]> bitmaps = new LinkedHashMap<>();
+		long chunks = 0;
+		for (long region : regions.subList(from, to)) {
+			byte[] bitmap = local.getRegionBitmap(region);
+			bitmaps.put(region, bitmap);
+			chunks += ChunkMerkleTree.countChunks(bitmap);
+		}
+		long sentChunks = chunks;
+
+		return backend.replaceRegions(world, bitmaps).thenCompose(root -> {
+			regionsSent.addAndGet(bitmaps.size());
+			chunksSent.addAndGet(sentChunks);
+			return to >= regions.size() ? CompletableFuture.completedFuture(root) : sendRegions(world, local, regions, to);
+		});
+	}
+
+	/**
+	 * @return the seconds spent so far, or over the whole run once finished
+	 */
+	public double getElapsedSeconds() {
+		long end = endNanos != 0 ? endNanos : System.nanoTime();
+		return startNanos == 0 ? 0 : (end - startNanos) / 1e9;
+	}
+
+	public int getWorldCount() {
+		return worldChunks.size();
+	}
+
+	public int getWorldsInSync() {
+		return worldsInSync.get();
+	}
+
+	public int getSectorsFetched() {
+		return sectorsFetched.get();
+	}
+
+	public int getRegionsCompared() {
+		return regionsCompared.get();
+	}
+
+	public int getRegionsSent() {
+		return regionsSent.get();
+	}
+
+	public long getChunksSent() {
+		return chunksSent.get();
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+}
@@ -0,0 +1,71 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jvallejoromero.explora.util.HttpUtil;
+
+/**
+ * Reconciles against the Node backend through its {@code /api/chunks/merkle} endpoints:
+ * <ul>
+ *   <li>{@code GET /merkle/:world} - {@code {"root": hash, "sectors": {"x,z": hash}}}</li>
+ *   <li>{@code GET /merkle/:world/sectors/:x/:z} - {@code {"regions": {"x,z": hash}}}</li>
+ *   <li>{@code POST /merkle/:world/regions} - region bitmaps in the {@code bitmap} chunk batch format, answered
+ *       with {@code {"root": hash}}</li>
+ * </ul>
+ *
+ * <p>Backends without these endpoints answer {@code 404}, which fails the reconciliation with a
+ * {@link ReconciliationUnsupportedException} so the caller can fall back to a full resend.
+ */
+public class HttpReconciliationBackend implements ReconciliationBackend {
+
+	@Override
+	public CompletableFuture<WorldDigest> fetchWorld(String world) {
+		return HttpUtil.getRequest(HttpUtil.getChunkMerkleUrl(world)).thenApply(response -> {
+			JsonObject body = parseBody(response);
+			return new WorldDigest(body.get("root").getAsString(), parseHashes(body.getAsJsonObject("sectors")));
+		});
+	}
+
+	@Override
+	public CompletableFuture<Map<Long, String>> fetchSector(String world, long sector) {
+		String url = HttpUtil.getChunkMerkleUrl(world) + "/sectors/" + ChunkMerkleTree.keyX(sector) + "/" + ChunkMerkleTree.keyZ(sector);
+		return HttpUtil.getRequest(url).thenApply(response -> parseHashes(parseBody(response).getAsJsonObject("regions")));
+	}
+
+	@Override
+	public CompletableFuture<String> replaceRegions(String world, Map<Long, byte[]> bitmaps) {
+		return HttpUtil.postRegionBitmaps(world, bitmaps).thenApply(response -> parseBody(response).get("root").getAsString());
+	}
+
+	private static JsonObject parseBody(HttpResponse<String> response) {
+		if (response.statusCode() == 404) {
+			throw new CompletionException(new ReconciliationUnsupportedException("Backend does not support chunk reconciliation"));
+		}
+		if (!HttpUtil.isSuccess(response)) {
+			throw new IllegalStateException("Backend answered with code " + response.statusCode());
+		}
+		return JsonParser.parseString(response.body()).getAsJsonObject();
+	}
+
+	/**
+	 * @param hashes a JSON object of {@code "x,z": hash} entries
+	 * @return the hashes keyed by {@link ChunkMerkleTree#key(int, int)}
+	 */
+	private static Map<Long, String> parseHashes(JsonObject hashes) {
+		Map<Long, String> parsed = new LinkedHashMap<>();
+		if (hashes == null) return parsed;
+
+		for (Map.Entry<String, JsonElement> entry : hashes.entrySet()) {
+			String[] coords = entry.getKey().split(",");
+			parsed.put(ChunkMerkleTree.key(Integer.parseInt(coords[0].trim()), Integer.parseInt(coords[1].trim())), entry.getValue().getAsString());
+		}
+		return parsed;
+	}
+}
@@ -0,0 +1,103 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jvallejoromero.explora.util.ChunkCoord;
+
+/**
+ * In-memory stand-in for the backend's side of a reconciliation.
+ *
+ * <p>Keeps region bitmaps per world and answers exactly like the backend's {@code /api/chunks/merkle} endpoints,
+ * so a {@link ChunkReconciler} can be exercised without a running backend ({@code /explora reconcile local}).
+ * It also counts the requests it receives, which shows how much a reconciliation had to transfer.
+ */
+public class LocalReconciliationBackend implements ReconciliationBackend {
+
+	private final Map<String, Map<Long, byte[]>> worlds = new HashMap<>();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicInteger regionsReplaced = new AtomicInteger();
+
+	/**
+	 * Adds explored chunks, e.g. to seed the stand-in with what the backend is expected to hold.
+	 *
+	 * @param world the world name
+	 * @param chunks the chunks to add
+	 */
+	public synchronized void addChunks(String world, Collection<ChunkCoord> chunks) {
+		Map<Long, byte[]> bitmaps = worlds.computeIfAbsent(world, k -> new HashMap<>());
+		for (ChunkCoord chunk : chunks) {
+			long region = ChunkMerkleTree.key(chunk.getX() >> 5, chunk.getZ() >> 5);
+			ChunkMerkleTree.setBit(bitmaps.computeIfAbsent(region, k -> new byte[ChunkMerkleTree.BITMAP_BYTES]), chunk.getX(), chunk.getZ());
+		}
+	}
+
+	/**
+	 * @param world the world name
+	 * @return every chunk held for the world
+	 */
+	public synchronized Set<ChunkCoord> getChunks(String world) {
+		Set<ChunkCoord> chunks = new HashSet<>();
+		for (Map.Entry<Long, byte[]> entry : worlds.getOrDefault(world, Map.of()).entrySet()) {
+			int baseX = ChunkMerkleTree.keyX(entry.getKey()) * 32;
+			int baseZ = ChunkMerkleTree.keyZ(entry.getKey()) * 32;
+			byte[] bitmap = entry.getValue();
+
+			for (int bit = 0; bit < 1024; bit++) {
+				if ((bitmap[bit >> 3] & (1 << (bit & 7))) != 0) {
+					chunks.add(new ChunkCoord(baseX + (bit & 31), baseZ + (bit >> 5)));
+				}
+			}
+		}
+		return chunks;
+	}
+
+	@Override
+	public CompletableFuture<WorldDigest> fetchWorld(String world) {
+		requestCount.incrementAndGet();
+		ChunkMerkleTree tree = treeFor(world);
+		return CompletableFuture.completedFuture(new WorldDigest(tree.getRootHash(), tree.getSectorHashes()));
+	}
+
+	@Override
+	public CompletableFuture<Map<Long, String>> fetchSector(String world, long sector) {
+		requestCount.incrementAndGet();
+		return CompletableFuture.completedFuture(treeFor(world).getRegionHashes(sector));
+	}
+
+	@Override
+	public CompletableFuture<String> replaceRegions(String world, Map<Long, byte[]> bitmaps) {
+		requestCount.incrementAndGet();
+		synchronized (this) {
+			Map<Long, byte[]> regions = worlds.computeIfAbsent(world, k -> new HashMap<>());
+			for (Map.Entry<Long, byte[]> entry : bitmaps.entrySet()) {
+				regions.put(entry.getKey(), entry.getValue().clone());
+			}
+			regionsReplaced.addAndGet(bitmaps.size());
+		}
+		return CompletableFuture.completedFuture(treeFor(world).getRootHash());
+	}
+
+	private synchronized ChunkMerkleTree treeFor(String world) {
+		return ChunkMerkleTree.fromBitmaps(worlds.getOrDefault(world, Map.of()));
+	}
+
+	/**
+	 * @return the number of requests answered so far
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of regions replaced so far
+	 */
+	public int getRegionsReplaced() {
+		return regionsReplaced.get();
+	}
+}
@@ -0,0 +1,60 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The remote side of a chunk reconciliation: exposes the levels of its {@link ChunkMerkleTree} and accepts
+ * replacement region bitmaps.
+ *
+ * <p>Implemented by {@link HttpReconciliationBackend} for the Node backend and by {@link LocalReconciliationBackend},
+ * an in-memory stand-in used to try out reconciliation without a backend.
+ */
+public interface ReconciliationBackend {
+
+	/**
+	 * @param world the world name
+	 * @return a future completed with the world's root hash and sector hashes
+	 */
+	CompletableFuture<WorldDigest> fetchWorld(String world);
+
+	/**
+	 * @param world the world name
+	 * @param sector the sector key ({@link ChunkMerkleTree#key(int, int)})
+	 * @return a future completed with the hash of every non-empty region in the sector, keyed by region key
+	 */
+	CompletableFuture<Map<Long, String>> fetchSector(String world, long sector);
+
+	/**
+	 * Replaces the explored chunks of whole regions. A region with an all-zero bitmap is cleared.
+	 *
+	 * @param world the world name
+	 * @param bitmaps 128 byte chunk bitmaps, keyed by region key
+	 * @return a future completed with the world's root hash after the replacement
+	 */
+	CompletableFuture<String> replaceRegions(String world, Map<Long, byte[]> bitmaps);
+
+	/**
+	 * The top of a world's hash tree.
+	 */
+	final class WorldDigest {
+		private final String rootHash;
+		private final Map<Long, String> sectorHashes;
+
+		public WorldDigest(String rootHash, Map<Long, String> sectorHashes) {
+			this.rootHash = rootHash;
+			this.sectorHashes = sectorHashes;
+		}
+
+		public String getRootHash() {
+			return rootHash;
+		}
+
+		/**
+		 * @return the hash of every non-empty sector, keyed by sector key
+		 */
+		public Map<Long, String> getSectorHashes() {
+			return sectorHashes;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.jvallejoromero.explora.util.reconcile;
+
+/**
+ * Thrown when a {@link ReconciliationBackend} does not support reconciliation at all (e.g. an older Node backend
+ * without the {@code /api/chunks/merkle} endpoints), so the caller can fall back to sending every chunk again.
+ *
+ * <p>Reconciliation runs on {@link java.util.concurrent.CompletableFuture}s, so it reaches callers as the cause
+ * of a {@link java.util.concurrent.CompletionException}.
+ */
+public class ReconciliationUnsupportedException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public ReconciliationUnsupportedException(String message) {
+		super(message);
+	}
+}
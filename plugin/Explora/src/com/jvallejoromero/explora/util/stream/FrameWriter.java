@@ -0,0 +1,82 @@
+package com.jvallejoromero.explora.util.stream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer with the primitive encodings used by live update frames: unsigned varints (7 bits per
+ * byte, least significant group first), zig-zag varints for signed values, and strings as a varint length
+ * followed by UTF-8 bytes. The same encodings are used by the chunk batch formats.
+ */
+public final class FrameWriter {
+
+	private byte[] data;
+	private int size = 0;
+
+	public FrameWriter() {
+		this(64);
+	}
+
+	public FrameWriter(int initialCapacity) {
+		this.data = new byte[Math.max(16, initialCapacity)];
+	}
+
+	public FrameWriter writeByte(int value) {
+		ensureCapacity(1);
+		data[size++] = (byte) value;
+		return this;
+	}
+
+	public FrameWriter writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			data[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[size++] = (byte) value;
+		return this;
+	}
+
+	public FrameWriter writeZigZag(int value) {
+		return writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	public FrameWriter writeString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		return writeBytes(bytes, 0, bytes.length);
+	}
+
+	public FrameWriter writeBytes(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, data, size, length);
+		size += length;
+		return this;
+	}
+
+	/**
+	 * Writes another writer's contents, prefixed with their length as a varint.
+	 */
+	public FrameWriter writeSized(FrameWriter other) {
+		writeVarInt(other.size);
+		return writeBytes(other.data, 0, other.size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void reset() {
+		size = 0;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+		}
+	}
+}
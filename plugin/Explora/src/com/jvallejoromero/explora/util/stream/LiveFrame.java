@@ -0,0 +1,54 @@
+package com.jvallejoromero.explora.util.stream;
+
+/**
+ * A message of the live update stream, holding one or more sections so several kinds of updates share one
+ * message.
+ *
+ * <p>Layout: version byte ({@value #VERSION}), flags byte ({@link #FLAG_KEYFRAME}), varint sequence number, varint
+ * section count, then per section a type byte and its varint-length-prefixed payload. Unknown section types can be
+ * skipped by their length.
+ */
+public final class LiveFrame {
+
+	public static final int VERSION = 1;
+
+	/** Set if the frame replaces the receiver's state instead of changing it. */
+	public static final int FLAG_KEYFRAME = 1;
+
+	/** Player positions and velocities, see {@link PlayerPositionStream}. */
+	public static final int SECTION_PLAYERS = 2;
+
+	/** Server status, see {@link ServerStatusStream}. */
+	public static final int SECTION_STATUS = 3;
+
+	private final FrameWriter sections = new FrameWriter(256);
+	private final int sequence;
+	private final boolean keyframe;
+	private int sectionCount = 0;
+
+	public LiveFrame(int sequence, boolean keyframe) {
+		this.sequence = sequence;
+		this.keyframe = keyframe;
+	}
+
+	public LiveFrame addSection(int type, FrameWriter payload) {
+		sections.writeByte(type).writeSized(payload);
+		sectionCount++;
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return sectionCount == 0;
+	}
+
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	public byte[] toByteArray() {
+		FrameWriter frame = new FrameWriter(sections.size() + 12);
+		frame.writeByte(VERSION).writeByte(keyframe ? FLAG_KEYFRAME : 0).writeVarInt(sequence).writeVarInt(sectionCount);
+		frame.writeBytes(sections.toByteArray(), 0, sections.size());
+		return frame.toByteArray();
+	}
+}
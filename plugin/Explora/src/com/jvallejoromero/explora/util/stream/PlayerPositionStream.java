@@ -0,0 +1,341 @@
+package com.jvallejoromero.explora.util.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.PlayerStatus;
+
+/**
+ * Tracks the player positions last sent over the live update stream and encodes the players section of a
+ * {@link LiveFrame}, sending each player only as often as its movement needs.
+ *
+ * <p>Positions are quantised to 1/{@value #POSITION_SCALE} block and sent together with the player's velocity, so
+ * the receiver can dead-reckon: between updates a player is assumed to keep moving at the last sent velocity, for
+ * at most {@value #EXTRAPOLATION_LIMIT_MILLIS} ms. The stream runs the same prediction and only sends a player
+ * when:
+ * <ul>
+ *   <li>the prediction is off by {@code player-stream-max-error-blocks} or more (so a player flying in a straight
+ *   line is sent rarely, while one that keeps turning or stopping is sent on almost every sample)</li>
+ *   <li>the player turned to another yaw bucket</li>
+ *   <li>nothing was sent for {@code player-stream-heartbeat-seconds} (idle heartbeat)</li>
+ * </ul>
+ * Players in worlds nobody is viewing only get heartbeats. Joins, leaves and world changes are always sent.
+ *
+ * <p>At most {@code player-stream-updates-per-second} move records are sent per second across all players (a
+ * token bucket allowing one second of burst); joins, world changes, removals and keyframes are not rate-limited
+ * and do not use it. When more players need an update than the budget allows, the ones whose
+ * prediction is furthest off go first; the rest wait for a later sample, by which time their error has grown.
+ *
+ * <p>The section is a varint record count followed by records, each starting with an opcode byte. Positions are
+ * zig-zag varints in 1/{@value #POSITION_SCALE} block, velocities zig-zag varints in 1/{@value #POSITION_SCALE}
+ * block per second:
+ * <ul>
+ *   <li>{@value #OP_ADD} add: varint id, name, world, x, y, z, vx, vy, vz, yaw byte</li>
+ *   <li>{@value #OP_MOVE} move: varint id, dx, dy, dz relative to the last sent position, vx, vy, vz, yaw byte</li>
+ *   <li>{@value #OP_WORLD} world change: varint id, world, x, y, z, vx, vy, vz, yaw byte</li>
+ *   <li>{@value #OP_REMOVE} remove: varint id</li>
+ * </ul>
+ * The yaw byte maps 0-360 degrees onto 0-255. A keyframe contains an add record for every online player, ignores
+ * the budget and replaces everything the backend knew.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class PlayerPositionStream {
+
+	public static final int OP_ADD = 0;
+	public static final int OP_MOVE = 1;
+	public static final int OP_WORLD = 2;
+	public static final int OP_REMOVE = 3;
+
+	/** Fixed-point units per block. */
+	public static final int POSITION_SCALE = 8;
+
+	/** How long the receiver keeps extrapolating a player's last sent velocity. */
+	public static final long EXTRAPOLATION_LIMIT_MILLIS = 2000;
+
+	/** Moves faster than this (in blocks per second) are teleports and do not count towards the velocity. */
+	private static final double TELEPORT_SPEED = 100;
+
+	/** Weight of the newest sample in the smoothed velocity. */
+	private static final double VELOCITY_SMOOTHING = 0.5;
+
+	private final Map<String, Tracked> tracked = new HashMap<>();
+	private final FrameWriter records = new FrameWriter(1024);
+	private final List<Candidate> candidates = new ArrayList<>();
+	private int nextId = 1;
+
+	private double tokens = 0;
+	private long lastRefillMillis = -1;
+	private long recordsDeferred = 0;
+
+	/**
+	 * Samples the current player positions and encodes the players that need an update.
+	 *
+	 * @param players every online player
+	 * @param keyframe whether to encode every player instead of only the ones that need an update
+	 * @param now the sample time in milliseconds
+	 * @param watched whether anyone is viewing a world; players in other worlds only get heartbeats
+	 * @return the section, or {@code null} if this is not a keyframe and no player needs an update
+	 */
+	public FrameWriter encode(Collection<PlayerStatus> players, boolean keyframe, long now, Predicate<String> watched) {
+		records.reset();
+		candidates.clear();
+		refill(now);
+		int count = 0;
+
+		Set<String> online = new HashSet<>();
+		for (PlayerStatus player : players) {
+			online.add(player.getName());
+
+			Tracked last = tracked.get(player.getName());
+			if (last == null) {
+				last = new Tracked(nextId++);
+				tracked.put(player.getName(), last);
+				last.sample(player, now);
+				writeAbsolute(OP_ADD, last, player, now);
+				count++;
+				continue;
+			}
+
+			last.sample(player, now);
+
+			if (keyframe) {
+				writeAbsolute(OP_ADD, last, player, now);
+				count++;
+			} else if (!last.world.equals(player.getWorld())) {
+				writeAbsolute(OP_WORLD, last, player, now);
+				count++;
+			} else {
+				double priority = priority(last, player, now, watched.test(player.getWorld()));
+				if (priority > 0) candidates.add(new Candidate(last, player, priority));
+			}
+		}
+
+		candidates.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.priority).reversed());
+		for (Candidate candidate : candidates) {
+			if (tokens < 1) {
+				recordsDeferred++;
+				continue;
+			}
+			writeMove(candidate.tracked, candidate.player, now);
+			count++;
+		}
+
+		Iterator<Map.Entry<String, Tracked>> iterator = tracked.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Tracked> entry = iterator.next();
+			if (online.contains(entry.getKey())) continue;
+
+			iterator.remove();
+			if (!keyframe) {
+				records.writeByte(OP_REMOVE).writeVarInt(entry.getValue().id);
+				count++;
+			}
+		}
+
+		if (count == 0 && !keyframe) return null;
+
+		FrameWriter section = new FrameWriter(records.size() + 5);
+		section.writeVarInt(count);
+		section.writeBytes(records.toByteArray(), 0, records.size());
+		return section;
+	}
+
+	/**
+	 * @return how urgently the player needs an update: {@code 0} if not at all, {@code 1} or more for an update
+	 * (the prediction error in multiples of the allowed error), or less than {@code 1} for a heartbeat
+	 */
+	private static double priority(Tracked last, PlayerStatus player, long now, boolean watched) {
+		if (watched) {
+			double maxError = Math.max(0.01, Constants.PLAYER_STREAM_MAX_ERROR);
+			double error = last.predictionError(player, now);
+			if (error >= maxError) return error / maxError;
+			if (last.yawBucket != yawBucket(player.getYaw())) return 1;
+		}
+		if (now - last.sentMillis >= Constants.PLAYER_STREAM_HEARTBEAT_MILLIS) return 0.5;
+		return 0;
+	}
+
+	private void refill(long now) {
+		double perSecond = Math.max(1, Constants.PLAYER_STREAM_UPDATES_PER_SECOND);
+		if (lastRefillMillis < 0) {
+			tokens = perSecond;
+		} else {
+			tokens = Math.min(perSecond, tokens + perSecond * (now - lastRefillMillis) / 1000.0);
+		}
+		lastRefillMillis = now;
+	}
+
+	private void writeAbsolute(int op, Tracked last, PlayerStatus player, long now) {
+		records.writeByte(op).writeVarInt(last.id);
+		if (op == OP_ADD) records.writeString(player.getName());
+		records.writeString(player.getWorld());
+
+		int x = quantise(player.getExactX());
+		int y = quantise(player.getExactY());
+		int z = quantise(player.getExactZ());
+		records.writeZigZag(x).writeZigZag(y).writeZigZag(z);
+		writeVelocityAndYaw(last, player);
+		last.sent(player.getWorld(), x, y, z, player.getYaw(), now);
+	}
+
+	private void writeMove(Tracked last, PlayerStatus player, long now) {
+		int x = quantise(player.getExactX());
+		int y = quantise(player.getExactY());
+		int z = quantise(player.getExactZ());
+		records.writeByte(OP_MOVE).writeVarInt(last.id).writeZigZag(x - last.x).writeZigZag(y - last.y).writeZigZag(z - last.z);
+		writeVelocityAndYaw(last, player);
+		last.sent(player.getWorld(), x, y, z, player.getYaw(), now);
+		tokens--;
+	}
+
+	private void writeVelocityAndYaw(Tracked last, PlayerStatus player) {
+		last.vx = quantise(last.velocityX);
+		last.vy = quantise(last.velocityY);
+		last.vz = quantise(last.velocityZ);
+		records.writeZigZag(last.vx).writeZigZag(last.vy).writeZigZag(last.vz).writeByte(yawByte(player.getYaw()));
+	}
+
+	/**
+	 * @return the number of players currently tracked
+	 */
+	public int size() {
+		return tracked.size();
+	}
+
+	/**
+	 * @return the number of updates that were postponed because the update budget was used up
+	 */
+	public long getRecordsDeferred() {
+		return recordsDeferred;
+	}
+
+	/**
+	 * @param blocks a coordinate or speed in blocks
+	 * @return the value in 1/{@value #POSITION_SCALE} block
+	 */
+	public static int quantise(double blocks) {
+		return (int) Math.round(blocks * POSITION_SCALE);
+	}
+
+	/**
+	 * @param yaw a yaw in degrees
+	 * @return the yaw mapped onto 0-255
+	 */
+	public static int yawByte(float yaw) {
+		return Math.floorMod(Math.round(yaw * 256f / 360f), 256);
+	}
+
+	/**
+	 * @param yaw a yaw in degrees
+	 * @return the yaw bucket used to decide whether a turn is worth sending
+	 */
+	private static int yawBucket(float yaw) {
+		int buckets = Math.max(1, Constants.PLAYER_STREAM_YAW_BUCKETS);
+		return Math.floorMod(Math.round(yaw * buckets / 360f), buckets);
+	}
+
+	/**
+	 * A player's measured motion and what was last sent for it.
+	 */
+	private static final class Tracked {
+		private final int id;
+
+		private double sampleX;
+		private double sampleY;
+		private double sampleZ;
+		private long sampleMillis = -1;
+		private double velocityX;
+		private double velocityY;
+		private double velocityZ;
+
+		private String world = "";
+		private int x;
+		private int y;
+		private int z;
+		private int vx;
+		private int vy;
+		private int vz;
+		private int yawBucket;
+		private long sentMillis;
+
+		private Tracked(int id) {
+			this.id = id;
+		}
+
+		/**
+		 * Updates the smoothed velocity from the movement since the previous sample.
+		 */
+		private void sample(PlayerStatus player, long now) {
+			double px = player.getExactX();
+			double py = player.getExactY();
+			double pz = player.getExactZ();
+
+			if (sampleMillis >= 0 && now > sampleMillis && world.equals(player.getWorld())) {
+				double seconds = (now - sampleMillis) / 1000.0;
+				double mx = (px - sampleX) / seconds;
+				double my = (py - sampleY) / seconds;
+				double mz = (pz - sampleZ) / seconds;
+
+				if (Math.sqrt(mx * mx + my * my + mz * mz) > TELEPORT_SPEED) {
+					velocityX = velocityY = velocityZ = 0;
+				} else {
+					velocityX += (mx - velocityX) * VELOCITY_SMOOTHING;
+					velocityY += (my - velocityY) * VELOCITY_SMOOTHING;
+					velocityZ += (mz - velocityZ) * VELOCITY_SMOOTHING;
+				}
+			} else if (sampleMillis >= 0 && now > sampleMillis) {
+				velocityX = velocityY = velocityZ = 0;
+			}
+
+			sampleX = px;
+			sampleY = py;
+			sampleZ = pz;
+			sampleMillis = now;
+		}
+
+		/**
+		 * @return the distance in blocks between the player and where the receiver believes it is
+		 */
+		private double predictionError(PlayerStatus player, long now) {
+			double seconds = Math.min(now - sentMillis, EXTRAPOLATION_LIMIT_MILLIS) / 1000.0;
+			double dx = player.getExactX() - (x + vx * seconds) / POSITION_SCALE;
+			double dy = player.getExactY() - (y + vy * seconds) / POSITION_SCALE;
+			double dz = player.getExactZ() - (z + vz * seconds) / POSITION_SCALE;
+			return Math.sqrt(dx * dx + dy * dy + dz * dz);
+		}
+
+		private void sent(String world, int x, int y, int z, float yaw, long now) {
+			this.world = world;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.yawBucket = yawBucket(yaw);
+			this.sentMillis = now;
+		}
+	}
+
+	/**
+	 * A player that needs an update, if the budget allows.
+	 */
+	private static final class Candidate {
+		private final Tracked tracked;
+		private final PlayerStatus player;
+		private final double priority;
+
+		private Candidate(Tracked tracked, PlayerStatus player, double priority) {
+			this.tracked = tracked;
+			this.player = player;
+			this.priority = priority;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.jvallejoromero.explora.util.stream;
+
+import java.util.Objects;
+
+import com.jvallejoromero.explora.util.Constants;
+import com.jvallejoromero.explora.util.ServerStatus;
+
+/**
+ * Tracks the server status last sent over the live update stream and encodes the status section of a
+ * {@link LiveFrame}, containing only the fields that changed.
+ *
+ * <p>World time changes every tick, so it is not sent on every change: the receiver advances it by the time rate
+ * between updates, and it is only sent when that prediction is {@code server-status-time-tolerance-ticks} or more
+ * off (e.g. after {@code /time set}, or while the server lags). Every {@code server-status-heartbeat-seconds} all
+ * fields are sent, even if nothing changed.
+ *
+ * <p>The section is a varint field mask followed by the fields whose bit is set, in this order:
+ * <ul>
+ *   <li>{@value #FIELD_PLAYER_COUNT} player count: varint</li>
+ *   <li>{@value #FIELD_WORLD_TIME} world time: varint (0-23999)</li>
+ *   <li>{@value #FIELD_TIME_RATE} time rate: varint ticks per second</li>
+ *   <li>{@value #FIELD_MOTD} MOTD: string</li>
+ * </ul>
+ * A keyframe contains every field.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class ServerStatusStream {
+
+	public static final int FIELD_PLAYER_COUNT = 1;
+	public static final int FIELD_WORLD_TIME = 2;
+	public static final int FIELD_TIME_RATE = 4;
+	public static final int FIELD_MOTD = 8;
+
+	private static final int ALL_FIELDS = FIELD_PLAYER_COUNT | FIELD_WORLD_TIME | FIELD_TIME_RATE | FIELD_MOTD;
+	private static final long DAY_TICKS = 24000;
+
+	private ServerStatus sent;
+	private long sentMillis;
+	private long allFieldsSentMillis;
+
+	/**
+	 * Encodes the status section for a snapshot and remembers it as sent.
+	 *
+	 * @param status the current server status
+	 * @param keyframe whether to encode every field instead of only the changed ones
+	 * @param now the snapshot time in milliseconds
+	 * @return the section, or {@code null} if this is not a keyframe and nothing needs sending
+	 */
+	public FrameWriter encode(ServerStatus status, boolean keyframe, long now) {
+		int fields = keyframe || sent == null || now - allFieldsSentMillis >= Constants.SERVER_STATUS_HEARTBEAT_MILLIS
+				? ALL_FIELDS : changedFields(status, now);
+		if (fields == 0) return null;
+		if (fields == ALL_FIELDS) allFieldsSentMillis = now;
+
+		FrameWriter section = new FrameWriter(32);
+		section.writeVarInt(fields);
+		if ((fields & FIELD_PLAYER_COUNT) != 0) section.writeVarInt(status.getPlayerCount());
+		if ((fields & FIELD_WORLD_TIME) != 0) section.writeVarInt((int) Math.floorMod(status.getWorldTime(), DAY_TICKS));
+		if ((fields & FIELD_TIME_RATE) != 0) section.writeVarInt(status.getTimeRate());
+		if ((fields & FIELD_MOTD) != 0) section.writeString(Objects.toString(status.getMotd(), ""));
+
+		// the prediction restarts from the sent world time, so it only moves on when the time was sent
+		ServerStatus base = (fields & FIELD_WORLD_TIME) != 0 ? status : sent;
+		long baseMillis = (fields & FIELD_WORLD_TIME) != 0 ? now : sentMillis;
+		sent = new ServerStatus(status.getPlayerCount(), base.getWorldTime(), status.getTimeRate(), status.getMotd());
+		sentMillis = baseMillis;
+		return section;
+	}
+
+	private int changedFields(ServerStatus status, long now) {
+		int fields = 0;
+		if (status.getPlayerCount() != sent.getPlayerCount()) fields |= FIELD_PLAYER_COUNT;
+		if (status.getTimeRate() != sent.getTimeRate()) fields |= FIELD_TIME_RATE | FIELD_WORLD_TIME;
+		if (!Objects.equals(status.getMotd(), sent.getMotd())) fields |= FIELD_MOTD;
+
+		long predicted = sent.getWorldTime() + (now - sentMillis) * sent.getTimeRate() / 1000;
+		long drift = Math.floorMod(status.getWorldTime() - predicted, DAY_TICKS);
+		if (Math.min(drift, DAY_TICKS - drift) >= Constants.SERVER_STATUS_TIME_TOLERANCE_TICKS) fields |= FIELD_WORLD_TIME;
+		return fields;
+	}
+}
@@ -0,0 +1,395 @@
+package com.jvallejoromero.explora.util.stream;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.jvallejoromero.explora.ExploraPlugin;
+
+/**
+ * A minimal Socket.IO v4 client (Engine.IO protocol 4, WebSocket transport only) used to stream live updates to
+ * the backend over one persistent connection, instead of opening an HTTP request per update.
+ *
+ * <p>Supports what the plugin needs: connecting to a namespace with an auth payload, answering the server's
+ * pings, emitting text and binary events, and receiving text events. The connection is re-established with
+ * exponential backoff whenever it drops, until {@link #close()} is called.
+ *
+ * <p>Frames are sent in the order they were emitted. If the connection cannot keep up and more than
+ * {@value #MAX_PENDING_SENDS} frames are waiting, further emits are refused (they return {@code false}) until the
+ * backlog has drained, so callers can decide what to resend.
+ */
+public class SocketIoClient implements WebSocket.Listener {
+
+	private static final int MAX_PENDING_SENDS = 64;
+	private static final long RECONNECT_BASE_MILLIS = 1000;
+	private static final long RECONNECT_MAX_MILLIS = 60000;
+
+	private final URI uri;
+	private final String namespace;
+	private final JsonObject auth;
+	private final HttpClient client;
+
+	private final Map<String, Consumer<JsonArray>> handlers = new ConcurrentHashMap<>();
+	private volatile Runnable connectHandler;
+
+	private volatile WebSocket webSocket;
+	private volatile boolean connected = false;
+	private volatile boolean closed = false;
+	private volatile long lastPingNanos;
+
+	private final StringBuilder textBuffer = new StringBuilder();
+	private CompletableFuture<?> sendChain = CompletableFuture.completedFuture(null);
+	private final AtomicInteger pendingSends = new AtomicInteger();
+	private int reconnectAttempts = 0;
+	private boolean warnedConnectFailure = false;
+
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	/**
+	 * @param uri the Engine.IO WebSocket endpoint, e.g. {@code ws://localhost:3000/socket.io/?EIO=4&transport=websocket}
+	 * @param namespace the namespace to connect to, e.g. {@code /plugin}
+	 * @param auth the auth payload sent when connecting to the namespace
+	 */
+	public SocketIoClient(URI uri, String namespace, JsonObject auth) {
+		this.uri = uri;
+		this.namespace = namespace;
+		this.auth = auth;
+		this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	}
+
+	/**
+	 * Registers a handler for a server event. Handlers run on the WebSocket's thread and receive the event's
+	 * arguments (without the event name).
+	 *
+	 * @param event the event name
+	 * @param handler the handler
+	 */
+	public void on(String event, Consumer<JsonArray> handler) {
+		handlers.put(event, handler);
+	}
+
+	/**
+	 * @param handler run every time the namespace is (re)connected, on the WebSocket's thread
+	 */
+	public void onConnect(Runnable handler) {
+		this.connectHandler = handler;
+	}
+
+	/**
+	 * Starts connecting in the background.
+	 */
+	public void connect() {
+		closed = false;
+		open();
+	}
+
+	/**
+	 * Closes the connection and stops reconnecting.
+	 */
+	public void close() {
+		closed = true;
+		connected = false;
+		WebSocket current = webSocket;
+		if (current != null) current.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(ex -> null);
+		webSocket = null;
+	}
+
+	/**
+	 * @return whether the namespace is connected, i.e. emitted events will reach the server
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * Emits an event with JSON arguments.
+	 *
+	 * @param event the event name
+	 * @param args the event's arguments
+	 * @return {@code false} if the event was not sent because the client is not connected or too far behind
+	 */
+	public boolean emit(String event, JsonElement... args) {
+		JsonArray packet = new JsonArray();
+		packet.add(event);
+		for (JsonElement arg : args) packet.add(arg);
+
+		String text = "42" + namespacePrefix() + packet;
+		return enqueue(ws -> ws.sendText(text, true), text.length());
+	}
+
+	/**
+	 * Emits an event whose only argument is binary data; the server receives it as a {@code Buffer}.
+	 *
+	 * @param event the event name
+	 * @param data the payload
+	 * @return {@code false} if the event was not sent because the client is not connected or too far behind
+	 */
+	public boolean emitBinary(String event, byte[] data) {
+		JsonObject placeholder = new JsonObject();
+		placeholder.addProperty("_placeholder", true);
+		placeholder.addProperty("num", 0);
+
+		JsonArray packet = new JsonArray();
+		packet.add(event);
+		packet.add(placeholder);
+
+		String header = "451-" + namespacePrefix() + packet;
+		return enqueue(ws -> ws.sendText(header, true).thenCompose(ignored -> ws.sendBinary(ByteBuffer.wrap(data), true)),
+				header.length() + data.length);
+	}
+
+	private boolean enqueue(Function<WebSocket, CompletableFuture<WebSocket>> send, int size) {
+		WebSocket current = webSocket;
+		if (!connected || current == null) return false;
+		if (pendingSends.get() >= MAX_PENDING_SENDS) return false;
+
+		pendingSends.incrementAndGet();
+		chain(current, send).whenComplete((ignored, ex) -> {
+			pendingSends.decrementAndGet();
+			if (ex == null) {
+				framesSent.incrementAndGet();
+				bytesSent.addAndGet(size);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Runs a send once all earlier sends have completed; a WebSocket only allows one outstanding send.
+	 */
+	private synchronized CompletableFuture<?> chain(WebSocket ws, Function<WebSocket, CompletableFuture<WebSocket>> send) {
+		sendChain = sendChain
+				.handle((ignored, ex) -> null)
+				.thenCompose(ignored -> send.apply(ws));
+		return sendChain;
+	}
+
+	private void sendControl(WebSocket ws, String text) {
+		chain(ws, socket -> socket.sendText(text, true));
+	}
+
+	private String namespacePrefix() {
+		return "/".equals(namespace) ? "" : namespace + ",";
+	}
+
+	private void open() {
+		if (closed) return;
+
+		client.newWebSocketBuilder()
+				.connectTimeout(Duration.ofSeconds(5))
+				.buildAsync(uri, this)
+				.whenComplete((ws, ex) -> {
+					if (ex != null) {
+						logConnectFailure("could not connect: " + rootMessage(ex));
+						scheduleReconnect();
+					}
+				});
+	}
+
+	private synchronized void scheduleReconnect() {
+		connected = false;
+		if (closed) return;
+
+		long delay = Math.min(RECONNECT_MAX_MILLIS, RECONNECT_BASE_MILLIS << Math.min(reconnectAttempts, 10));
+		reconnectAttempts++;
+		CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::open);
+	}
+
+	private void logConnectFailure(String message) {
+		if (!warnedConnectFailure) {
+			warnedConnectFailure = true;
+			ExploraPlugin.warn("[Stream] Live update stream " + message + ". Falling back to HTTP updates, retrying in the background.");
+		} else {
+			ExploraPlugin.debug("[Stream] Live update stream " + message);
+		}
+	}
+
+	@Override
+	public void onOpen(WebSocket webSocket) {
+		synchronized (this) {
+			this.webSocket = webSocket;
+		}
+		webSocket.request(1);
+	}
+
+	@Override
+	public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+		textBuffer.append(data);
+		if (last) {
+			String message = textBuffer.toString();
+			textBuffer.setLength(0);
+			try {
+				handlePacket(webSocket, message);
+			} catch (RuntimeException ex) {
+				ExploraPlugin.debug("[Stream] Failed to handle packet " + message + ": " + ex.getMessage());
+			}
+		}
+		webSocket.request(1);
+		return null;
+	}
+
+	@Override
+	public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+		webSocket.request(1);
+		return null;
+	}
+
+	@Override
+	public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+		if (connected) ExploraPlugin.debug("[Stream] Live update stream closed (" + statusCode + ")");
+		drop(webSocket);
+		return null;
+	}
+
+	@Override
+	public void onError(WebSocket webSocket, Throwable error) {
+		if (connected) ExploraPlugin.warn("[Stream] Live update stream lost: " + rootMessage(error));
+		drop(webSocket);
+	}
+
+	/**
+	 * Aborts a connection and schedules a reconnect, unless the connection has already been replaced.
+	 */
+	private void drop(WebSocket ws) {
+		synchronized (this) {
+			if (webSocket != ws) return;
+			webSocket = null;
+		}
+		ws.abort();
+		scheduleReconnect();
+	}
+
+	/**
+	 * Handles one Engine.IO packet: {@code 0} open, {@code 1} close, {@code 2} ping, {@code 4} Socket.IO message.
+	 */
+	private void handlePacket(WebSocket ws, String message) {
+		if (message.isEmpty()) return;
+
+		switch (message.charAt(0)) {
+			case '0' -> {
+				JsonObject handshake = JsonParser.parseString(message.substring(1)).getAsJsonObject();
+				long interval = handshake.get("pingInterval").getAsLong();
+				long timeout = handshake.get("pingTimeout").getAsLong();
+				watchPings(ws, interval + timeout);
+				sendControl(ws, "40" + namespacePrefix() + auth);
+			}
+			case '1' -> drop(ws);
+			case '2' -> {
+				lastPingNanos = System.nanoTime();
+				sendControl(ws, "3");
+			}
+			case '4' -> handleSocketIoPacket(ws, message.substring(1));
+			default -> {}
+		}
+	}
+
+	/**
+	 * Handles a Socket.IO packet: {@code 0} connect, {@code 1} disconnect, {@code 2} event, {@code 4} connect error.
+	 */
+	private void handleSocketIoPacket(WebSocket ws, String packet) {
+		if (packet.isEmpty()) return;
+
+		char type = packet.charAt(0);
+		String body = packet.substring(1);
+		String prefix = namespacePrefix();
+		if (!prefix.isEmpty()) {
+			if (!body.startsWith(namespace)) return;
+			body = body.substring(namespace.length());
+			if (body.startsWith(",")) body = body.substring(1);
+		}
+
+		switch (type) {
+			case '0' -> {
+				synchronized (this) {
+					reconnectAttempts = 0;
+				}
+				warnedConnectFailure = false;
+				connected = true;
+				ExploraPlugin.log("&aConnected live update stream to the backend.");
+				Runnable handler = connectHandler;
+				if (handler != null) handler.run();
+			}
+			case '1' -> drop(ws);
+			case '2' -> {
+				int start = 0;
+				while (start < body.length() && Character.isDigit(body.charAt(start))) start++;
+				JsonArray args = JsonParser.parseString(body.substring(start)).getAsJsonArray();
+				Consumer<JsonArray> handler = handlers.get(args.remove(0).getAsString());
+				if (handler != null) handler.accept(args);
+			}
+			case '4' -> {
+				String reason = body;
+				try {
+					JsonElement error = JsonParser.parseString(body);
+					if (error.isJsonObject() && error.getAsJsonObject().has("message")) reason = error.getAsJsonObject().get("message").getAsString();
+				} catch (RuntimeException ignored) {}
+				logConnectFailure("was rejected: " + reason);
+				drop(ws);
+			}
+			default -> {}
+		}
+	}
+
+	/**
+	 * Aborts the connection if the server stops sending pings, which is how a dead connection is noticed.
+	 */
+	private void watchPings(WebSocket ws, long timeoutMillis) {
+		lastPingNanos = System.nanoTime();
+		CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() -> checkPing(ws, timeoutMillis));
+	}
+
+	private void checkPing(WebSocket ws, long timeoutMillis) {
+		if (ws != webSocket || closed) return;
+
+		long sinceLastPing = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastPingNanos);
+		if (sinceLastPing > timeoutMillis) {
+			ExploraPlugin.debug("[Stream] No ping from the backend for " + sinceLastPing + "ms, reconnecting");
+			drop(ws);
+			return;
+		}
+		CompletableFuture.delayedExecutor(timeoutMillis - sinceLastPing + 1, TimeUnit.MILLISECONDS).execute(() -> checkPing(ws, timeoutMillis));
+	}
+
+	private static String rootMessage(Throwable ex) {
+		Throwable cause = ex;
+		while (cause.getCause() != null) cause = cause.getCause();
+		return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+	}
+
+	/**
+	 * @return the number of frames sent since the client was created
+	 */
+	public long getFramesSent() {
+		return framesSent.get();
+	}
+
+	/**
+	 * @return the number of bytes sent since the client was created, excluding WebSocket framing
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * @return the number of frames waiting to be sent
+	 */
+	public int getPendingSends() {
+		return pendingSends.get();
+	}
+}